@@ -0,0 +1,204 @@
+package com.jasonbertolo.urlshortener.api.component;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.Hashing;
+import com.jasonbertolo.urlshortener.api.config.settings.UrlShortenerSettings;
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKMatcher;
+import com.nimbusds.jose.jwk.JWKSelector;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jwt.SignedJWT;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.GuavaCacheMetrics;
+import jakarta.annotation.PreDestroy;
+import org.owasp.esapi.ESAPI;
+import org.owasp.esapi.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.security.oauth2.resource.OAuth2ResourceServerProperties;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtValidators;
+import org.springframework.security.oauth2.jwt.NimbusReactiveJwtDecoder;
+import org.springframework.security.oauth2.jwt.ReactiveJwtDecoder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static org.owasp.esapi.Logger.*;
+
+/**
+ * Decodes bearer tokens for both the HTTP and RSocket resource servers. The web tier calls with the same client
+ * credentials token for its whole lifetime, so a token whose signature checked out is kept by its SHA-256 hash and
+ * later requests with it skip parsing and verifying. A cached token is never used past its exp, it goes through the
+ * full decode again and is rejected there.
+ * <p>
+ * Signing keys are fetched from the JWK set URI at startup and refreshed in the background, so decoding never waits on
+ * the auth server for keys. A token signed with a key not in the set, as after a key rotation, fetches the set again,
+ * at most once per minimum refresh interval.
+ */
+@Component
+public class CachingReactiveJwtDecoder implements ReactiveJwtDecoder, ApplicationRunner {
+
+    private static final Logger LOGGER = ESAPI.getLogger(CachingReactiveJwtDecoder.class.getSimpleName());
+
+    public static final String CACHE_NAME = "security.jwt";
+
+    private final UrlShortenerSettings.JwtCache settings;
+    private final WebClient webClient;
+    private final NimbusReactiveJwtDecoder delegate;
+    private final Cache<String, Jwt> verified;
+    private final Timer hitTimer;
+    private final Timer missTimer;
+    private final AtomicReference<JWKSet> jwkSet = new AtomicReference<>(new JWKSet());
+    private final AtomicReference<Mono<JWKSet>> jwkSetFetch = new AtomicReference<>();
+    private volatile long lastFetchNanos;
+    private Disposable jwkSetRefresh;
+
+    @Autowired
+    public CachingReactiveJwtDecoder(UrlShortenerSettings urlShortenerSettings,
+                                     OAuth2ResourceServerProperties resourceServerProperties,
+                                     WebClient.Builder webClientBuilder,
+                                     MeterRegistry meterRegistry) {
+        this.settings = urlShortenerSettings.getJwtCache();
+        this.webClient = webClientBuilder.build();
+        this.lastFetchNanos = System.nanoTime() - settings.getJwkSetMinimumRefreshInterval().toNanos();
+        this.delegate = NimbusReactiveJwtDecoder.withJwkSource(this::keys).build();
+        String issuerUri = resourceServerProperties.getJwt().getIssuerUri();
+        this.delegate.setJwtValidator(issuerUri != null
+                ? JwtValidators.createDefaultWithIssuer(issuerUri) : JwtValidators.createDefault());
+        this.verified = CacheBuilder.newBuilder()
+                .maximumSize(settings.getMaximumSize())
+                .expireAfterWrite(settings.getMaximumTtl())
+                .recordStats()
+                .build();
+        GuavaCacheMetrics.monitor(meterRegistry, verified, CACHE_NAME);
+        // Time spent authenticating a request, compare hit with miss for what the cache saves
+        this.hitTimer = Timer.builder(CACHE_NAME + ".decode")
+                .description("Time taken to decode a bearer token")
+                .tag("result", "hit")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        this.missTimer = Timer.builder(CACHE_NAME + ".decode")
+                .description("Time taken to decode a bearer token")
+                .tag("result", "miss")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (settings.getJwkSetUri() == null || settings.getJwkSetUri().isBlank()) {
+            return;
+        }
+        jwkSetRefresh = Flux.interval(Duration.ZERO, settings.getJwkSetRefreshInterval())
+                .concatMap(tick -> fetchJwkSet().onErrorResume(e -> Mono.empty()))
+                .subscribe();
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (jwkSetRefresh != null) {
+            jwkSetRefresh.dispose();
+        }
+    }
+
+    @Override
+    public Mono<Jwt> decode(String token) {
+        if (!settings.isEnabled()) {
+            return delegate.decode(token);
+        }
+        long start = System.nanoTime();
+        String hash = Hashing.sha256().hashString(token, StandardCharsets.UTF_8).toString();
+        Jwt jwt = verified.getIfPresent(hash);
+        if (jwt != null) {
+            if (!isExpired(jwt)) {
+                hitTimer.record(System.nanoTime() - start, NANOSECONDS);
+                return Mono.just(jwt);
+            }
+            verified.invalidate(hash);
+        }
+        return delegate.decode(token)
+                .doOnNext(decoded -> {
+                    // Accepted within the validator's clock skew, but not worth keeping
+                    if (!isExpired(decoded)) {
+                        verified.put(hash, decoded);
+                    }
+                    missTimer.record(System.nanoTime() - start, NANOSECONDS);
+                });
+    }
+
+    void setJwkSet(JWKSet jwkSet) {
+        this.jwkSet.set(jwkSet);
+    }
+
+    private Flux<JWK> keys(SignedJWT signedJwt) {
+        JWKSelector selector = new JWKSelector(JWKMatcher.forJWSHeader(signedJwt.getHeader()));
+        List<JWK> keys = selector.select(jwkSet.get());
+        if (!keys.isEmpty()) {
+            return Flux.fromIterable(keys);
+        }
+        if (System.nanoTime() - lastFetchNanos < settings.getJwkSetMinimumRefreshInterval().toNanos()) {
+            return Flux.empty();
+        }
+        return fetchJwkSet()
+                .onErrorResume(e -> Mono.just(jwkSet.get()))
+                .flatMapIterable(selector::select);
+    }
+
+    // Concurrent callers share one request
+    private Mono<JWKSet> fetchJwkSet() {
+        while (true) {
+            Mono<JWKSet> shared = jwkSetFetch.get();
+            if (shared != null) {
+                return shared;
+            }
+            Mono<JWKSet> fetch = webClient.get().uri(settings.getJwkSetUri())
+                    .retrieve()
+                    .bodyToMono(String.class)
+                    .map(CachingReactiveJwtDecoder::parseJwkSet)
+                    .doOnNext(fetched -> {
+                        JWKSet previous = jwkSet.getAndSet(fetched);
+                        if (!fetched.getKeys().equals(previous.getKeys())) {
+                            LOGGER.info(EVENT_SUCCESS, String.format("Fetched [%d] JWT signing keys from [%s]",
+                                    fetched.getKeys().size(), settings.getJwkSetUri()));
+                        }
+                    })
+                    .doOnError(e -> LOGGER.warning(EVENT_FAILURE, String.format(
+                            "Failed to fetch JWT signing keys from [%s]: [%s]",
+                            settings.getJwkSetUri(), e.getMessage())))
+                    .doOnTerminate(() -> {
+                        lastFetchNanos = System.nanoTime();
+                        jwkSetFetch.set(null);
+                    })
+                    .cache();
+            if (jwkSetFetch.compareAndSet(null, fetch)) {
+                return fetch;
+            }
+        }
+    }
+
+    private static boolean isExpired(Jwt jwt) {
+        return jwt.getExpiresAt() != null && !Instant.now().isBefore(jwt.getExpiresAt());
+    }
+
+    private static JWKSet parseJwkSet(String body) {
+        try {
+            return JWKSet.parse(body);
+        } catch (ParseException e) {
+            throw new IllegalStateException("Invalid JWK set: " + e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.jasonbertolo.urlshortener.api.component;
+
+import com.jasonbertolo.urlshortener.api.model.ShortUrl;
+import org.springframework.data.redis.core.ReactiveHashOperations;
+import org.springframework.data.redis.core.ReactiveRedisOperations;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+import static com.jasonbertolo.urlshortener.contract.ShortUrlCacheKeys.bucketKey;
+
+/**
+ * ShortUrls as fields of bucket hashes. Fields can't expire on their own before Redis 7.4, so each value carries its
+ * cache deadline. Fields past it or past their ShortUrl's expiry are misses and removed when read, and a write removes
+ * them from its whole bucket before extending the bucket to its latest deadline.
+ */
+public class HashShortUrlCacheStore implements ShortUrlCacheStore {
+
+    private final ReactiveRedisOperations<String, ShortUrl> reactiveRedisOperations;
+    private final ReactiveHashOperations<String, String, ShortUrl> hashOperations;
+    private final int bucketCount;
+
+    public HashShortUrlCacheStore(ReactiveRedisOperations<String, ShortUrl> reactiveRedisOperations, int bucketCount) {
+        this.reactiveRedisOperations = reactiveRedisOperations;
+        this.hashOperations = reactiveRedisOperations.opsForHash();
+        this.bucketCount = bucketCount;
+    }
+
+    @Override
+    public Mono<ShortUrl> get(String key) {
+        String bucket = bucketKey(key, bucketCount);
+        return hashOperations.get(bucket, key)
+                .flatMap(shortUrl -> isExpired(shortUrl, Instant.now())
+                        ? hashOperations.remove(bucket, key).then(Mono.empty())
+                        : Mono.just(shortUrl));
+    }
+
+    @Override
+    public Flux<ShortUrl> getAll(List<String> keys) {
+        // One HMGET per bucket
+        return Flux.fromIterable(keys.stream()
+                        .collect(Collectors.groupingBy(key -> bucketKey(key, bucketCount)))
+                        .entrySet())
+                .flatMap(bucket -> hashOperations.multiGet(bucket.getKey(), bucket.getValue())
+                        .flatMapMany(shortUrls -> {
+                            Instant now = Instant.now();
+                            Map<Boolean, List<ShortUrl>> byExpired = shortUrls.stream()
+                                    .filter(Objects::nonNull)
+                                    .collect(Collectors.partitioningBy(shortUrl -> isExpired(shortUrl, now)));
+                            Mono<Long> removeExpired = byExpired.get(true).isEmpty() ? Mono.just(0L)
+                                    : hashOperations.remove(bucket.getKey(), byExpired.get(true).stream()
+                                            .map(ShortUrl::getKey).toArray());
+                            return removeExpired.thenMany(Flux.fromIterable(byExpired.get(false)));
+                        }));
+    }
+
+    @Override
+    public Mono<ShortUrl> getAndExpire(String key, Duration ttl) {
+        return get(key);
+    }
+
+    @Override
+    public Mono<Duration> getExpire(String key) {
+        return Mono.empty();
+    }
+
+    @Override
+    public Mono<Boolean> expire(String key, Duration ttl) {
+        return Mono.just(false);
+    }
+
+    @Override
+    public Mono<Boolean> set(String key, ShortUrl shortUrl, Duration ttl) {
+        String bucket = bucketKey(key, bucketCount);
+        Instant now = Instant.now();
+        shortUrl.setCachedUntil(now.plus(ttl));
+        return hashOperations.put(bucket, key, shortUrl)
+                .flatMap(cached -> pruneBucket(bucket, now, shortUrl.getCachedUntil()).thenReturn(cached));
+    }
+
+    // Buckets live as long as their latest deadline, a write with a shorter TTL doesn't cut the others short
+    private Mono<Boolean> pruneBucket(String bucket, Instant now, Instant cachedUntil) {
+        return hashOperations.values(bucket)
+                .collectList()
+                .flatMap(shortUrls -> {
+                    Object[] expired = shortUrls.stream()
+                            .filter(shortUrl -> isExpired(shortUrl, now))
+                            .map(ShortUrl::getKey)
+                            .toArray();
+                    Instant latest = shortUrls.stream()
+                            .map(ShortUrl::getCachedUntil)
+                            .filter(Objects::nonNull)
+                            .reduce(cachedUntil, (a, b) -> a.isAfter(b) ? a : b);
+                    Mono<Long> removeExpired = expired.length == 0 ? Mono.just(0L)
+                            : hashOperations.remove(bucket, expired);
+                    return removeExpired.then(reactiveRedisOperations.expireAt(bucket, latest));
+                });
+    }
+
+    @Override
+    public Mono<Boolean> delete(String key) {
+        return hashOperations.remove(bucketKey(key, bucketCount), key).map(removed -> removed > 0);
+    }
+
+    @Override
+    public Mono<Long> deleteAll(List<String> keys) {
+        return Flux.fromIterable(keys.stream()
+                        .collect(Collectors.groupingBy(key -> bucketKey(key, bucketCount)))
+                        .entrySet())
+                .concatMap(bucket -> hashOperations.remove(bucket.getKey(), bucket.getValue().toArray()))
+                .reduce(0L, Long::sum);
+    }
+
+    @Override
+    public boolean supportsEntryTtl() {
+        return false;
+    }
+
+    private static boolean isExpired(ShortUrl shortUrl, Instant now) {
+        return shortUrl.getExpiresAt() != null && !shortUrl.getExpiresAt().isAfter(now)
+                || shortUrl.getCachedUntil() != null && !shortUrl.getCachedUntil().isAfter(now);
+    }
+}
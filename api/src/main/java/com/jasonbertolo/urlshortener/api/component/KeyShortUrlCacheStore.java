@@ -0,0 +1,79 @@
+package com.jasonbertolo.urlshortener.api.component;
+
+import com.jasonbertolo.urlshortener.api.model.ShortUrl;
+import com.jasonbertolo.urlshortener.contract.ShortUrlCacheKeys;
+import org.springframework.data.redis.core.ReactiveRedisOperations;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Objects;
+
+import static com.jasonbertolo.urlshortener.contract.ShortUrlCacheKeys.valueKey;
+
+/**
+ * One Redis string per ShortUrl.
+ */
+public class KeyShortUrlCacheStore implements ShortUrlCacheStore {
+
+    private final ReactiveRedisOperations<String, ShortUrl> reactiveRedisOperations;
+
+    public KeyShortUrlCacheStore(ReactiveRedisOperations<String, ShortUrl> reactiveRedisOperations) {
+        this.reactiveRedisOperations = reactiveRedisOperations;
+    }
+
+    @Override
+    public Mono<ShortUrl> get(String key) {
+        return reactiveRedisOperations.opsForValue().get(valueKey(key));
+    }
+
+    @Override
+    public Flux<ShortUrl> getAll(List<String> keys) {
+        if (keys.isEmpty()) {
+            return Flux.empty();
+        }
+        // MGET answers null for the keys that aren't cached
+        return reactiveRedisOperations.opsForValue()
+                .multiGet(keys.stream().map(ShortUrlCacheKeys::valueKey).toList())
+                .flatMapIterable(shortUrls -> shortUrls.stream().filter(Objects::nonNull).toList());
+    }
+
+    @Override
+    public Mono<ShortUrl> getAndExpire(String key, Duration ttl) {
+        return reactiveRedisOperations.opsForValue().getAndExpire(valueKey(key), ttl);
+    }
+
+    @Override
+    public Mono<Duration> getExpire(String key) {
+        return reactiveRedisOperations.getExpire(valueKey(key));
+    }
+
+    @Override
+    public Mono<Boolean> expire(String key, Duration ttl) {
+        return reactiveRedisOperations.expire(valueKey(key), ttl);
+    }
+
+    @Override
+    public Mono<Boolean> set(String key, ShortUrl shortUrl, Duration ttl) {
+        return reactiveRedisOperations.opsForValue().set(valueKey(key), shortUrl, ttl);
+    }
+
+    @Override
+    public Mono<Boolean> delete(String key) {
+        return reactiveRedisOperations.delete(valueKey(key)).map(deleted -> deleted > 0);
+    }
+
+    @Override
+    public Mono<Long> deleteAll(List<String> keys) {
+        if (keys.isEmpty()) {
+            return Mono.just(0L);
+        }
+        return reactiveRedisOperations.delete(keys.stream().map(ShortUrlCacheKeys::valueKey).toArray(String[]::new));
+    }
+
+    @Override
+    public boolean supportsEntryTtl() {
+        return true;
+    }
+}
@@ -1,12 +1,10 @@
 package com.jasonbertolo.urlshortener.api.component;
 
 import com.jasonbertolo.urlshortener.api.config.settings.UrlShortenerSettings;
-import com.jasonbertolo.urlshortener.api.model.ShortUrl;
 import com.jasonbertolo.urlshortener.api.repository.ShortUrlRepository;
 import org.owasp.esapi.ESAPI;
 import org.owasp.esapi.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.redis.core.ReactiveRedisOperations;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
@@ -20,15 +18,15 @@ public class ScheduledMaintenance {
     private static final Logger LOGGER = ESAPI.getLogger(ScheduledMaintenance.class.getSimpleName());
 
     private final ShortUrlRepository shortUrlRepository;
-    private final ReactiveRedisOperations<String, ShortUrl> reactiveRedisOperations;
+    private final ShortUrlCacheStore shortUrlCacheStore;
     private final UrlShortenerSettings urlShortenerSettings;
 
     @Autowired
     public ScheduledMaintenance(ShortUrlRepository shortUrlRepository,
-                                ReactiveRedisOperations<String, ShortUrl> reactiveRedisOperations,
+                                ShortUrlCacheStore shortUrlCacheStore,
                                 UrlShortenerSettings urlShortenerSettings) {
         this.shortUrlRepository = shortUrlRepository;
-        this.reactiveRedisOperations = reactiveRedisOperations;
+        this.shortUrlCacheStore = shortUrlCacheStore;
         this.urlShortenerSettings = urlShortenerSettings;
     }
 
@@ -45,7 +43,7 @@ public class ScheduledMaintenance {
         shortUrlRepository.findByExpiresAtBefore(Instant.now()).flatMap(shortUrl -> {
             LOGGER.info(EVENT_UNSPECIFIED, String.format("ShortUrl id[%s] expired, removing it", shortUrl.getId()));
             // Delete from cache
-            return reactiveRedisOperations.delete(shortUrl.getKey())
+            return shortUrlCacheStore.delete(shortUrl.getKey())
                     .doOnSuccess(s -> LOGGER.info(EVENT_SUCCESS, String.format(
                             "ShortUrl id[%s] was deleted from cache", shortUrl.getId())))
                     .doOnError(e -> LOGGER.warning(EVENT_FAILURE, String.format(
@@ -0,0 +1,265 @@
+package com.jasonbertolo.urlshortener.api.component;
+
+import com.jasonbertolo.urlshortener.api.config.settings.UrlShortenerSettings;
+import com.jasonbertolo.urlshortener.api.model.ShortUrl;
+import com.jasonbertolo.urlshortener.contract.ConsistentHashRing;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.owasp.esapi.ESAPI;
+import org.owasp.esapi.Logger;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import static org.owasp.esapi.Logger.*;
+
+/**
+ * Spreads cached ShortUrls across several Redis instances on a consistent hash ring keyed by endpoint.
+ * <p>
+ * A shard failing failureThreshold operations in a row is marked down. Its keys then bypass the cache, reads miss
+ * and writes are skipped, rather than moving to another shard, so the other shards' keys stay put. Deletes made while
+ * a shard is down are kept and replayed once a health check finds it back, so it can't serve a deleted ShortUrl.
+ */
+public class ShardedShortUrlCacheStore implements ShortUrlCacheStore {
+
+    private static final Logger LOGGER = ESAPI.getLogger(ShardedShortUrlCacheStore.class.getSimpleName());
+
+    public static final String METRIC_PREFIX = "shorturl.cache.shard";
+
+    private final ConsistentHashRing<Shard> ring;
+    private final UrlShortenerSettings.CacheShards settings;
+    private final boolean supportsEntryTtl;
+    private Disposable scheduledHealthCheck;
+
+    public ShardedShortUrlCacheStore(List<Shard> shards, UrlShortenerSettings.CacheShards settings,
+                                     MeterRegistry meterRegistry) {
+        this.ring = new ConsistentHashRing<>(shards.stream()
+                .collect(Collectors.toMap(Shard::getName, Function.identity())), settings.getVirtualNodes());
+        this.settings = settings;
+        this.supportsEntryTtl = shards.stream().allMatch(shard -> shard.store.supportsEntryTtl());
+        shards.forEach(shard -> {
+            Gauge.builder(METRIC_PREFIX + ".healthy", shard, s -> s.isHealthy() ? 1 : 0)
+                    .description("Whether the cache shard is in use")
+                    .tag("shard", shard.name)
+                    .register(meterRegistry);
+            shard.failureCounter = Counter.builder(METRIC_PREFIX + ".failures")
+                    .description("Failed operations on the cache shard")
+                    .tag("shard", shard.name)
+                    .register(meterRegistry);
+        });
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        scheduledHealthCheck = Flux.interval(settings.getHealthCheckInterval())
+                .onBackpressureDrop()
+                .concatMap(tick -> checkHealth())
+                .subscribe();
+    }
+
+    public void close() {
+        if (scheduledHealthCheck != null) {
+            scheduledHealthCheck.dispose();
+        }
+        ring.getNodes().values().forEach(shard -> shard.onClose.run());
+    }
+
+    public Mono<Void> checkHealth() {
+        return Flux.fromIterable(ring.getNodes().values())
+                .flatMap(this::checkHealth)
+                .then();
+    }
+
+    @Override
+    public Mono<ShortUrl> get(String key) {
+        return route(key, Mono.empty(), store -> store.get(key));
+    }
+
+    @Override
+    public Flux<ShortUrl> getAll(List<String> keys) {
+        // Keys of a shard that's down are misses
+        return Flux.fromIterable(keys.stream().collect(Collectors.groupingBy(ring::nodeFor)).entrySet())
+                .filter(shardKeys -> shardKeys.getKey().isHealthy())
+                .flatMap(shardKeys -> {
+                    Shard shard = shardKeys.getKey();
+                    return shard.store.getAll(shardKeys.getValue())
+                            .collectList()
+                            .doOnNext(shortUrls -> shard.recordSuccess())
+                            .onErrorResume(e -> {
+                                recordFailure(shard, e);
+                                return Mono.just(List.of());
+                            });
+                })
+                .flatMapIterable(Function.identity());
+    }
+
+    @Override
+    public Mono<ShortUrl> getAndExpire(String key, Duration ttl) {
+        return route(key, Mono.empty(), store -> store.getAndExpire(key, ttl));
+    }
+
+    @Override
+    public Mono<Duration> getExpire(String key) {
+        return route(key, Mono.empty(), store -> store.getExpire(key));
+    }
+
+    @Override
+    public Mono<Boolean> expire(String key, Duration ttl) {
+        return route(key, Mono.just(false), store -> store.expire(key, ttl));
+    }
+
+    @Override
+    public Mono<Boolean> set(String key, ShortUrl shortUrl, Duration ttl) {
+        return route(key, Mono.just(false), store -> store.set(key, shortUrl, ttl));
+    }
+
+    @Override
+    public Mono<Boolean> delete(String key) {
+        Shard shard = ring.nodeFor(key);
+        if (!shard.isHealthy()) {
+            shard.addPendingDelete(key, settings.getMaximumPendingDeletes());
+            return Mono.just(false);
+        }
+        return shard.store.delete(key)
+                .doOnNext(b -> shard.recordSuccess())
+                .onErrorResume(e -> {
+                    recordFailure(shard, e);
+                    shard.addPendingDelete(key, settings.getMaximumPendingDeletes());
+                    return Mono.just(false);
+                });
+    }
+
+    @Override
+    public Mono<Long> deleteAll(List<String> keys) {
+        return Flux.fromIterable(keys.stream().collect(Collectors.groupingBy(ring::nodeFor)).entrySet())
+                .concatMap(shardKeys -> {
+                    Shard shard = shardKeys.getKey();
+                    if (!shard.isHealthy()) {
+                        shardKeys.getValue().forEach(key ->
+                                shard.addPendingDelete(key, settings.getMaximumPendingDeletes()));
+                        return Mono.just(0L);
+                    }
+                    return shard.store.deleteAll(shardKeys.getValue())
+                            .doOnNext(count -> shard.recordSuccess())
+                            .onErrorResume(e -> {
+                                recordFailure(shard, e);
+                                shardKeys.getValue().forEach(key ->
+                                        shard.addPendingDelete(key, settings.getMaximumPendingDeletes()));
+                                return Mono.just(0L);
+                            });
+                })
+                .reduce(0L, Long::sum);
+    }
+
+    @Override
+    public boolean supportsEntryTtl() {
+        return supportsEntryTtl;
+    }
+
+    private <T> Mono<T> route(String key, Mono<T> fallback, Function<ShortUrlCacheStore, Mono<T>> operation) {
+        Shard shard = ring.nodeFor(key);
+        if (!shard.isHealthy()) {
+            return fallback;
+        }
+        return operation.apply(shard.store)
+                .doOnSuccess(v -> shard.recordSuccess())
+                .onErrorResume(e -> {
+                    recordFailure(shard, e);
+                    return fallback;
+                });
+    }
+
+    private void recordFailure(Shard shard, Throwable e) {
+        shard.failureCounter.increment();
+        if (shard.consecutiveFailures.incrementAndGet() >= settings.getFailureThreshold() && shard.healthy) {
+            shard.healthy = false;
+            LOGGER.warning(EVENT_FAILURE, String.format(
+                    "Cache shard[%s] marked down after [%d] failures: [%s]", shard.name,
+                    shard.consecutiveFailures.get(), e.getMessage()));
+        }
+    }
+
+    private Mono<Void> checkHealth(Shard shard) {
+        return shard.ping.get()
+                .then(Mono.defer(() -> shard.isHealthy() && shard.pendingDeletes.isEmpty()
+                        ? Mono.<Void>empty() : recover(shard)))
+                .onErrorResume(e -> {
+                    recordFailure(shard, e);
+                    return Mono.empty();
+                });
+    }
+
+    // Replay missed deletes before taking traffic again, deletes missed during the replay go on the next check
+    private Mono<Void> recover(Shard shard) {
+        List<String> keys = List.copyOf(shard.pendingDeletes);
+        return Flux.fromIterable(keys)
+                .concatMap(shard.store::delete)
+                .then(Mono.fromRunnable(() -> {
+                    keys.forEach(shard.pendingDeletes::remove);
+                    if (shard.pendingDeletesOverflowed) {
+                        LOGGER.warning(EVENT_FAILURE, String.format(
+                                "Cache shard[%s] missed more deletes than were kept, deleted ShortUrls may be served "
+                                        + "until their cache TTL", shard.name));
+                        shard.pendingDeletesOverflowed = false;
+                    }
+                    shard.recordSuccess();
+                    if (!shard.healthy) {
+                        shard.healthy = true;
+                        LOGGER.info(EVENT_SUCCESS, String.format(
+                                "Cache shard[%s] is back after replaying [%d] deletes", shard.name, keys.size()));
+                    }
+                }));
+    }
+
+    public static class Shard {
+        private final String name;
+        private final ShortUrlCacheStore store;
+        private final Supplier<Mono<String>> ping;
+        private final Runnable onClose;
+        private final AtomicInteger consecutiveFailures = new AtomicInteger();
+        private final Set<String> pendingDeletes = ConcurrentHashMap.newKeySet();
+        private volatile boolean healthy = true;
+        private volatile boolean pendingDeletesOverflowed;
+        private Counter failureCounter;
+
+        public Shard(String name, ShortUrlCacheStore store, Supplier<Mono<String>> ping,
+                     Runnable onClose) {
+            this.name = name;
+            this.store = store;
+            this.ping = ping;
+            this.onClose = onClose;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public boolean isHealthy() {
+            return healthy;
+        }
+
+        private void recordSuccess() {
+            consecutiveFailures.set(0);
+        }
+
+        private void addPendingDelete(String key, int maximumPendingDeletes) {
+            if (pendingDeletes.size() < maximumPendingDeletes) {
+                pendingDeletes.add(key);
+            } else {
+                pendingDeletesOverflowed = true;
+            }
+        }
+    }
+}
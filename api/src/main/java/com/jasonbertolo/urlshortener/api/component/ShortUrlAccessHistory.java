@@ -0,0 +1,172 @@
+package com.jasonbertolo.urlshortener.api.component;
+
+import com.jasonbertolo.urlshortener.api.config.settings.UrlShortenerSettings;
+import com.jasonbertolo.urlshortener.api.model.ShortUrlAccess;
+import com.jasonbertolo.urlshortener.api.repository.ShortUrlAccessRepository;
+import jakarta.annotation.PreDestroy;
+import org.bson.Document;
+import org.owasp.esapi.ESAPI;
+import org.owasp.esapi.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationStartedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.ReactiveBulkOperations;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.owasp.esapi.Logger.*;
+
+/**
+ * Counts ShortUrl lookups in memory and periodically adds them to the access history in MongoDB, shared by every
+ * instance, so a starting instance knows which keys are worth warming. Hits are halved every decay interval, by
+ * whichever instance flushes first once it's due, so keys that were popular long ago don't outrank today's. History
+ * not written to for the retention period is removed by a TTL index.
+ */
+@Component
+public class ShortUrlAccessHistory {
+
+    private static final Logger LOGGER = ESAPI.getLogger(ShortUrlAccessHistory.class.getSimpleName());
+
+    public static final String STATE_COLLECTION = "short-url-access-state";
+
+    private static final String DECAY_STATE_ID = "decay";
+    private static final String DECAYED_AT = "decayedAt";
+
+    private final ReactiveMongoOperations reactiveMongoOperations;
+    private final ShortUrlAccessRepository shortUrlAccessRepository;
+    private final UrlShortenerSettings.WarmUp settings;
+    private volatile Map<String, LongAdder> pending = new ConcurrentHashMap<>();
+    private Disposable scheduledFlush;
+
+    @Autowired
+    public ShortUrlAccessHistory(ReactiveMongoOperations reactiveMongoOperations,
+                                 ShortUrlAccessRepository shortUrlAccessRepository,
+                                 UrlShortenerSettings urlShortenerSettings) {
+        this.reactiveMongoOperations = reactiveMongoOperations;
+        this.shortUrlAccessRepository = shortUrlAccessRepository;
+        this.settings = urlShortenerSettings.getWarmUp();
+    }
+
+    // Before ApplicationRunners, so the history can be read by the warm-up
+    @EventListener(ApplicationStartedEvent.class)
+    public void start() {
+        if (!settings.isEnabled()) {
+            return;
+        }
+        reactiveMongoOperations.indexOps(ShortUrlAccess.class)
+                .ensureIndex(new Index("lastAccessedAt", Sort.Direction.ASC).expire(settings.getHistoryRetention()))
+                .then(reactiveMongoOperations.indexOps(ShortUrlAccess.class)
+                        .ensureIndex(new Index("hits", Sort.Direction.DESC)))
+                // The first instance to start sets the decay clock, the others find it set
+                .then(reactiveMongoOperations.insert(new Document("_id", DECAY_STATE_ID)
+                                .append(DECAYED_AT, Date.from(Instant.now())), STATE_COLLECTION)
+                        .onErrorResume(DuplicateKeyException.class, e -> Mono.empty()))
+                .onErrorResume(e -> {
+                    LOGGER.warning(EVENT_FAILURE, String.format(
+                            "Failed to index ShortUrl access history: [%s]", e.getMessage()));
+                    return Mono.empty();
+                })
+                .block(Duration.ofSeconds(30));
+        scheduledFlush = Flux.interval(settings.getHistoryFlushInterval())
+                .concatMap(i -> flush())
+                .subscribe();
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (scheduledFlush != null) {
+            scheduledFlush.dispose();
+            flush().block(Duration.ofSeconds(10));
+        }
+    }
+
+    public void record(String key) {
+        if (!settings.isEnabled()) {
+            return;
+        }
+        Map<String, LongAdder> counts = pending;
+        // Past the limit, only keys already seen this interval are counted
+        LongAdder count = counts.size() < settings.getHistoryMaximumKeys()
+                ? counts.computeIfAbsent(key, k -> new LongAdder())
+                : counts.get(key);
+        if (count != null) {
+            count.increment();
+        }
+    }
+
+    // Most hit keys among those accessed within the history window
+    public Flux<String> topKeys(int limit) {
+        return shortUrlAccessRepository.findByLastAccessedAtAfterOrderByHitsDesc(
+                        Instant.now().minus(settings.getHistoryWindow()), PageRequest.of(0, limit))
+                .map(ShortUrlAccess::getKey);
+    }
+
+    public Mono<Void> flush() {
+        Map<String, LongAdder> counts = pending;
+        if (!counts.isEmpty()) {
+            // A lookup recorded into the old map while it's being written is lost, it's only a count
+            pending = new ConcurrentHashMap<>();
+        }
+        Instant now = Instant.now();
+        // Decayed first, the hits being added are all recent
+        return decay(now)
+                .thenMany(Flux.fromIterable(counts.entrySet()))
+                .buffer(settings.getBatchSize())
+                .concatMap(batch -> upsert(batch, now))
+                .then()
+                .doOnSuccess(v -> LOGGER.debug(EVENT_SUCCESS, String.format(
+                        "Flushed access history for [%d] ShortUrl keys", counts.size())))
+                .onErrorResume(e -> {
+                    LOGGER.warning(EVENT_FAILURE, String.format(
+                            "Failed to flush ShortUrl access history: [%s]", e.getMessage()));
+                    return Mono.empty();
+                });
+    }
+
+    /*
+     * Claims the decay when the last one is at least an interval old, moving its time forward in the same update so
+     * only one instance applies it, and halves hits once per interval elapsed since.
+     */
+    private Mono<Void> decay(Instant now) {
+        Query due = Query.query(Criteria.where("_id").is(DECAY_STATE_ID)
+                .and(DECAYED_AT).lte(Date.from(now.minus(settings.getHistoryDecayInterval()))));
+        return reactiveMongoOperations.findAndModify(due, Update.update(DECAYED_AT, Date.from(now)), Document.class,
+                        STATE_COLLECTION)
+                .flatMap(previous -> {
+                    double intervals = (double) Duration.between(previous.getDate(DECAYED_AT).toInstant(), now)
+                            .toMillis() / settings.getHistoryDecayInterval().toMillis();
+                    return reactiveMongoOperations.updateMulti(Query.query(Criteria.where("hits").gt(0)),
+                            new Update().multiply("hits", Math.pow(0.5, intervals)), ShortUrlAccess.class);
+                })
+                .doOnNext(result -> LOGGER.debug(EVENT_SUCCESS, String.format(
+                        "Decayed access history hits of [%d] ShortUrl keys", result.getModifiedCount())))
+                .then();
+    }
+
+    private Mono<Void> upsert(List<Map.Entry<String, LongAdder>> batch, Instant now) {
+        ReactiveBulkOperations bulkOperations = reactiveMongoOperations.bulkOps(
+                BulkOperations.BulkMode.UNORDERED, ShortUrlAccess.class);
+        batch.forEach(entry -> bulkOperations.upsert(Query.query(Criteria.where("_id").is(entry.getKey())),
+                new Update().inc("hits", entry.getValue().sum()).set("lastAccessedAt", now)));
+        return bulkOperations.execute().then();
+    }
+}
@@ -0,0 +1,124 @@
+package com.jasonbertolo.urlshortener.api.component;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.jasonbertolo.urlshortener.api.config.settings.UrlShortenerSettings;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * Decides how long cached ShortUrls live and when a hit extends them. Keys hit often within the popularity window
+ * get a longer TTL. Remembers when entries expire so a hit only reads the TTL from Redis near expiry. Also reports
+ * Redis writes and hit latency.
+ */
+@Component
+public class ShortUrlCachePolicy {
+
+    public static final String WRITES_METRIC = "shorturl.cache.redis.writes";
+    public static final String HIT_METRIC = "shorturl.cache.hit";
+
+    public static final String OP_SET = "set";
+    public static final String OP_EXPIRE = "expire";
+    public static final String OP_GETEX = "getex";
+    public static final String OP_DELETE = "delete";
+
+    private final UrlShortenerSettings.CacheRefresh settings;
+    private final Duration cacheTtl;
+    private final Cache<String, AtomicLong> hitCounts;
+    private final Cache<String, Long> knownExpiries;
+    private final Map<String, Counter> writeCounters;
+    private final Timer hitTimer;
+
+    @Autowired
+    public ShortUrlCachePolicy(UrlShortenerSettings urlShortenerSettings, MeterRegistry meterRegistry) {
+        this.settings = urlShortenerSettings.getCacheRefresh();
+        this.cacheTtl = Duration.ofDays(urlShortenerSettings.getCacheTtlDays());
+        this.hitCounts = CacheBuilder.newBuilder()
+                .maximumSize(settings.getPopularityMaximumKeys())
+                .expireAfterWrite(settings.getPopularityWindow())
+                .build();
+        this.knownExpiries = CacheBuilder.newBuilder()
+                .maximumSize(settings.getPopularityMaximumKeys())
+                .build();
+        this.writeCounters = Stream.of(OP_SET, OP_EXPIRE, OP_GETEX, OP_DELETE)
+                .collect(Collectors.toUnmodifiableMap(Function.identity(), op -> Counter.builder(WRITES_METRIC)
+                        .description("Writes made to Redis for cached ShortUrls")
+                        .tag("op", op)
+                        .register(meterRegistry)));
+        this.hitTimer = Timer.builder(HIT_METRIC)
+                .description("Time to read a ShortUrl found in Redis, including any TTL refresh")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+    }
+
+    public UrlShortenerSettings.CacheRefresh.Mode getMode() {
+        return settings.getMode();
+    }
+
+    public Duration ttlFor(String key) {
+        AtomicLong hits = hitCounts.getIfPresent(key);
+        if (hits != null && hits.get() >= settings.getPopularHits()) {
+            return cacheTtl.multipliedBy(settings.getPopularTtlMultiplier());
+        }
+        return cacheTtl;
+    }
+
+    // Only applies to THRESHOLD mode, a negative remaining TTL means the entry has none or is gone
+    public boolean shouldExtend(String key, Duration remaining) {
+        if (settings.getMode() != UrlShortenerSettings.CacheRefresh.Mode.THRESHOLD
+                || remaining.isNegative() || remaining.isZero()) {
+            return false;
+        }
+        return remaining.toMillis() < ttlFor(key).toMillis() * settings.getThresholdRatio();
+    }
+
+    /*
+     * When this instance last saw the key's Redis entry expire, after writing it or reading its TTL. Other instances
+     * only push it later, so it's a lower bound unless the entry was deleted and cached again with a shorter TTL, in
+     * which case an extension or early refresh is skipped and the entry just expires.
+     */
+    public Optional<Duration> knownTtl(String key) {
+        Long expiresAt = knownExpiries.getIfPresent(key);
+        return expiresAt == null ? Optional.empty() : Optional.of(Duration.ofMillis(
+                expiresAt - System.currentTimeMillis()));
+    }
+
+    public void recordExpiry(String key, Duration remaining) {
+        if (remaining.isNegative() || remaining.isZero()) {
+            knownExpiries.invalidate(key);
+        } else {
+            knownExpiries.put(key, System.currentTimeMillis() + remaining.toMillis());
+        }
+    }
+
+    public void forgetExpiry(String key) {
+        knownExpiries.invalidate(key);
+    }
+
+    public void recordHit(String key, long nanos) {
+        hitTimer.record(nanos, NANOSECONDS);
+        try {
+            hitCounts.get(key, AtomicLong::new).incrementAndGet();
+        } catch (ExecutionException e) {
+            // AtomicLong::new can't fail
+        }
+    }
+
+    public void recordWrite(String op) {
+        writeCounters.get(op).increment();
+    }
+}
@@ -0,0 +1,290 @@
+package com.jasonbertolo.urlshortener.api.component;
+
+import com.jasonbertolo.urlshortener.api.config.settings.UrlShortenerSettings;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Estimates miss ratio curves, the miss ratio a ShortUrl cache would have at each size, from a sample of lookups.
+ * <p>
+ * Keys are sampled by hash (SHARDS), so a sampled key has every one of its lookups counted and the sample behaves
+ * like the full traffic scaled down by the sample rate. For LRU, the reuse distance of each sampled lookup, the
+ * number of distinct sampled keys since the key was last seen, is scaled up by the rate and gives the whole curve.
+ * Frequency-based eviction has no such shortcut, so LRU caches with TinyLFU admission, as ShortUrlLocalCache uses,
+ * are simulated at a few sizes scaled down by the rate.
+ * <p>
+ * Memory is bounded by the maximum number of tracked keys, keys not seen since are dropped and their next lookup
+ * counts as a miss at every size. Counts are halved every decay interval so the curves follow recent traffic.
+ */
+@Component
+public class ShortUrlCacheSizing {
+
+    private static final int HASH_SPACE = 1 << 24;
+    private static final int LRU_BUCKETS = 256;
+    private static final int SIMULATIONS = 16;
+    private static final int SMALLEST_SIMULATED_SIZE = 100;
+
+    private final boolean enabled;
+    private final double sampleRate;
+    private final int sampleThreshold;
+    private final int maximumKeys;
+    private final long decayIntervalNanos;
+    private final double targetHitRatio;
+
+    // LRU reuse distances, each tracked key marks the slot of its last lookup in a Fenwick tree
+    private final Map<String, Integer> lastSlots = new HashMap<>();
+    private final String[] slotKeys;
+    private final int[] tree;
+    private final int bucketWidth;
+    private final double[] distanceCounts = new double[LRU_BUCKETS];
+    private int nextSlot;
+    private int oldestSlot;
+    private double coldMisses;
+    private double lookups;
+    private long lastDecayNanos;
+
+    private final List<Simulation> simulations = new ArrayList<>();
+
+    @Autowired
+    public ShortUrlCacheSizing(UrlShortenerSettings urlShortenerSettings) {
+        UrlShortenerSettings.CacheSizing settings = urlShortenerSettings.getCacheSizing();
+        this.enabled = settings.isEnabled();
+        this.sampleThreshold = (int) Math.max(1, Math.round(settings.getSampleRate() * HASH_SPACE));
+        this.sampleRate = (double) sampleThreshold / HASH_SPACE;
+        this.maximumKeys = settings.getMaximumKeys();
+        this.decayIntervalNanos = settings.getDecayInterval().toNanos();
+        this.targetHitRatio = settings.getTargetHitRatio();
+        this.slotKeys = new String[2 * maximumKeys];
+        this.tree = new int[2 * maximumKeys + 1];
+        this.bucketWidth = Math.max(1, (maximumKeys + LRU_BUCKETS - 1) / LRU_BUCKETS);
+        this.lastDecayNanos = System.nanoTime();
+        // Geometric sizes up to the largest the tracked keys can model
+        double largest = maximumKeys / sampleRate;
+        double step = Math.pow(largest / SMALLEST_SIMULATED_SIZE, 1.0 / (SIMULATIONS - 1));
+        for (int i = 0; i < SIMULATIONS; i++) {
+            long size = Math.round(SMALLEST_SIMULATED_SIZE * Math.pow(step, i));
+            simulations.add(new Simulation(size, (int) Math.max(1, Math.round(size * sampleRate))));
+        }
+    }
+
+    // On the lookup path, a lookup that isn't sampled costs a hash and a comparison
+    public void record(String key) {
+        if (!enabled || !isSampled(key)) {
+            return;
+        }
+        synchronized (this) {
+            decayIfDue();
+            lookups++;
+            recordReuseDistance(key);
+            for (Simulation simulation : simulations) {
+                simulation.access(key);
+            }
+        }
+    }
+
+    public synchronized void reset() {
+        lastSlots.clear();
+        Arrays.fill(slotKeys, null);
+        Arrays.fill(tree, 0);
+        Arrays.fill(distanceCounts, 0);
+        nextSlot = 0;
+        oldestSlot = 0;
+        coldMisses = 0;
+        lookups = 0;
+        simulations.forEach(Simulation::reset);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public double getSampleRate() {
+        return sampleRate;
+    }
+
+    public double getTargetHitRatio() {
+        return targetHitRatio;
+    }
+
+    public synchronized double getSampledLookups() {
+        return lookups;
+    }
+
+    // Lookups of keys not seen before, or too long ago, which miss at any size
+    public synchronized double getColdMissRatio() {
+        return lookups == 0 ? 0 : coldMisses / lookups;
+    }
+
+    public synchronized int getTrackedKeys() {
+        return lastSlots.size();
+    }
+
+    // Miss ratio by cache size in entries, an LRU cache of that size misses when the reuse distance is as large
+    public synchronized Map<Long, Double> lruCurve() {
+        Map<Long, Double> curve = new LinkedHashMap<>();
+        if (lookups == 0) {
+            return curve;
+        }
+        double hits = 0;
+        for (int bucket = 0; bucket < LRU_BUCKETS; bucket++) {
+            hits += distanceCounts[bucket];
+            long size = (long) Math.ceil((bucket + 1) * bucketWidth / sampleRate);
+            curve.put(size, Math.max(0, 1 - hits / lookups));
+        }
+        return curve;
+    }
+
+    public synchronized Map<Long, Double> tinyLfuCurve() {
+        Map<Long, Double> curve = new LinkedHashMap<>();
+        for (Simulation simulation : simulations) {
+            if (simulation.lookups > 0) {
+                curve.put(simulation.size, simulation.misses / simulation.lookups);
+            }
+        }
+        return curve;
+    }
+
+    // Smallest size on the curve reaching the hit ratio, null when none of the modelled sizes do
+    public static Long requiredSize(Map<Long, Double> curve, double hitRatio) {
+        return curve.entrySet().stream()
+                .filter(point -> point.getValue() <= 1 - hitRatio)
+                .map(Map.Entry::getKey)
+                .findFirst()
+                .orElse(null);
+    }
+
+    boolean isSampled(String key) {
+        long h = key.hashCode() * 0x9e3779b97f4a7c15L;
+        return (int) ((h ^ (h >>> 32)) & (HASH_SPACE - 1)) < sampleThreshold;
+    }
+
+    private void recordReuseDistance(String key) {
+        Integer lastSlot = lastSlots.get(key);
+        if (lastSlot == null) {
+            coldMisses++;
+        } else {
+            int distance = count(nextSlot) - count(lastSlot + 1);
+            distanceCounts[Math.min(LRU_BUCKETS - 1, distance / bucketWidth)]++;
+            mark(lastSlot, -1);
+            slotKeys[lastSlot] = null;
+        }
+        if (nextSlot == slotKeys.length) {
+            compact();
+        }
+        lastSlots.put(key, nextSlot);
+        slotKeys[nextSlot] = key;
+        mark(nextSlot++, 1);
+        if (lastSlots.size() > maximumKeys) {
+            // Forget the key seen longest ago, it's beyond the largest size modelled
+            while (slotKeys[oldestSlot] == null) {
+                oldestSlot++;
+            }
+            lastSlots.remove(slotKeys[oldestSlot]);
+            slotKeys[oldestSlot] = null;
+            mark(oldestSlot, -1);
+        }
+    }
+
+    // Moves the tracked keys to the front of the slots, in the same order, once the slots run out
+    private void compact() {
+        int slot = 0;
+        Arrays.fill(tree, 0);
+        for (int i = oldestSlot; i < nextSlot; i++) {
+            String key = slotKeys[i];
+            if (key != null) {
+                slotKeys[i] = null;
+                slotKeys[slot] = key;
+                lastSlots.put(key, slot);
+                mark(slot++, 1);
+            }
+        }
+        oldestSlot = 0;
+        nextSlot = slot;
+    }
+
+    private void decayIfDue() {
+        long now = System.nanoTime();
+        if (now - lastDecayNanos < decayIntervalNanos) {
+            return;
+        }
+        lastDecayNanos = now;
+        for (int i = 0; i < LRU_BUCKETS; i++) {
+            distanceCounts[i] /= 2;
+        }
+        coldMisses /= 2;
+        lookups /= 2;
+        simulations.forEach(Simulation::decay);
+    }
+
+    private void mark(int slot, int delta) {
+        for (int i = slot + 1; i < tree.length; i += i & -i) {
+            tree[i] += delta;
+        }
+    }
+
+    // Tracked keys last seen before the slot
+    private int count(int slot) {
+        int sum = 0;
+        for (int i = slot; i > 0; i -= i & -i) {
+            sum += tree[i];
+        }
+        return sum;
+    }
+
+    /*
+     * An LRU cache with TinyLFU admission at the sampled scale: a new key only replaces the least recently used one
+     * when it's been looked up more often.
+     */
+    private static final class Simulation {
+        private final long size;
+        private final int capacity;
+        private final LinkedHashMap<String, Boolean> entries;
+        private ShortUrlLocalCache.FrequencySketch sketch;
+        private double lookups;
+        private double misses;
+
+        Simulation(long size, int capacity) {
+            this.size = size;
+            this.capacity = capacity;
+            this.entries = new LinkedHashMap<>(16, 0.75f, true);
+            this.sketch = new ShortUrlLocalCache.FrequencySketch(Math.max(16, capacity));
+        }
+
+        void access(String key) {
+            lookups++;
+            sketch.increment(key);
+            if (entries.get(key) != null) {
+                return;
+            }
+            misses++;
+            if (entries.size() < capacity) {
+                entries.put(key, Boolean.TRUE);
+                return;
+            }
+            String victim = entries.keySet().iterator().next();
+            if (sketch.frequency(key) > sketch.frequency(victim)) {
+                entries.remove(victim);
+                entries.put(key, Boolean.TRUE);
+            }
+        }
+
+        void decay() {
+            lookups /= 2;
+            misses /= 2;
+        }
+
+        void reset() {
+            entries.clear();
+            sketch = new ShortUrlLocalCache.FrequencySketch(Math.max(16, capacity));
+            lookups = 0;
+            misses = 0;
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.jasonbertolo.urlshortener.api.component;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// GET /actuator/cachesizing?hitRatio=0.99 on the management port, sizes are in entries
+@Component
+@Endpoint(id = "cachesizing")
+public class ShortUrlCacheSizingEndpoint {
+
+    private final ShortUrlCacheSizing shortUrlCacheSizing;
+    private final ShortUrlLocalCache shortUrlLocalCache;
+
+    @Autowired
+    public ShortUrlCacheSizingEndpoint(ShortUrlCacheSizing shortUrlCacheSizing,
+                                       ShortUrlLocalCache shortUrlLocalCache) {
+        this.shortUrlCacheSizing = shortUrlCacheSizing;
+        this.shortUrlLocalCache = shortUrlLocalCache;
+    }
+
+    @ReadOperation
+    public Map<String, Object> sizing(@Nullable Double hitRatio) {
+        double target = hitRatio == null ? shortUrlCacheSizing.getTargetHitRatio() : hitRatio;
+        long localEntries = shortUrlLocalCache.size();
+        long averageEntryBytes = localEntries == 0 ? 0 : shortUrlLocalCache.weight() / localEntries;
+        Map<String, Object> sizing = new LinkedHashMap<>();
+        sizing.put("enabled", shortUrlCacheSizing.isEnabled());
+        sizing.put("sampleRate", shortUrlCacheSizing.getSampleRate());
+        sizing.put("sampledLookups", Math.round(shortUrlCacheSizing.getSampledLookups()));
+        sizing.put("trackedKeys", shortUrlCacheSizing.getTrackedKeys());
+        sizing.put("coldMissRatio", shortUrlCacheSizing.getColdMissRatio());
+        sizing.put("hitRatio", target);
+        sizing.put("localCacheAverageEntryBytes", averageEntryBytes);
+        sizing.put("lru", policy(shortUrlCacheSizing.lruCurve(), target, averageEntryBytes));
+        sizing.put("tinyLfu", policy(shortUrlCacheSizing.tinyLfuCurve(), target, averageEntryBytes));
+        return sizing;
+    }
+
+    @DeleteOperation
+    public void reset() {
+        shortUrlCacheSizing.reset();
+    }
+
+    private static Map<String, Object> policy(Map<Long, Double> curve, double hitRatio, long averageEntryBytes) {
+        Long requiredEntries = ShortUrlCacheSizing.requiredSize(curve, hitRatio);
+        Map<String, Object> policy = new LinkedHashMap<>();
+        // Null when even the largest modelled size falls short
+        policy.put("requiredEntries", requiredEntries);
+        policy.put("requiredLocalCacheBytes", requiredEntries == null || averageEntryBytes == 0
+                ? null : requiredEntries * averageEntryBytes);
+        policy.put("curve", curve.entrySet().stream()
+                .map(point -> Map.of("entries", point.getKey(), "missRatio", point.getValue()))
+                .toList());
+        return policy;
+    }
+}
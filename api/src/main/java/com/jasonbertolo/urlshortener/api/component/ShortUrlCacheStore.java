@@ -0,0 +1,36 @@
+package com.jasonbertolo.urlshortener.api.component;
+
+import com.jasonbertolo.urlshortener.api.model.ShortUrl;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Where cached ShortUrls are kept in Redis, see ShortUrlCacheKeys for the layouts.
+ */
+public interface ShortUrlCacheStore {
+
+    Mono<ShortUrl> get(String key);
+
+    // The cached ShortUrls among the keys, in one round trip per Redis key holding them
+    Flux<ShortUrl> getAll(List<String> keys);
+
+    Mono<ShortUrl> getAndExpire(String key, Duration ttl);
+
+    // Empty when the entry has no TTL of its own
+    Mono<Duration> getExpire(String key);
+
+    Mono<Boolean> expire(String key, Duration ttl);
+
+    Mono<Boolean> set(String key, ShortUrl shortUrl, Duration ttl);
+
+    Mono<Boolean> delete(String key);
+
+    // Returns how many were cached
+    Mono<Long> deleteAll(List<String> keys);
+
+    // Whether entries expire individually, which TTL refresh and early refresh rely on
+    boolean supportsEntryTtl();
+}
@@ -0,0 +1,221 @@
+package com.jasonbertolo.urlshortener.api.component;
+
+import com.jasonbertolo.urlshortener.api.config.settings.UrlShortenerSettings;
+import com.jasonbertolo.urlshortener.contract.ShortUrlCacheKeys;
+import io.lettuce.core.ClientOptions;
+import io.lettuce.core.RedisChannelHandler;
+import io.lettuce.core.RedisConnectionStateListener;
+import io.lettuce.core.TrackingArgs;
+import io.lettuce.core.api.StatefulConnection;
+import io.lettuce.core.api.StatefulRedisConnection;
+import io.lettuce.core.api.push.PushMessage;
+import io.lettuce.core.codec.StringCodec;
+import io.lettuce.core.protocol.ProtocolVersion;
+import io.lettuce.core.pubsub.StatefulRedisPubSubConnection;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.owasp.esapi.ESAPI;
+import org.owasp.esapi.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationStartedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.connection.ReactiveRedisConnection;
+import org.springframework.data.redis.connection.lettuce.LettuceClientConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.net.SocketAddress;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.owasp.esapi.Logger.*;
+
+/**
+ * Keeps ShortUrlLocalCache consistent with Redis using server-assisted client tracking. The connections ShortUrls are
+ * cached through speak RESP3 and turn on CLIENT TRACKING in broadcast mode, and Redis pushes the names of changed or
+ * expired keys, which are invalidated locally. Tracking is on the same connections as the writes with NOLOOP, so an
+ * instance isn't told about its own SET, EXPIRE or GETEX and keeps the local copy it just filled. With the HASH layout
+ * only bucket keys are tracked, the KEY layout stores ShortUrls under bare keys that no prefix can select.
+ * <p>
+ * Invalidations sent while a connection is down are lost, so the local cache is flushed and suspended until every
+ * connection is back and tracking again.
+ */
+@Component
+public class ShortUrlCacheTracking {
+
+    private static final Logger LOGGER = ESAPI.getLogger(ShortUrlCacheTracking.class.getSimpleName());
+
+    private static final String INVALIDATE = "invalidate";
+
+    private final ShortUrlLocalCache shortUrlLocalCache;
+    private final UrlShortenerSettings urlShortenerSettings;
+    private final boolean enabled;
+    private final List<String> endpoints;
+    private final Set<String> untracked = ConcurrentHashMap.newKeySet();
+    private final Map<String, LettuceConnectionFactory> factories = new ConcurrentHashMap<>();
+    private final Set<StatefulConnection<?, ?>> listening = ConcurrentHashMap.newKeySet();
+    private final Map<String, Set<StatefulConnection<?, ?>>> tracking = new ConcurrentHashMap<>();
+    private final Counter invalidationCounter;
+
+    @Autowired
+    public ShortUrlCacheTracking(ShortUrlLocalCache shortUrlLocalCache,
+                                 UrlShortenerSettings urlShortenerSettings,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${spring.data.redis.host}") String redisHost,
+                                 @Value("${spring.data.redis.port}") Integer redisPort) {
+        this.shortUrlLocalCache = shortUrlLocalCache;
+        this.urlShortenerSettings = urlShortenerSettings;
+        UrlShortenerSettings.LocalCache settings = urlShortenerSettings.getLocalCache();
+        this.enabled = settings.isEnabled() && settings.isTracking();
+        // The same Redis instances ShortUrls are cached in, see CacheConfig
+        List<String> shards = urlShortenerSettings.getCacheShards().getEndpoints();
+        this.endpoints = shards.isEmpty() ? List.of(redisHost + ":" + redisPort) : List.copyOf(shards);
+        this.invalidationCounter = Counter.builder(ShortUrlLocalCache.CACHE_NAME + ".invalidations")
+                .description("Invalidations pushed by Redis client tracking")
+                .register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // Push messages need RESP3
+    public LettuceClientConfiguration clientConfiguration() {
+        return LettuceClientConfiguration.builder()
+                .clientOptions(ClientOptions.builder()
+                        .protocolVersion(ProtocolVersion.RESP3)
+                        .build())
+                .build();
+    }
+
+    // Called for the connection factory ShortUrls are cached through on each endpoint, before it first connects
+    public void track(String endpoint, LettuceConnectionFactory factory) {
+        if (!enabled) {
+            return;
+        }
+        untracked.add(endpoint);
+        factories.put(endpoint, factory);
+        // Lettuce reconnects on its own and the listener enables tracking on every connection it makes
+        factory.getRequiredNativeClient().addListener(new RedisConnectionStateListener() {
+            @Override
+            public void onRedisConnected(RedisChannelHandler<?, ?> connection, SocketAddress socketAddress) {
+                if (!(connection instanceof StatefulRedisPubSubConnection<?, ?>)
+                        && connection instanceof StatefulRedisConnection<?, ?> redisConnection) {
+                    if (listening.add(redisConnection)) {
+                        redisConnection.addListener(ShortUrlCacheTracking.this::onPushMessage);
+                    }
+                    enableTracking(endpoint, redisConnection);
+                }
+            }
+
+            @Override
+            public void onRedisDisconnected(RedisChannelHandler<?, ?> connection) {
+                if (connection instanceof StatefulConnection<?, ?> statefulConnection) {
+                    disconnected(endpoint, statefulConnection);
+                }
+            }
+        });
+    }
+
+    // Before ApplicationRunners, so the cache warm-up can fill the local cache
+    @EventListener(ApplicationStartedEvent.class)
+    public void start() {
+        if (!enabled) {
+            LOGGER.info(EVENT_UNSPECIFIED, "ShortUrl local cache tracking is disabled");
+            return;
+        }
+        endpoints.forEach(endpoint -> {
+            LettuceConnectionFactory factory = factories.get(endpoint);
+            if (factory == null) {
+                LOGGER.warning(EVENT_FAILURE, String.format(
+                        "No ShortUrl cache connection to track on [%s], local cache stays suspended", endpoint));
+                return;
+            }
+            // Opens the shared connection, which otherwise waits for the first cache command
+            Mono.usingWhen(Mono.fromSupplier(factory::getReactiveConnection),
+                            connection -> connection.ping(), ReactiveRedisConnection::closeLater)
+                    .subscribe(pong -> {
+                    }, e -> LOGGER.warning(EVENT_FAILURE, String.format(
+                            // The local cache stays suspended, it's only a loss of the local tier
+                            "Failed to connect cache tracking to [%s]: [%s]", endpoint, e.getMessage())));
+        });
+    }
+
+    private void enableTracking(String endpoint, StatefulRedisConnection<?, ?> connection) {
+        TrackingArgs trackingArgs = TrackingArgs.Builder.enabled().bcast().noloop();
+        if (urlShortenerSettings.getCacheLayout() == ShortUrlCacheKeys.Layout.HASH) {
+            trackingArgs.prefixes(ShortUrlCacheKeys.BUCKET_PREFIX);
+        }
+        connection.async().clientTracking(trackingArgs)
+                .whenComplete((ok, e) -> {
+                    if (e != null) {
+                        lost(endpoint, e.getMessage());
+                    } else {
+                        tracked(endpoint, connection);
+                    }
+                });
+    }
+
+    private synchronized void tracked(String endpoint, StatefulConnection<?, ?> connection) {
+        tracking.computeIfAbsent(endpoint, k -> ConcurrentHashMap.newKeySet()).add(connection);
+        untracked.remove(endpoint);
+        if (untracked.isEmpty() && shortUrlLocalCache.isSuspended()) {
+            // Drops anything cached before every invalidation stream was in place
+            shortUrlLocalCache.resume();
+            LOGGER.info(EVENT_SUCCESS, "ShortUrl local cache tracking is running");
+        }
+    }
+
+    // Any tracking connection to an endpoint receives every invalidation, a closed dedicated one loses nothing
+    private synchronized void disconnected(String endpoint, StatefulConnection<?, ?> connection) {
+        Set<StatefulConnection<?, ?>> connections = tracking.computeIfAbsent(endpoint,
+                k -> ConcurrentHashMap.newKeySet());
+        if (connections.remove(connection) && connections.isEmpty()) {
+            lost(endpoint, "disconnected");
+        }
+    }
+
+    private synchronized void lost(String endpoint, String reason) {
+        untracked.add(endpoint);
+        if (!enabled) {
+            return;
+        }
+        if (!shortUrlLocalCache.isSuspended()) {
+            LOGGER.warning(EVENT_FAILURE, String.format(
+                    "Cache tracking lost for [%s], suspending ShortUrl local cache: [%s]", endpoint, reason));
+        }
+        shortUrlLocalCache.suspend();
+    }
+
+    private void onPushMessage(PushMessage message) {
+        if (!INVALIDATE.equals(message.getType())) {
+            return;
+        }
+        List<Object> content = message.getContent(StringCodec.UTF8::decodeKey);
+        // A null key list means Redis flushed everything
+        if (content.size() < 2 || !(content.get(1) instanceof List<?> keys)) {
+            shortUrlLocalCache.invalidateAll();
+            invalidationCounter.increment();
+            return;
+        }
+        for (Object key : keys) {
+            invalidate(String.valueOf(key));
+        }
+    }
+
+    private void invalidate(String redisKey) {
+        if (redisKey.startsWith(ShortUrlNegativeCache.KEY_PREFIX)) {
+            return;
+        }
+        invalidationCounter.increment();
+        if (redisKey.startsWith(ShortUrlCacheKeys.BUCKET_PREFIX)) {
+            shortUrlLocalCache.invalidateBucket(redisKey);
+        } else {
+            shortUrlLocalCache.invalidate(redisKey);
+        }
+    }
+}
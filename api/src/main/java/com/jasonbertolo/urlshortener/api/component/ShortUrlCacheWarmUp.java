@@ -0,0 +1,143 @@
+package com.jasonbertolo.urlshortener.api.component;
+
+import com.jasonbertolo.urlshortener.api.config.settings.UrlShortenerSettings;
+import com.jasonbertolo.urlshortener.api.model.ShortUrl;
+import com.jasonbertolo.urlshortener.api.repository.ShortUrlRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import org.owasp.esapi.ESAPI;
+import org.owasp.esapi.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static com.jasonbertolo.urlshortener.api.component.ShortUrlCachePolicy.OP_SET;
+import static org.owasp.esapi.Logger.*;
+
+/**
+ * Fills Redis and the local cache with the most accessed ShortUrls, see ShortUrlAccessHistory, before the instance
+ * takes traffic. Runners complete before the application reports ready, so a readiness probe holds traffic back
+ * until the warm-up is done or its time budget runs out.
+ * <p>
+ * Keys are handled in batches: the batch is read from Redis concurrently, which Lettuce pipelines on its shared
+ * connection, and only the keys Redis doesn't have are read from MongoDB in one query and written back. Keys already
+ * in Redis aren't rewritten so a rolling deploy doesn't churn other instances' tracked local caches.
+ */
+@Component
+public class ShortUrlCacheWarmUp implements ApplicationRunner {
+
+    private static final Logger LOGGER = ESAPI.getLogger(ShortUrlCacheWarmUp.class.getSimpleName());
+
+    public static final String METRIC_PREFIX = "shorturl.warmup";
+
+    private final ShortUrlAccessHistory shortUrlAccessHistory;
+    private final ShortUrlRepository shortUrlRepository;
+    private final ShortUrlCacheStore shortUrlCacheStore;
+    private final ShortUrlLocalCache shortUrlLocalCache;
+    private final ShortUrlCachePolicy shortUrlCachePolicy;
+    private final UrlShortenerSettings.WarmUp settings;
+    private final AtomicLong cachedCount = new AtomicLong();
+    private final AtomicLong loadedCount = new AtomicLong();
+    private final AtomicLong durationMillis = new AtomicLong();
+
+    @Autowired
+    public ShortUrlCacheWarmUp(ShortUrlAccessHistory shortUrlAccessHistory,
+                               ShortUrlRepository shortUrlRepository,
+                               ShortUrlCacheStore shortUrlCacheStore,
+                               ShortUrlLocalCache shortUrlLocalCache,
+                               ShortUrlCachePolicy shortUrlCachePolicy,
+                               UrlShortenerSettings urlShortenerSettings,
+                               MeterRegistry meterRegistry) {
+        this.shortUrlAccessHistory = shortUrlAccessHistory;
+        this.shortUrlRepository = shortUrlRepository;
+        this.shortUrlCacheStore = shortUrlCacheStore;
+        this.shortUrlLocalCache = shortUrlLocalCache;
+        this.shortUrlCachePolicy = shortUrlCachePolicy;
+        this.settings = urlShortenerSettings.getWarmUp();
+        Gauge.builder(METRIC_PREFIX + ".keys", cachedCount, AtomicLong::get)
+                .description("ShortUrls warmed at startup that were already in Redis")
+                .tag("source", "redis")
+                .register(meterRegistry);
+        Gauge.builder(METRIC_PREFIX + ".keys", loadedCount, AtomicLong::get)
+                .description("ShortUrls warmed at startup that were loaded from the database")
+                .tag("source", "database")
+                .register(meterRegistry);
+        TimeGauge.builder(METRIC_PREFIX + ".duration", durationMillis, TimeUnit.MILLISECONDS, AtomicLong::get)
+                .description("Time the startup cache warm-up took")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!settings.isEnabled()) {
+            LOGGER.info(EVENT_UNSPECIFIED, "ShortUrl cache warm-up is disabled");
+            return;
+        }
+        long start = System.nanoTime();
+        shortUrlAccessHistory.topKeys(settings.getTopKeys())
+                .buffer(settings.getBatchSize())
+                .concatMap(this::warm)
+                // Whatever is warmed by then is kept, the rest is left to lookups
+                .take(settings.getTimeBudget())
+                .then()
+                .onErrorResume(e -> {
+                    LOGGER.warning(EVENT_FAILURE, String.format(
+                            "ShortUrl cache warm-up failed: [%s]", e.getMessage()));
+                    return Mono.empty();
+                })
+                .block();
+        Duration took = Duration.ofNanos(System.nanoTime() - start);
+        durationMillis.set(took.toMillis());
+        LOGGER.info(EVENT_SUCCESS, String.format(
+                "Warmed [%d] ShortUrls in [%d]ms, [%d] already in Redis and [%d] loaded from the database%s",
+                cachedCount.get() + loadedCount.get(), took.toMillis(), cachedCount.get(), loadedCount.get(),
+                took.compareTo(settings.getTimeBudget()) >= 0 ? ", stopped at the time budget" : ""));
+    }
+
+    private Flux<ShortUrl> warm(List<String> keys) {
+        // Taken before the reads, as for lookups, so an invalidation in between isn't overwritten
+        Map<String, Long> stamps = keys.stream()
+                .collect(Collectors.toMap(Function.identity(), shortUrlLocalCache::stamp, (a, b) -> a));
+        return Flux.fromIterable(keys)
+                .flatMap(key -> shortUrlCacheStore.get(key).onErrorResume(e -> Mono.empty()),
+                        settings.getConcurrency())
+                .collectMap(ShortUrl::getKey)
+                .flatMapMany(cached -> {
+                    cachedCount.addAndGet(cached.size());
+                    List<String> missing = keys.stream().filter(key -> !cached.containsKey(key)).toList();
+                    return Flux.fromIterable(cached.values()).concatWith(load(missing));
+                })
+                .filter(shortUrl -> shortUrl.getExpiresAt() == null || shortUrl.getExpiresAt().isAfter(Instant.now()))
+                .doOnNext(shortUrl -> shortUrlLocalCache.put(shortUrl.getKey(), shortUrl,
+                        stamps.getOrDefault(shortUrl.getKey(), -1L)));
+    }
+
+    private Flux<ShortUrl> load(List<String> keys) {
+        if (keys.isEmpty()) {
+            return Flux.empty();
+        }
+        return shortUrlRepository.findByKeyInAndExpiresAtAfter(keys, Instant.now())
+                .flatMap(shortUrl -> shortUrlCacheStore.set(shortUrl.getKey(), shortUrl,
+                                        shortUrlCachePolicy.ttlFor(shortUrl.getKey()))
+                                .doOnNext(b -> {
+                                    shortUrlCachePolicy.recordWrite(OP_SET);
+                                    loadedCount.incrementAndGet();
+                                })
+                                .onErrorResume(e -> Mono.just(false))
+                                .thenReturn(shortUrl),
+                        settings.getConcurrency());
+    }
+}
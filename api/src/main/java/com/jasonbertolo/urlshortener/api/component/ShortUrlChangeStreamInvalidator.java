@@ -0,0 +1,355 @@
+package com.jasonbertolo.urlshortener.api.component;
+
+import com.google.common.base.Throwables;
+import com.jasonbertolo.urlshortener.api.config.settings.UrlShortenerSettings;
+import com.jasonbertolo.urlshortener.api.model.ShortUrl;
+import com.mongodb.MongoException;
+import com.mongodb.client.model.changestream.FullDocument;
+import com.mongodb.client.model.changestream.FullDocumentBeforeChange;
+import com.mongodb.client.model.changestream.OperationType;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.bson.BsonDocument;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.owasp.esapi.ESAPI;
+import org.owasp.esapi.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.ChangeStreamEvent;
+import org.springframework.data.mongodb.core.ChangeStreamOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.owasp.esapi.Logger.*;
+
+/**
+ * Tails a change stream on the ShortUrl collection and evicts changed and deleted keys from Redis and the local
+ * cache, publishes them to the web near caches, and clears negative cache tombstones for inserted keys and publishes
+ * them to the web key filters. This catches what the write path misses, a failed Redis delete or an edit made directly
+ * in the database.
+ * <p>
+ * Events are handled in batches, one at a time, and the stream is only read as fast as batches complete so a bulk
+ * expiry doesn't flood Redis. The resume token is saved after each batch so a restart picks up where it left off.
+ * Every instance tails its own stream to evict its local cache, and keeps its own resume token under its instance id.
+ * Redis, the web nodes and the tombstones are shared, so only the instance holding the lease on the shared state
+ * document tails a second stream for them. The lease is renewed while the instance runs, and a new holder resumes from
+ * the token the previous one saved there. Deleted documents only carry their id, so the key comes from the pre-image,
+ * which is enabled on the collection.
+ */
+@Component
+public class ShortUrlChangeStreamInvalidator {
+
+    private static final Logger LOGGER = ESAPI.getLogger(ShortUrlChangeStreamInvalidator.class.getSimpleName());
+
+    public static final String STATE_COLLECTION = "cache-invalidation-state";
+    public static final String SHARED_STATE_ID = "short-url:shared";
+    public static final String METRIC_PREFIX = "shorturl.changestream";
+
+    private static final String COLLECTION = "short-url";
+    private static final String RESUME_TOKEN = "resumeToken";
+    private static final String LEASE_OWNER = "leaseOwner";
+    private static final String LEASE_EXPIRES_AT = "leaseExpiresAt";
+    private static final Set<Integer> HISTORY_LOST_CODES = Set.of(280, 286);
+
+    private final ReactiveMongoOperations reactiveMongoOperations;
+    private final ShortUrlCacheStore shortUrlCacheStore;
+    private final ShortUrlLocalCache shortUrlLocalCache;
+    private final ShortUrlNegativeCache shortUrlNegativeCache;
+    private final ShortUrlInvalidationPublisher shortUrlInvalidationPublisher;
+    private final UrlShortenerSettings.ChangeStream settings;
+    private final String instanceId;
+    private final Stream localStream;
+    private final Stream sharedStream;
+    private final Counter eventCounter;
+    private final Counter evictionCounter;
+    private final Counter missingKeyCounter;
+    private final Counter historyLostCounter;
+    private Disposable leaseRenewal;
+
+    @Autowired
+    public ShortUrlChangeStreamInvalidator(ReactiveMongoOperations reactiveMongoOperations,
+                                           ShortUrlCacheStore shortUrlCacheStore,
+                                           ShortUrlLocalCache shortUrlLocalCache,
+                                           ShortUrlNegativeCache shortUrlNegativeCache,
+                                           ShortUrlInvalidationPublisher shortUrlInvalidationPublisher,
+                                           UrlShortenerSettings urlShortenerSettings,
+                                           MeterRegistry meterRegistry) {
+        this.reactiveMongoOperations = reactiveMongoOperations;
+        this.shortUrlCacheStore = shortUrlCacheStore;
+        this.shortUrlLocalCache = shortUrlLocalCache;
+        this.shortUrlNegativeCache = shortUrlNegativeCache;
+        this.shortUrlInvalidationPublisher = shortUrlInvalidationPublisher;
+        this.settings = urlShortenerSettings.getChangeStream();
+        this.instanceId = instanceId(settings);
+        this.localStream = new Stream(COLLECTION + ":" + instanceId, false);
+        this.sharedStream = new Stream(SHARED_STATE_ID, true);
+        this.eventCounter = Counter.builder(METRIC_PREFIX + ".events")
+                .description("ShortUrl change events read")
+                .register(meterRegistry);
+        this.evictionCounter = Counter.builder(METRIC_PREFIX + ".evictions")
+                .description("Cached ShortUrls evicted because of a change event")
+                .register(meterRegistry);
+        this.missingKeyCounter = Counter.builder(METRIC_PREFIX + ".missing.key")
+                .description("Delete events without a pre-image, so the key to evict is unknown")
+                .register(meterRegistry);
+        this.historyLostCounter = Counter.builder(METRIC_PREFIX + ".history.lost")
+                .description("Restarts from now because the resume point was no longer in the oplog")
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        start(Instant.now());
+    }
+
+    void start(Instant initialStartAt) {
+        if (!settings.isEnabled()) {
+            LOGGER.info(EVENT_UNSPECIFIED, "ShortUrl change stream invalidation is disabled");
+            return;
+        }
+        // Before the stream opens, so deletes from then on carry their key
+        enablePreImages().block(Duration.ofSeconds(30));
+        localStream.start(initialStartAt);
+        onLease(Boolean.TRUE.equals(renewLease().block(Duration.ofSeconds(30))), initialStartAt);
+        leaseRenewal = Flux.interval(settings.getLeaseDuration().dividedBy(3))
+                .onBackpressureDrop()
+                .concatMap(tick -> renewLease().doOnNext(held -> onLease(held, Instant.now())))
+                .subscribe();
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (leaseRenewal != null) {
+            leaseRenewal.dispose();
+        }
+        localStream.stop();
+        if (sharedStream.isRunning()) {
+            sharedStream.stop();
+            // Lets another instance take over now rather than when the lease runs out
+            reactiveMongoOperations.updateFirst(leaseQuery(), Update.update(LEASE_EXPIRES_AT, Instant.now()),
+                            STATE_COLLECTION)
+                    .onErrorResume(e -> Mono.empty())
+                    .block(Duration.ofSeconds(5));
+        }
+    }
+
+    private Flux<ChangeStreamEvent<ShortUrl>> changes(BsonValue resumeToken, Instant startAt) {
+        ChangeStreamOptions.ChangeStreamOptionsBuilder options = ChangeStreamOptions.builder()
+                .fullDocumentLookup(FullDocument.UPDATE_LOOKUP)
+                .fullDocumentBeforeChangeLookup(FullDocumentBeforeChange.WHEN_AVAILABLE);
+        if (resumeToken != null) {
+            options.resumeAfter(resumeToken);
+        } else {
+            options.resumeAt(startAt);
+        }
+        return reactiveMongoOperations.changeStream(COLLECTION, options.build(), ShortUrl.class);
+    }
+
+    private Mono<Void> invalidate(Stream stream, List<ChangeStreamEvent<ShortUrl>> batch) {
+        Set<String> evicted = new LinkedHashSet<>();
+        Set<String> inserted = new LinkedHashSet<>();
+        for (ChangeStreamEvent<ShortUrl> event : batch) {
+            OperationType operationType = event.getOperationType();
+            if (operationType == OperationType.INSERT) {
+                keyOf(event.getBody()).ifPresent(inserted::add);
+            } else if (operationType == OperationType.UPDATE || operationType == OperationType.REPLACE
+                    || operationType == OperationType.DELETE) {
+                Optional<String> before = keyOf(event.getBodyBeforeChange());
+                before.ifPresent(evicted::add);
+                keyOf(event.getBody()).ifPresent(evicted::add);
+                if (!stream.shared && operationType == OperationType.DELETE && before.isEmpty()) {
+                    missingKeyCounter.increment();
+                    LOGGER.warning(EVENT_FAILURE, String.format(
+                            "ShortUrl id[%s] was deleted without a pre-image, its cache entry can't be evicted",
+                            event.getRaw() == null ? null : event.getRaw().getDocumentKey()));
+                }
+            }
+        }
+        BsonValue resumeToken = batch.get(batch.size() - 1).getResumeToken();
+        evicted.forEach(shortUrlLocalCache::invalidate);
+        if (!stream.shared) {
+            eventCounter.increment(batch.size());
+            return stream.saveResumeToken(resumeToken);
+        }
+        return shortUrlCacheStore.deleteAll(new ArrayList<>(evicted))
+                .doOnNext(count -> {
+                    evictionCounter.increment(count);
+                    LOGGER.debug(EVENT_SUCCESS, String.format(
+                            "Evicted [%d] of [%d] changed ShortUrl keys from cache", count, evicted.size()));
+                })
+                // Redis doesn't report this instance's own deletes, reads that raced them are dropped here
+                .then(Mono.fromRunnable(() -> evicted.forEach(shortUrlLocalCache::invalidate)))
+                .then(shortUrlInvalidationPublisher.publishAll(evicted))
+                .thenMany(Flux.fromIterable(inserted).concatMap(shortUrlNegativeCache::clear))
+                .then(shortUrlInvalidationPublisher.publishAllCreated(inserted))
+                .then(stream.saveResumeToken(resumeToken));
+    }
+
+    private Mono<Void> onStreamError(Stream stream, Throwable e) {
+        boolean historyLost = Throwables.getCausalChain(e).stream()
+                .anyMatch(cause -> cause instanceof MongoException mongoException
+                        && HISTORY_LOST_CODES.contains(mongoException.getCode()));
+        if (!historyLost) {
+            LOGGER.warning(EVENT_FAILURE, String.format(
+                    "ShortUrl change stream [%s] failed, resuming: [%s]", stream.stateId, e.getMessage()));
+            return Mono.empty();
+        }
+        // Changes since the token are gone from the oplog, they can only age out of the cache
+        LOGGER.error(EVENT_FAILURE, String.format(
+                "ShortUrl change stream [%s] can't resume, restarting from now: [%s]", stream.stateId,
+                e.getMessage()));
+        historyLostCounter.increment();
+        stream.startAt.set(Instant.now());
+        return reactiveMongoOperations.updateFirst(stream.stateQuery(), new Update().unset(RESUME_TOKEN),
+                STATE_COLLECTION).then();
+    }
+
+    /*
+     * Takes the lease when it's free or ran out, or extends it when it's already held. When another instance holds
+     * it the upsert inserts a second document with the same id, which fails.
+     */
+    private Mono<Boolean> renewLease() {
+        Instant now = Instant.now();
+        Query query = Query.query(Criteria.where("_id").is(SHARED_STATE_ID).orOperator(
+                Criteria.where(LEASE_OWNER).is(instanceId), Criteria.where(LEASE_EXPIRES_AT).lt(now)));
+        return reactiveMongoOperations.upsert(query, Update.update(LEASE_OWNER, instanceId)
+                        .set(LEASE_EXPIRES_AT, now.plus(settings.getLeaseDuration())), STATE_COLLECTION)
+                .thenReturn(true)
+                .onErrorResume(DuplicateKeyException.class, e -> Mono.just(false))
+                .onErrorResume(e -> {
+                    LOGGER.warning(EVENT_FAILURE, String.format(
+                            "Failed to renew the ShortUrl change stream lease: [%s]", e.getMessage()));
+                    return Mono.just(false);
+                });
+    }
+
+    private void onLease(boolean held, Instant startAt) {
+        if (held && !sharedStream.isRunning()) {
+            LOGGER.info(EVENT_SUCCESS, String.format(
+                    "Instance [%s] took the ShortUrl change stream lease, evicting shared caches", instanceId));
+            sharedStream.start(startAt);
+        } else if (!held && sharedStream.isRunning()) {
+            LOGGER.info(EVENT_UNSPECIFIED, String.format(
+                    "Instance [%s] lost the ShortUrl change stream lease", instanceId));
+            sharedStream.stop();
+        }
+    }
+
+    private Query leaseQuery() {
+        return Query.query(Criteria.where("_id").is(SHARED_STATE_ID).and(LEASE_OWNER).is(instanceId));
+    }
+
+    private Mono<Document> enablePreImages() {
+        return reactiveMongoOperations.executeCommand(new Document("collMod", COLLECTION)
+                        .append("changeStreamPreAndPostImages", new Document("enabled", true)))
+                .onErrorResume(e -> {
+                    LOGGER.warning(EVENT_FAILURE, String.format(
+                            "Failed to enable pre-images on [%s], deleted keys can't be evicted: [%s]",
+                            COLLECTION, e.getMessage()));
+                    return Mono.empty();
+                });
+    }
+
+    // Stable across restarts where the host name is, otherwise a restarted instance starts from now
+    private static String instanceId(UrlShortenerSettings.ChangeStream settings) {
+        if (settings.getInstanceId() != null && !settings.getInstanceId().isBlank()) {
+            return settings.getInstanceId();
+        }
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            LOGGER.warning(EVENT_FAILURE, String.format(
+                    "Host name unknown, change stream resume token is kept for this run only: [%s]", e.getMessage()));
+            return UUID.randomUUID().toString();
+        }
+    }
+
+    private static Optional<String> keyOf(ShortUrl shortUrl) {
+        return Optional.ofNullable(shortUrl).map(ShortUrl::getKey);
+    }
+
+    /*
+     * One tailed stream and where it resumes from. The shared stream only writes its token while this instance still
+     * holds the lease, so an instance that lost it can't move the new holder's position.
+     */
+    private class Stream {
+
+        private final String stateId;
+        private final boolean shared;
+        // Where the stream opens when there's no resume token, moved to the time of the failure when history is lost
+        private final AtomicReference<Instant> startAt = new AtomicReference<>();
+        private volatile Disposable subscription;
+
+        Stream(String stateId, boolean shared) {
+            this.stateId = stateId;
+            this.shared = shared;
+        }
+
+        synchronized void start(Instant initialStartAt) {
+            startAt.set(initialStartAt);
+            subscription = Flux.defer(() -> loadResumeToken()
+                            .map(Optional::of)
+                            .defaultIfEmpty(Optional.empty())
+                            .flatMapMany(token -> changes(token.orElse(null), startAt.get())))
+                    .bufferTimeout(settings.getBatchSize(), settings.getBatchWindow(), true)
+                    .concatMap(batch -> invalidate(this, batch), 1)
+                    .retryWhen(Retry.backoff(Long.MAX_VALUE, Duration.ofSeconds(1))
+                            .maxBackoff(Duration.ofMinutes(1))
+                            .doBeforeRetryAsync(signal -> onStreamError(this, signal.failure())))
+                    .subscribe();
+        }
+
+        synchronized void stop() {
+            if (subscription != null) {
+                subscription.dispose();
+                subscription = null;
+            }
+        }
+
+        boolean isRunning() {
+            return subscription != null;
+        }
+
+        private Mono<BsonValue> loadResumeToken() {
+            return reactiveMongoOperations.findOne(stateQuery(), Document.class, STATE_COLLECTION)
+                    .mapNotNull(state -> state.getString(RESUME_TOKEN))
+                    .map(BsonDocument::parse);
+        }
+
+        private Mono<Void> saveResumeToken(BsonValue resumeToken) {
+            Update update = Update.update(RESUME_TOKEN, resumeToken.asDocument().toJson())
+                    .set("updatedAt", Instant.now());
+            return (shared
+                    ? reactiveMongoOperations.updateFirst(stateQuery(), update, STATE_COLLECTION)
+                    : reactiveMongoOperations.upsert(stateQuery(), update, STATE_COLLECTION))
+                    .then();
+        }
+
+        private Query stateQuery() {
+            return shared ? leaseQuery() : Query.query(Criteria.where("_id").is(stateId));
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.jasonbertolo.urlshortener.api.component;
+
+import com.jasonbertolo.urlshortener.contract.ShortUrlCacheKeys;
+import org.owasp.esapi.ESAPI;
+import org.owasp.esapi.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+
+import static org.owasp.esapi.Logger.EVENT_FAILURE;
+import static org.owasp.esapi.Logger.EVENT_SUCCESS;
+
+/**
+ * Tells the web nodes' near caches that a ShortUrl was deleted or changed, and their key filters that one was created,
+ * over Redis pub/sub on spring.data.redis. Delivery is at most once, a node that misses a message serves the old
+ * ShortUrl until its near cache entry expires, or answers 404 for a new key until its key filter next syncs.
+ */
+@Component
+public class ShortUrlInvalidationPublisher {
+
+    private static final Logger LOGGER = ESAPI.getLogger(ShortUrlInvalidationPublisher.class.getSimpleName());
+
+    private final ReactiveStringRedisTemplate reactiveStringRedisTemplate;
+
+    @Autowired
+    public ShortUrlInvalidationPublisher(ReactiveStringRedisTemplate reactiveStringRedisTemplate) {
+        this.reactiveStringRedisTemplate = reactiveStringRedisTemplate;
+    }
+
+    public Mono<Void> publish(String key) {
+        return publish(ShortUrlCacheKeys.INVALIDATION_CHANNEL, "invalidation", key);
+    }
+
+    public Mono<Void> publishAll(Collection<String> keys) {
+        return Flux.fromIterable(keys).flatMap(this::publish).then();
+    }
+
+    public Mono<Void> publishCreated(String key) {
+        return publish(ShortUrlCacheKeys.CREATED_CHANNEL, "creation", key);
+    }
+
+    public Mono<Void> publishAllCreated(Collection<String> keys) {
+        return Flux.fromIterable(keys).flatMap(this::publishCreated).then();
+    }
+
+    // Never fails, the change it announces is already made
+    private Mono<Void> publish(String channel, String change, String key) {
+        return reactiveStringRedisTemplate.convertAndSend(channel, key)
+                .doOnNext(receivers -> LOGGER.debug(EVENT_SUCCESS, String.format(
+                        "Published %s of ShortUrl key[%s] to [%d] subscribers", change, key, receivers)))
+                .onErrorResume(e -> {
+                    LOGGER.warning(EVENT_FAILURE, String.format(
+                            "Failed to publish %s of ShortUrl key[%s]: [%s]", change, key, e.getMessage()));
+                    return Mono.empty();
+                })
+                .then();
+    }
+}
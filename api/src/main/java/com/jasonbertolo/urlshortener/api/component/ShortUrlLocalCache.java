@@ -0,0 +1,415 @@
+package com.jasonbertolo.urlshortener.api.component;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.jasonbertolo.urlshortener.api.config.ShortUrlRedisSerializer;
+import com.jasonbertolo.urlshortener.api.config.WebConfig;
+import com.jasonbertolo.urlshortener.api.config.settings.UrlShortenerSettings;
+import com.jasonbertolo.urlshortener.api.model.ShortUrl;
+import com.jasonbertolo.urlshortener.api.model.dto.ApiResponse;
+import com.jasonbertolo.urlshortener.api.model.dto.ShortUrlResponseDto;
+import com.jasonbertolo.urlshortener.contract.ShortUrlCacheCodec;
+import com.jasonbertolo.urlshortener.contract.ShortUrlCacheKeys;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-process cache of the hottest ShortUrls in front of Redis. Values are kept as encoded bytes, see
+ * ShortUrlCacheCodec, so a large cache is a few arrays per entry for the GC rather than a graph of objects.
+ * <p>
+ * Entries are bounded by total bytes and evicted least recently used, per segment. A new entry only displaces the
+ * eviction victims when its key has been requested more often than each of them, going by a TinyLFU frequency sketch
+ * that's halved periodically so old popularity fades, which keeps one-off lookups from flushing hot links.
+ * <p>
+ * Without tracking, entries live for a short TTL since a delete on another instance can't reach this one. With
+ * tracking, ShortUrlCacheTracking invalidates entries as Redis reports changes and entries can live much longer, but
+ * the cache is suspended whenever those reports may have been missed. An invalidation leaves a tombstone for its key,
+ * or its bucket with the HASH layout, so a value read from Redis before it isn't cached after it. With the HASH layout
+ * a bucket's keys share a segment and are indexed by bucket, so a changed bucket drops only its own keys.
+ * <p>
+ * With response bodies on, each entry also keeps the JSON body of the cache endpoint's response, rendered once when
+ * the entry is added, so a hit can be written out as is without deserializing or mapping anything.
+ */
+@Component
+public class ShortUrlLocalCache {
+
+    public static final String CACHE_NAME = "shorturl.local";
+
+    private static final int SEGMENTS = 64;
+    // Map node, entry, key String and array headers, measured roughly on a 64-bit JVM with compressed oops
+    private static final int ENTRY_OVERHEAD_BYTES = 112;
+    private static final int AVERAGE_ENTRY_BYTES = 256;
+    // Only needed while reads started before them are in flight, beyond this puts from before the oldest are refused
+    private static final int MAXIMUM_TOMBSTONES = 1024;
+
+    private final boolean enabled;
+    private final boolean responseBodies;
+    private final long ttlNanos;
+    private final int bucketCount;
+    private volatile boolean suspended;
+    private final ShortUrlRedisSerializer serializer = new ShortUrlRedisSerializer(ShortUrlCacheCodec.Format.BINARY);
+    private final ObjectWriter responseWriter = WebConfig.responseObjectMapper().writer();
+    private final FrequencySketch sketch;
+    private final AtomicLong versions = new AtomicLong();
+    private final Segment[] segments = new Segment[SEGMENTS];
+    private final Counter hitCounter;
+    private final Counter missCounter;
+    private final Counter evictionCounter;
+    private final Counter rejectionCounter;
+
+    @Autowired
+    public ShortUrlLocalCache(UrlShortenerSettings urlShortenerSettings, MeterRegistry meterRegistry) {
+        UrlShortenerSettings.LocalCache settings = urlShortenerSettings.getLocalCache();
+        long maximumBytes = settings.getMaximumSize().toBytes();
+        this.enabled = settings.isEnabled() && maximumBytes > 0;
+        this.responseBodies = settings.isResponseBodies();
+        this.ttlNanos = (settings.isTracking() ? settings.getTrackedTtl() : settings.getTtl()).toNanos();
+        this.bucketCount = urlShortenerSettings.getCacheLayout() == ShortUrlCacheKeys.Layout.HASH
+                ? urlShortenerSettings.getCacheBucketCount() : 0;
+        // Nothing is served until tracking is running
+        this.suspended = settings.isTracking();
+        this.sketch = new FrequencySketch(Math.max(1024, maximumBytes / AVERAGE_ENTRY_BYTES));
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment(maximumBytes / SEGMENTS);
+        }
+        this.hitCounter = Counter.builder("cache.gets")
+                .tag("cache", CACHE_NAME)
+                .tag("result", "hit")
+                .register(meterRegistry);
+        this.missCounter = Counter.builder("cache.gets")
+                .tag("cache", CACHE_NAME)
+                .tag("result", "miss")
+                .register(meterRegistry);
+        this.evictionCounter = Counter.builder("cache.evictions")
+                .tag("cache", CACHE_NAME)
+                .register(meterRegistry);
+        this.rejectionCounter = Counter.builder(CACHE_NAME + ".rejected")
+                .description("New entries refused because the entry they would evict is requested more often")
+                .register(meterRegistry);
+        Gauge.builder("cache.size", this, ShortUrlLocalCache::size)
+                .tag("cache", CACHE_NAME)
+                .register(meterRegistry);
+        Gauge.builder(CACHE_NAME + ".memory", this, ShortUrlLocalCache::weight)
+                .description("Estimated memory held by the local ShortUrl cache")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    public ShortUrl get(String key) {
+        if (!enabled || suspended) {
+            return null;
+        }
+        Entry entry = lookup(key);
+        return entry == null ? null : serializer.deserialize(entry.value);
+    }
+
+    // The rendered response body of a ShortUrl that hasn't expired, null when not cached or response bodies are off
+    public byte[] getResponseBody(String key) {
+        if (!enabled || suspended || !responseBodies) {
+            return null;
+        }
+        Entry entry = lookup(key);
+        if (entry == null || entry.shortUrlExpiresAtMillis <= System.currentTimeMillis()) {
+            return null;
+        }
+        return entry.response;
+    }
+
+    public boolean isResponseBodies() {
+        return enabled && responseBodies;
+    }
+
+    // Taken before reading a ShortUrl from Redis and passed to put, which skips it if invalidated in between
+    public long stamp(String key) {
+        return versions.get();
+    }
+
+    public void put(String key, ShortUrl shortUrl, long stamp) {
+        if (!enabled || suspended) {
+            return;
+        }
+        byte[] value = serializer.serialize(shortUrl);
+        byte[] response = responseBodies ? render(shortUrl) : null;
+        long shortUrlExpiresAtMillis = shortUrl.getExpiresAt() == null
+                ? Long.MAX_VALUE : shortUrl.getExpiresAt().toEpochMilli();
+        segmentFor(key).put(key, new Entry(value, response, System.nanoTime() + ttlNanos, shortUrlExpiresAtMillis,
+                weigh(key, value, response), bucketOf(key)), stamp);
+    }
+
+    public void invalidate(String key) {
+        if (enabled) {
+            segmentFor(key).remove(key);
+        }
+    }
+
+    // Any field of a changed bucket hash may have changed, only applies to the HASH layout
+    public void invalidateBucket(String bucketKey) {
+        if (enabled && bucketCount > 0) {
+            segmentFor(bucketKey, bucketKey).removeBucket(bucketKey);
+        }
+    }
+
+    public void invalidateAll() {
+        for (Segment segment : segments) {
+            segment.clear();
+        }
+    }
+
+    public void suspend() {
+        suspended = true;
+        invalidateAll();
+    }
+
+    public void resume() {
+        invalidateAll();
+        suspended = false;
+    }
+
+    public boolean isSuspended() {
+        return suspended;
+    }
+
+    public long size() {
+        return Arrays.stream(segments).mapToLong(Segment::size).sum();
+    }
+
+    public long weight() {
+        return Arrays.stream(segments).mapToLong(Segment::weight).sum();
+    }
+
+    private Entry lookup(String key) {
+        sketch.increment(key);
+        Entry entry = segmentFor(key).get(key, System.nanoTime());
+        if (entry == null) {
+            missCounter.increment();
+            return null;
+        }
+        hitCounter.increment();
+        return entry;
+    }
+
+    private byte[] render(ShortUrl shortUrl) {
+        try {
+            return responseWriter.writeValueAsBytes(new ApiResponse<>(new ShortUrlResponseDto(shortUrl)));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to render ShortUrl response for key " + shortUrl.getKey(), e);
+        }
+    }
+
+    private Segment segmentFor(String key) {
+        return segmentFor(key, bucketOf(key));
+    }
+
+    private Segment segmentFor(String key, String bucket) {
+        int h = (bucket == null ? key : bucket).hashCode();
+        return segments[(h ^ (h >>> 16)) & (SEGMENTS - 1)];
+    }
+
+    private String bucketOf(String key) {
+        return bucketCount > 0 ? ShortUrlCacheKeys.bucketKey(key, bucketCount) : null;
+    }
+
+    private static long weigh(String key, byte[] value, byte[] response) {
+        return ENTRY_OVERHEAD_BYTES + 2L * key.length() + value.length + (response == null ? 0 : response.length);
+    }
+
+    private record Entry(byte[] value, byte[] response, long expiresAtNanos, long shortUrlExpiresAtMillis,
+                         long weight, String bucket) {
+    }
+
+    private final class Segment {
+        private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+        // Version of the last invalidation of each recently invalidated key or bucket
+        private final Map<String, Long> tombstones = new HashMap<>();
+        private final Map<String, Set<String>> bucketKeys = new HashMap<>();
+        private final long maximumWeight;
+        private long weight;
+        // Stamps below it were taken before tombstones that have been dropped
+        private long floor;
+
+        Segment(long maximumWeight) {
+            this.maximumWeight = maximumWeight;
+        }
+
+        synchronized Entry get(String key, long now) {
+            Entry entry = entries.get(key);
+            if (entry == null) {
+                return null;
+            }
+            if (entry.expiresAtNanos - now <= 0) {
+                removeEntry(key);
+                return null;
+            }
+            return entry;
+        }
+
+        synchronized void put(String key, Entry entry, long stamp) {
+            if (stamp < floor || tombstones.getOrDefault(key, -1L) > stamp
+                    || entry.bucket != null && tombstones.getOrDefault(entry.bucket, -1L) > stamp) {
+                return;
+            }
+            if (entry.weight > maximumWeight) {
+                rejectionCounter.increment();
+                return;
+            }
+            // Victims are chosen and admission decided before anything is removed, a refused entry changes nothing
+            Entry existing = entries.get(key);
+            long excess = weight - (existing == null ? 0 : existing.weight) + entry.weight - maximumWeight;
+            long now = System.nanoTime();
+            int frequency = sketch.frequency(key);
+            List<String> victims = new ArrayList<>();
+            for (Map.Entry<String, Entry> victim : entries.entrySet()) {
+                if (excess <= 0) {
+                    break;
+                }
+                if (victim.getKey().equals(key)) {
+                    continue;
+                }
+                boolean expired = victim.getValue().expiresAtNanos - now <= 0;
+                if (!expired && frequency <= sketch.frequency(victim.getKey())) {
+                    rejectionCounter.increment();
+                    return;
+                }
+                victims.add(victim.getKey());
+                excess -= victim.getValue().weight;
+            }
+            for (String victim : victims) {
+                removeEntry(victim);
+                evictionCounter.increment();
+            }
+            removeEntry(key);
+            entries.put(key, entry);
+            weight += entry.weight;
+            if (entry.bucket != null) {
+                bucketKeys.computeIfAbsent(entry.bucket, b -> new HashSet<>()).add(key);
+            }
+        }
+
+        synchronized void remove(String key) {
+            tombstone(key);
+            removeEntry(key);
+        }
+
+        synchronized void removeBucket(String bucket) {
+            tombstone(bucket);
+            Set<String> keys = bucketKeys.get(bucket);
+            if (keys != null) {
+                List.copyOf(keys).forEach(this::removeEntry);
+            }
+        }
+
+        synchronized void clear() {
+            floor = versions.incrementAndGet();
+            tombstones.clear();
+            entries.clear();
+            bucketKeys.clear();
+            weight = 0;
+        }
+
+        synchronized long size() {
+            return entries.size();
+        }
+
+        synchronized long weight() {
+            return weight;
+        }
+
+        private void tombstone(String name) {
+            if (tombstones.size() >= MAXIMUM_TOMBSTONES) {
+                floor = versions.get();
+                tombstones.clear();
+            }
+            tombstones.put(name, versions.incrementAndGet());
+        }
+
+        private void removeEntry(String key) {
+            Entry removed = entries.remove(key);
+            if (removed == null) {
+                return;
+            }
+            weight -= removed.weight;
+            if (removed.bucket != null) {
+                Set<String> keys = bucketKeys.get(removed.bucket);
+                keys.remove(key);
+                if (keys.isEmpty()) {
+                    bucketKeys.remove(removed.bucket);
+                }
+            }
+        }
+    }
+
+    /*
+     * Count-min sketch of 4 rows of saturating counters. After sampleSize additions every counter is halved, so
+     * frequencies reflect recent traffic. Updates are unsynchronized, a lost increment only makes an estimate lower.
+     */
+    static final class FrequencySketch {
+        private static final int ROWS = 4;
+        private static final int MAXIMUM_COUNT = 15;
+        private static final long[] SEEDS = {
+                0x9e3779b97f4a7c15L, 0xc2b2ae3d27d4eb4fL, 0x165667b19e3779f9L, 0xd6e8feb86659fd93L};
+
+        private final byte[][] table;
+        private final int mask;
+        private final long sampleSize;
+        private long additions;
+
+        // Four counters per row for each expected entry keeps collisions rare between resets
+        FrequencySketch(long expectedEntries) {
+            int entries = Integer.highestOneBit((int) Math.min(expectedEntries, 1 << 24) - 1) << 1;
+            this.table = new byte[ROWS][entries * 4];
+            this.mask = entries * 4 - 1;
+            this.sampleSize = 10L * entries;
+        }
+
+        void increment(String key) {
+            int hash = key.hashCode();
+            boolean added = false;
+            for (int row = 0; row < ROWS; row++) {
+                int index = indexOf(hash, row);
+                if (table[row][index] < MAXIMUM_COUNT) {
+                    table[row][index]++;
+                    added = true;
+                }
+            }
+            if (added && ++additions >= sampleSize) {
+                reset();
+            }
+        }
+
+        int frequency(String key) {
+            int hash = key.hashCode();
+            int frequency = MAXIMUM_COUNT;
+            for (int row = 0; row < ROWS; row++) {
+                frequency = Math.min(frequency, table[row][indexOf(hash, row)]);
+            }
+            return frequency;
+        }
+
+        private int indexOf(int hash, int row) {
+            long h = (hash + SEEDS[row]) * SEEDS[row];
+            return (int) (h ^ (h >>> 32)) & mask;
+        }
+
+        private synchronized void reset() {
+            for (byte[] counters : table) {
+                for (int i = 0; i < counters.length; i++) {
+                    counters[i] >>= 1;
+                }
+            }
+            additions /= 2;
+        }
+    }
+}
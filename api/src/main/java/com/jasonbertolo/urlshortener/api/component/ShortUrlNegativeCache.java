@@ -0,0 +1,137 @@
+package com.jasonbertolo.urlshortener.api.component;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.jasonbertolo.urlshortener.api.config.settings.UrlShortenerSettings;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.GuavaCacheMetrics;
+import org.owasp.esapi.ESAPI;
+import org.owasp.esapi.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.owasp.esapi.Logger.EVENT_FAILURE;
+import static org.owasp.esapi.Logger.EVENT_SUCCESS;
+
+/**
+ * Short-lived record of keys that were not found, so repeated lookups of unknown or expired keys skip the database.
+ * Entries are held in a bounded local set and as tombstones in Redis, so clearing a key applies to every instance.
+ */
+@Component
+public class ShortUrlNegativeCache {
+
+    private static final Logger LOGGER = ESAPI.getLogger(ShortUrlNegativeCache.class.getSimpleName());
+
+    public static final String CACHE_NAME = "shorturl.negative";
+    public static final String KEY_PREFIX = "shorturl:nf:";
+    private static final String TOMBSTONE = "1";
+
+    private final ReactiveStringRedisTemplate reactiveStringRedisTemplate;
+    private final Cache<String, Boolean> localCache;
+    private final boolean enabled;
+    private final Duration ttl;
+
+    @Autowired
+    public ShortUrlNegativeCache(ReactiveStringRedisTemplate reactiveStringRedisTemplate,
+                                 UrlShortenerSettings urlShortenerSettings,
+                                 MeterRegistry meterRegistry) {
+        UrlShortenerSettings.NegativeCache settings = urlShortenerSettings.getNegativeCache();
+        this.reactiveStringRedisTemplate = reactiveStringRedisTemplate;
+        this.enabled = settings.isEnabled();
+        this.ttl = settings.getTtl();
+        this.localCache = CacheBuilder.newBuilder()
+                .maximumSize(settings.getLocalMaximumSize())
+                .expireAfterWrite(settings.getLocalTtl())
+                .recordStats()
+                .build();
+        GuavaCacheMetrics.monitor(meterRegistry, localCache, CACHE_NAME);
+    }
+
+    public Mono<Boolean> isMissing(String key) {
+        if (!enabled) {
+            return Mono.just(false);
+        }
+        if (localCache.getIfPresent(key) != null) {
+            return Mono.just(true);
+        }
+        return reactiveStringRedisTemplate.hasKey(KEY_PREFIX + key)
+                .doOnNext(missing -> {
+                    if (Boolean.TRUE.equals(missing)) {
+                        localCache.put(key, Boolean.TRUE);
+                    }
+                })
+                // Fall through to the database rather than fail the lookup
+                .onErrorResume(e -> {
+                    LOGGER.warning(EVENT_FAILURE, String.format("Failed to check negative cache for key[%s]", key));
+                    return Mono.just(false);
+                });
+    }
+
+    // The keys with a tombstone, the ones not held locally checked in one MGET
+    public Mono<Set<String>> missingKeys(Collection<String> keys) {
+        if (!enabled || keys.isEmpty()) {
+            return Mono.just(Set.of());
+        }
+        Set<String> missing = new HashSet<>();
+        List<String> unknown = new ArrayList<>();
+        for (String key : keys) {
+            if (localCache.getIfPresent(key) != null) {
+                missing.add(key);
+            } else {
+                unknown.add(key);
+            }
+        }
+        if (unknown.isEmpty()) {
+            return Mono.just(missing);
+        }
+        return reactiveStringRedisTemplate.opsForValue()
+                .multiGet(unknown.stream().map(key -> KEY_PREFIX + key).toList())
+                .map(tombstones -> {
+                    for (int i = 0; i < unknown.size(); i++) {
+                        if (tombstones.get(i) != null) {
+                            localCache.put(unknown.get(i), Boolean.TRUE);
+                            missing.add(unknown.get(i));
+                        }
+                    }
+                    return missing;
+                })
+                // Fall through to the database rather than fail the lookups
+                .onErrorResume(e -> {
+                    LOGGER.warning(EVENT_FAILURE, String.format(
+                            "Failed to check negative cache for [%d] keys", unknown.size()));
+                    return Mono.just(missing);
+                });
+    }
+
+    public Mono<Boolean> markMissing(String key) {
+        if (!enabled) {
+            return Mono.just(false);
+        }
+        localCache.put(key, Boolean.TRUE);
+        return reactiveStringRedisTemplate.opsForValue().set(KEY_PREFIX + key, TOMBSTONE, ttl)
+                .doOnSuccess(v -> LOGGER.debug(EVENT_SUCCESS, String.format(
+                        "Negatively cached ShortUrl key[%s]", key)))
+                .onErrorResume(e -> {
+                    LOGGER.warning(EVENT_FAILURE, String.format("Failed to negatively cache key[%s]", key));
+                    return Mono.just(false);
+                });
+    }
+
+    // Cleared even when disabled, a tombstone may remain from before the setting changed
+    public Mono<Boolean> clear(String key) {
+        localCache.invalidate(key);
+        return reactiveStringRedisTemplate.delete(KEY_PREFIX + key)
+                .map(deleted -> deleted > 0)
+                .doOnSuccess(v -> LOGGER.debug(EVENT_SUCCESS, String.format(
+                        "Cleared negative cache for key[%s]", key)));
+    }
+}
@@ -1,22 +1,38 @@
 package com.jasonbertolo.urlshortener.api.config;
 
+import com.google.common.net.HostAndPort;
+import com.jasonbertolo.urlshortener.api.component.HashShortUrlCacheStore;
+import com.jasonbertolo.urlshortener.api.component.KeyShortUrlCacheStore;
+import com.jasonbertolo.urlshortener.api.component.ShardedShortUrlCacheStore;
+import com.jasonbertolo.urlshortener.api.component.ShortUrlCacheStore;
+import com.jasonbertolo.urlshortener.api.component.ShortUrlCacheTracking;
+import com.jasonbertolo.urlshortener.api.config.settings.UrlShortenerSettings;
 import com.jasonbertolo.urlshortener.api.model.ShortUrl;
+import com.jasonbertolo.urlshortener.contract.ShortUrlCacheKeys;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cache.annotation.EnableCaching;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.ReactiveRedisConnection;
 import org.springframework.data.redis.connection.ReactiveRedisConnectionFactory;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
 import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
 import org.springframework.data.redis.core.ReactiveRedisOperations;
 import org.springframework.data.redis.core.ReactiveRedisTemplate;
-import org.springframework.data.redis.serializer.Jackson2JsonRedisSerializer;
 import org.springframework.data.redis.serializer.RedisSerializationContext;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
-import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 @Configuration
 @EnableCaching
-public class CacheConfig {
+public class CacheConfig implements DisposableBean {
+
+    private final List<LettuceConnectionFactory> trackedFactories = new CopyOnWriteArrayList<>();
 
     @Bean
     public LettuceConnectionFactory connectionFactory(@Value("${spring.data.redis.host}") String redisHost,
@@ -25,12 +41,83 @@ public class CacheConfig {
     }
 
     @Bean
-    public ReactiveRedisOperations<String, ShortUrl> reactiveRedisOperations(ReactiveRedisConnectionFactory factory) {
-        Jackson2JsonRedisSerializer<ShortUrl> serializer =
-                new Jackson2JsonRedisSerializer<>(new Jackson2ObjectMapperBuilder().build(), ShortUrl.class);
+    public ReactiveRedisOperations<String, ShortUrl> reactiveRedisOperations(
+            ReactiveRedisConnectionFactory factory,
+            UrlShortenerSettings urlShortenerSettings,
+            ShortUrlCacheTracking shortUrlCacheTracking,
+            @Value("${spring.data.redis.host}") String redisHost,
+            @Value("${spring.data.redis.port}") Integer redisPort) {
+        if (shortUrlCacheTracking.isEnabled() && urlShortenerSettings.getCacheShards().getEndpoints().isEmpty()) {
+            // ShortUrls get their own connection, which tracking is enabled on, see ShortUrlCacheTracking
+            LettuceConnectionFactory trackedFactory = trackedConnectionFactory(redisHost + ":" + redisPort,
+                    redisHost, redisPort, shortUrlCacheTracking);
+            trackedFactories.add(trackedFactory);
+            return new ReactiveRedisTemplate<>(trackedFactory, shortUrlSerializationContext(urlShortenerSettings));
+        }
+        return new ReactiveRedisTemplate<>(factory, shortUrlSerializationContext(urlShortenerSettings));
+    }
+
+    @Bean
+    public ShortUrlCacheStore shortUrlCacheStore(ReactiveRedisOperations<String, ShortUrl> reactiveRedisOperations,
+                                                 UrlShortenerSettings urlShortenerSettings,
+                                                 ShortUrlCacheTracking shortUrlCacheTracking,
+                                                 MeterRegistry meterRegistry) {
+        UrlShortenerSettings.CacheShards cacheShards = urlShortenerSettings.getCacheShards();
+        if (cacheShards.getEndpoints().isEmpty()) {
+            return layoutStore(reactiveRedisOperations, urlShortenerSettings);
+        }
+        // Shards are named by endpoint, which places them on the ring
+        List<ShardedShortUrlCacheStore.Shard> shards = cacheShards.getEndpoints().stream()
+                .map(endpoint -> {
+                    HostAndPort hostAndPort = HostAndPort.fromString(endpoint).withDefaultPort(6379);
+                    LettuceConnectionFactory factory;
+                    if (shortUrlCacheTracking.isEnabled()) {
+                        factory = trackedConnectionFactory(endpoint, hostAndPort.getHost(),
+                                hostAndPort.getPort(), shortUrlCacheTracking);
+                    } else {
+                        factory = new LettuceConnectionFactory(hostAndPort.getHost(), hostAndPort.getPort());
+                        factory.afterPropertiesSet();
+                    }
+                    ReactiveRedisTemplate<String, ShortUrl> operations = new ReactiveRedisTemplate<>(factory,
+                            shortUrlSerializationContext(urlShortenerSettings));
+                    return new ShardedShortUrlCacheStore.Shard(endpoint, layoutStore(operations, urlShortenerSettings),
+                            () -> Mono.usingWhen(Mono.fromSupplier(factory::getReactiveConnection),
+                                    connection -> connection.ping(), ReactiveRedisConnection::closeLater),
+                            factory::destroy);
+                })
+                .toList();
+        return new ShardedShortUrlCacheStore(shards, cacheShards, meterRegistry);
+    }
+
+    @Override
+    public void destroy() {
+        trackedFactories.forEach(LettuceConnectionFactory::destroy);
+    }
+
+    private static LettuceConnectionFactory trackedConnectionFactory(String endpoint, String host, int port,
+                                                                     ShortUrlCacheTracking shortUrlCacheTracking) {
+        LettuceConnectionFactory factory = new LettuceConnectionFactory(new RedisStandaloneConfiguration(host, port),
+                shortUrlCacheTracking.clientConfiguration());
+        factory.afterPropertiesSet();
+        // Registered before anything connects, so every connection the factory opens is tracked
+        shortUrlCacheTracking.track(endpoint, factory);
+        return factory;
+    }
+
+    private static ShortUrlCacheStore layoutStore(ReactiveRedisOperations<String, ShortUrl> reactiveRedisOperations,
+                                                  UrlShortenerSettings urlShortenerSettings) {
+        if (urlShortenerSettings.getCacheLayout() == ShortUrlCacheKeys.Layout.HASH) {
+            return new HashShortUrlCacheStore(reactiveRedisOperations, urlShortenerSettings.getCacheBucketCount());
+        }
+        return new KeyShortUrlCacheStore(reactiveRedisOperations);
+    }
+
+    private static RedisSerializationContext<String, ShortUrl> shortUrlSerializationContext(
+            UrlShortenerSettings urlShortenerSettings) {
+        // Value format is shared with the web module, see ShortUrlCacheCodec
+        ShortUrlRedisSerializer serializer = new ShortUrlRedisSerializer(urlShortenerSettings.getCacheFormat());
         RedisSerializationContext.RedisSerializationContextBuilder<String, ShortUrl> builder =
                 RedisSerializationContext.newSerializationContext(new StringRedisSerializer());
-        RedisSerializationContext<String, ShortUrl> context = builder.value(serializer).build();
-        return new ReactiveRedisTemplate<>(factory, context);
+        return builder.value(serializer).hashValue(serializer).build();
     }
 }
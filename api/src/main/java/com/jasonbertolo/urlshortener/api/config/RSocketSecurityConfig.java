@@ -0,0 +1,28 @@
+package com.jasonbertolo.urlshortener.api.config;
+
+import com.jasonbertolo.urlshortener.contract.ShortUrlRSocket;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.security.config.annotation.rsocket.EnableRSocketSecurity;
+import org.springframework.security.config.annotation.rsocket.RSocketSecurity;
+import org.springframework.security.rsocket.core.PayloadSocketAcceptorInterceptor;
+
+import static org.springframework.security.config.Customizer.withDefaults;
+
+@Configuration
+@EnableRSocketSecurity
+public class RSocketSecurityConfig {
+
+    @Bean
+    public PayloadSocketAcceptorInterceptor rsocketInterceptor(RSocketSecurity rsocketSecurity) {
+        // The JWT in the setup frame authenticates the connection, requests on it carry no token of their own
+        return rsocketSecurity
+                .authorizePayload(spec -> spec
+                        .setup().hasAuthority("SCOPE_cache:write")
+                        .route(ShortUrlRSocket.RESOLVE_ROUTE).hasAuthority("SCOPE_cache:write")
+                        .anyRequest().denyAll()
+                        .anyExchange().permitAll())
+                .jwt(withDefaults())
+                .build();
+    }
+}
@@ -29,7 +29,10 @@ public class SecurityConfig {
                         .pathMatchers(GET, "/api/v1/shorturl", "/api/v1/shorturl/{id}").access(hasScope("shorturl:read"))
                         .pathMatchers(POST, "/api/v1/shorturl").access(hasScope("shorturl:write"))
                         .pathMatchers(DELETE, "/api/v1/shorturl/{id}").access(hasScope("shorturl:write"))
+                        .pathMatchers(GET, "/api/v1/cache/keys").access(hasScope("cache:read"))
+                        .pathMatchers(GET, "/api/v1/cache/hot").access(hasScope("cache:read"))
                         .pathMatchers(GET, "/api/v1/cache/{key}").access(hasScope("cache:write"))
+                        .pathMatchers(POST, "/api/v1/cache/batch").access(hasScope("cache:write"))
                         .pathMatchers(GET, "/actuator/**", "/api/v1/docs/**").permitAll()
                         .anyExchange().authenticated())
 
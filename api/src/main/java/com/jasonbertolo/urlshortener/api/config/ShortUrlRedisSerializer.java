@@ -0,0 +1,55 @@
+package com.jasonbertolo.urlshortener.api.config;
+
+import com.jasonbertolo.urlshortener.api.model.ShortUrl;
+import com.jasonbertolo.urlshortener.contract.CachedShortUrl;
+import com.jasonbertolo.urlshortener.contract.ShortUrlCacheCodec;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+/**
+ * Writes ShortUrls to Redis in the format shared with the web module. The audit users are not cached.
+ */
+public class ShortUrlRedisSerializer implements RedisSerializer<ShortUrl> {
+
+    private final ShortUrlCacheCodec.Format format;
+
+    public ShortUrlRedisSerializer(ShortUrlCacheCodec.Format format) {
+        this.format = format;
+    }
+
+    @Override
+    public byte[] serialize(ShortUrl shortUrl) throws SerializationException {
+        if (shortUrl == null) {
+            return new byte[0];
+        }
+        try {
+            return ShortUrlCacheCodec.encode(new CachedShortUrl(shortUrl.getId(), shortUrl.getKey(),
+                    shortUrl.getUrl(), shortUrl.getDescription(), shortUrl.getCreatedAt(),
+                    shortUrl.getLastUpdatedAt(), shortUrl.getExpiresAt(), shortUrl.getCachedUntil()), format);
+        } catch (RuntimeException e) {
+            throw new SerializationException("Could not write ShortUrl", e);
+        }
+    }
+
+    @Override
+    public ShortUrl deserialize(byte[] bytes) throws SerializationException {
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+        try {
+            CachedShortUrl cachedShortUrl = ShortUrlCacheCodec.decode(bytes);
+            ShortUrl shortUrl = new ShortUrl();
+            shortUrl.setId(cachedShortUrl.id());
+            shortUrl.setKey(cachedShortUrl.key());
+            shortUrl.setUrl(cachedShortUrl.url());
+            shortUrl.setDescription(cachedShortUrl.description());
+            shortUrl.setCreatedAt(cachedShortUrl.createdAt());
+            shortUrl.setLastUpdatedAt(cachedShortUrl.lastUpdatedAt());
+            shortUrl.setExpiresAt(cachedShortUrl.expiresAt());
+            shortUrl.setCachedUntil(cachedShortUrl.cachedUntil());
+            return shortUrl;
+        } catch (RuntimeException e) {
+            throw new SerializationException("Could not read ShortUrl", e);
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.jasonbertolo.urlshortener.api.config;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.PropertyNamingStrategies;
 import com.jasonbertolo.urlshortener.api.handler.ShortUrlHandler;
 import com.jasonbertolo.urlshortener.api.springdoc.ShortUrlSpringDoc;
@@ -23,11 +24,15 @@ public class WebConfig implements WebFluxConfigurer {
 
     @Override
     public void configureHttpMessageCodecs(@NonNull ServerCodecConfigurer configurer) {
-        configurer.defaultCodecs().jackson2JsonEncoder(new Jackson2JsonEncoder(
-                Jackson2ObjectMapperBuilder
-                        .json()
-                        .propertyNamingStrategy(PropertyNamingStrategies.SNAKE_CASE)
-                        .build()));
+        configurer.defaultCodecs().jackson2JsonEncoder(new Jackson2JsonEncoder(responseObjectMapper()));
+    }
+
+    // Also renders the response bodies ShortUrlLocalCache keeps, which must match what the encoder writes
+    public static ObjectMapper responseObjectMapper() {
+        return Jackson2ObjectMapperBuilder
+                .json()
+                .propertyNamingStrategy(PropertyNamingStrategies.SNAKE_CASE)
+                .build();
     }
 
     @ShortUrlSpringDoc
@@ -35,6 +40,9 @@ public class WebConfig implements WebFluxConfigurer {
     public RouterFunction<ServerResponse> routerFunction(ShortUrlHandler shortUrlHandler) {
         return RouterFunctions.route()
                 .nest(path("/api/v1"), baseUrlBuilder -> baseUrlBuilder
+                        .GET("/cache/keys", shortUrlHandler::getLiveKeys)
+                        .GET("/cache/hot", shortUrlHandler::getHotKeys)
+                        .POST("/cache/batch", shortUrlHandler::getAndCacheShortUrls)
                         .GET("/cache/{key}", shortUrlHandler::getAndCacheShortUrl)
                         .POST("/shorturl", shortUrlHandler::createUserShortUrl)
                         .GET("/shorturl", shortUrlHandler::getUserShortUrls)
@@ -1,6 +1,13 @@
 package com.jasonbertolo.urlshortener.api.config.settings;
 
+import com.jasonbertolo.urlshortener.contract.ShortUrlCacheCodec;
+import com.jasonbertolo.urlshortener.contract.ShortUrlCacheKeys;
 import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
 
 @ConfigurationProperties(prefix = "url-shortener")
 public class UrlShortenerSettings {
@@ -8,9 +15,21 @@ public class UrlShortenerSettings {
     private Integer keyLength;
     private Integer urlTtlDays;
     private Integer cacheTtlDays;
+    private ShortUrlCacheCodec.Format cacheFormat = ShortUrlCacheCodec.Format.BINARY;
+    private ShortUrlCacheKeys.Layout cacheLayout = ShortUrlCacheKeys.Layout.KEY;
+    private int cacheBucketCount = 65536;
     private String externalAppUrl;
     private String documentationBaseUrl;
     private ScheduledMaintenance scheduledMaintenance;
+    private NegativeCache negativeCache = new NegativeCache();
+    private EarlyRefresh earlyRefresh = new EarlyRefresh();
+    private CacheRefresh cacheRefresh = new CacheRefresh();
+    private CacheShards cacheShards = new CacheShards();
+    private LocalCache localCache = new LocalCache();
+    private ChangeStream changeStream = new ChangeStream();
+    private WarmUp warmUp = new WarmUp();
+    private CacheSizing cacheSizing = new CacheSizing();
+    private JwtCache jwtCache = new JwtCache();
 
     public Integer getKeyLength() {
         return keyLength;
@@ -36,6 +55,30 @@ public class UrlShortenerSettings {
         this.cacheTtlDays = cacheTtlDays;
     }
 
+    public ShortUrlCacheCodec.Format getCacheFormat() {
+        return cacheFormat;
+    }
+
+    public void setCacheFormat(ShortUrlCacheCodec.Format cacheFormat) {
+        this.cacheFormat = cacheFormat;
+    }
+
+    public ShortUrlCacheKeys.Layout getCacheLayout() {
+        return cacheLayout;
+    }
+
+    public void setCacheLayout(ShortUrlCacheKeys.Layout cacheLayout) {
+        this.cacheLayout = cacheLayout;
+    }
+
+    public int getCacheBucketCount() {
+        return cacheBucketCount;
+    }
+
+    public void setCacheBucketCount(int cacheBucketCount) {
+        this.cacheBucketCount = cacheBucketCount;
+    }
+
     public String getExternalAppUrl() {
         return externalAppUrl;
     }
@@ -60,6 +103,78 @@ public class UrlShortenerSettings {
         this.scheduledMaintenance = scheduledMaintenance;
     }
 
+    public NegativeCache getNegativeCache() {
+        return negativeCache;
+    }
+
+    public void setNegativeCache(NegativeCache negativeCache) {
+        this.negativeCache = negativeCache;
+    }
+
+    public EarlyRefresh getEarlyRefresh() {
+        return earlyRefresh;
+    }
+
+    public void setEarlyRefresh(EarlyRefresh earlyRefresh) {
+        this.earlyRefresh = earlyRefresh;
+    }
+
+    public CacheRefresh getCacheRefresh() {
+        return cacheRefresh;
+    }
+
+    public void setCacheRefresh(CacheRefresh cacheRefresh) {
+        this.cacheRefresh = cacheRefresh;
+    }
+
+    public CacheShards getCacheShards() {
+        return cacheShards;
+    }
+
+    public void setCacheShards(CacheShards cacheShards) {
+        this.cacheShards = cacheShards;
+    }
+
+    public LocalCache getLocalCache() {
+        return localCache;
+    }
+
+    public void setLocalCache(LocalCache localCache) {
+        this.localCache = localCache;
+    }
+
+    public ChangeStream getChangeStream() {
+        return changeStream;
+    }
+
+    public void setChangeStream(ChangeStream changeStream) {
+        this.changeStream = changeStream;
+    }
+
+    public WarmUp getWarmUp() {
+        return warmUp;
+    }
+
+    public void setWarmUp(WarmUp warmUp) {
+        this.warmUp = warmUp;
+    }
+
+    public CacheSizing getCacheSizing() {
+        return cacheSizing;
+    }
+
+    public void setCacheSizing(CacheSizing cacheSizing) {
+        this.cacheSizing = cacheSizing;
+    }
+
+    public JwtCache getJwtCache() {
+        return jwtCache;
+    }
+
+    public void setJwtCache(JwtCache jwtCache) {
+        this.jwtCache = jwtCache;
+    }
+
     public static class ScheduledMaintenance {
         private String cronZone;
         private boolean cleanupEnabled;
@@ -89,4 +204,491 @@ public class UrlShortenerSettings {
             this.cleanupCron = cleanupCron;
         }
     }
+
+    public static class NegativeCache {
+        private boolean enabled = true;
+        private Duration ttl = Duration.ofMinutes(5);
+        private long localMaximumSize = 10000;
+        private Duration localTtl = Duration.ofSeconds(30);
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public Duration getTtl() {
+            return ttl;
+        }
+
+        public void setTtl(Duration ttl) {
+            this.ttl = ttl;
+        }
+
+        public long getLocalMaximumSize() {
+            return localMaximumSize;
+        }
+
+        public void setLocalMaximumSize(long localMaximumSize) {
+            this.localMaximumSize = localMaximumSize;
+        }
+
+        public Duration getLocalTtl() {
+            return localTtl;
+        }
+
+        public void setLocalTtl(Duration localTtl) {
+            this.localTtl = localTtl;
+        }
+    }
+
+    public static class EarlyRefresh {
+        private boolean enabled = true;
+        private double beta = 1.0;
+        private Duration expectedLoadTime = Duration.ofMillis(20);
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public double getBeta() {
+            return beta;
+        }
+
+        public void setBeta(double beta) {
+            this.beta = beta;
+        }
+
+        public Duration getExpectedLoadTime() {
+            return expectedLoadTime;
+        }
+
+        public void setExpectedLoadTime(Duration expectedLoadTime) {
+            this.expectedLoadTime = expectedLoadTime;
+        }
+    }
+
+    public static class CacheRefresh {
+
+        public enum Mode {
+            // Entries keep the TTL they were written with
+            NONE,
+            // Every hit resets the TTL in the same round trip as the read
+            GETEX,
+            // A hit resets the TTL once less than the threshold ratio of it remains
+            THRESHOLD
+        }
+
+        private Mode mode = Mode.THRESHOLD;
+        private double thresholdRatio = 0.5;
+        private long popularHits = 100;
+        private Duration popularityWindow = Duration.ofHours(1);
+        private long popularityMaximumKeys = 100000;
+        private int popularTtlMultiplier = 4;
+
+        public Mode getMode() {
+            return mode;
+        }
+
+        public void setMode(Mode mode) {
+            this.mode = mode;
+        }
+
+        public double getThresholdRatio() {
+            return thresholdRatio;
+        }
+
+        public void setThresholdRatio(double thresholdRatio) {
+            this.thresholdRatio = thresholdRatio;
+        }
+
+        public long getPopularHits() {
+            return popularHits;
+        }
+
+        public void setPopularHits(long popularHits) {
+            this.popularHits = popularHits;
+        }
+
+        public Duration getPopularityWindow() {
+            return popularityWindow;
+        }
+
+        public void setPopularityWindow(Duration popularityWindow) {
+            this.popularityWindow = popularityWindow;
+        }
+
+        public long getPopularityMaximumKeys() {
+            return popularityMaximumKeys;
+        }
+
+        public void setPopularityMaximumKeys(long popularityMaximumKeys) {
+            this.popularityMaximumKeys = popularityMaximumKeys;
+        }
+
+        public int getPopularTtlMultiplier() {
+            return popularTtlMultiplier;
+        }
+
+        public void setPopularTtlMultiplier(int popularTtlMultiplier) {
+            this.popularTtlMultiplier = popularTtlMultiplier;
+        }
+    }
+
+    public static class CacheShards {
+        private List<String> endpoints = new ArrayList<>();
+        private int virtualNodes = 160;
+        private int failureThreshold = 3;
+        private Duration healthCheckInterval = Duration.ofSeconds(5);
+        private int maximumPendingDeletes = 10000;
+
+        public List<String> getEndpoints() {
+            return endpoints;
+        }
+
+        public void setEndpoints(List<String> endpoints) {
+            this.endpoints = endpoints;
+        }
+
+        public int getVirtualNodes() {
+            return virtualNodes;
+        }
+
+        public void setVirtualNodes(int virtualNodes) {
+            this.virtualNodes = virtualNodes;
+        }
+
+        public int getFailureThreshold() {
+            return failureThreshold;
+        }
+
+        public void setFailureThreshold(int failureThreshold) {
+            this.failureThreshold = failureThreshold;
+        }
+
+        public Duration getHealthCheckInterval() {
+            return healthCheckInterval;
+        }
+
+        public void setHealthCheckInterval(Duration healthCheckInterval) {
+            this.healthCheckInterval = healthCheckInterval;
+        }
+
+        public int getMaximumPendingDeletes() {
+            return maximumPendingDeletes;
+        }
+
+        public void setMaximumPendingDeletes(int maximumPendingDeletes) {
+            this.maximumPendingDeletes = maximumPendingDeletes;
+        }
+    }
+
+    public static class LocalCache {
+        private boolean enabled = true;
+        private DataSize maximumSize = DataSize.ofMegabytes(64);
+        private Duration ttl = Duration.ofSeconds(30);
+        private boolean tracking = true;
+        private Duration trackedTtl = Duration.ofMinutes(10);
+        private boolean responseBodies = false;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public boolean isTracking() {
+            return tracking;
+        }
+
+        public void setTracking(boolean tracking) {
+            this.tracking = tracking;
+        }
+
+        public Duration getTrackedTtl() {
+            return trackedTtl;
+        }
+
+        public void setTrackedTtl(Duration trackedTtl) {
+            this.trackedTtl = trackedTtl;
+        }
+
+        public boolean isResponseBodies() {
+            return responseBodies;
+        }
+
+        public void setResponseBodies(boolean responseBodies) {
+            this.responseBodies = responseBodies;
+        }
+
+        public DataSize getMaximumSize() {
+            return maximumSize;
+        }
+
+        public void setMaximumSize(DataSize maximumSize) {
+            this.maximumSize = maximumSize;
+        }
+
+        public Duration getTtl() {
+            return ttl;
+        }
+
+        public void setTtl(Duration ttl) {
+            this.ttl = ttl;
+        }
+    }
+
+    public static class ChangeStream {
+        private boolean enabled = false;
+        private String instanceId;
+        private int batchSize = 500;
+        private Duration batchWindow = Duration.ofMillis(500);
+        private Duration leaseDuration = Duration.ofSeconds(30);
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public String getInstanceId() {
+            return instanceId;
+        }
+
+        public void setInstanceId(String instanceId) {
+            this.instanceId = instanceId;
+        }
+
+        public int getBatchSize() {
+            return batchSize;
+        }
+
+        public void setBatchSize(int batchSize) {
+            this.batchSize = batchSize;
+        }
+
+        public Duration getBatchWindow() {
+            return batchWindow;
+        }
+
+        public void setBatchWindow(Duration batchWindow) {
+            this.batchWindow = batchWindow;
+        }
+
+        public Duration getLeaseDuration() {
+            return leaseDuration;
+        }
+
+        public void setLeaseDuration(Duration leaseDuration) {
+            this.leaseDuration = leaseDuration;
+        }
+    }
+
+    public static class WarmUp {
+        private boolean enabled = false;
+        private int topKeys = 10000;
+        private int batchSize = 500;
+        private int concurrency = 64;
+        private Duration timeBudget = Duration.ofSeconds(30);
+        private Duration historyWindow = Duration.ofDays(7);
+        private Duration historyRetention = Duration.ofDays(30);
+        private Duration historyFlushInterval = Duration.ofMinutes(1);
+        private int historyMaximumKeys = 100000;
+        private Duration historyDecayInterval = Duration.ofDays(1);
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getTopKeys() {
+            return topKeys;
+        }
+
+        public void setTopKeys(int topKeys) {
+            this.topKeys = topKeys;
+        }
+
+        public int getBatchSize() {
+            return batchSize;
+        }
+
+        public void setBatchSize(int batchSize) {
+            this.batchSize = batchSize;
+        }
+
+        public int getConcurrency() {
+            return concurrency;
+        }
+
+        public void setConcurrency(int concurrency) {
+            this.concurrency = concurrency;
+        }
+
+        public Duration getTimeBudget() {
+            return timeBudget;
+        }
+
+        public void setTimeBudget(Duration timeBudget) {
+            this.timeBudget = timeBudget;
+        }
+
+        public Duration getHistoryWindow() {
+            return historyWindow;
+        }
+
+        public void setHistoryWindow(Duration historyWindow) {
+            this.historyWindow = historyWindow;
+        }
+
+        public Duration getHistoryRetention() {
+            return historyRetention;
+        }
+
+        public void setHistoryRetention(Duration historyRetention) {
+            this.historyRetention = historyRetention;
+        }
+
+        public Duration getHistoryFlushInterval() {
+            return historyFlushInterval;
+        }
+
+        public void setHistoryFlushInterval(Duration historyFlushInterval) {
+            this.historyFlushInterval = historyFlushInterval;
+        }
+
+        public int getHistoryMaximumKeys() {
+            return historyMaximumKeys;
+        }
+
+        public void setHistoryMaximumKeys(int historyMaximumKeys) {
+            this.historyMaximumKeys = historyMaximumKeys;
+        }
+
+        public Duration getHistoryDecayInterval() {
+            return historyDecayInterval;
+        }
+
+        public void setHistoryDecayInterval(Duration historyDecayInterval) {
+            this.historyDecayInterval = historyDecayInterval;
+        }
+    }
+
+    public static class CacheSizing {
+        private boolean enabled = true;
+        private double sampleRate = 0.01;
+        private int maximumKeys = 16384;
+        private Duration decayInterval = Duration.ofHours(1);
+        private double targetHitRatio = 0.99;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public double getSampleRate() {
+            return sampleRate;
+        }
+
+        public void setSampleRate(double sampleRate) {
+            this.sampleRate = sampleRate;
+        }
+
+        public int getMaximumKeys() {
+            return maximumKeys;
+        }
+
+        public void setMaximumKeys(int maximumKeys) {
+            this.maximumKeys = maximumKeys;
+        }
+
+        public Duration getDecayInterval() {
+            return decayInterval;
+        }
+
+        public void setDecayInterval(Duration decayInterval) {
+            this.decayInterval = decayInterval;
+        }
+
+        public double getTargetHitRatio() {
+            return targetHitRatio;
+        }
+
+        public void setTargetHitRatio(double targetHitRatio) {
+            this.targetHitRatio = targetHitRatio;
+        }
+    }
+
+    public static class JwtCache {
+        private boolean enabled = true;
+        private long maximumSize = 10000;
+        private Duration maximumTtl = Duration.ofMinutes(10);
+        private String jwkSetUri = null;
+        private Duration jwkSetRefreshInterval = Duration.ofMinutes(5);
+        private Duration jwkSetMinimumRefreshInterval = Duration.ofSeconds(30);
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public long getMaximumSize() {
+            return maximumSize;
+        }
+
+        public void setMaximumSize(long maximumSize) {
+            this.maximumSize = maximumSize;
+        }
+
+        public Duration getMaximumTtl() {
+            return maximumTtl;
+        }
+
+        public void setMaximumTtl(Duration maximumTtl) {
+            this.maximumTtl = maximumTtl;
+        }
+
+        public String getJwkSetUri() {
+            return jwkSetUri;
+        }
+
+        public void setJwkSetUri(String jwkSetUri) {
+            this.jwkSetUri = jwkSetUri;
+        }
+
+        public Duration getJwkSetRefreshInterval() {
+            return jwkSetRefreshInterval;
+        }
+
+        public void setJwkSetRefreshInterval(Duration jwkSetRefreshInterval) {
+            this.jwkSetRefreshInterval = jwkSetRefreshInterval;
+        }
+
+        public Duration getJwkSetMinimumRefreshInterval() {
+            return jwkSetMinimumRefreshInterval;
+        }
+
+        public void setJwkSetMinimumRefreshInterval(Duration jwkSetMinimumRefreshInterval) {
+            this.jwkSetMinimumRefreshInterval = jwkSetMinimumRefreshInterval;
+        }
+    }
 }
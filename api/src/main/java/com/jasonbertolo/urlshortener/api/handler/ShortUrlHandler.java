@@ -4,6 +4,7 @@ import com.jasonbertolo.urlshortener.api.config.settings.UrlShortenerSettings;
 import com.jasonbertolo.urlshortener.api.exception.AccessDeniedException;
 import com.jasonbertolo.urlshortener.api.exception.InvalidShortUrlException;
 import com.jasonbertolo.urlshortener.api.model.dto.ApiResponse;
+import com.jasonbertolo.urlshortener.api.model.dto.ShortUrlBatchDto;
 import com.jasonbertolo.urlshortener.api.model.dto.ShortUrlCreateDto;
 import com.jasonbertolo.urlshortener.api.model.dto.ShortUrlResponseDto;
 import com.jasonbertolo.urlshortener.api.service.ShortUrlService;
@@ -20,6 +21,7 @@ import java.security.Principal;
 import static com.jasonbertolo.urlshortener.api.exception.AccessDeniedException.USER_AUTHENTICATION_REQUIRED;
 import static com.jasonbertolo.urlshortener.api.util.ReactiveRequestContextHolder.getRequestPath;
 import static org.springframework.http.MediaType.APPLICATION_JSON;
+import static org.springframework.http.MediaType.TEXT_PLAIN;
 import static org.springframework.web.reactive.function.server.ServerResponse.*;
 
 @Component
@@ -94,9 +96,55 @@ public class ShortUrlHandler {
         return serverRequest.principal()
                 .switchIfEmpty(getRequestPath().flatMap(uri -> Mono.error(new AccessDeniedException(
                         "Client credentials required"))))
-                .flatMap(p -> shortUrlService.getAndCacheShortUrl(key))
-                .map(ShortUrlResponseDto::new)
-                .map(ApiResponse::new)
+                .flatMap(p -> shortUrlService.getCachedShortUrlResponse(key)
+                        .flatMap(ShortUrlHandler::writeResponseBody)
+                        .switchIfEmpty(Mono.defer(() -> shortUrlService.getAndCacheShortUrl(key)
+                                .map(ShortUrlResponseDto::new)
+                                .map(ApiResponse::new)
+                                .flatMap(shortUrls -> ok().contentType(APPLICATION_JSON).bodyValue(shortUrls)))));
+    }
+
+    @NonNull
+    public Mono<ServerResponse> getAndCacheShortUrls(ServerRequest serverRequest) {
+        return serverRequest.principal()
+                .switchIfEmpty(getRequestPath().flatMap(uri -> Mono.error(new AccessDeniedException(
+                        "Client credentials required"))))
+                .flatMap(p -> serverRequest.bodyToMono(ShortUrlBatchDto.class)
+                        .switchIfEmpty(Mono.fromSupplier(ShortUrlBatchDto::new)))
+                .flatMap(dto -> shortUrlService.getAndCacheShortUrls(dto)
+                        .map(ShortUrlResponseDto::new)
+                        .collectList())
+                .map(shortUrls -> new ApiResponse<>("ShortUrlResponseDtos", shortUrls))
                 .flatMap(shortUrls -> ok().contentType(APPLICATION_JSON).bodyValue(shortUrls));
     }
+
+    @NonNull
+    public Mono<ServerResponse> getLiveKeys(ServerRequest serverRequest) {
+        String since = serverRequest.queryParam("since").orElse(null);
+        return serverRequest.principal()
+                .switchIfEmpty(getRequestPath().flatMap(uri -> Mono.error(new AccessDeniedException(
+                        "Client credentials required"))))
+                // One key per line, streamed as it is read from the database
+                .flatMap(p -> ok().contentType(TEXT_PLAIN)
+                        .body(shortUrlService.getLiveKeys(since).map(key -> key + "\n"), String.class));
+    }
+
+    @NonNull
+    public Mono<ServerResponse> getHotKeys(ServerRequest serverRequest) {
+        String limit = serverRequest.queryParam("limit").orElse(null);
+        return serverRequest.principal()
+                .switchIfEmpty(getRequestPath().flatMap(uri -> Mono.error(new AccessDeniedException(
+                        "Client credentials required"))))
+                // One key per line, most accessed first
+                .flatMap(p -> ok().contentType(TEXT_PLAIN)
+                        .body(shortUrlService.getHotKeys(limit).map(key -> key + "\n"), String.class));
+    }
+
+    // Wraps the rendered body in a buffer without copying it, nothing is encoded
+    private static Mono<ServerResponse> writeResponseBody(byte[] body) {
+        return ok().contentType(APPLICATION_JSON)
+                .contentLength(body.length)
+                .body((outputMessage, context) -> outputMessage.writeWith(
+                        Mono.fromSupplier(() -> outputMessage.bufferFactory().wrap(body))));
+    }
 }
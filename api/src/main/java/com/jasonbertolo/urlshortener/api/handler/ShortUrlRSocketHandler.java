@@ -0,0 +1,36 @@
+package com.jasonbertolo.urlshortener.api.handler;
+
+import com.jasonbertolo.urlshortener.api.config.ShortUrlRedisSerializer;
+import com.jasonbertolo.urlshortener.api.exception.ApiException;
+import com.jasonbertolo.urlshortener.api.service.ShortUrlService;
+import com.jasonbertolo.urlshortener.contract.ShortUrlCacheCodec;
+import com.jasonbertolo.urlshortener.contract.ShortUrlRSocket;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.messaging.handler.annotation.MessageMapping;
+import org.springframework.stereotype.Controller;
+import reactor.core.publisher.Mono;
+
+/**
+ * Key resolution for the web module over RSocket, the same lookup as GET /api/v1/cache/{key} without a token and
+ * JSON mapping per request. A ShortUrl is answered in the binary cache encoding, a key that's invalid or not found is
+ * answered empty.
+ */
+@Controller
+public class ShortUrlRSocketHandler {
+
+    private final ShortUrlService shortUrlService;
+    private final ShortUrlRedisSerializer serializer = new ShortUrlRedisSerializer(ShortUrlCacheCodec.Format.BINARY);
+
+    @Autowired
+    public ShortUrlRSocketHandler(ShortUrlService shortUrlService) {
+        this.shortUrlService = shortUrlService;
+    }
+
+    @MessageMapping(ShortUrlRSocket.RESOLVE_ROUTE)
+    public Mono<byte[]> resolve(String key) {
+        return shortUrlService.getAndCacheShortUrl(key)
+                .map(serializer::serialize)
+                .onErrorResume(e -> e instanceof ApiException apiException
+                        && apiException.getStatus().is4xxClientError(), e -> Mono.empty());
+    }
+}
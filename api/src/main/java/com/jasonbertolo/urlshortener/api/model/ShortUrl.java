@@ -44,6 +44,10 @@ public class ShortUrl {
     @Field
     private Instant expiresAt;
 
+    // Deadline of the cache entry this was read from, for cache entries that can't expire on their own
+    @Transient
+    private Instant cachedUntil;
+
     public ShortUrl() {
     }
 
@@ -126,6 +130,14 @@ public class ShortUrl {
         this.expiresAt = expiresAt;
     }
 
+    public Instant getCachedUntil() {
+        return cachedUntil;
+    }
+
+    public void setCachedUntil(Instant cachedUntil) {
+        this.cachedUntil = cachedUntil;
+    }
+
     @Override
     public String toString() {
         return "ShortUrl{" +
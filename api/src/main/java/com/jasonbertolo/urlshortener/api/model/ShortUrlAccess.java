@@ -0,0 +1,50 @@
+package com.jasonbertolo.urlshortener.api.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.Field;
+
+import java.time.Instant;
+
+/**
+ * How often a ShortUrl key has been resolved, decayed so older hits count for less, and when it last was, so caches
+ * can be warmed with popular keys.
+ */
+@Document(ShortUrlAccess.COLLECTION)
+public class ShortUrlAccess {
+
+    public static final String COLLECTION = "short-url-access";
+
+    @Id
+    private String key;
+
+    @Field
+    private double hits;
+
+    @Field
+    private Instant lastAccessedAt;
+
+    public String getKey() {
+        return key;
+    }
+
+    public void setKey(String key) {
+        this.key = key;
+    }
+
+    public double getHits() {
+        return hits;
+    }
+
+    public void setHits(double hits) {
+        this.hits = hits;
+    }
+
+    public Instant getLastAccessedAt() {
+        return lastAccessedAt;
+    }
+
+    public void setLastAccessedAt(Instant lastAccessedAt) {
+        this.lastAccessedAt = lastAccessedAt;
+    }
+}
@@ -0,0 +1,9 @@
+package com.jasonbertolo.urlshortener.api.model;
+
+/**
+ * Projection of a ShortUrl to its key, for exporting keys without loading whole documents.
+ */
+public interface ShortUrlKey {
+
+    String getKey();
+}
@@ -0,0 +1,29 @@
+package com.jasonbertolo.urlshortener.api.model.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.List;
+
+public class ShortUrlBatchDto {
+
+    private List<String> keys;
+    // Lookups made to warm a cache rather than for a redirect, left out of the access history
+    @JsonProperty("warm_up")
+    private boolean warmUp;
+
+    public List<String> getKeys() {
+        return keys;
+    }
+
+    public void setKeys(List<String> keys) {
+        this.keys = keys;
+    }
+
+    public boolean isWarmUp() {
+        return warmUp;
+    }
+
+    public void setWarmUp(boolean warmUp) {
+        this.warmUp = warmUp;
+    }
+}
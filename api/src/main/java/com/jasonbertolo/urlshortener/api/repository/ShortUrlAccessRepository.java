@@ -0,0 +1,15 @@
+package com.jasonbertolo.urlshortener.api.repository;
+
+import com.jasonbertolo.urlshortener.api.model.ShortUrlAccess;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+
+import java.time.Instant;
+
+@Repository
+public interface ShortUrlAccessRepository extends ReactiveMongoRepository<ShortUrlAccess, String> {
+
+    Flux<ShortUrlAccess> findByLastAccessedAtAfterOrderByHitsDesc(Instant lastAccessedAt, Pageable pageable);
+}
@@ -1,6 +1,7 @@
 package com.jasonbertolo.urlshortener.api.repository;
 
 import com.jasonbertolo.urlshortener.api.model.ShortUrl;
+import com.jasonbertolo.urlshortener.api.model.ShortUrlKey;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
 import org.springframework.stereotype.Repository;
@@ -8,6 +9,7 @@ import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.time.Instant;
+import java.util.Collection;
 
 @Repository
 public interface ShortUrlRepository extends ReactiveMongoRepository<ShortUrl, String> {
@@ -15,9 +17,13 @@ public interface ShortUrlRepository extends ReactiveMongoRepository<ShortUrl, St
     Mono<ShortUrl> findByIdAndCreatedByAndExpiresAtAfter(String id, String createdBy, Instant expiredAt);
 
     Mono<ShortUrl> findByKeyAndExpiresAtAfter(String key, Instant expiredAt);
+    Flux<ShortUrl> findByKeyInAndExpiresAtAfter(Collection<String> keys, Instant expiredAt);
 
     Flux<ShortUrl> findByCreatedByAndExpiresAtAfterOrderByCreatedAtDesc(String createdBy, Instant expiredAt, Pageable pageable);
     Mono<Long> countByCreatedByAndExpiresAtAfter(String createdBy, Instant expiredAt);
 
     Flux<ShortUrl> findByExpiresAtBefore(Instant instant);
+
+    Flux<ShortUrlKey> findKeysByExpiresAtAfter(Instant expiredAt);
+    Flux<ShortUrlKey> findKeysByCreatedAtAfterAndExpiresAtAfter(Instant createdAt, Instant expiredAt);
 }
@@ -1,9 +1,19 @@
 package com.jasonbertolo.urlshortener.api.service;
 
+import com.jasonbertolo.urlshortener.api.component.ShortUrlAccessHistory;
+import com.jasonbertolo.urlshortener.api.component.ShortUrlCachePolicy;
+import com.jasonbertolo.urlshortener.api.component.ShortUrlCacheSizing;
+import com.jasonbertolo.urlshortener.api.component.ShortUrlCacheStore;
+import com.jasonbertolo.urlshortener.api.component.ShortUrlInvalidationPublisher;
+import com.jasonbertolo.urlshortener.api.component.ShortUrlLocalCache;
+import com.jasonbertolo.urlshortener.api.component.ShortUrlNegativeCache;
 import com.jasonbertolo.urlshortener.api.config.settings.UrlShortenerSettings;
+import com.jasonbertolo.urlshortener.api.config.settings.UrlShortenerSettings.CacheRefresh;
 import com.jasonbertolo.urlshortener.api.exception.*;
 import com.jasonbertolo.urlshortener.api.model.ShortUrl;
+import com.jasonbertolo.urlshortener.api.model.ShortUrlKey;
 import com.jasonbertolo.urlshortener.api.model.dto.ErrorsDto;
+import com.jasonbertolo.urlshortener.api.model.dto.ShortUrlBatchDto;
 import com.jasonbertolo.urlshortener.api.model.dto.ShortUrlCreateDto;
 import com.jasonbertolo.urlshortener.api.model.validation.ShortUrlValidator;
 import com.jasonbertolo.urlshortener.api.repository.ShortUrlRepository;
@@ -13,17 +23,30 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
-import org.springframework.data.redis.core.ReactiveRedisOperations;
 import org.springframework.stereotype.Service;
 import org.springframework.validation.BeanPropertyBindingResult;
 import org.springframework.validation.SimpleErrors;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.util.retry.Retry;
 
 import java.security.SecureRandom;
 import java.time.Duration;
 import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
 import java.util.regex.Pattern;
 
+import static com.jasonbertolo.urlshortener.api.component.ShortUrlCachePolicy.*;
 import static com.jasonbertolo.urlshortener.api.model.ShortUrl.KEY_ALLOWED_CHARS;
 import static com.jasonbertolo.urlshortener.api.util.ReactiveRequestContextHolder.getRequestPath;
 import static java.time.temporal.ChronoUnit.DAYS;
@@ -39,19 +62,46 @@ public class ShortUrlService {
     private static final int DEFAULT_MAX_KEY_LENGTH = 50;
     private static final int DEFAULT_MAX_PAGE_NUMBER_LENGTH = 10000;
     private static final int DEFAULT_MAX_PAGE_SIZE_LENGTH = 10000;
+    private static final double LOAD_TIME_ALPHA = 0.2;
+    private static final int DEFAULT_MAX_HOT_KEYS = 100000;
+    private static final int DEFAULT_MAX_BATCH_KEYS = 1000;
+    private static final int CACHE_WRITE_RETRIES = 2;
+    private static final Duration CACHE_WRITE_RETRY_BACKOFF = Duration.ofMillis(50);
 
     private final ShortUrlRepository shortUrlRepository;
-    private final ReactiveRedisOperations<String, ShortUrl> reactiveRedisOperations;
+    private final ShortUrlCacheStore shortUrlCacheStore;
+    private final ShortUrlLocalCache shortUrlLocalCache;
+    private final ShortUrlNegativeCache shortUrlNegativeCache;
+    private final ShortUrlCachePolicy shortUrlCachePolicy;
+    private final ShortUrlAccessHistory shortUrlAccessHistory;
+    private final ShortUrlCacheSizing shortUrlCacheSizing;
+    private final ShortUrlInvalidationPublisher shortUrlInvalidationPublisher;
     private final UrlShortenerSettings urlShortenerSettings;
     private final Pattern validKeyPattern;
+    private final Map<String, Mono<ShortUrl>> inFlightLoads = new ConcurrentHashMap<>();
+    private volatile double loadNanosEwma;
 
     @Autowired
     public ShortUrlService(ShortUrlRepository shortUrlRepository,
-                           ReactiveRedisOperations<String, ShortUrl> reactiveRedisOperations,
+                           ShortUrlCacheStore shortUrlCacheStore,
+                           ShortUrlLocalCache shortUrlLocalCache,
+                           ShortUrlNegativeCache shortUrlNegativeCache,
+                           ShortUrlCachePolicy shortUrlCachePolicy,
+                           ShortUrlAccessHistory shortUrlAccessHistory,
+                           ShortUrlCacheSizing shortUrlCacheSizing,
+                           ShortUrlInvalidationPublisher shortUrlInvalidationPublisher,
                            UrlShortenerSettings urlShortenerSettings) {
         this.shortUrlRepository = shortUrlRepository;
-        this.reactiveRedisOperations = reactiveRedisOperations;
+        this.shortUrlCacheStore = shortUrlCacheStore;
+        this.shortUrlLocalCache = shortUrlLocalCache;
+        this.shortUrlNegativeCache = shortUrlNegativeCache;
+        this.shortUrlCachePolicy = shortUrlCachePolicy;
+        this.shortUrlAccessHistory = shortUrlAccessHistory;
+        this.shortUrlCacheSizing = shortUrlCacheSizing;
+        this.shortUrlInvalidationPublisher = shortUrlInvalidationPublisher;
         this.urlShortenerSettings = urlShortenerSettings;
+        // Instances serving only from Redis never time a load of their own
+        this.loadNanosEwma = urlShortenerSettings.getEarlyRefresh().getExpectedLoadTime().toNanos();
         this.validKeyPattern = Pattern.compile("[a-zA-Z0-9]{" + urlShortenerSettings.getKeyLength() + "}");
     }
 
@@ -72,6 +122,18 @@ public class ShortUrlService {
                                 .build()))))
                 .retry(2L)
                 .cast(ShortUrl.class)
+                // Clear any tombstone for the new key and cache it, the cache is checked before the negative cache
+                // so instances still holding the key locally as missing resolve it right away. The ShortUrl is saved
+                // by now, so failing here would only have the client create it again. If both writes fail other
+                // instances can answer 404 for the key until its tombstone expires, after negative-cache.ttl.
+                .flatMap(shortUrl -> retryCacheWrite(() -> shortUrlNegativeCache.clear(shortUrl.getKey()),
+                                "clear the tombstone of", shortUrl.getKey())
+                        .then(retryCacheWrite(() -> cacheShortUrl(shortUrl.getKey(), shortUrl), "cache",
+                                shortUrl.getKey()))
+                        .thenReturn(shortUrl))
+                // Web nodes add it to their key filters, which would otherwise answer 404 until their next sync
+                .flatMap(shortUrl -> shortUrlInvalidationPublisher.publishCreated(shortUrl.getKey())
+                        .thenReturn(shortUrl))
                 .doOnSuccess(shortUrl -> LOGGER.info(EVENT_SUCCESS, String.format(
                         "Created ShortUrl id[%s] for user[%s]", shortUrl.getId(), username)))
                 .doOnError(e -> LOGGER.error(EVENT_FAILURE, String.format(
@@ -107,8 +169,17 @@ public class ShortUrlService {
                 .then(shortUrlRepository.findByIdAndCreatedByAndExpiresAtAfter(id, username, Instant.now()))
                 .switchIfEmpty(getRequestPath().flatMap(uri -> Mono.error(new ResourceNotFoundException(
                         String.format("ShortUrl id[%s] and user[%s] was not found", id, username), uri))))
-                .flatMap(shortUrl -> reactiveRedisOperations.opsForValue().delete(shortUrl.getKey()))
-                .then(shortUrlRepository.deleteById(id))
+                .doOnNext(shortUrl -> {
+                    shortUrlLocalCache.invalidate(shortUrl.getKey());
+                    shortUrlCachePolicy.forgetExpiry(shortUrl.getKey());
+                })
+                .flatMap(shortUrl -> shortUrlCacheStore.delete(shortUrl.getKey())
+                        .doOnNext(b -> shortUrlCachePolicy.recordWrite(OP_DELETE))
+                        .then(shortUrlRepository.deleteById(id))
+                        // Redis doesn't report this instance's own writes, a read that raced the delete is dropped
+                        .then(Mono.fromRunnable(() -> shortUrlLocalCache.invalidate(shortUrl.getKey())))
+                        // Once it's gone from the database, so a near cache can't load the old ShortUrl again
+                        .then(shortUrlInvalidationPublisher.publish(shortUrl.getKey())))
                 .doOnSuccess(v -> LOGGER.info(EVENT_SUCCESS, String.format(
                         "Deleted ShortUrl id[%s] for user[%s]", id, username)))
                 .doOnError(e -> LOGGER.error(EVENT_FAILURE, String.format(
@@ -119,20 +190,286 @@ public class ShortUrlService {
         return validateKey(key)
                 .doOnSuccess(s -> LOGGER.debug(EVENT_UNSPECIFIED, String.format(
                         "Getting and caching ShortUrl by key[%s]", key)))
-                // Check cache first
-                .then(reactiveRedisOperations.opsForValue().get(key))
-                // If empty, get from database and add to cache
-                .switchIfEmpty(shortUrlRepository.findByKeyAndExpiresAtAfter(key, Instant.now())
-                        .switchIfEmpty(getRequestPath().flatMap(uri -> Mono.error(new ResourceNotFoundException(
-                                String.format("ShortUrl key[%s] was not found", key), uri)))))
-                .flatMap(shortUrl -> reactiveRedisOperations.opsForValue().set(key, shortUrl,
-                                Duration.ofDays(urlShortenerSettings.getCacheTtlDays()))
-
-                        .thenReturn(shortUrl))
+                // Check the local cache, then Redis
+                .then(Mono.fromSupplier(() -> shortUrlLocalCache.get(key)).filter(ShortUrlService::isNotExpired))
+                .switchIfEmpty(Mono.defer(() -> {
+                    long stamp = shortUrlLocalCache.stamp(key);
+                    return getCachedShortUrl(key)
+                            // If empty, get from database and add to cache
+                            .switchIfEmpty(Mono.defer(() -> loadShortUrl(key)))
+                            .doOnNext(shortUrl -> shortUrlLocalCache.put(key, shortUrl, stamp));
+                }))
+                .switchIfEmpty(getRequestPath().flatMap(uri -> Mono.error(new ResourceNotFoundException(
+                        String.format("ShortUrl key[%s] was not found", key), uri))))
+                .doOnNext(shortUrl -> {
+                    shortUrlAccessHistory.record(key);
+                    shortUrlCacheSizing.record(key);
+                })
                 .doOnSuccess(v -> LOGGER.info(EVENT_SUCCESS, String.format("Cached ShortUrl key[%s]", key)))
                 .doOnError(e -> LOGGER.error(EVENT_FAILURE, String.format("Failed to cache ShortUrl key[%s]", key)));
     }
 
+    /*
+     * The ShortUrls found for a batch of keys, in no particular order, invalid and unknown keys are left out. Local
+     * misses are read from Redis in one MGET, or one HMGET per bucket, and Redis misses from MongoDB in one query.
+     * Batch reads don't run the THRESHOLD check, which needs the remaining TTL of every entry, so hits are only
+     * extended in GETEX mode.
+     */
+    public Flux<ShortUrl> getAndCacheShortUrls(ShortUrlBatchDto dto) {
+        return validateBatch(dto)
+                .doOnSuccess(keys -> LOGGER.debug(EVENT_UNSPECIFIED, String.format(
+                        "Getting and caching [%d] ShortUrls by key", keys.size())))
+                .flatMapMany(keys -> {
+                    List<ShortUrl> localHits = new ArrayList<>();
+                    Map<String, Long> stamps = new HashMap<>();
+                    for (String key : keys) {
+                        ShortUrl shortUrl = shortUrlLocalCache.get(key);
+                        if (shortUrl != null && isNotExpired(shortUrl)) {
+                            localHits.add(shortUrl);
+                        } else {
+                            stamps.put(key, shortUrlLocalCache.stamp(key));
+                        }
+                    }
+                    return Flux.fromIterable(localHits).concatWith(getCachedShortUrls(stamps));
+                })
+                .doOnNext(shortUrl -> {
+                    // Warm-ups follow the ranking, counting them would keep the same keys on top
+                    if (!dto.isWarmUp()) {
+                        shortUrlAccessHistory.record(shortUrl.getKey());
+                        shortUrlCacheSizing.record(shortUrl.getKey());
+                    }
+                })
+                .doOnError(e -> LOGGER.error(EVENT_FAILURE, "Failed to cache ShortUrl batch"));
+    }
+
+    // Local hits only, as the response body the cache endpoint would write, empty when it has to take the full path
+    public Mono<byte[]> getCachedShortUrlResponse(String key) {
+        if (!shortUrlLocalCache.isResponseBodies() || !validKeyPattern.matcher(key).find()
+                || key.length() > DEFAULT_MAX_KEY_LENGTH) {
+            return Mono.empty();
+        }
+        return Mono.fromSupplier(() -> shortUrlLocalCache.getResponseBody(key))
+                .doOnNext(body -> {
+                    shortUrlAccessHistory.record(key);
+                    shortUrlCacheSizing.record(key);
+                });
+    }
+
+    public Flux<String> getLiveKeys(String since) {
+        return validateSince(since)
+                .doOnSuccess(s -> LOGGER.debug(EVENT_UNSPECIFIED, String.format(
+                        "Exporting live ShortUrl keys created since[%s]", since)))
+                .flatMapMany(createdAfter -> createdAfter.equals(Instant.EPOCH)
+                        ? shortUrlRepository.findKeysByExpiresAtAfter(Instant.now())
+                        : shortUrlRepository.findKeysByCreatedAtAfterAndExpiresAtAfter(createdAfter, Instant.now()))
+                .map(ShortUrlKey::getKey);
+    }
+
+    public Flux<String> getHotKeys(String limit) {
+        return validateLimit(limit)
+                .doOnSuccess(l -> LOGGER.debug(EVENT_UNSPECIFIED, String.format(
+                        "Exporting the [%d] most accessed ShortUrl keys", l)))
+                .flatMapMany(shortUrlAccessHistory::topKeys);
+    }
+
+    private Mono<ShortUrl> getCachedShortUrl(String key) {
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            return readCachedShortUrl(key)
+                    // A ShortUrl that expired while cached is a miss
+                    .filter(ShortUrlService::isNotExpired)
+                    .doOnNext(shortUrl -> shortUrlCachePolicy.recordHit(key, System.nanoTime() - start));
+        });
+    }
+
+    private Mono<ShortUrl> readCachedShortUrl(String key) {
+        UrlShortenerSettings.EarlyRefresh earlyRefresh = urlShortenerSettings.getEarlyRefresh();
+        CacheRefresh.Mode mode = shortUrlCachePolicy.getMode();
+        // TTL refresh and early refresh both need entries with their own TTL
+        if (!shortUrlCacheStore.supportsEntryTtl() || (mode == CacheRefresh.Mode.NONE && !earlyRefresh.isEnabled())) {
+            return shortUrlCacheStore.get(key);
+        }
+        if (mode == CacheRefresh.Mode.GETEX) {
+            // Read and extend the TTL in one round trip
+            Duration ttl = shortUrlCachePolicy.ttlFor(key);
+            return shortUrlCacheStore.getAndExpire(key, ttl)
+                    .doOnNext(shortUrl -> {
+                        shortUrlCachePolicy.recordWrite(OP_GETEX);
+                        shortUrlCachePolicy.recordExpiry(key, ttl);
+                    });
+        }
+        double refreshGapNanos = earlyRefresh.isEnabled() ? earlyRefreshGapNanos(earlyRefresh.getBeta()) : 0;
+        // The remaining TTL is only read when the entry may be close enough to expiring to refresh or extend it
+        Duration knownTtl = shortUrlCachePolicy.knownTtl(key).orElse(null);
+        if (knownTtl != null && refreshGapNanos < knownTtl.toNanos()
+                && !shortUrlCachePolicy.shouldExtend(key, knownTtl)) {
+            return shortUrlCacheStore.get(key);
+        }
+        return Mono.zip(shortUrlCacheStore.get(key), shortUrlCacheStore.getExpire(key).defaultIfEmpty(Duration.ZERO))
+                .flatMap(t -> {
+                    Duration ttl = t.getT2();
+                    shortUrlCachePolicy.recordExpiry(key, ttl);
+                    if (earlyRefresh.isEnabled() && shouldRefreshEarly(ttl, refreshGapNanos)) {
+                        refreshShortUrl(key);
+                    } else if (shortUrlCachePolicy.shouldExtend(key, ttl)) {
+                        return extendShortUrl(key).thenReturn(t.getT1());
+                    }
+                    return Mono.just(t.getT1());
+                });
+    }
+
+    private Flux<ShortUrl> getCachedShortUrls(Map<String, Long> stamps) {
+        if (stamps.isEmpty()) {
+            return Flux.empty();
+        }
+        List<String> keys = List.copyOf(stamps.keySet());
+        return Flux.defer(() -> {
+                    long start = System.nanoTime();
+                    return shortUrlCacheStore.getAll(keys)
+                            .filter(ShortUrlService::isNotExpired)
+                            .collectMap(ShortUrl::getKey)
+                            .flatMapMany(cached -> {
+                                long nanos = System.nanoTime() - start;
+                                cached.keySet().forEach(key -> shortUrlCachePolicy.recordHit(key, nanos));
+                                List<String> missing = keys.stream().filter(key -> !cached.containsKey(key)).toList();
+                                return extendCachedShortUrls(cached.values()).concatWith(loadShortUrls(missing));
+                            });
+                })
+                .doOnNext(shortUrl -> shortUrlLocalCache.put(shortUrl.getKey(), shortUrl,
+                        stamps.getOrDefault(shortUrl.getKey(), -1L)));
+    }
+
+    private Flux<ShortUrl> extendCachedShortUrls(Collection<ShortUrl> shortUrls) {
+        if (shortUrlCachePolicy.getMode() != CacheRefresh.Mode.GETEX || !shortUrlCacheStore.supportsEntryTtl()) {
+            return Flux.fromIterable(shortUrls);
+        }
+        return Flux.fromIterable(shortUrls)
+                .flatMap(shortUrl -> extendShortUrl(shortUrl.getKey()).thenReturn(shortUrl));
+    }
+
+    // Keys another lookup is already loading join that load, the rest are read in one batch that later lookups of
+    // those keys join in turn
+    private Flux<ShortUrl> loadShortUrls(List<String> keys) {
+        if (keys.isEmpty()) {
+            return Flux.empty();
+        }
+        Map<String, Mono<ShortUrl>> owned = new HashMap<>();
+        // Held back until every key is registered, a lookup joining early mustn't start the batch without the rest
+        Sinks.Empty<Void> registered = Sinks.empty();
+        Mono<Map<String, ShortUrl>> batch = registered.asMono()
+                .then(Mono.defer(() -> findAndCacheShortUrls(List.copyOf(owned.keySet()))))
+                .doFinally(signal -> owned.forEach(inFlightLoads::remove))
+                .cache();
+        List<Mono<ShortUrl>> loads = new ArrayList<>(keys.size());
+        for (String key : keys) {
+            Mono<ShortUrl> load = batch.mapNotNull(found -> found.get(key));
+            Mono<ShortUrl> inFlight = inFlightLoads.putIfAbsent(key, load);
+            if (inFlight == null) {
+                owned.put(key, load);
+            }
+            loads.add(inFlight == null ? load : inFlight);
+        }
+        registered.tryEmitEmpty();
+        return Flux.merge(loads);
+    }
+
+    // Negatively cached keys are skipped, the rest read in one query and the ones not found negatively cached
+    private Mono<Map<String, ShortUrl>> findAndCacheShortUrls(List<String> keys) {
+        return shortUrlNegativeCache.missingKeys(keys)
+                .flatMap(missing -> {
+                    List<String> toLoad = keys.stream().filter(key -> !missing.contains(key)).toList();
+                    if (toLoad.isEmpty()) {
+                        return Mono.just(Map.of());
+                    }
+                    return shortUrlRepository.findByKeyInAndExpiresAtAfter(toLoad, Instant.now())
+                            .flatMap(shortUrl -> cacheShortUrl(shortUrl.getKey(), shortUrl).thenReturn(shortUrl))
+                            .collectMap(ShortUrl::getKey)
+                            .flatMap(found -> Flux.fromIterable(toLoad)
+                                    .filter(key -> !found.containsKey(key))
+                                    .flatMap(shortUrlNegativeCache::markMissing)
+                                    .then(Mono.just(found)));
+                });
+    }
+
+    private Mono<Boolean> cacheShortUrl(String key, ShortUrl shortUrl) {
+        Duration ttl = shortUrlCachePolicy.ttlFor(key);
+        return shortUrlCacheStore.set(key, shortUrl, ttl)
+                .doOnNext(cached -> {
+                    shortUrlCachePolicy.recordWrite(OP_SET);
+                    if (Boolean.TRUE.equals(cached)) {
+                        shortUrlCachePolicy.recordExpiry(key, ttl);
+                    }
+                });
+    }
+
+    private static Mono<Boolean> retryCacheWrite(Supplier<Mono<Boolean>> write, String action, String key) {
+        return Mono.defer(write)
+                .retryWhen(Retry.backoff(CACHE_WRITE_RETRIES, CACHE_WRITE_RETRY_BACKOFF))
+                .onErrorResume(e -> {
+                    LOGGER.error(EVENT_FAILURE, String.format(
+                            "Failed to %s new ShortUrl key[%s]: [%s]", action, key, e.getMessage()));
+                    return Mono.just(false);
+                });
+    }
+
+    private Mono<Boolean> extendShortUrl(String key) {
+        Duration ttl = shortUrlCachePolicy.ttlFor(key);
+        return shortUrlCacheStore.expire(key, ttl)
+                .doOnNext(extended -> {
+                    shortUrlCachePolicy.recordWrite(OP_EXPIRE);
+                    if (Boolean.TRUE.equals(extended)) {
+                        shortUrlCachePolicy.recordExpiry(key, ttl);
+                    }
+                })
+                .onErrorResume(e -> Mono.just(false));
+    }
+
+    /*
+     * XFetch: refresh ahead of expiry with a probability that rises as the remaining TTL approaches the time a load
+     * takes, so instances sharing a popular entry don't all miss it at the same moment. The gap is drawn before the
+     * remaining TTL is known, so it's only read from Redis when the gap could reach it.
+     */
+    private double earlyRefreshGapNanos(double beta) {
+        return -loadNanosEwma * beta * Math.log(1.0 - ThreadLocalRandom.current().nextDouble());
+    }
+
+    private static boolean shouldRefreshEarly(Duration ttl, double gapNanos) {
+        return !ttl.isNegative() && !ttl.isZero() && gapNanos >= ttl.toNanos();
+    }
+
+    private void refreshShortUrl(String key) {
+        LOGGER.debug(EVENT_UNSPECIFIED, String.format("Refreshing cached ShortUrl key[%s] before expiry", key));
+        loadShortUrl(key).subscribe(shortUrl -> {}, e -> LOGGER.warning(EVENT_FAILURE, String.format(
+                "Failed to refresh cached ShortUrl key[%s]", key)));
+    }
+
+    // Concurrent loads of the same key share one in-flight Mono, removed once it terminates
+    private Mono<ShortUrl> loadShortUrl(String key) {
+        return inFlightLoads.computeIfAbsent(key, k -> findAndCacheShortUrl(k)
+                .doFinally(signal -> inFlightLoads.remove(k))
+                .cache());
+    }
+
+    private Mono<ShortUrl> findAndCacheShortUrl(String key) {
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            return shortUrlNegativeCache.isMissing(key)
+                    .filter(missing -> !missing)
+                    .flatMap(m -> shortUrlRepository.findByKeyAndExpiresAtAfter(key, Instant.now())
+                            .switchIfEmpty(shortUrlNegativeCache.markMissing(key).then(Mono.empty())))
+                    .flatMap(shortUrl -> cacheShortUrl(key, shortUrl).thenReturn(shortUrl))
+                    .doOnNext(shortUrl -> recordLoadTime(System.nanoTime() - start));
+        });
+    }
+
+    private void recordLoadTime(long nanos) {
+        loadNanosEwma = LOAD_TIME_ALPHA * nanos + (1 - LOAD_TIME_ALPHA) * loadNanosEwma;
+    }
+
+    private static boolean isNotExpired(ShortUrl shortUrl) {
+        return shortUrl.getExpiresAt() == null || shortUrl.getExpiresAt().isAfter(Instant.now());
+    }
+
     private Mono<ShortUrlCreateDto> validateShortUrlDto(ShortUrlCreateDto dto) {
         BeanPropertyBindingResult beanPropertyBindingResult = new BeanPropertyBindingResult(
                 dto, ShortUrlCreateDto.class.getSimpleName());
@@ -173,6 +510,49 @@ public class ShortUrlService {
                 "ShortUrl key query parameter [%s] is invalid.", key), uri)));
     }
 
+    // Distinct valid keys, invalid ones can't be found and are dropped rather than failing the batch
+    private Mono<List<String>> validateBatch(ShortUrlBatchDto dto) {
+        if (dto == null || dto.getKeys() == null || dto.getKeys().isEmpty()
+                || dto.getKeys().size() > DEFAULT_MAX_BATCH_KEYS) {
+            return getRequestPath().flatMap(uri -> Mono.error(new InvalidParameterException(String.format(
+                    "Keys in the request body are invalid, there should be between 1 and %d.",
+                    DEFAULT_MAX_BATCH_KEYS), uri)));
+        }
+        return Mono.just(new LinkedHashSet<>(dto.getKeys()).stream()
+                .filter(key -> key != null && validKeyPattern.matcher(key).find()
+                        && key.length() <= DEFAULT_MAX_KEY_LENGTH)
+                .toList());
+    }
+
+    private Mono<Instant> validateSince(String since) {
+        if (since == null) {
+            return Mono.just(Instant.EPOCH);
+        }
+        try {
+            return Mono.just(Instant.parse(since));
+        } catch (DateTimeParseException e) {
+            return getRequestPath().flatMap(uri -> Mono.error(new InvalidParameterException(String.format(
+                    "Since query parameter [%s] is invalid, it should be an ISO-8601 instant.", since), uri)));
+        }
+    }
+
+    private Mono<Integer> validateLimit(String limitParam) {
+        if (limitParam == null) {
+            return Mono.just(urlShortenerSettings.getWarmUp().getTopKeys());
+        }
+        try {
+            int limit = Integer.parseInt(limitParam);
+            if (limit < 1 || limit > DEFAULT_MAX_HOT_KEYS) {
+                throw new IllegalArgumentException("Invalid limit");
+            }
+            return Mono.just(limit);
+        } catch (IllegalArgumentException e) {
+            return getRequestPath().flatMap(uri -> Mono.error(new InvalidParameterException(String.format(
+                    "Limit query parameter [%s] is invalid, it should be between 1 and %d.",
+                    limitParam, DEFAULT_MAX_HOT_KEYS), uri)));
+        }
+    }
+
     private Mono<Pageable> validatePageParams(String pageParam, String sizeParam) {
         try {
             int page = Integer.parseInt(pageParam);
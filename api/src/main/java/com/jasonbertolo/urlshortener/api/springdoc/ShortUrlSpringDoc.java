@@ -1,6 +1,7 @@
 package com.jasonbertolo.urlshortener.api.springdoc;
 
 import com.jasonbertolo.urlshortener.api.handler.ShortUrlHandler;
+import com.jasonbertolo.urlshortener.api.model.dto.ShortUrlBatchDto;
 import com.jasonbertolo.urlshortener.api.model.dto.ShortUrlCreateDto;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -246,5 +247,92 @@ import java.lang.annotation.Target;
                                 @ApiResponse(responseCode = "404", description = "ShortUrl not found", content = @Content),
                                 @ApiResponse(responseCode = "500", description = "Unexpected error", content = @Content)}
                 )),
+        @RouterOperation(method = RequestMethod.POST, path = "/api/v1/cache/batch",
+                beanClass = ShortUrlHandler.class,
+                beanMethod = "getAndCacheShortUrls",
+                operation = @Operation(operationId = "getAndCacheShortUrls",
+                        summary = "[INTERNAL] Get and cache a batch of ShortUrls",
+                        description = "[INTERNAL] Get and cache the ShortUrls for up to 1000 keys in one call. Keys " +
+                                "that are invalid or not found are left out of the response. With warm_up set, the " +
+                                "lookups aren't recorded as accesses. Requires Client Credentials.",
+                        tags = "cache",
+                        security = @SecurityRequirement(name = "Client Credentials"),
+                        requestBody = @RequestBody(required = true, description = "JSON object with the keys",
+                                content = @Content(schema = @Schema(implementation = ShortUrlBatchDto.class), examples = {
+                                        @ExampleObject(value =
+                                                "{\"keys\": [\"Zwn5MX\", \"R3kq9a\"], \"warm_up\": false}"),
+                                })),
+                        responses = {
+                                @ApiResponse(responseCode = "200", description = "The ShortUrls found", content = {
+                                        @Content(schema =
+                                        @Schema(implementation = com.jasonbertolo.urlshortener.api.model.dto.ApiResponse.class),
+                                                mediaType = MediaType.APPLICATION_JSON_VALUE,
+                                                examples = {
+                                                        @ExampleObject("""
+                                                {
+                                                    "status": "ok",
+                                                    "message": "ShortUrlResponseDtos",
+                                                    "data": [{
+                                                        "key": "Zwn5MX",
+                                                        "id": "65c7f311b964ce0ace2cbd21",
+                                                        "url": "https://app.plex.tv/",
+                                                        "created_at": "2024-02-10T22:05:05.220Z",
+                                                        "last_updated_at": "2024-02-10T22:05:05.220Z",
+                                                        "expires_at": "2029-02-09T22:05:05.220Z",
+                                                        "description": "Plex"
+                                                    }]
+                                                }
+                                                """)
+                                                }),
+                                }),
+                                @ApiResponse(responseCode = "400", description = "No keys or too many", content = @Content),
+                                @ApiResponse(responseCode = "401", description = "Unautheticated", content = @Content),
+                                @ApiResponse(responseCode = "403", description = "Not allowed to perform action", content = @Content),
+                                @ApiResponse(responseCode = "500", description = "Unexpected error", content = @Content)}
+                )),
+        @RouterOperation(method = RequestMethod.GET, path = "/api/v1/cache/keys",
+                beanClass = ShortUrlHandler.class,
+                beanMethod = "getLiveKeys",
+                operation = @Operation(operationId = "getLiveKeys",
+                        summary = "[INTERNAL] Export live ShortUrl keys",
+                        description = "[INTERNAL] Stream the keys of all unexpired ShortUrls, one per line. " +
+                                "Requires Client Credentials.",
+                        tags = "cache",
+                        security = @SecurityRequirement(name = "Client Credentials"),
+                        parameters = {@Parameter(in = ParameterIn.QUERY, name = "since", required = false,
+                                description = "Only keys created after this ISO-8601 instant",
+                                example = "2024-02-10T22:05:05.220Z")},
+                        responses = {
+                                @ApiResponse(responseCode = "200", description = "Newline delimited keys", content = {
+                                        @Content(mediaType = MediaType.TEXT_PLAIN_VALUE,
+                                                examples = {@ExampleObject("Zwn5MX\nR3kq9a\n")}),
+                                }),
+                                @ApiResponse(responseCode = "400", description = "Invalid since parameter", content = @Content),
+                                @ApiResponse(responseCode = "401", description = "Unautheticated", content = @Content),
+                                @ApiResponse(responseCode = "403", description = "Not allowed to perform action", content = @Content),
+                                @ApiResponse(responseCode = "500", description = "Unexpected error", content = @Content)}
+                )),
+        @RouterOperation(method = RequestMethod.GET, path = "/api/v1/cache/hot",
+                beanClass = ShortUrlHandler.class,
+                beanMethod = "getHotKeys",
+                operation = @Operation(operationId = "getHotKeys",
+                        summary = "[INTERNAL] Export the most accessed ShortUrl keys",
+                        description = "[INTERNAL] Stream the most accessed ShortUrl keys within the access history " +
+                                "window, most accessed first, one per line. Requires Client Credentials.",
+                        tags = "cache",
+                        security = @SecurityRequirement(name = "Client Credentials"),
+                        parameters = {@Parameter(in = ParameterIn.QUERY, name = "limit", required = false,
+                                description = "Number of keys, 1 to 100000, defaults to the warm-up top keys",
+                                example = "1000")},
+                        responses = {
+                                @ApiResponse(responseCode = "200", description = "Newline delimited keys", content = {
+                                        @Content(mediaType = MediaType.TEXT_PLAIN_VALUE,
+                                                examples = {@ExampleObject("Zwn5MX\nR3kq9a\n")}),
+                                }),
+                                @ApiResponse(responseCode = "400", description = "Invalid limit parameter", content = @Content),
+                                @ApiResponse(responseCode = "401", description = "Unautheticated", content = @Content),
+                                @ApiResponse(responseCode = "403", description = "Not allowed to perform action", content = @Content),
+                                @ApiResponse(responseCode = "500", description = "Unexpected error", content = @Content)}
+                )),
 })
 public @interface ShortUrlSpringDoc {}
@@ -0,0 +1,89 @@
+package com.jasonbertolo.urlshortener.api.component;
+
+import com.jasonbertolo.urlshortener.api.config.settings.UrlShortenerSettings;
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.RSASSASigner;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.security.oauth2.resource.OAuth2ResourceServerProperties;
+import org.springframework.security.oauth2.jwt.JwtException;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Date;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CachingReactiveJwtDecoderTest {
+
+    RSAKey signingKey;
+    SimpleMeterRegistry meterRegistry;
+    CachingReactiveJwtDecoder decoder;
+
+    @BeforeEach
+    void beforeEach() throws JOSEException {
+        signingKey = new RSAKeyGenerator(2048).keyID("key-1").generate();
+        meterRegistry = new SimpleMeterRegistry();
+        decoder = new CachingReactiveJwtDecoder(new UrlShortenerSettings(), new OAuth2ResourceServerProperties(),
+                WebClient.builder(), meterRegistry);
+        decoder.setJwkSet(new JWKSet(signingKey.toPublicJWK()));
+    }
+
+    @Test
+    @DisplayName("JWT cache - signature verified once per token")
+    void verifiesOnce() throws JOSEException {
+        String token = token(signingKey, Instant.now().plus(Duration.ofHours(1)));
+
+        StepVerifier.create(decoder.decode(token))
+                .assertNext(jwt -> assertThat(jwt.getClaimAsStringList("scope")).contains("cache:write"))
+                .verifyComplete();
+        StepVerifier.create(decoder.decode(token))
+                .assertNext(jwt -> assertThat(jwt.getTokenValue()).isEqualTo(token))
+                .verifyComplete();
+
+        assertThat(meterRegistry.get(CachingReactiveJwtDecoder.CACHE_NAME + ".decode").tag("result", "miss")
+                .timer().count()).isEqualTo(1);
+        assertThat(meterRegistry.get(CachingReactiveJwtDecoder.CACHE_NAME + ".decode").tag("result", "hit")
+                .timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("JWT cache - expired or badly signed tokens rejected and not cached")
+    void rejectsInvalid() throws JOSEException {
+        RSAKey otherKey = new RSAKeyGenerator(2048).keyID("key-1").generate();
+        String forged = token(otherKey, Instant.now().plus(Duration.ofHours(1)));
+        String expired = token(signingKey, Instant.now().minus(Duration.ofMinutes(5)));
+
+        for (String token : List.of(forged, forged, expired, expired)) {
+            StepVerifier.create(decoder.decode(token))
+                    .expectError(JwtException.class)
+                    .verify();
+        }
+        assertThat(meterRegistry.get(CachingReactiveJwtDecoder.CACHE_NAME + ".decode").tag("result", "hit")
+                .timer().count()).isZero();
+    }
+
+    private static String token(RSAKey key, Instant expiresAt) throws JOSEException {
+        SignedJWT jwt = new SignedJWT(new JWSHeader.Builder(JWSAlgorithm.RS256).keyID(key.getKeyID()).build(),
+                new JWTClaimsSet.Builder()
+                        .subject("url_shortener")
+                        .claim("scope", List.of("cache:read", "cache:write"))
+                        .issueTime(Date.from(expiresAt.minus(Duration.ofHours(2))))
+                        .expirationTime(Date.from(expiresAt))
+                        .build());
+        jwt.sign(new RSASSASigner(key));
+        return jwt.serialize();
+    }
+}
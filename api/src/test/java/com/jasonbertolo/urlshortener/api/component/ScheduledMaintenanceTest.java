@@ -116,7 +116,7 @@ class ScheduledMaintenanceTest extends AbstractApiIntegrationTest {
         when(mockShortUrlRepository.delete(any())).thenReturn(Mono.empty());
 
         ScheduledMaintenance mockScheduledMaintenance = new ScheduledMaintenance(mockShortUrlRepository,
-                mockReactiveRedisOperations, testUrlShortenerSettings);
+                new KeyShortUrlCacheStore(mockReactiveRedisOperations), testUrlShortenerSettings);
 
         assertDoesNotThrow(mockScheduledMaintenance::cleanup);
 
@@ -140,7 +140,7 @@ class ScheduledMaintenanceTest extends AbstractApiIntegrationTest {
                 .thenReturn(Mono.error(new IllegalStateException("Mock mongo exception")));
 
         ScheduledMaintenance mockScheduledMaintenance = new ScheduledMaintenance(mockShortUrlRepository,
-                mockReactiveRedisOperations, testUrlShortenerSettings);
+                new KeyShortUrlCacheStore(mockReactiveRedisOperations), testUrlShortenerSettings);
 
         assertDoesNotThrow(mockScheduledMaintenance::cleanup);
 
@@ -159,7 +159,7 @@ class ScheduledMaintenanceTest extends AbstractApiIntegrationTest {
         testUrlShortenerSettings.setScheduledMaintenance(mockScheduledMaintenancesettings);
 
         ScheduledMaintenance testScheduledMaintenance = new ScheduledMaintenance(mockShortUrlRepository,
-                mockReactiveRedisOperations, testUrlShortenerSettings);
+                new KeyShortUrlCacheStore(mockReactiveRedisOperations), testUrlShortenerSettings);
 
         assertDoesNotThrow(testScheduledMaintenance::cleanup);
 
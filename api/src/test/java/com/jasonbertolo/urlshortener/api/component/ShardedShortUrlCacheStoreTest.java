@@ -0,0 +1,161 @@
+package com.jasonbertolo.urlshortener.api.component;
+
+import com.jasonbertolo.urlshortener.api.config.settings.UrlShortenerSettings;
+import com.jasonbertolo.urlshortener.api.model.ShortUrl;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ShardedShortUrlCacheStoreTest {
+
+    static final Duration TTL = Duration.ofDays(1);
+
+    InMemoryShortUrlCacheStore storeA;
+    InMemoryShortUrlCacheStore storeB;
+    UrlShortenerSettings.CacheShards settings;
+    ShardedShortUrlCacheStore shardedStore;
+
+    @BeforeEach
+    void beforeEach() {
+        storeA = new InMemoryShortUrlCacheStore();
+        storeB = new InMemoryShortUrlCacheStore();
+        settings = new UrlShortenerSettings.CacheShards();
+        settings.setFailureThreshold(2);
+        shardedStore = new ShardedShortUrlCacheStore(List.of(
+                new ShardedShortUrlCacheStore.Shard("redis-a:6379", storeA, storeA::ping, () -> {}),
+                new ShardedShortUrlCacheStore.Shard("redis-b:6379", storeB, storeB::ping, () -> {})),
+                settings, new SimpleMeterRegistry());
+    }
+
+    @Test
+    @DisplayName("Sharded cache - keys spread across shards and read back")
+    void spreadsKeys() {
+        IntStream.range(0, 1000).forEach(i -> shardedStore.set("key" + i, shortUrl("key" + i), TTL).block());
+
+        assertThat(storeA.values).isNotEmpty();
+        assertThat(storeB.values).isNotEmpty();
+        assertThat(storeA.values.size() + storeB.values.size()).isEqualTo(1000);
+        StepVerifier.create(shardedStore.get("key42"))
+                .consumeNextWith(shortUrl -> assertThat(shortUrl.getKey()).isEqualTo("key42"))
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("Sharded cache - batch reads grouped by shard, a failing shard's keys miss")
+    void getAllByShard() {
+        IntStream.range(0, 100).forEach(i -> shardedStore.set("key" + i, shortUrl("key" + i), TTL).block());
+        List<String> keys = IntStream.range(0, 120).mapToObj(i -> "key" + i).toList();
+
+        assertThat(shardedStore.getAll(keys).collectList().block()).hasSize(100);
+
+        storeA.failing = true;
+        assertThat(shardedStore.getAll(keys).map(ShortUrl::getKey).collectList().block())
+                .containsExactlyInAnyOrderElementsOf(storeB.values.keySet());
+    }
+
+    @Test
+    @DisplayName("Sharded cache - failing shard bypassed and deletes replayed when it's back")
+    void failingShardBypassed() {
+        IntStream.range(0, 100).forEach(i -> shardedStore.set("key" + i, shortUrl("key" + i), TTL).block());
+        String key = storeA.values.keySet().iterator().next();
+
+        storeA.failing = true;
+        shardedStore.get(key).block();
+        shardedStore.get(key).block();
+
+        // Marked down, reads miss without touching the shard and deletes are kept for later
+        storeA.failing = false;
+        StepVerifier.create(shardedStore.get(key))
+                .verifyComplete();
+        StepVerifier.create(shardedStore.delete(key))
+                .expectNext(false)
+                .verifyComplete();
+        assertThat(storeA.values).containsKey(key);
+
+        shardedStore.checkHealth().block();
+
+        assertThat(storeA.values).doesNotContainKey(key);
+        StepVerifier.create(shardedStore.get(key))
+                .verifyComplete();
+    }
+
+    static ShortUrl shortUrl(String key) {
+        return new ShortUrl.Builder()
+                .key(key)
+                .url("https://example.com/" + key)
+                .build();
+    }
+
+    static class InMemoryShortUrlCacheStore implements ShortUrlCacheStore {
+
+        final Map<String, ShortUrl> values = new ConcurrentHashMap<>();
+        volatile boolean failing;
+
+        Mono<String> ping() {
+            return failing ? Mono.error(new IllegalStateException("Shard down")) : Mono.just("PONG");
+        }
+
+        <T> Mono<T> call(Mono<T> mono) {
+            return Mono.defer(() -> failing ? Mono.error(new IllegalStateException("Shard down")) : mono);
+        }
+
+        @Override
+        public Mono<ShortUrl> get(String key) {
+            return call(Mono.fromSupplier(() -> values.get(key)));
+        }
+
+        @Override
+        public Flux<ShortUrl> getAll(List<String> keys) {
+            return call(Mono.fromSupplier(() -> keys.stream().map(values::get).filter(Objects::nonNull).toList()))
+                    .flatMapIterable(shortUrls -> shortUrls);
+        }
+
+        @Override
+        public Mono<ShortUrl> getAndExpire(String key, Duration ttl) {
+            return get(key);
+        }
+
+        @Override
+        public Mono<Duration> getExpire(String key) {
+            return call(Mono.just(TTL));
+        }
+
+        @Override
+        public Mono<Boolean> expire(String key, Duration ttl) {
+            return call(Mono.just(values.containsKey(key)));
+        }
+
+        @Override
+        public Mono<Boolean> set(String key, ShortUrl shortUrl, Duration ttl) {
+            return call(Mono.fromSupplier(() -> values.put(key, shortUrl) == null));
+        }
+
+        @Override
+        public Mono<Boolean> delete(String key) {
+            return call(Mono.fromSupplier(() -> values.remove(key) != null));
+        }
+
+        @Override
+        public Mono<Long> deleteAll(List<String> keys) {
+            return call(Mono.fromSupplier(() -> keys.stream().filter(key -> values.remove(key) != null).count()));
+        }
+
+        @Override
+        public boolean supportsEntryTtl() {
+            return true;
+        }
+    }
+}
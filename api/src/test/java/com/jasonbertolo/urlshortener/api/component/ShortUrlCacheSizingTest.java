@@ -0,0 +1,79 @@
+package com.jasonbertolo.urlshortener.api.component;
+
+import com.jasonbertolo.urlshortener.api.config.settings.UrlShortenerSettings;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class ShortUrlCacheSizingTest {
+
+    UrlShortenerSettings urlShortenerSettings;
+
+    @BeforeEach
+    void beforeEach() {
+        urlShortenerSettings = new UrlShortenerSettings();
+    }
+
+    @Test
+    @DisplayName("Cache sizing - keys sampled at the configured rate, tracked keys bounded")
+    void samplesByHash() {
+        urlShortenerSettings.getCacheSizing().setSampleRate(0.1);
+        urlShortenerSettings.getCacheSizing().setMaximumKeys(1000);
+        ShortUrlCacheSizing cacheSizing = new ShortUrlCacheSizing(urlShortenerSettings);
+
+        IntStream.range(0, 5000).forEach(i -> cacheSizing.record("key" + i));
+        assertThat(cacheSizing.getSampledLookups()).isBetween(400.0, 600.0);
+
+        IntStream.range(0, 50000).forEach(i -> cacheSizing.record("key" + i));
+        assertThat(cacheSizing.getTrackedKeys()).isEqualTo(1000);
+    }
+
+    @Test
+    @DisplayName("Cache sizing - LRU size for a hit ratio found from the sampled reuse distances")
+    void lruCurveOfLoop() {
+        urlShortenerSettings.getCacheSizing().setSampleRate(0.1);
+        ShortUrlCacheSizing cacheSizing = new ShortUrlCacheSizing(urlShortenerSettings);
+
+        // A loop over 20000 keys only hits in an LRU cache that holds all of them, one pass in five is cold
+        IntStream.range(0, 5).forEach(pass -> IntStream.range(0, 20000).forEach(i -> cacheSizing.record("key" + i)));
+
+        Map<Long, Double> curve = cacheSizing.lruCurve();
+        assertThat(ShortUrlCacheSizing.requiredSize(curve, 0.75)).isBetween(18000L, 23000L);
+        assertThat(ShortUrlCacheSizing.requiredSize(curve, 0.99)).isNull();
+        assertThat(cacheSizing.getColdMissRatio()).isCloseTo(0.2, within(0.01));
+    }
+
+    @Test
+    @DisplayName("Cache sizing - TinyLFU keeps hot keys through one-off lookups where LRU doesn't")
+    void tinyLfuCurveOfScan() {
+        urlShortenerSettings.getCacheSizing().setSampleRate(1.0);
+        urlShortenerSettings.getCacheSizing().setMaximumKeys(4096);
+        ShortUrlCacheSizing cacheSizing = new ShortUrlCacheSizing(urlShortenerSettings);
+
+        // Each round looks up 200 hot keys and 200 keys never seen again
+        IntStream.range(0, 30).forEach(round -> {
+            IntStream.range(0, 200).forEach(i -> cacheSizing.record("hot" + i));
+            IntStream.range(0, 200).forEach(i -> cacheSizing.record("scan" + round + "-" + i));
+        });
+
+        double lruMissRatio = missRatioBelow(cacheSizing.lruCurve(), 400);
+        double tinyLfuMissRatio = missRatioBelow(cacheSizing.tinyLfuCurve(), 400);
+        assertThat(lruMissRatio).isGreaterThan(0.95);
+        assertThat(tinyLfuMissRatio).isLessThan(0.6);
+    }
+
+    // Miss ratio at the largest size on the curve under the limit
+    private static double missRatioBelow(Map<Long, Double> curve, long limit) {
+        return curve.entrySet().stream()
+                .filter(point -> point.getKey() < limit)
+                .reduce((first, second) -> second)
+                .orElseThrow()
+                .getValue();
+    }
+}
@@ -0,0 +1,131 @@
+package com.jasonbertolo.urlshortener.api.component;
+
+import com.jasonbertolo.urlshortener.api.model.ShortUrl;
+import com.jasonbertolo.urlshortener.api.model.ShortUrlAccess;
+import com.jasonbertolo.urlshortener.api.repository.ShortUrlRepository;
+import com.jasonbertolo.urlshortener.api.util.AbstractApiIntegrationTest;
+import com.jasonbertolo.urlshortener.api.util.ReactiveMongoRepositoryPopulator;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Date;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+@SpringBootTest(properties = {"url-shortener.scheduled-maintenance.cleanup-cron=-",
+        "url-shortener.warm-up.enabled=true"})
+class ShortUrlCacheWarmUpTest extends AbstractApiIntegrationTest {
+
+    @TestConfiguration
+    static class TestConfig {
+        @Bean
+        ReactiveMongoRepositoryPopulator reactiveMongoRepositoryPopulator(
+                ReactiveMongoOperations reactiveMongoOperations) {
+            return new ReactiveMongoRepositoryPopulator(reactiveMongoOperations, ShortUrl.class,
+                    "/data/sample-shorturls.json", ShortUrlCacheWarmUpTest.class);
+        }
+    }
+
+    @Autowired
+    ShortUrlAccessHistory shortUrlAccessHistory;
+
+    @Autowired
+    ShortUrlRepository shortUrlRepository;
+
+    @Autowired
+    ShortUrlCacheStore shortUrlCacheStore;
+
+    @Autowired
+    ShortUrlCachePolicy shortUrlCachePolicy;
+
+    @AfterEach
+    void afterEach() {
+        reactiveMongoOperations.dropCollection(ShortUrlAccess.class).block();
+    }
+
+    @Test
+    @DisplayName("Cache warm-up - most accessed ShortUrls cached in Redis and locally")
+    void warmsTopKeys() {
+        shortUrlAccessHistory.flush().block();
+        reactiveMongoOperations.dropCollection(ShortUrlAccess.class).block();
+        shortUrlAccessHistory.record("key001");
+        shortUrlAccessHistory.record("key001");
+        shortUrlAccessHistory.record("key002");
+        shortUrlAccessHistory.record("key002");
+        shortUrlAccessHistory.record("key003");
+        shortUrlAccessHistory.flush().block();
+        // Already cached, it's read from Redis rather than the database
+        shortUrlCacheStore.set("key002", shortUrlRepository.findByKeyAndExpiresAtAfter("key002", Instant.now())
+                .block(), Duration.ofMinutes(1)).block();
+
+        urlShortenerSettings.getWarmUp().setTopKeys(2);
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        try {
+            new ShortUrlCacheWarmUp(shortUrlAccessHistory, shortUrlRepository, shortUrlCacheStore,
+                    shortUrlLocalCache, shortUrlCachePolicy, urlShortenerSettings, meterRegistry).run(null);
+        } finally {
+            urlShortenerSettings.getWarmUp().setTopKeys(10000);
+        }
+
+        StepVerifier.create(reactiveRedisOperations.hasKey("key001"))
+                .expectNext(true)
+                .verifyComplete();
+        StepVerifier.create(reactiveRedisOperations.hasKey("key003"))
+                .expectNext(false)
+                .verifyComplete();
+        assertThat(shortUrlLocalCache.get("key001")).isNotNull();
+        assertThat(shortUrlLocalCache.get("key002")).isNotNull();
+        assertThat(meterRegistry.get(ShortUrlCacheWarmUp.METRIC_PREFIX + ".keys").tag("source", "database")
+                .gauge().value()).isEqualTo(1);
+        assertThat(meterRegistry.get(ShortUrlCacheWarmUp.METRIC_PREFIX + ".keys").tag("source", "redis")
+                .gauge().value()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Access history - hits decay so recently popular keys outrank formerly popular ones")
+    void recentHitsOutrankOldHits() {
+        shortUrlAccessHistory.flush().block();
+        reactiveMongoOperations.dropCollection(ShortUrlAccess.class).block();
+        for (int i = 0; i < 10; i++) {
+            shortUrlAccessHistory.record("key001");
+        }
+        shortUrlAccessHistory.flush().block();
+
+        // Three decay intervals later
+        reactiveMongoOperations.upsert(Query.query(Criteria.where("_id").is("decay")),
+                Update.update("decayedAt", Date.from(Instant.now().minus(
+                        urlShortenerSettings.getWarmUp().getHistoryDecayInterval().multipliedBy(3)))),
+                ShortUrlAccessHistory.STATE_COLLECTION).block();
+        for (int i = 0; i < 3; i++) {
+            shortUrlAccessHistory.record("key002");
+        }
+        shortUrlAccessHistory.flush().block();
+
+        StepVerifier.create(shortUrlAccessHistory.topKeys(2))
+                .expectNext("key002", "key001")
+                .verifyComplete();
+        StepVerifier.create(reactiveMongoOperations.findById("key001", ShortUrlAccess.class))
+                .assertNext(access -> assertThat(access.getHits()).isCloseTo(1.25, within(0.01)))
+                .verifyComplete();
+        // Only applied once per interval
+        shortUrlAccessHistory.record("key002");
+        shortUrlAccessHistory.flush().block();
+        StepVerifier.create(reactiveMongoOperations.findById("key002", ShortUrlAccess.class))
+                .assertNext(access -> assertThat(access.getHits()).isEqualTo(4))
+                .verifyComplete();
+    }
+}
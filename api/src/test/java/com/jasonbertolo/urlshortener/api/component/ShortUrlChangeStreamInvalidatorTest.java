@@ -0,0 +1,245 @@
+package com.jasonbertolo.urlshortener.api.component;
+
+import com.jasonbertolo.urlshortener.api.config.settings.UrlShortenerSettings;
+import com.jasonbertolo.urlshortener.api.model.ShortUrl;
+import com.jasonbertolo.urlshortener.api.util.AbstractApiIntegrationTest;
+import com.jasonbertolo.urlshortener.api.util.ReactiveMongoRepositoryPopulator;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.Document;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@SpringBootTest(properties = {"url-shortener.scheduled-maintenance.cleanup-cron=-"})
+class ShortUrlChangeStreamInvalidatorTest extends AbstractApiIntegrationTest {
+
+    @TestConfiguration
+    static class TestConfig {
+        @Bean
+        ReactiveMongoRepositoryPopulator reactiveMongoRepositoryPopulator(
+                ReactiveMongoOperations reactiveMongoOperations) {
+            return new ReactiveMongoRepositoryPopulator(reactiveMongoOperations, ShortUrl.class,
+                    "/data/sample-shorturls.json", ShortUrlChangeStreamInvalidatorTest.class);
+        }
+    }
+
+    @Autowired
+    ShortUrlCacheStore shortUrlCacheStore;
+
+    @Autowired
+    ShortUrlNegativeCache shortUrlNegativeCache;
+
+    @Autowired
+    ShortUrlInvalidationPublisher shortUrlInvalidationPublisher;
+
+    ShortUrlChangeStreamInvalidator invalidator;
+
+    @BeforeEach
+    void beforeEach() {
+        reactiveMongoOperations.find(new Query(), ShortUrl.class)
+                .flatMap(shortUrl -> reactiveRedisOperations.opsForValue().set(shortUrl.getKey(), shortUrl,
+                        Duration.ofDays(urlShortenerSettings.getCacheTtlDays()))).blockLast();
+
+        invalidator = invalidator("instance-a");
+        invalidator.start();
+    }
+
+    @AfterEach
+    void afterEach() {
+        invalidator.stop();
+        reactiveMongoOperations.dropCollection(ShortUrlChangeStreamInvalidator.STATE_COLLECTION).block();
+    }
+
+    @Test
+    @DisplayName("Change stream - deleted and updated ShortUrls evicted from cache")
+    void evictsChangedKeys() {
+        reactiveMongoOperations.remove(Query.query(Criteria.where("_id").is("object001")), ShortUrl.class).block();
+        reactiveMongoOperations.updateFirst(Query.query(Criteria.where("_id").is("object002")),
+                Update.update("url", "https://example.com/edited"), ShortUrl.class).block();
+
+        StepVerifier.create(awaitMissing("key001").then(awaitMissing("key002")))
+                .verifyComplete();
+        StepVerifier.create(reactiveRedisOperations.hasKey("key003"))
+                .expectNext(true)
+                .verifyComplete();
+        // Saved once the batch is done
+        StepVerifier.create(Mono.defer(() -> reactiveMongoOperations.findOne(
+                                        Query.query(Criteria.where("_id").is("short-url:instance-a")),
+                                        Document.class, ShortUrlChangeStreamInvalidator.STATE_COLLECTION))
+                        .filter(state -> state.getString("resumeToken") != null)
+                        .repeatWhenEmpty(repeat -> repeat.delayElements(Duration.ofMillis(100)))
+                        .timeout(Duration.ofSeconds(10)))
+                .expectNextMatches(state -> state.getString("resumeToken") != null)
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("Change stream - each instance keeps its own resume token")
+    void resumeTokenPerInstance() {
+        ShortUrlChangeStreamInvalidator other = invalidator("instance-b");
+        other.start();
+        try {
+            reactiveMongoOperations.remove(Query.query(Criteria.where("_id").is("object001")), ShortUrl.class)
+                    .block();
+
+            StepVerifier.create(Mono.defer(() -> reactiveMongoOperations.find(new Query(), Document.class,
+                                            ShortUrlChangeStreamInvalidator.STATE_COLLECTION)
+                                    .map(state -> state.getString("_id"))
+                                    .collectList())
+                            .filter(ids -> ids.containsAll(List.of("short-url:instance-a",
+                                    "short-url:instance-b")))
+                            .repeatWhenEmpty(repeat -> repeat.delayElements(Duration.ofMillis(100)))
+                            .timeout(Duration.ofSeconds(10)))
+                    .expectNextCount(1)
+                    .verifyComplete();
+        } finally {
+            other.stop();
+        }
+    }
+
+    @Test
+    @DisplayName("Change stream - restarts from the time of the failure when its start is no longer in the oplog")
+    void restartsAfterHistoryLost() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        ShortUrlChangeStreamInvalidator other = invalidator("instance-b", meterRegistry);
+        // Long before the replica set was started, like an instance running for longer than the oplog window
+        other.start(Instant.now().minus(Duration.ofDays(365)));
+        try {
+            StepVerifier.create(Mono.fromSupplier(() -> meterRegistry.counter(
+                                    ShortUrlChangeStreamInvalidator.METRIC_PREFIX + ".history.lost").count())
+                            .filter(count -> count > 0)
+                            .repeatWhenEmpty(repeat -> repeat.delayElements(Duration.ofMillis(100)))
+                            .timeout(Duration.ofSeconds(10)))
+                    .expectNext(1.0)
+                    .verifyComplete();
+
+            reactiveMongoOperations.remove(Query.query(Criteria.where("_id").is("object001")), ShortUrl.class)
+                    .block();
+
+            // Only saved once the retried stream has read the delete
+            StepVerifier.create(Mono.defer(() -> reactiveMongoOperations.findOne(
+                                            Query.query(Criteria.where("_id").is("short-url:instance-b")),
+                                            Document.class, ShortUrlChangeStreamInvalidator.STATE_COLLECTION))
+                            .repeatWhenEmpty(repeat -> repeat.delayElements(Duration.ofMillis(100)))
+                            .timeout(Duration.ofSeconds(10)))
+                    .expectNextMatches(state -> state.getString("resumeToken") != null)
+                    .verifyComplete();
+            assertThat(meterRegistry.counter(ShortUrlChangeStreamInvalidator.METRIC_PREFIX + ".history.lost")
+                    .count()).isEqualTo(1.0);
+        } finally {
+            other.stop();
+        }
+    }
+
+    @Test
+    @DisplayName("Change stream - only the lease holder evicts Redis and publishes, the lease passes on at stop")
+    void sharedCachesEvictedByLeaseHolder() {
+        // Releases the lease taken in beforeEach
+        invalidator.stop();
+        ShortUrlInvalidationPublisher publisherB = publisher();
+        ShortUrlInvalidationPublisher publisherC = publisher();
+        ShortUrlChangeStreamInvalidator invalidatorB = invalidator("instance-b", new SimpleMeterRegistry(),
+                publisherB);
+        ShortUrlChangeStreamInvalidator invalidatorC = invalidator("instance-c", new SimpleMeterRegistry(),
+                publisherC);
+        invalidatorB.start();
+        invalidatorC.start();
+        try {
+            StepVerifier.create(leaseOwner())
+                    .expectNext("instance-b")
+                    .verifyComplete();
+
+            reactiveMongoOperations.remove(Query.query(Criteria.where("_id").is("object001")), ShortUrl.class)
+                    .block();
+
+            StepVerifier.create(awaitMissing("key001"))
+                    .verifyComplete();
+            verify(publisherB, timeout(10000)).publishAll(argThat(keys -> keys.contains("key001")));
+            verify(publisherC, never()).publishAll(any());
+
+            invalidatorB.stop();
+            // C resumes the shared stream from the token B saved
+            StepVerifier.create(Mono.defer(this::leaseOwner)
+                            .filter("instance-c"::equals)
+                            .repeatWhenEmpty(repeat -> repeat.delayElements(Duration.ofMillis(100)))
+                            .timeout(Duration.ofSeconds(30)))
+                    .expectNext("instance-c")
+                    .verifyComplete();
+            reactiveMongoOperations.remove(Query.query(Criteria.where("_id").is("object002")), ShortUrl.class)
+                    .block();
+
+            StepVerifier.create(awaitMissing("key002"))
+                    .verifyComplete();
+            verify(publisherC, timeout(10000)).publishAll(argThat(keys -> keys.contains("key002")));
+            verify(publisherB, never()).publishAll(argThat(keys -> keys.contains("key002")));
+        } finally {
+            invalidatorB.stop();
+            invalidatorC.stop();
+        }
+    }
+
+    private Mono<String> leaseOwner() {
+        return reactiveMongoOperations.findOne(
+                        Query.query(Criteria.where("_id").is(ShortUrlChangeStreamInvalidator.SHARED_STATE_ID)),
+                        Document.class, ShortUrlChangeStreamInvalidator.STATE_COLLECTION)
+                .mapNotNull(state -> state.getString("leaseOwner"));
+    }
+
+    private static ShortUrlInvalidationPublisher publisher() {
+        ShortUrlInvalidationPublisher publisher = mock(ShortUrlInvalidationPublisher.class);
+        when(publisher.publishAll(any())).thenReturn(Mono.empty());
+        when(publisher.publishAllCreated(any())).thenReturn(Mono.empty());
+        return publisher;
+    }
+
+    private ShortUrlChangeStreamInvalidator invalidator(String instanceId) {
+        return invalidator(instanceId, new SimpleMeterRegistry());
+    }
+
+    private ShortUrlChangeStreamInvalidator invalidator(String instanceId, SimpleMeterRegistry meterRegistry) {
+        return invalidator(instanceId, meterRegistry, shortUrlInvalidationPublisher);
+    }
+
+    private ShortUrlChangeStreamInvalidator invalidator(String instanceId, SimpleMeterRegistry meterRegistry,
+                                                        ShortUrlInvalidationPublisher publisher) {
+        UrlShortenerSettings testUrlShortenerSettings = new UrlShortenerSettings();
+        testUrlShortenerSettings.getChangeStream().setEnabled(true);
+        testUrlShortenerSettings.getChangeStream().setInstanceId(instanceId);
+        testUrlShortenerSettings.getChangeStream().setBatchWindow(Duration.ofMillis(50));
+        testUrlShortenerSettings.getChangeStream().setLeaseDuration(Duration.ofSeconds(3));
+        return new ShortUrlChangeStreamInvalidator(reactiveMongoOperations, shortUrlCacheStore,
+                shortUrlLocalCache, shortUrlNegativeCache, publisher, testUrlShortenerSettings, meterRegistry);
+    }
+
+    private Mono<Boolean> awaitMissing(String key) {
+        return Mono.defer(() -> reactiveRedisOperations.hasKey(key))
+                .filter(exists -> !exists)
+                .repeatWhenEmpty(repeat -> repeat.delayElements(Duration.ofMillis(100)))
+                .timeout(Duration.ofSeconds(10))
+                .then(Mono.empty());
+    }
+}
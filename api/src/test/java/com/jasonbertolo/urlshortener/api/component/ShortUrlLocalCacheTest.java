@@ -0,0 +1,242 @@
+package com.jasonbertolo.urlshortener.api.component;
+
+import com.jasonbertolo.urlshortener.api.config.WebConfig;
+import com.jasonbertolo.urlshortener.api.config.settings.UrlShortenerSettings;
+import com.jasonbertolo.urlshortener.api.model.ShortUrl;
+import com.jasonbertolo.urlshortener.api.model.dto.ApiResponse;
+import com.jasonbertolo.urlshortener.api.model.dto.ShortUrlResponseDto;
+import com.jasonbertolo.urlshortener.contract.ShortUrlCacheKeys;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.json.Jackson2JsonEncoder;
+import org.springframework.util.unit.DataSize;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ShortUrlLocalCacheTest {
+
+    UrlShortenerSettings urlShortenerSettings;
+
+    @BeforeEach
+    void beforeEach() {
+        urlShortenerSettings = new UrlShortenerSettings();
+        urlShortenerSettings.getLocalCache().setMaximumSize(DataSize.ofKilobytes(256));
+        urlShortenerSettings.getLocalCache().setTracking(false);
+    }
+
+    @Test
+    @DisplayName("Local cache - round trip and invalidate")
+    void roundTrip() {
+        ShortUrlLocalCache localCache = new ShortUrlLocalCache(urlShortenerSettings, new SimpleMeterRegistry());
+
+        localCache.put("abc123", shortUrl("abc123"), localCache.stamp("abc123"));
+
+        assertThat(localCache.get("abc123").getUrl()).isEqualTo("https://example.com/abc123");
+        localCache.invalidate("abc123");
+        assertThat(localCache.get("abc123")).isNull();
+    }
+
+    @Test
+    @DisplayName("Local cache - value read before an invalidation isn't cached")
+    void stalePutSkipped() {
+        ShortUrlLocalCache localCache = new ShortUrlLocalCache(urlShortenerSettings, new SimpleMeterRegistry());
+
+        long stamp = localCache.stamp("abc123");
+        localCache.invalidate("abc123");
+        localCache.put("abc123", shortUrl("abc123"), stamp);
+
+        assertThat(localCache.get("abc123")).isNull();
+    }
+
+    @Test
+    @DisplayName("Local cache - invalidating one key doesn't skip values read for others")
+    void unrelatedInvalidation() {
+        ShortUrlLocalCache localCache = new ShortUrlLocalCache(urlShortenerSettings, new SimpleMeterRegistry());
+        String neighbour = IntStream.range(0, 10000)
+                .mapToObj(i -> String.format("k%05d", i))
+                .filter(key -> segmentOf(key) == segmentOf("abc123"))
+                .findFirst()
+                .orElseThrow();
+
+        long stamp = localCache.stamp("abc123");
+        localCache.invalidate(neighbour);
+        localCache.put("abc123", shortUrl("abc123"), stamp);
+
+        assertThat(localCache.get("abc123")).isNotNull();
+    }
+
+    @Test
+    @DisplayName("Local cache - hash layout, a changed bucket drops its keys and skips values read before")
+    void bucketInvalidation() {
+        urlShortenerSettings.setCacheLayout(ShortUrlCacheKeys.Layout.HASH);
+        urlShortenerSettings.setCacheBucketCount(16);
+        ShortUrlLocalCache localCache = new ShortUrlLocalCache(urlShortenerSettings, new SimpleMeterRegistry());
+        String bucket = ShortUrlCacheKeys.bucketKey("abc123", 16);
+        Map<Boolean, List<String>> keys = IntStream.range(0, 1000)
+                .mapToObj(i -> String.format("k%05d", i))
+                .collect(Collectors.partitioningBy(key -> ShortUrlCacheKeys.bucketKey(key, 16).equals(bucket)));
+        List<String> otherBuckets = keys.get(false).subList(0, 20);
+        String sameBucket = keys.get(true).get(0);
+        otherBuckets.forEach(key -> localCache.put(key, shortUrl(key), localCache.stamp(key)));
+        localCache.put("abc123", shortUrl("abc123"), localCache.stamp("abc123"));
+
+        long stamp = localCache.stamp(sameBucket);
+        localCache.invalidateBucket(bucket);
+        localCache.put(sameBucket, shortUrl(sameBucket), stamp);
+
+        assertThat(localCache.get("abc123")).isNull();
+        assertThat(localCache.get(sameBucket)).isNull();
+        otherBuckets.forEach(key -> assertThat(localCache.get(key)).isNotNull());
+    }
+
+    @Test
+    @DisplayName("Local cache - nothing served while suspended")
+    void suspended() {
+        ShortUrlLocalCache localCache = new ShortUrlLocalCache(urlShortenerSettings, new SimpleMeterRegistry());
+        localCache.put("abc123", shortUrl("abc123"), localCache.stamp("abc123"));
+
+        localCache.suspend();
+
+        assertThat(localCache.get("abc123")).isNull();
+        localCache.resume();
+        assertThat(localCache.get("abc123")).isNull();
+    }
+
+    @Test
+    @DisplayName("Local cache - entries expire after ttl")
+    void expires() {
+        urlShortenerSettings.getLocalCache().setTtl(Duration.ZERO);
+        ShortUrlLocalCache localCache = new ShortUrlLocalCache(urlShortenerSettings, new SimpleMeterRegistry());
+
+        localCache.put("abc123", shortUrl("abc123"), localCache.stamp("abc123"));
+
+        assertThat(localCache.get("abc123")).isNull();
+    }
+
+    @Test
+    @DisplayName("Local cache - bounded by size, hot keys survive a scan of one-off keys")
+    void admission() {
+        ShortUrlLocalCache localCache = new ShortUrlLocalCache(urlShortenerSettings, new SimpleMeterRegistry());
+        IntStream.range(0, 200).forEach(i -> {
+            String key = "hot" + i;
+            IntStream.range(0, 5).forEach(n -> localCache.get(key));
+            localCache.put(key, shortUrl(key), localCache.stamp(key));
+        });
+
+        // Hot keys keep being requested while a stream of keys requested once goes through the cache
+        IntStream.range(0, 20000).forEach(i -> {
+            String key = "once" + i;
+            if (localCache.get(key) == null) {
+                localCache.put(key, shortUrl(key), localCache.stamp(key));
+            }
+            if (i % 100 == 0) {
+                IntStream.range(0, 200).forEach(n -> localCache.get("hot" + n));
+            }
+        });
+
+        assertThat(localCache.weight()).isLessThanOrEqualTo(DataSize.ofKilobytes(256).toBytes());
+        long hotHits = IntStream.range(0, 200).filter(i -> localCache.get("hot" + i) != null).count();
+        assertThat(hotHits).isGreaterThan(180);
+    }
+
+    @Test
+    @DisplayName("Local cache - refused admission evicts nothing and keeps the entry it would replace")
+    void refusedAdmissionKeepsEntries() {
+        // Room for about three entries per segment
+        urlShortenerSettings.getLocalCache().setMaximumSize(DataSize.ofBytes(64 * 600));
+        ShortUrlLocalCache localCache = new ShortUrlLocalCache(urlShortenerSettings, new SimpleMeterRegistry());
+        List<String> keys = IntStream.range(0, 10000)
+                .mapToObj(i -> String.format("k%05d", i))
+                .filter(key -> segmentOf(key) == segmentOf("abc123"))
+                .limit(2)
+                .toList();
+        localCache.put("abc123", shortUrl("abc123"), localCache.stamp("abc123"));
+        keys.forEach(key -> {
+            IntStream.range(0, 5).forEach(n -> localCache.get(key));
+            localCache.put(key, shortUrl(key), localCache.stamp(key));
+        });
+
+        ShortUrl larger = new ShortUrl.Builder()
+                .key("abc123")
+                .url("https://example.com/" + "a".repeat(300))
+                .build();
+        localCache.put("abc123", larger, localCache.stamp("abc123"));
+
+        assertThat(localCache.get("abc123").getUrl()).isEqualTo("https://example.com/abc123");
+        keys.forEach(key -> assertThat(localCache.get(key)).isNotNull());
+    }
+
+    @Test
+    @DisplayName("Local cache - response body kept with the entry as the encoder writes it")
+    void responseBody() throws Exception {
+        urlShortenerSettings.getLocalCache().setResponseBodies(true);
+        ShortUrlLocalCache localCache = new ShortUrlLocalCache(urlShortenerSettings, new SimpleMeterRegistry());
+        ShortUrl expired = new ShortUrl.Builder()
+                .key("exp123")
+                .url("https://example.com/exp123")
+                .expiresAt(Instant.now().minusSeconds(1))
+                .build();
+
+        localCache.put("abc123", shortUrl("abc123"), localCache.stamp("abc123"));
+        localCache.put("exp123", expired, localCache.stamp("exp123"));
+
+        assertThat(localCache.getResponseBody("abc123")).isEqualTo(WebConfig.responseObjectMapper()
+                .writeValueAsBytes(new ApiResponse<>(new ShortUrlResponseDto(shortUrl("abc123")))));
+        assertThat(localCache.getResponseBody("exp123")).isNull();
+    }
+
+    @Test
+    @DisplayName("Local cache - response body hit allocates a fraction of decoding and encoding the ShortUrl")
+    void responseBodyAllocation() {
+        urlShortenerSettings.getLocalCache().setResponseBodies(true);
+        ShortUrlLocalCache localCache = new ShortUrlLocalCache(urlShortenerSettings, new SimpleMeterRegistry());
+        localCache.put("abc123", shortUrl("abc123"), localCache.stamp("abc123"));
+        Jackson2JsonEncoder encoder = new Jackson2JsonEncoder(WebConfig.responseObjectMapper());
+        DefaultDataBufferFactory bufferFactory = DefaultDataBufferFactory.sharedInstance;
+        ResolvableType type = ResolvableType.forClass(ApiResponse.class);
+
+        Runnable mapped = () -> encoder.encodeValue(
+                new ApiResponse<>(new ShortUrlResponseDto(localCache.get("abc123"))),
+                bufferFactory, type, MediaType.APPLICATION_JSON, null);
+        Runnable rendered = () -> bufferFactory.wrap(localCache.getResponseBody("abc123"));
+
+        assertThat(allocatedBytes(rendered)).isLessThan(allocatedBytes(mapped) / 4);
+    }
+
+    // Bytes this thread allocates per run, after runs to warm up the JIT
+    private static long allocatedBytes(Runnable runnable) {
+        com.sun.management.ThreadMXBean threadMXBean =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        IntStream.range(0, 20000).forEach(i -> runnable.run());
+        long threadId = Thread.currentThread().getId();
+        long before = threadMXBean.getThreadAllocatedBytes(threadId);
+        IntStream.range(0, 10000).forEach(i -> runnable.run());
+        return (threadMXBean.getThreadAllocatedBytes(threadId) - before) / 10000;
+    }
+
+    // Mirrors ShortUrlLocalCache.segmentFor with the KEY layout
+    static int segmentOf(String key) {
+        int h = key.hashCode();
+        return (h ^ (h >>> 16)) & 63;
+    }
+
+    static ShortUrl shortUrl(String key) {
+        return new ShortUrl.Builder()
+                .key(key)
+                .url("https://example.com/" + key)
+                .build();
+    }
+}
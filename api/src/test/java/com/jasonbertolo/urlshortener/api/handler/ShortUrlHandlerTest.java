@@ -3,10 +3,19 @@ package com.jasonbertolo.urlshortener.api.handler;
 import ch.qos.logback.classic.Level;
 import ch.qos.logback.classic.Logger;
 import com.google.common.net.UrlEscapers;
+import com.jasonbertolo.urlshortener.api.component.HashShortUrlCacheStore;
+import com.jasonbertolo.urlshortener.api.component.ShortUrlAccessHistory;
+import com.jasonbertolo.urlshortener.api.component.ShortUrlCachePolicy;
+import com.jasonbertolo.urlshortener.api.component.ShortUrlCacheSizing;
+import com.jasonbertolo.urlshortener.api.component.ShortUrlCacheStore;
+import com.jasonbertolo.urlshortener.api.component.ShortUrlInvalidationPublisher;
+import com.jasonbertolo.urlshortener.api.component.ShortUrlNegativeCache;
 import com.jasonbertolo.urlshortener.api.config.settings.UrlShortenerSettings;
 import com.jasonbertolo.urlshortener.api.exception.AccessDeniedException;
 import com.jasonbertolo.urlshortener.api.exception.KeyExistsException;
 import com.jasonbertolo.urlshortener.api.model.ShortUrl;
+import com.jasonbertolo.urlshortener.api.model.ShortUrlAccess;
+import com.jasonbertolo.urlshortener.api.model.dto.ShortUrlBatchDto;
 import com.jasonbertolo.urlshortener.api.model.dto.ShortUrlCreateDto;
 import com.jasonbertolo.urlshortener.api.repository.ShortUrlRepository;
 import com.jasonbertolo.urlshortener.api.service.ShortUrlService;
@@ -14,6 +23,7 @@ import com.jasonbertolo.urlshortener.api.util.AbstractApiIntegrationTest;
 import com.jasonbertolo.urlshortener.api.util.ReactiveMongoRepositoryPopulator;
 import com.jasonbertolo.urlshortener.api.util.WithMockApiUser;
 import com.jasonbertolo.urlshortener.api.util.WithMockClient;
+import com.jasonbertolo.urlshortener.contract.ShortUrlCacheKeys;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -28,28 +38,45 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.context.TestConfiguration;
 import org.springframework.context.annotation.Bean;
 import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.connection.ReactiveRedisConnectionFactory;
+import org.springframework.data.redis.connection.ReactiveSubscription;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.ReactiveRedisMessageListenerContainer;
 import org.springframework.test.web.reactive.server.WebTestClient;
 import org.springframework.web.reactive.function.server.ServerRequest;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.test.StepVerifier;
 
 import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
 import java.util.UUID;
+import java.util.function.BooleanSupplier;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
 import static com.jasonbertolo.urlshortener.api.model.dto.ApiResponse.OK;
+import static com.jasonbertolo.urlshortener.contract.ShortUrlCacheKeys.bucketKey;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.hamcrest.Matchers.hasItems;
 import static org.hamcrest.Matchers.startsWith;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.http.MediaType.APPLICATION_JSON;
 
-@SpringBootTest(properties = {"url-shortener.scheduled-maintenance.cleanup-enabled=false"})
+@SpringBootTest(properties = {"url-shortener.scheduled-maintenance.cleanup-enabled=false",
+        "url-shortener.warm-up.enabled=true"})
 @AutoConfigureWebTestClient
 class ShortUrlHandlerTest extends AbstractApiIntegrationTest {
 
@@ -66,6 +93,33 @@ class ShortUrlHandlerTest extends AbstractApiIntegrationTest {
     @Autowired
     WebTestClient webTestClient;
 
+    @Autowired
+    ShortUrlNegativeCache shortUrlNegativeCache;
+
+    @Autowired
+    ShortUrlCachePolicy shortUrlCachePolicy;
+
+    @Autowired
+    ShortUrlCacheStore shortUrlCacheStore;
+
+    @Autowired
+    ShortUrlAccessHistory shortUrlAccessHistory;
+
+    @Autowired
+    ShortUrlCacheSizing shortUrlCacheSizing;
+
+    @Autowired
+    ShortUrlInvalidationPublisher shortUrlInvalidationPublisher;
+
+    @Autowired
+    ShortUrlRepository shortUrlRepository;
+
+    @Autowired
+    ReactiveStringRedisTemplate reactiveStringRedisTemplate;
+
+    @Autowired
+    ReactiveRedisConnectionFactory reactiveRedisConnectionFactory;
+
     String docsUrl;
 
     @BeforeEach
@@ -286,8 +340,9 @@ class ShortUrlHandlerTest extends AbstractApiIntegrationTest {
     @WithMockApiUser
     void createUserShortUrlDuplicateKey() {
         ShortUrlRepository mockSortUrlRepository = mock(ShortUrlRepository.class);
-        ShortUrlService shortUrlService = new ShortUrlService(mockSortUrlRepository, reactiveRedisOperations,
-                urlShortenerSettings);
+        ShortUrlService shortUrlService = new ShortUrlService(mockSortUrlRepository, shortUrlCacheStore,
+                shortUrlLocalCache, shortUrlNegativeCache, shortUrlCachePolicy, shortUrlAccessHistory,
+                shortUrlCacheSizing, shortUrlInvalidationPublisher, urlShortenerSettings);
 
         when(mockSortUrlRepository.findByKeyAndExpiresAtAfter(anyString(), any())).thenReturn(Mono.just(new ShortUrl()));
 
@@ -611,6 +666,29 @@ class ShortUrlHandlerTest extends AbstractApiIntegrationTest {
                 .verifyComplete();
     }
 
+    @Test
+    @DisplayName("Delete User ShortUrl - key published to the web near caches")
+    @WithMockApiUser
+    void deleteUserShortUrlPublishesInvalidation() {
+        ReactiveRedisMessageListenerContainer container = new ReactiveRedisMessageListenerContainer(
+                reactiveRedisConnectionFactory);
+        try {
+            Flux<String> invalidated = container.receiveLater(ChannelTopic.of(ShortUrlCacheKeys.INVALIDATION_CHANNEL))
+                    .block(Duration.ofSeconds(5))
+                    .map(ReactiveSubscription.Message::getMessage);
+
+            StepVerifier.create(invalidated.take(1).timeout(Duration.ofSeconds(5)))
+                    .then(() -> webTestClient
+                            .delete().uri("/api/v1/shorturl/object001")
+                            .exchange()
+                            .expectStatus().isNoContent())
+                    .expectNext("key001")
+                    .verifyComplete();
+        } finally {
+            container.destroy();
+        }
+    }
+
     @Test
     @DisplayName("Delete User ShortUrl - bad request, id too long")
     @WithMockApiUser
@@ -827,6 +905,272 @@ class ShortUrlHandlerTest extends AbstractApiIntegrationTest {
                 .jsonPath("$.traceId").value(v -> assertEquals(UUID.fromString((String)v).toString(), v));
     }
 
+    @Test
+    @DisplayName("Get and cache ShortUrl - not found, negatively cached until key is created")
+    @WithMockClient
+    void getAndCacheShortUrlNotFoundNegativeCached() {
+        webTestClient
+                .get().uri("/api/v1/cache/abc123")
+                .exchange()
+                .expectStatus().isNotFound();
+
+        StepVerifier
+                .create(reactiveStringRedisTemplate.hasKey(ShortUrlNegativeCache.KEY_PREFIX + "abc123"))
+                .expectNext(true)
+                .verifyComplete();
+
+        // Written behind the service's back, the database is no longer consulted for this key
+        ShortUrl shortUrl = new ShortUrl.Builder()
+                .key("abc123")
+                .url("https://example.com")
+                .expiresAt(Instant.now().plus(Duration.ofDays(1)))
+                .build();
+        shortUrl.setId("object999");
+        reactiveMongoOperations.save(shortUrl).block();
+
+        webTestClient
+                .get().uri("/api/v1/cache/abc123")
+                .exchange()
+                .expectStatus().isNotFound();
+
+        // Issuing the key clears the tombstone and caches the new ShortUrl
+        ShortUrlRepository mockSortUrlRepository = mock(ShortUrlRepository.class);
+        ShortUrlService shortUrlService = new ShortUrlService(mockSortUrlRepository, shortUrlCacheStore,
+                shortUrlLocalCache, shortUrlNegativeCache, shortUrlCachePolicy, shortUrlAccessHistory,
+                shortUrlCacheSizing, shortUrlInvalidationPublisher, urlShortenerSettings);
+        when(mockSortUrlRepository.findByKeyAndExpiresAtAfter(anyString(), any())).thenReturn(Mono.empty());
+        when(mockSortUrlRepository.save(any(ShortUrl.class))).thenReturn(Mono.just(shortUrl));
+
+        ShortUrlCreateDto dto = new ShortUrlCreateDto();
+        dto.setUrl("https://example.com");
+
+        StepVerifier.create(shortUrlService.createShortUrl(dto, "user"))
+                .expectNextCount(1)
+                .verifyComplete();
+
+        StepVerifier
+                .create(reactiveStringRedisTemplate.hasKey(ShortUrlNegativeCache.KEY_PREFIX + "abc123"))
+                .expectNext(false)
+                .verifyComplete();
+
+        webTestClient
+                .get().uri("/api/v1/cache/abc123")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.data.key").isEqualTo("abc123");
+    }
+
+    @Test
+    @DisplayName("Create User ShortUrl - saved and cached when the key's tombstone can't be cleared")
+    void createUserShortUrlNegativeCacheClearFails() {
+        ShortUrlNegativeCache mockShortUrlNegativeCache = mock(ShortUrlNegativeCache.class);
+        ShortUrlService shortUrlService = new ShortUrlService(shortUrlRepository, shortUrlCacheStore,
+                shortUrlLocalCache, mockShortUrlNegativeCache, shortUrlCachePolicy, shortUrlAccessHistory,
+                shortUrlCacheSizing, shortUrlInvalidationPublisher, urlShortenerSettings);
+        when(mockShortUrlNegativeCache.clear(anyString()))
+                .thenReturn(Mono.error(new RedisConnectionFailureException("Redis is down")));
+
+        ShortUrlCreateDto dto = new ShortUrlCreateDto();
+        dto.setUrl("https://example.com/tombstone-clear-fails");
+
+        ShortUrl created = shortUrlService.createShortUrl(dto, "user").block();
+
+        assertThat(created).isNotNull();
+        // Retried before giving up
+        verify(mockShortUrlNegativeCache, times(3)).clear(created.getKey());
+        // Saved once, so a client has no reason to create it again
+        StepVerifier.create(reactiveMongoOperations.count(Query.query(Criteria.where("url")
+                        .is("https://example.com/tombstone-clear-fails")), ShortUrl.class))
+                .expectNext(1L)
+                .verifyComplete();
+        // Cached, which is read before the tombstone
+        StepVerifier.create(shortUrlCacheStore.get(created.getKey()))
+                .assertNext(cached -> assertThat(cached.getId()).isEqualTo(created.getId()))
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("Get and cache ShortUrl - hit extends TTL below threshold")
+    @WithMockClient
+    void getAndCacheShortUrlExtendsTtl() {
+        reactiveRedisOperations.expire("key001", Duration.ofDays(1)).block();
+
+        webTestClient
+                .get().uri("/api/v1/cache/key001")
+                .exchange()
+                .expectStatus().isOk();
+
+        StepVerifier
+                .create(reactiveRedisOperations.getExpire("key001"))
+                .consumeNextWith(ttl -> assertThat(ttl).isGreaterThan(Duration.ofDays(
+                        urlShortenerSettings.getCacheTtlDays() - 1L)))
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("Get and cache ShortUrl - concurrent misses share one database load")
+    void getAndCacheShortUrlConcurrentMissesCoalesced() {
+        ShortUrl shortUrl = new ShortUrl.Builder()
+                .key("xyz789")
+                .url("https://example.com")
+                .expiresAt(Instant.now().plus(Duration.ofDays(1)))
+                .build();
+        ShortUrlRepository mockSortUrlRepository = mock(ShortUrlRepository.class);
+        ShortUrlService shortUrlService = new ShortUrlService(mockSortUrlRepository, shortUrlCacheStore,
+                shortUrlLocalCache, shortUrlNegativeCache, shortUrlCachePolicy, shortUrlAccessHistory,
+                shortUrlCacheSizing, shortUrlInvalidationPublisher, urlShortenerSettings);
+        when(mockSortUrlRepository.findByKeyAndExpiresAtAfter(eq("xyz789"), any()))
+                .thenReturn(Mono.just(shortUrl).delayElement(Duration.ofMillis(200)));
+
+        StepVerifier.create(Flux.range(0, 20).flatMap(i -> shortUrlService.getAndCacheShortUrl("xyz789")))
+                .expectNextCount(20)
+                .verifyComplete();
+
+        verify(mockSortUrlRepository, times(1)).findByKeyAndExpiresAtAfter(eq("xyz789"), any());
+    }
+
+    @Test
+    @DisplayName("Get and cache ShortUrl batch - misses share loads with concurrent lookups, tombstones skipped")
+    void getAndCacheShortUrlsConcurrentMissesCoalesced() {
+        ShortUrl single = new ShortUrl.Builder()
+                .key("xyz789")
+                .url("https://example.com/single")
+                .expiresAt(Instant.now().plus(Duration.ofDays(1)))
+                .build();
+        ShortUrl batched = new ShortUrl.Builder()
+                .key("abc123")
+                .url("https://example.com/batched")
+                .expiresAt(Instant.now().plus(Duration.ofDays(1)))
+                .build();
+        ShortUrlRepository mockSortUrlRepository = mock(ShortUrlRepository.class);
+        ShortUrlService shortUrlService = new ShortUrlService(mockSortUrlRepository, shortUrlCacheStore,
+                shortUrlLocalCache, shortUrlNegativeCache, shortUrlCachePolicy, shortUrlAccessHistory,
+                shortUrlCacheSizing, shortUrlInvalidationPublisher, urlShortenerSettings);
+        when(mockSortUrlRepository.findByKeyAndExpiresAtAfter(eq("xyz789"), any()))
+                .thenReturn(Mono.just(single).delayElement(Duration.ofMillis(200)));
+        when(mockSortUrlRepository.findByKeyInAndExpiresAtAfter(any(), any()))
+                .thenReturn(Flux.just(batched).delayElements(Duration.ofMillis(200)));
+        shortUrlNegativeCache.markMissing("nokey2").block();
+        ShortUrlBatchDto dto = new ShortUrlBatchDto();
+        dto.setKeys(List.of("xyz789", "abc123", "nokey2"));
+
+        // The batches start while the single lookup is loading
+        StepVerifier.create(Flux.merge(shortUrlService.getAndCacheShortUrl("xyz789"), Flux.range(0, 5)
+                        .delaySubscription(Duration.ofMillis(100))
+                        .flatMap(i -> shortUrlService.getAndCacheShortUrls(dto))))
+                .expectNextCount(11)
+                .verifyComplete();
+
+        verify(mockSortUrlRepository, times(1)).findByKeyAndExpiresAtAfter(eq("xyz789"), any());
+        verify(mockSortUrlRepository, times(1)).findByKeyInAndExpiresAtAfter(eq(List.of("abc123")), any());
+    }
+
+    @Test
+    @DisplayName("Get and cache ShortUrl - hash layout caches and invalidates in buckets")
+    void getAndCacheShortUrlHashLayout() {
+        ShortUrl shortUrl = new ShortUrl.Builder()
+                .key("xyz789")
+                .url("https://example.com")
+                .expiresAt(Instant.now().plus(Duration.ofDays(1)))
+                .build();
+        shortUrl.setId("object999");
+        ShortUrlRepository mockSortUrlRepository = mock(ShortUrlRepository.class);
+        HashShortUrlCacheStore hashShortUrlCacheStore = new HashShortUrlCacheStore(reactiveRedisOperations, 16);
+        ShortUrlService shortUrlService = new ShortUrlService(mockSortUrlRepository, hashShortUrlCacheStore,
+                shortUrlLocalCache, shortUrlNegativeCache, shortUrlCachePolicy, shortUrlAccessHistory,
+                shortUrlCacheSizing, shortUrlInvalidationPublisher, urlShortenerSettings);
+        when(mockSortUrlRepository.findByKeyAndExpiresAtAfter(eq("xyz789"), any())).thenReturn(Mono.just(shortUrl));
+        when(mockSortUrlRepository.findByIdAndCreatedByAndExpiresAtAfter(eq("object999"), eq("user"), any()))
+                .thenReturn(Mono.just(shortUrl));
+        when(mockSortUrlRepository.deleteById("object999")).thenReturn(Mono.empty());
+
+        StepVerifier.create(shortUrlService.getAndCacheShortUrl("xyz789")
+                        .then(shortUrlService.getAndCacheShortUrl("xyz789")))
+                .expectNextCount(1)
+                .verifyComplete();
+        verify(mockSortUrlRepository, times(1)).findByKeyAndExpiresAtAfter(eq("xyz789"), any());
+
+        StepVerifier.create(reactiveRedisOperations.opsForHash().hasKey(bucketKey("xyz789", 16), "xyz789"))
+                .expectNext(true)
+                .verifyComplete();
+
+        StepVerifier.create(shortUrlService.deleteUserShortUrl("object999", "user")
+                        .then(hashShortUrlCacheStore.get("xyz789")))
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("Get and cache ShortUrl - hash layout fields expire on their own in a busy bucket")
+    void hashLayoutFieldExpiry() throws InterruptedException {
+        HashShortUrlCacheStore hashShortUrlCacheStore = new HashShortUrlCacheStore(reactiveRedisOperations, 16);
+        String busyKey = IntStream.range(0, 1000)
+                .mapToObj(i -> String.format("hot%03d", i))
+                .filter(key -> bucketKey(key, 16).equals(bucketKey("cold01", 16)))
+                .findFirst()
+                .orElseThrow();
+        ShortUrl cold = new ShortUrl.Builder()
+                .key("cold01")
+                .url("https://example.com/cold")
+                .expiresAt(Instant.now().plus(Duration.ofDays(1)))
+                .build();
+        ShortUrl expired = new ShortUrl.Builder()
+                .key(busyKey)
+                .url("https://example.com/hot")
+                .expiresAt(Instant.now().plusMillis(200))
+                .build();
+
+        StepVerifier.create(hashShortUrlCacheStore.set("cold01", cold, Duration.ofMillis(200))
+                        .then(hashShortUrlCacheStore.set(busyKey, expired, Duration.ofDays(1))))
+                .expectNext(true)
+                .verifyComplete();
+        Thread.sleep(300);
+
+        // Later writes to the bucket don't keep the cold entry, nor the ShortUrl past its expiry
+        StepVerifier.create(hashShortUrlCacheStore.get("cold01"))
+                .verifyComplete();
+        StepVerifier.create(hashShortUrlCacheStore.getAll(List.of(busyKey)))
+                .verifyComplete();
+        StepVerifier.create(reactiveRedisOperations.opsForHash().size(bucketKey("cold01", 16)))
+                .expectNext(0L)
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("Get and cache ShortUrl - local fill survives its own write-back, another client's write drops it")
+    @WithMockClient
+    void localFillSurvivesOwnWrite() throws InterruptedException {
+        awaitLocalCache(() -> !shortUrlLocalCache.isSuspended());
+        StepVerifier.create(reactiveStringRedisTemplate.delete("key001"))
+                .expectNext(1L)
+                .verifyComplete();
+        // The invalidation for that delete lands before the fill
+        Thread.sleep(200);
+
+        // Loaded from the database and written back to Redis on the tracking connection
+        webTestClient
+                .get().uri("/api/v1/cache/key001")
+                .exchange()
+                .expectStatus().isOk();
+        StepVerifier.create(reactiveStringRedisTemplate.hasKey("key001"))
+                .expectNext(true)
+                .verifyComplete();
+        Thread.sleep(300);
+        assertThat(shortUrlLocalCache.get("key001")).isNotNull();
+
+        StepVerifier.create(reactiveStringRedisTemplate.expire("key001", Duration.ofDays(1)))
+                .expectNext(true)
+                .verifyComplete();
+        awaitLocalCache(() -> shortUrlLocalCache.get("key001") == null);
+    }
+
+    private static void awaitLocalCache(BooleanSupplier condition) throws InterruptedException {
+        for (int i = 0; i < 50 && !condition.getAsBoolean(); i++) {
+            Thread.sleep(100);
+        }
+        assertThat(condition.getAsBoolean()).isTrue();
+    }
+
     @Test
     @DisplayName("Get and cache ShortUrl - unauthenticated")
     void getAndCacheShortUrlUnauthenticated() {
@@ -869,4 +1213,214 @@ class ShortUrlHandlerTest extends AbstractApiIntegrationTest {
                 .expectErrorMatches(t -> t instanceof AccessDeniedException)
                 .verify();
     }
+
+
+
+    /*
+     * ******************************************************************************************
+     * Batch Cache ShortUrl Tests
+     * ******************************************************************************************
+     */
+    @Test
+    @DisplayName("Get and cache ShortUrl batch - success, unknown and invalid keys left out")
+    @WithMockClient
+    void getAndCacheShortUrlsSuccess() {
+        // Not in Redis, loaded from the database with the other misses
+        reactiveRedisOperations.delete("key002").block();
+        ShortUrlBatchDto dto = new ShortUrlBatchDto();
+        dto.setKeys(List.of("key001", "key002", "key001", "nokey1", "bad key!"));
+
+        webTestClient
+                .post().uri("/api/v1/cache/batch")
+                .contentType(APPLICATION_JSON)
+                .bodyValue(dto)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.status").isEqualTo("ok")
+                .jsonPath("$.message").isEqualTo("ShortUrlResponseDtos")
+                .jsonPath("$.data.length()").isEqualTo(2)
+                .jsonPath("$.data[*].key").value(hasItems("key001", "key002"))
+                .jsonPath("$.data[*].created_by").doesNotExist();
+
+        StepVerifier.create(reactiveRedisOperations.hasKey("key002"))
+                .expectNext(true)
+                .verifyComplete();
+        StepVerifier.create(shortUrlNegativeCache.isMissing("nokey1"))
+                .expectNext(true)
+                .verifyComplete();
+        assertThat(shortUrlLocalCache.get("key002")).isNotNull();
+    }
+
+    @Test
+    @DisplayName("Get and cache ShortUrl batch - bad request, no keys or too many")
+    @WithMockClient
+    void getAndCacheShortUrlsBadRequest() {
+        ShortUrlBatchDto dto = new ShortUrlBatchDto();
+        dto.setKeys(List.of());
+        webTestClient
+                .post().uri("/api/v1/cache/batch")
+                .contentType(APPLICATION_JSON)
+                .bodyValue(dto)
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody()
+                .jsonPath("$.type").isEqualTo(docsUrl + "?problem=InvalidParameter")
+                .jsonPath("$.detail").isEqualTo("Keys in the request body are invalid, there should be " +
+                        "between 1 and 1000.")
+                .jsonPath("$.instance").isEqualTo("/api/v1/cache/batch");
+
+        dto.setKeys(IntStream.range(0, 1001).mapToObj(i -> String.format("k%05d", i)).toList());
+        webTestClient
+                .post().uri("/api/v1/cache/batch")
+                .contentType(APPLICATION_JSON)
+                .bodyValue(dto)
+                .exchange()
+                .expectStatus().isBadRequest();
+    }
+
+    @Test
+    @DisplayName("Get and cache ShortUrl batch - unauthorized, incorrect scopes")
+    @WithMockClient(jwtScopes = {"cache:read"})
+    void getAndCacheShortUrlsIncorrectScopes() {
+        ShortUrlBatchDto dto = new ShortUrlBatchDto();
+        dto.setKeys(List.of("key001"));
+        webTestClient
+                .post().uri("/api/v1/cache/batch")
+                .contentType(APPLICATION_JSON)
+                .bodyValue(dto)
+                .exchange()
+                .expectStatus().isForbidden();
+    }
+
+
+
+    /*
+     * ******************************************************************************************
+     * Live Keys Tests
+     * ******************************************************************************************
+     */
+    @Test
+    @DisplayName("Get live keys - success")
+    @WithMockClient
+    void getLiveKeysSuccess() {
+        webTestClient
+                .get().uri("/api/v1/cache/keys")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(String.class)
+                .value(body -> assertThat(body.lines())
+                        .containsExactlyInAnyOrder("key001", "key002", "key003", "key010"));
+    }
+
+    @Test
+    @DisplayName("Get live keys - success, created since")
+    @WithMockClient
+    void getLiveKeysSince() {
+        webTestClient
+                .get().uri("/api/v1/cache/keys?since=2024-02-11T00:00:00Z")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(String.class)
+                .value(body -> assertThat(body.lines()).containsExactlyInAnyOrder("key002", "key003"));
+    }
+
+    @Test
+    @DisplayName("Get live keys - bad request, invalid since")
+    @WithMockClient
+    void getLiveKeysBadRequestSince() {
+        webTestClient
+                .get().uri("/api/v1/cache/keys?since=yesterday")
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody()
+                .jsonPath("$.type").isEqualTo(docsUrl + "?problem=InvalidParameter")
+                .jsonPath("$.status").isEqualTo(400)
+                .jsonPath("$.detail").isEqualTo("Since query parameter [yesterday] is invalid, it should be " +
+                        "an ISO-8601 instant.");
+    }
+
+    @Test
+    @DisplayName("Get live keys - unauthorized, incorrect scopes")
+    @WithMockClient(jwtScopes = {"cache:write"})
+    void getLiveKeysIncorrectScopes() {
+        webTestClient
+                .get().uri("/api/v1/cache/keys")
+                .exchange()
+                .expectStatus().isForbidden();
+    }
+
+    /*
+     * ******************************************************************************************
+     * Hot Keys Tests
+     * ******************************************************************************************
+     */
+    @Test
+    @DisplayName("Get hot keys - success, most accessed first")
+    @WithMockClient
+    void getHotKeysSuccess() {
+        shortUrlAccessHistory.flush().block();
+        reactiveMongoOperations.dropCollection(ShortUrlAccess.class).block();
+        IntStream.range(0, 3).forEach(i -> shortUrlAccessHistory.record("key002"));
+        shortUrlAccessHistory.record("key001");
+        shortUrlAccessHistory.flush().block();
+
+        webTestClient
+                .get().uri("/api/v1/cache/hot?limit=10")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(String.class)
+                .value(body -> assertThat(body.lines()).containsExactly("key002", "key001"));
+    }
+
+    @Test
+    @DisplayName("Get hot keys - warm-up batch lookups not counted")
+    @WithMockClient
+    void getHotKeysWarmUpNotCounted() {
+        shortUrlAccessHistory.flush().block();
+        reactiveMongoOperations.dropCollection(ShortUrlAccess.class).block();
+        shortUrlAccessHistory.record("key001");
+
+        webTestClient
+                .post().uri("/api/v1/cache/batch")
+                .contentType(APPLICATION_JSON)
+                .bodyValue("{\"keys\": [\"key001\", \"key002\"], \"warm_up\": true}")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.data.length()").isEqualTo(2);
+        shortUrlAccessHistory.flush().block();
+
+        webTestClient
+                .get().uri("/api/v1/cache/hot?limit=10")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(String.class)
+                .value(body -> assertThat(body.lines()).containsExactly("key001"));
+    }
+
+    @Test
+    @DisplayName("Get hot keys - bad request, invalid limit")
+    @WithMockClient
+    void getHotKeysBadRequestLimit() {
+        webTestClient
+                .get().uri("/api/v1/cache/hot?limit=0")
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody()
+                .jsonPath("$.type").isEqualTo(docsUrl + "?problem=InvalidParameter")
+                .jsonPath("$.status").isEqualTo(400)
+                .jsonPath("$.detail").isEqualTo("Limit query parameter [0] is invalid, it should be " +
+                        "between 1 and 100000.");
+    }
+
+    @Test
+    @DisplayName("Get hot keys - unauthorized, incorrect scopes")
+    @WithMockClient(jwtScopes = {"cache:write"})
+    void getHotKeysIncorrectScopes() {
+        webTestClient
+                .get().uri("/api/v1/cache/hot")
+                .exchange()
+                .expectStatus().isForbidden();
+    }
 }
@@ -0,0 +1,148 @@
+package com.jasonbertolo.urlshortener.api.handler;
+
+import com.jasonbertolo.urlshortener.api.model.ShortUrl;
+import com.jasonbertolo.urlshortener.api.util.AbstractApiIntegrationTest;
+import com.jasonbertolo.urlshortener.api.util.ReactiveMongoRepositoryPopulator;
+import com.jasonbertolo.urlshortener.contract.CachedShortUrl;
+import com.jasonbertolo.urlshortener.contract.ShortUrlCacheCodec;
+import com.jasonbertolo.urlshortener.contract.ShortUrlRSocket;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.rsocket.context.LocalRSocketServerPort;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.messaging.rsocket.RSocketRequester;
+import org.springframework.security.oauth2.jwt.BadJwtException;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.ReactiveJwtDecoder;
+import org.springframework.security.rsocket.metadata.BearerTokenAuthenticationEncoder;
+import org.springframework.security.rsocket.metadata.BearerTokenMetadata;
+import org.springframework.util.MimeTypeUtils;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Instant;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@SpringBootTest(properties = {"url-shortener.scheduled-maintenance.cleanup-enabled=false"})
+class ShortUrlRSocketHandlerTest extends AbstractApiIntegrationTest {
+
+    @TestConfiguration
+    static class TestConfig {
+        @Bean
+        ReactiveMongoRepositoryPopulator reactiveMongoRepositoryPopulator(
+                ReactiveMongoOperations reactiveMongoOperations) {
+            return new ReactiveMongoRepositoryPopulator(reactiveMongoOperations, ShortUrl.class,
+                    "/data/sample-shorturls.json", ShortUrlRSocketHandlerTest.class);
+        }
+    }
+
+    @MockBean
+    ReactiveJwtDecoder reactiveJwtDecoder;
+
+    @Autowired
+    ObjectProvider<RSocketRequester.Builder> requesterBuilders;
+
+    @LocalRSocketServerPort
+    int port;
+
+    RSocketRequester requester;
+
+    @BeforeEach
+    void beforeEach() {
+        when(reactiveJwtDecoder.decode(anyString())).thenAnswer(invocation -> {
+            String token = invocation.getArgument(0);
+            return switch (token) {
+                case "cache-token" -> Mono.just(jwt(token, List.of("cache:read", "cache:write")));
+                case "read-token" -> Mono.just(jwt(token, List.of("cache:read")));
+                default -> Mono.error(new BadJwtException("Invalid token"));
+            };
+        });
+    }
+
+    @AfterEach
+    void afterEach() {
+        if (requester != null) {
+            requester.dispose();
+        }
+    }
+
+    @Test
+    @DisplayName("RSocket resolve - ShortUrl answered in the binary cache encoding, token checked once per connection")
+    void resolve() {
+        requester = connect("cache-token");
+
+        StepVerifier.create(requester.route(ShortUrlRSocket.RESOLVE_ROUTE).data("key001").retrieveMono(byte[].class)
+                        .map(ShortUrlCacheCodec::decode))
+                .assertNext(cachedShortUrl -> {
+                    assertThat(cachedShortUrl.key()).isEqualTo("key001");
+                    assertThat(cachedShortUrl.isExpired(Instant.now())).isFalse();
+                })
+                .verifyComplete();
+        StepVerifier.create(requester.route(ShortUrlRSocket.RESOLVE_ROUTE).data("key002").retrieveMono(byte[].class)
+                        .map(ShortUrlCacheCodec::decode)
+                        .map(CachedShortUrl::key))
+                .expectNext("key002")
+                .verifyComplete();
+
+        verify(reactiveJwtDecoder, times(1)).decode(anyString());
+        assertThat(reactiveRedisOperations.hasKey("key001").block()).isTrue();
+    }
+
+    @Test
+    @DisplayName("RSocket resolve - key not found or invalid answered empty")
+    void resolveNotFound() {
+        requester = connect("cache-token");
+
+        StepVerifier.create(requester.route(ShortUrlRSocket.RESOLVE_ROUTE).data("nokey1").retrieveMono(byte[].class))
+                .verifyComplete();
+        StepVerifier.create(requester.route(ShortUrlRSocket.RESOLVE_ROUTE).data("key!").retrieveMono(byte[].class))
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("RSocket resolve - connection rejected without the cache:write scope")
+    void resolveRejected() {
+        requester = connect("read-token");
+        StepVerifier.create(requester.route(ShortUrlRSocket.RESOLVE_ROUTE).data("key001").retrieveMono(byte[].class))
+                .expectError()
+                .verify();
+        requester.dispose();
+
+        requester = connect("bad-token");
+        StepVerifier.create(requester.route(ShortUrlRSocket.RESOLVE_ROUTE).data("key001").retrieveMono(byte[].class))
+                .expectError()
+                .verify();
+    }
+
+    private RSocketRequester connect(String token) {
+        return requesterBuilders.getObject()
+                .setupMetadata(new BearerTokenMetadata(token), BearerTokenMetadata.BEARER_AUTHENTICATION_MIME_TYPE)
+                .rsocketStrategies(strategies -> strategies.encoder(new BearerTokenAuthenticationEncoder()))
+                .dataMimeType(MimeTypeUtils.APPLICATION_OCTET_STREAM)
+                .tcp("localhost", port);
+    }
+
+    private static Jwt jwt(String token, List<String> scopes) {
+        return Jwt.withTokenValue(token)
+                .header("alg", "none")
+                .subject("url_shortener")
+                .claim("scope", scopes)
+                .issuedAt(Instant.now())
+                .expiresAt(Instant.now().plusSeconds(300))
+                .build();
+    }
+}
@@ -1,5 +1,6 @@
 package com.jasonbertolo.urlshortener.api.util;
 
+import com.jasonbertolo.urlshortener.api.component.ShortUrlLocalCache;
 import com.jasonbertolo.urlshortener.api.config.settings.MicroservicesSettings;
 import com.jasonbertolo.urlshortener.api.config.settings.UrlShortenerSettings;
 import com.jasonbertolo.urlshortener.api.model.ShortUrl;
@@ -39,6 +40,7 @@ public abstract class AbstractApiIntegrationTest {
         registry.add("spring.data.mongodb.uri", mongoDBContainer::getReplicaSetUrl);
         registry.add("spring.data.redis.host", redisContainer::getHost);
         registry.add("spring.data.redis.port", redisContainer::getFirstMappedPort);
+        registry.add("spring.rsocket.server.port", () -> 0);
     }
 
     @Autowired(required = false)
@@ -50,6 +52,9 @@ public abstract class AbstractApiIntegrationTest {
     @Autowired
     protected ReactiveRedisOperations<String, ShortUrl> reactiveRedisOperations;
 
+    @Autowired
+    protected ShortUrlLocalCache shortUrlLocalCache;
+
     @Autowired
     protected UrlShortenerSettings urlShortenerSettings;
 
@@ -93,6 +98,7 @@ public abstract class AbstractApiIntegrationTest {
             LOGGER.info("Deleting data for class {}", repositoryPopulator.getTypeClass().getSimpleName());
             repositoryPopulator.flushDb().block();
         }
+        shortUrlLocalCache.invalidateAll();
         LOGGER.info("Deleting all redis data");
         reactiveRedisOperations.keys("*").map(k -> reactiveRedisOperations.opsForValue().delete(k)).blockLast();
     }
@@ -0,0 +1,237 @@
+package com.jasonbertolo.authserver.component;
+
+import com.jasonbertolo.authserver.config.settings.AuthServerSettings;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.lang.Nullable;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.oauth2.core.OAuth2AccessToken;
+import org.springframework.security.oauth2.core.OAuth2RefreshToken;
+import org.springframework.security.oauth2.core.OAuth2Token;
+import org.springframework.security.oauth2.core.endpoint.OAuth2ParameterNames;
+import org.springframework.security.oauth2.core.oidc.OidcIdToken;
+import org.springframework.security.oauth2.core.oidc.endpoint.OidcParameterNames;
+import org.springframework.security.oauth2.server.authorization.OAuth2Authorization;
+import org.springframework.security.oauth2.server.authorization.OAuth2AuthorizationCode;
+import org.springframework.security.oauth2.server.authorization.OAuth2AuthorizationService;
+import org.springframework.security.oauth2.server.authorization.OAuth2TokenType;
+import org.springframework.stereotype.Component;
+import org.springframework.util.Assert;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * In-memory authorizations that don't outlive their tokens. Each authorization expires with the last of its tokens,
+ * or after the pending TTL while it has none yet, and a sweeper drops the expired ones in expiry order. Past the
+ * maximum size the authorization closest to expiring is dropped, so a burst of token requests can't grow the heap
+ * without bound. Tokens are indexed by value, a lookup doesn't scan every authorization.
+ */
+@Component
+public class ExpiringOAuth2AuthorizationService implements OAuth2AuthorizationService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ExpiringOAuth2AuthorizationService.class);
+
+    public static final String METRIC_PREFIX = "oauth2.authorizations";
+
+    private static final OAuth2TokenType STATE_TOKEN_TYPE = new OAuth2TokenType(OAuth2ParameterNames.STATE);
+    private static final OAuth2TokenType CODE_TOKEN_TYPE = new OAuth2TokenType(OAuth2ParameterNames.CODE);
+    private static final OAuth2TokenType ID_TOKEN_TOKEN_TYPE = new OAuth2TokenType(OidcParameterNames.ID_TOKEN);
+    private static final List<Class<? extends OAuth2Token>> TOKEN_CLASSES = List.of(OAuth2AuthorizationCode.class,
+            OAuth2AccessToken.class, OAuth2RefreshToken.class, OidcIdToken.class);
+
+    private record Stored(OAuth2Authorization authorization, Expiry expiry, List<String> tokenValues) {}
+
+    private record Expiry(Instant expiresAt, String id) {}
+
+    private final AuthServerSettings.AuthorizationStore settings;
+    private final Clock clock;
+    private final Map<String, Stored> authorizations = new ConcurrentHashMap<>();
+    private final Map<String, String> idsByToken = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListSet<Expiry> expiries = new ConcurrentSkipListSet<>(
+            Comparator.comparing(Expiry::expiresAt).thenComparing(Expiry::id));
+    private final Counter expiredCounter;
+    private final Counter evictedCounter;
+
+    @Autowired
+    public ExpiringOAuth2AuthorizationService(AuthServerSettings authServerSettings, MeterRegistry meterRegistry) {
+        this(authServerSettings, meterRegistry, Clock.systemUTC());
+    }
+
+    ExpiringOAuth2AuthorizationService(AuthServerSettings authServerSettings, MeterRegistry meterRegistry,
+                                       Clock clock) {
+        this.settings = authServerSettings.getAuthorizationStore();
+        this.clock = clock;
+        Gauge.builder(METRIC_PREFIX + ".live", authorizations, Map::size)
+                .description("Authorizations held in memory")
+                .register(meterRegistry);
+        Gauge.builder(METRIC_PREFIX + ".tokens", idsByToken, Map::size)
+                .description("Token values indexed for lookups")
+                .register(meterRegistry);
+        this.expiredCounter = Counter.builder(METRIC_PREFIX + ".removed")
+                .description("Authorizations dropped by the store rather than removed by the authorization server")
+                .tag("reason", "expired")
+                .register(meterRegistry);
+        this.evictedCounter = Counter.builder(METRIC_PREFIX + ".removed")
+                .description("Authorizations dropped by the store rather than removed by the authorization server")
+                .tag("reason", "size")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void save(OAuth2Authorization authorization) {
+        Assert.notNull(authorization, "authorization cannot be null");
+        List<String> tokenValues = tokenValues(authorization);
+        Stored stored = new Stored(authorization, new Expiry(expiresAt(authorization), authorization.getId()),
+                tokenValues);
+        synchronized (this) {
+            unindex(authorizations.put(authorization.getId(), stored));
+            tokenValues.forEach(tokenValue -> idsByToken.put(tokenValue, authorization.getId()));
+            expiries.add(stored.expiry());
+            while (authorizations.size() > settings.getMaximumSize()) {
+                Expiry soonest = expiries.first();
+                unindex(authorizations.remove(soonest.id()));
+                evictedCounter.increment();
+            }
+        }
+    }
+
+    @Override
+    public void remove(OAuth2Authorization authorization) {
+        Assert.notNull(authorization, "authorization cannot be null");
+        synchronized (this) {
+            unindex(authorizations.remove(authorization.getId()));
+        }
+    }
+
+    @Nullable
+    @Override
+    public OAuth2Authorization findById(String id) {
+        Assert.hasText(id, "id cannot be empty");
+        return live(authorizations.get(id));
+    }
+
+    @Nullable
+    @Override
+    public OAuth2Authorization findByToken(String token, @Nullable OAuth2TokenType tokenType) {
+        Assert.hasText(token, "token cannot be empty");
+        String id = idsByToken.get(token);
+        OAuth2Authorization authorization = id != null ? live(authorizations.get(id)) : null;
+        return authorization != null && hasToken(authorization, token, tokenType) ? authorization : null;
+    }
+
+    @Scheduled(fixedDelayString = "${auth-server.authorization-store.sweep-interval:PT30S}")
+    public void sweep() {
+        Instant now = clock.instant();
+        int swept = 0;
+        Expiry soonest;
+        while ((soonest = firstExpiry()) != null && !soonest.expiresAt().isAfter(now)) {
+            synchronized (this) {
+                if (expiries.remove(soonest)) {
+                    Stored stored = authorizations.get(soonest.id());
+                    // Saved again since, with a later expiry
+                    if (stored != null && stored.expiry().equals(soonest)) {
+                        unindex(authorizations.remove(soonest.id()));
+                        swept++;
+                    }
+                }
+            }
+        }
+        if (swept > 0) {
+            expiredCounter.increment(swept);
+            LOGGER.debug("Swept {} expired authorizations, {} left", swept, authorizations.size());
+        }
+    }
+
+    int size() {
+        return authorizations.size();
+    }
+
+    int indexedTokens() {
+        return idsByToken.size();
+    }
+
+    int scheduledExpiries() {
+        return expiries.size();
+    }
+
+    private Expiry firstExpiry() {
+        return expiries.isEmpty() ? null : expiries.first();
+    }
+
+    private void unindex(@Nullable Stored stored) {
+        if (stored == null) {
+            return;
+        }
+        expiries.remove(stored.expiry());
+        stored.tokenValues().forEach(tokenValue -> idsByToken.remove(tokenValue, stored.authorization().getId()));
+    }
+
+    @Nullable
+    private OAuth2Authorization live(@Nullable Stored stored) {
+        return stored != null && stored.expiry().expiresAt().isAfter(clock.instant()) ? stored.authorization() : null;
+    }
+
+    private Instant expiresAt(OAuth2Authorization authorization) {
+        Instant expiresAt = null;
+        for (Class<? extends OAuth2Token> tokenClass : TOKEN_CLASSES) {
+            OAuth2Authorization.Token<? extends OAuth2Token> token = authorization.getToken(tokenClass);
+            if (token != null && token.getToken().getExpiresAt() != null
+                    && (expiresAt == null || token.getToken().getExpiresAt().isAfter(expiresAt))) {
+                expiresAt = token.getToken().getExpiresAt();
+            }
+        }
+        return expiresAt != null ? expiresAt : clock.instant().plus(settings.getPendingTtl());
+    }
+
+    private static List<String> tokenValues(OAuth2Authorization authorization) {
+        List<String> tokenValues = new ArrayList<>(TOKEN_CLASSES.size() + 1);
+        String state = authorization.getAttribute(OAuth2ParameterNames.STATE);
+        if (state != null) {
+            tokenValues.add(state);
+        }
+        for (Class<? extends OAuth2Token> tokenClass : TOKEN_CLASSES) {
+            OAuth2Authorization.Token<? extends OAuth2Token> token = authorization.getToken(tokenClass);
+            if (token != null) {
+                tokenValues.add(token.getToken().getTokenValue());
+            }
+        }
+        return tokenValues;
+    }
+
+    // Same matching as the in-memory service, the index only narrows down which authorization to check
+    private static boolean hasToken(OAuth2Authorization authorization, String token,
+                                    @Nullable OAuth2TokenType tokenType) {
+        if (tokenType == null) {
+            return token.equals(authorization.getAttribute(OAuth2ParameterNames.STATE))
+                    || TOKEN_CLASSES.stream().anyMatch(tokenClass -> hasToken(authorization, tokenClass, token));
+        } else if (STATE_TOKEN_TYPE.equals(tokenType)) {
+            return token.equals(authorization.getAttribute(OAuth2ParameterNames.STATE));
+        } else if (CODE_TOKEN_TYPE.equals(tokenType)) {
+            return hasToken(authorization, OAuth2AuthorizationCode.class, token);
+        } else if (OAuth2TokenType.ACCESS_TOKEN.equals(tokenType)) {
+            return hasToken(authorization, OAuth2AccessToken.class, token);
+        } else if (ID_TOKEN_TOKEN_TYPE.equals(tokenType)) {
+            return hasToken(authorization, OidcIdToken.class, token);
+        } else if (OAuth2TokenType.REFRESH_TOKEN.equals(tokenType)) {
+            return hasToken(authorization, OAuth2RefreshToken.class, token);
+        }
+        return false;
+    }
+
+    private static boolean hasToken(OAuth2Authorization authorization, Class<? extends OAuth2Token> tokenClass,
+                                    String token) {
+        OAuth2Authorization.Token<? extends OAuth2Token> authorizationToken = authorization.getToken(tokenClass);
+        return authorizationToken != null && token.equals(authorizationToken.getToken().getTokenValue());
+    }
+}
@@ -0,0 +1,11 @@
+package com.jasonbertolo.authserver.config;
+
+import org.springframework.boot.context.properties.ConfigurationPropertiesScan;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+@Configuration
+@ConfigurationPropertiesScan
+@EnableScheduling
+public class ApplicationConfig {
+}
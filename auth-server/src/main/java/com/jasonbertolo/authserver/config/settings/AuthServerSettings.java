@@ -0,0 +1,49 @@
+package com.jasonbertolo.authserver.config.settings;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "auth-server")
+public class AuthServerSettings {
+
+    private AuthorizationStore authorizationStore = new AuthorizationStore();
+
+    public AuthorizationStore getAuthorizationStore() {
+        return authorizationStore;
+    }
+
+    public void setAuthorizationStore(AuthorizationStore authorizationStore) {
+        this.authorizationStore = authorizationStore;
+    }
+
+    public static class AuthorizationStore {
+        private int maximumSize = 100000;
+        private Duration pendingTtl = Duration.ofMinutes(10);
+        private Duration sweepInterval = Duration.ofSeconds(30);
+
+        public int getMaximumSize() {
+            return maximumSize;
+        }
+
+        public void setMaximumSize(int maximumSize) {
+            this.maximumSize = maximumSize;
+        }
+
+        public Duration getPendingTtl() {
+            return pendingTtl;
+        }
+
+        public void setPendingTtl(Duration pendingTtl) {
+            this.pendingTtl = pendingTtl;
+        }
+
+        public Duration getSweepInterval() {
+            return sweepInterval;
+        }
+
+        public void setSweepInterval(Duration sweepInterval) {
+            this.sweepInterval = sweepInterval;
+        }
+    }
+}
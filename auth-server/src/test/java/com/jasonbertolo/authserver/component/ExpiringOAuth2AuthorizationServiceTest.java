@@ -0,0 +1,187 @@
+package com.jasonbertolo.authserver.component;
+
+import com.jasonbertolo.authserver.config.settings.AuthServerSettings;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.oauth2.core.AuthorizationGrantType;
+import org.springframework.security.oauth2.core.ClientAuthenticationMethod;
+import org.springframework.security.oauth2.core.OAuth2AccessToken;
+import org.springframework.security.oauth2.core.OAuth2RefreshToken;
+import org.springframework.security.oauth2.server.authorization.OAuth2Authorization;
+import org.springframework.security.oauth2.server.authorization.OAuth2TokenType;
+import org.springframework.security.oauth2.server.authorization.client.RegisteredClient;
+
+import java.lang.management.ManagementFactory;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ExpiringOAuth2AuthorizationServiceTest {
+
+    static final RegisteredClient REGISTERED_CLIENT = RegisteredClient.withId("url_shortener")
+            .clientId("url_shortener")
+            .clientSecret("{noop}url_shortener_secret")
+            .clientAuthenticationMethod(ClientAuthenticationMethod.CLIENT_SECRET_BASIC)
+            .authorizationGrantType(AuthorizationGrantType.CLIENT_CREDENTIALS)
+            .authorizationGrantType(AuthorizationGrantType.REFRESH_TOKEN)
+            .scope("cache:read")
+            .scope("cache:write")
+            .build();
+
+    AuthServerSettings authServerSettings;
+    SimpleMeterRegistry meterRegistry;
+    MutableClock clock;
+
+    @BeforeEach
+    void beforeEach() {
+        authServerSettings = new AuthServerSettings();
+        meterRegistry = new SimpleMeterRegistry();
+        clock = new MutableClock(Instant.parse("2024-01-01T00:00:00Z"));
+    }
+
+    @Test
+    @DisplayName("Authorization store - found by id and token until its last token expires")
+    void findsUntilExpired() {
+        ExpiringOAuth2AuthorizationService service = service();
+        OAuth2Authorization authorization = authorization(Duration.ofMinutes(60), Duration.ofMinutes(120));
+        String accessToken = authorization.getAccessToken().getToken().getTokenValue();
+        String refreshToken = authorization.getRefreshToken().getToken().getTokenValue();
+
+        service.save(authorization);
+
+        assertThat(service.findById(authorization.getId())).isSameAs(authorization);
+        assertThat(service.findByToken(accessToken, OAuth2TokenType.ACCESS_TOKEN)).isSameAs(authorization);
+        assertThat(service.findByToken(accessToken, null)).isSameAs(authorization);
+        assertThat(service.findByToken(accessToken, OAuth2TokenType.REFRESH_TOKEN)).isNull();
+
+        // The access token expired, the refresh token still holds the authorization
+        clock.advance(Duration.ofMinutes(90));
+        service.sweep();
+        assertThat(service.findByToken(refreshToken, OAuth2TokenType.REFRESH_TOKEN)).isSameAs(authorization);
+
+        clock.advance(Duration.ofMinutes(31));
+        assertThat(service.findById(authorization.getId())).isNull();
+        service.sweep();
+        assertThat(service.size()).isZero();
+        assertThat(service.indexedTokens()).isZero();
+
+        service.save(authorization);
+        service.remove(authorization);
+        assertThat(service.findByToken(accessToken, null)).isNull();
+        assertThat(service.indexedTokens()).isZero();
+    }
+
+    @Test
+    @DisplayName("Authorization store - soonest expiring dropped beyond the maximum size")
+    void boundedBySize() {
+        authServerSettings.getAuthorizationStore().setMaximumSize(100);
+        ExpiringOAuth2AuthorizationService service = service();
+        OAuth2Authorization longest = authorization(Duration.ofHours(2), null);
+        service.save(longest);
+
+        for (int i = 0; i < 1000; i++) {
+            service.save(authorization(Duration.ofMinutes(60).plusSeconds(i), null));
+        }
+
+        assertThat(service.size()).isEqualTo(100);
+        assertThat(service.indexedTokens()).isEqualTo(100);
+        assertThat(service.findById(longest.getId())).isSameAs(longest);
+        assertThat(meterRegistry.get(ExpiringOAuth2AuthorizationService.METRIC_PREFIX + ".removed")
+                .tag("reason", "size").counter().count()).isEqualTo(901);
+    }
+
+    @Test
+    @DisplayName("Authorization store - soak, live authorizations and heap stay flat under sustained token issuance")
+    void soak() {
+        ExpiringOAuth2AuthorizationService service = service();
+        int perSecond = 20;
+        long[] usedHeap = new long[3];
+        int peak = 0;
+
+        // Three hours of client credentials tokens with the configured one hour TTL, swept every 30 seconds
+        for (int second = 1; second <= 3 * 3600; second++) {
+            for (int i = 0; i < perSecond; i++) {
+                service.save(authorization(Duration.ofHours(1), null));
+            }
+            clock.advance(Duration.ofSeconds(1));
+            if (second % 30 == 0) {
+                service.sweep();
+            }
+            peak = Math.max(peak, service.size());
+            if (second % 3600 == 0) {
+                usedHeap[second / 3600 - 1] = usedHeapAfterGc();
+            }
+        }
+
+        // Only the last hour's tokens are live, whatever ran before
+        assertThat(peak).isLessThanOrEqualTo(perSecond * (3600 + 30));
+        assertThat(service.size()).isBetween(perSecond * 3570, perSecond * 3600);
+        assertThat(service.indexedTokens()).isEqualTo(service.size());
+        assertThat(service.scheduledExpiries()).isEqualTo(service.size());
+        assertThat(meterRegistry.get(ExpiringOAuth2AuthorizationService.METRIC_PREFIX + ".live").gauge().value())
+                .isEqualTo(service.size());
+        // Hours two and three hold the same number of authorizations, allow for GC noise
+        assertThat(usedHeap[2]).isLessThan(usedHeap[1] + usedHeap[1] / 4);
+    }
+
+    private ExpiringOAuth2AuthorizationService service() {
+        return new ExpiringOAuth2AuthorizationService(authServerSettings, meterRegistry, clock);
+    }
+
+    private OAuth2Authorization authorization(Duration accessTokenTtl, Duration refreshTokenTtl) {
+        Instant now = clock.instant();
+        OAuth2Authorization.Builder builder = OAuth2Authorization.withRegisteredClient(REGISTERED_CLIENT)
+                .id(UUID.randomUUID().toString())
+                .principalName("url_shortener")
+                .authorizationGrantType(AuthorizationGrantType.CLIENT_CREDENTIALS)
+                .authorizedScopes(Set.of("cache:read", "cache:write"))
+                .accessToken(new OAuth2AccessToken(OAuth2AccessToken.TokenType.BEARER, UUID.randomUUID().toString(),
+                        now, now.plus(accessTokenTtl), Set.of("cache:read", "cache:write")));
+        if (refreshTokenTtl != null) {
+            builder.refreshToken(new OAuth2RefreshToken(UUID.randomUUID().toString(), now, now.plus(refreshTokenTtl)));
+        }
+        return builder.build();
+    }
+
+    private static long usedHeapAfterGc() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    static class MutableClock extends Clock {
+        private Instant instant;
+
+        MutableClock(Instant instant) {
+            this.instant = instant;
+        }
+
+        void advance(Duration duration) {
+            instant = instant.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return instant;
+        }
+    }
+}
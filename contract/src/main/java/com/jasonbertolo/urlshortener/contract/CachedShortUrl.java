@@ -0,0 +1,21 @@
+package com.jasonbertolo.urlshortener.contract;
+
+import java.time.Instant;
+
+/**
+ * The ShortUrl as stored in the shared Redis cache. Written by the API, read by the API and the web module.
+ * cachedUntil is set on entries that can't expire on their own in Redis, such as fields of bucket hashes.
+ */
+public record CachedShortUrl(String id, String key, String url, String description, Instant createdAt,
+                             Instant lastUpdatedAt, Instant expiresAt, Instant cachedUntil) {
+
+    public CachedShortUrl(String id, String key, String url, String description, Instant createdAt,
+                          Instant lastUpdatedAt, Instant expiresAt) {
+        this(id, key, url, description, createdAt, lastUpdatedAt, expiresAt, null);
+    }
+
+    // Expired entries are misses, whether the ShortUrl expired or the entry outlived its cache TTL
+    public boolean isExpired(Instant now) {
+        return expiresAt != null && !expiresAt.isAfter(now) || cachedUntil != null && !cachedUntil.isAfter(now);
+    }
+}
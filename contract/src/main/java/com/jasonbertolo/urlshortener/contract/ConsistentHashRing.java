@@ -0,0 +1,73 @@
+package com.jasonbertolo.urlshortener.contract;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Consistent hash ring mapping keys to named nodes, each placed on the ring as many virtual nodes. Placement depends
+ * only on node names, so adding a node moves about 1/n of the keys and every module with the same names agrees on
+ * where a key lives. Immutable, build a new ring to change nodes.
+ */
+public final class ConsistentHashRing<T> {
+
+    private final NavigableMap<Long, T> ring;
+    private final Map<String, T> nodes;
+
+    public ConsistentHashRing(Map<String, T> nodes, int virtualNodes) {
+        if (nodes.isEmpty() || virtualNodes < 1) {
+            throw new IllegalArgumentException("A ring needs at least one node and one virtual node per node");
+        }
+        NavigableMap<Long, T> points = new TreeMap<>();
+        nodes.forEach((name, node) -> {
+            for (int i = 0; i < virtualNodes; i++) {
+                points.put(hash(name + "#" + i), node);
+            }
+        });
+        this.ring = Collections.unmodifiableNavigableMap(points);
+        this.nodes = Map.copyOf(nodes);
+    }
+
+    public T nodeFor(String key) {
+        Map.Entry<Long, T> entry = ring.ceilingEntry(hash(key));
+        return (entry != null ? entry : ring.firstEntry()).getValue();
+    }
+
+    // Every node, in the order met walking the ring from the key, the first is nodeFor(key) and the rest its fallbacks
+    public List<T> nodesFor(String key) {
+        Set<T> found = new LinkedHashSet<>();
+        for (T node : ring.tailMap(hash(key), true).values()) {
+            if (found.add(node) && found.size() == nodes.size()) {
+                return List.copyOf(found);
+            }
+        }
+        for (T node : ring.values()) {
+            if (found.add(node) && found.size() == nodes.size()) {
+                break;
+            }
+        }
+        return List.copyOf(found);
+    }
+
+    public Map<String, T> getNodes() {
+        return nodes;
+    }
+
+    // 64-bit FNV-1a with a SplitMix64 finalizer to spread short, similar strings around the ring
+    static long hash(String value) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : value.getBytes(UTF_8)) {
+            h ^= b & 0xff;
+            h *= 0x100000001b3L;
+        }
+        h = (h ^ (h >>> 30)) * 0xbf58476d1ce4e5b9L;
+        h = (h ^ (h >>> 27)) * 0x94d049bb133111ebL;
+        return h ^ (h >>> 31);
+    }
+}
@@ -0,0 +1,169 @@
+package com.jasonbertolo.urlshortener.contract;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.time.Instant;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Encodes and decodes cached ShortUrl values.
+ * <p>
+ * The binary format starts with a version byte and a flags byte marking which optional fields are present. Then come
+ * the key and url, followed by the present optional fields: id, description, createdAt, lastUpdatedAt, expiresAt and
+ * cachedUntil. Strings are a varint byte length followed by UTF-8 bytes. Instants are epoch milliseconds as 8 bytes.
+ * Fields have no length of their own, so a reader can't step over one it doesn't know. A new optional field is only
+ * safe to add after all the existing ones, where older readers stop before it and ignore the rest of the buffer. A
+ * field anywhere else would need a length prefix per field.
+ * <p>
+ * Values written as JSON objects, the format before the binary one, are still read so existing entries survive a
+ * rollout.
+ */
+public final class ShortUrlCacheCodec {
+
+    public enum Format {
+        BINARY,
+        JSON
+    }
+
+    public static final byte VERSION_1 = 1;
+
+    private static final byte JSON_START = '{';
+    private static final int HAS_ID = 1;
+    private static final int HAS_DESCRIPTION = 1 << 1;
+    private static final int HAS_CREATED_AT = 1 << 2;
+    private static final int HAS_LAST_UPDATED_AT = 1 << 3;
+    private static final int HAS_EXPIRES_AT = 1 << 4;
+    private static final int HAS_CACHED_UNTIL = 1 << 5;
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper()
+            .registerModule(new JavaTimeModule())
+            .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+
+    private ShortUrlCacheCodec() {
+    }
+
+    public static byte[] encode(CachedShortUrl cachedShortUrl) {
+        return encode(cachedShortUrl, Format.BINARY);
+    }
+
+    public static byte[] encode(CachedShortUrl cachedShortUrl, Format format) {
+        return format == Format.JSON ? encodeJson(cachedShortUrl) : encodeBinary(cachedShortUrl);
+    }
+
+    public static CachedShortUrl decode(byte[] bytes) {
+        if (bytes.length == 0) {
+            throw new IllegalArgumentException("Empty cache value");
+        }
+        return switch (bytes[0]) {
+            case VERSION_1 -> decodeBinary(ByteBuffer.wrap(bytes, 1, bytes.length - 1));
+            case JSON_START -> decodeJson(bytes);
+            default -> throw new IllegalArgumentException(String.format(
+                    "Unknown cache value version [%d]", bytes[0]));
+        };
+    }
+
+    private static byte[] encodeBinary(CachedShortUrl value) {
+        int flags = (value.id() != null ? HAS_ID : 0)
+                | (value.description() != null ? HAS_DESCRIPTION : 0)
+                | (value.createdAt() != null ? HAS_CREATED_AT : 0)
+                | (value.lastUpdatedAt() != null ? HAS_LAST_UPDATED_AT : 0)
+                | (value.expiresAt() != null ? HAS_EXPIRES_AT : 0)
+                | (value.cachedUntil() != null ? HAS_CACHED_UNTIL : 0);
+        ByteArrayOutputStream out = new ByteArrayOutputStream(64 + (value.url() == null ? 0 : value.url().length()));
+        out.write(VERSION_1);
+        out.write(flags);
+        writeString(out, value.key());
+        writeString(out, value.url());
+        if ((flags & HAS_ID) != 0) {
+            writeString(out, value.id());
+        }
+        if ((flags & HAS_DESCRIPTION) != 0) {
+            writeString(out, value.description());
+        }
+        if ((flags & HAS_CREATED_AT) != 0) {
+            writeInstant(out, value.createdAt());
+        }
+        if ((flags & HAS_LAST_UPDATED_AT) != 0) {
+            writeInstant(out, value.lastUpdatedAt());
+        }
+        if ((flags & HAS_EXPIRES_AT) != 0) {
+            writeInstant(out, value.expiresAt());
+        }
+        if ((flags & HAS_CACHED_UNTIL) != 0) {
+            writeInstant(out, value.cachedUntil());
+        }
+        return out.toByteArray();
+    }
+
+    private static CachedShortUrl decodeBinary(ByteBuffer in) {
+        int flags = in.get();
+        String key = readString(in);
+        String url = readString(in);
+        String id = (flags & HAS_ID) != 0 ? readString(in) : null;
+        String description = (flags & HAS_DESCRIPTION) != 0 ? readString(in) : null;
+        Instant createdAt = (flags & HAS_CREATED_AT) != 0 ? readInstant(in) : null;
+        Instant lastUpdatedAt = (flags & HAS_LAST_UPDATED_AT) != 0 ? readInstant(in) : null;
+        Instant expiresAt = (flags & HAS_EXPIRES_AT) != 0 ? readInstant(in) : null;
+        Instant cachedUntil = (flags & HAS_CACHED_UNTIL) != 0 ? readInstant(in) : null;
+        return new CachedShortUrl(id, key, url, description, createdAt, lastUpdatedAt, expiresAt, cachedUntil);
+    }
+
+    private static void writeString(ByteArrayOutputStream out, String value) {
+        byte[] bytes = (value == null ? "" : value).getBytes(UTF_8);
+        int length = bytes.length;
+        while ((length & ~0x7F) != 0) {
+            out.write((length & 0x7F) | 0x80);
+            length >>>= 7;
+        }
+        out.write(length);
+        out.write(bytes, 0, bytes.length);
+    }
+
+    private static String readString(ByteBuffer in) {
+        int length = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = in.get();
+            length |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        String value = new String(in.array(), in.position(), length, UTF_8);
+        in.position(in.position() + length);
+        return value;
+    }
+
+    private static void writeInstant(ByteArrayOutputStream out, Instant value) {
+        long millis = value.toEpochMilli();
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            out.write((int) (millis >>> shift));
+        }
+    }
+
+    private static Instant readInstant(ByteBuffer in) {
+        return Instant.ofEpochMilli(in.getLong());
+    }
+
+    private static byte[] encodeJson(CachedShortUrl cachedShortUrl) {
+        try {
+            return OBJECT_MAPPER.writeValueAsBytes(cachedShortUrl);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static CachedShortUrl decodeJson(byte[] bytes) {
+        try {
+            return OBJECT_MAPPER.readValue(bytes, CachedShortUrl.class);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.jasonbertolo.urlshortener.contract;
+
+/**
+ * Redis keyspace shared by the modules reading and writing cached ShortUrls.
+ * <p>
+ * With the KEY layout every ShortUrl is its own Redis string under the bare short key. With the HASH layout ShortUrls
+ * are fields of a bucket hash, field being the short key, which lets Redis store small buckets as compact listpacks.
+ * Short keys are alphanumeric, so neither layout collides with prefixed keys.
+ */
+public final class ShortUrlCacheKeys {
+
+    public enum Layout {
+        KEY,
+        HASH
+    }
+
+    public static final String BUCKET_PREFIX = "shorturl:b:";
+    // Pub/sub channel the API publishes deleted and changed short keys on, one key per message
+    public static final String INVALIDATION_CHANNEL = "shorturl:invalidated";
+    // Pub/sub channel the API publishes newly created short keys on, one key per message
+    public static final String CREATED_CHANNEL = "shorturl:created";
+
+    private ShortUrlCacheKeys() {
+    }
+
+    public static String valueKey(String key) {
+        return key;
+    }
+
+    // String.hashCode is specified by the JLS, so every module and JVM picks the same bucket
+    public static String bucketKey(String key, int bucketCount) {
+        return BUCKET_PREFIX + Math.floorMod(key.hashCode(), bucketCount);
+    }
+}
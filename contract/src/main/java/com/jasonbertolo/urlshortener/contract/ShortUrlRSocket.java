@@ -0,0 +1,14 @@
+package com.jasonbertolo.urlshortener.contract;
+
+/**
+ * RSocket routes the API serves to the web module. The connection is authenticated once, with a bearer token in the
+ * setup frame, and ShortUrls are answered as ShortUrlCacheCodec bytes.
+ */
+public final class ShortUrlRSocket {
+
+    // Request-response, the key as text in, the ShortUrl out or empty when there's none to redirect to
+    public static final String RESOLVE_ROUTE = "shorturl.resolve";
+
+    private ShortUrlRSocket() {
+    }
+}
@@ -0,0 +1,78 @@
+package com.jasonbertolo.urlshortener.contract;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ConsistentHashRingTest {
+
+    static final int KEYS = 100_000;
+
+    static ConsistentHashRing<String> ring(String... names) {
+        return new ConsistentHashRing<>(Stream.of(names)
+                .collect(Collectors.toMap(Function.identity(), Function.identity(), (a, b) -> a, LinkedHashMap::new)),
+                160);
+    }
+
+    static Stream<String> keys() {
+        return IntStream.range(0, KEYS).mapToObj(i -> "key" + i);
+    }
+
+    @Test
+    @DisplayName("Ring - keys spread evenly across nodes")
+    void evenSpread() {
+        ConsistentHashRing<String> ring = ring("redis-a:6379", "redis-b:6379", "redis-c:6379", "redis-d:6379");
+
+        Map<String, Long> counts = keys().collect(Collectors.groupingBy(ring::nodeFor, Collectors.counting()));
+
+        assertThat(counts).hasSize(4);
+        assertThat(counts.values()).allSatisfy(count -> assertThat(count).isBetween(KEYS / 4 * 8 / 10L,
+                KEYS / 4 * 12 / 10L));
+    }
+
+    @Test
+    @DisplayName("Ring - adding a node only moves keys to the new node")
+    void minimalRemapping() {
+        ConsistentHashRing<String> before = ring("redis-a:6379", "redis-b:6379", "redis-c:6379", "redis-d:6379");
+        ConsistentHashRing<String> after = ring("redis-a:6379", "redis-b:6379", "redis-c:6379", "redis-d:6379",
+                "redis-e:6379");
+
+        Map<String, Integer> moved = new HashMap<>();
+        keys().forEach(key -> {
+            String from = before.nodeFor(key);
+            String to = after.nodeFor(key);
+            if (!from.equals(to)) {
+                moved.merge(to, 1, Integer::sum);
+            }
+        });
+
+        assertThat(moved).containsOnlyKeys("redis-e:6379");
+        assertThat(moved.get("redis-e:6379")).isBetween(KEYS / 5 * 8 / 10, KEYS / 5 * 12 / 10);
+    }
+
+    @Test
+    @DisplayName("Ring - placement independent of node order")
+    void orderIndependent() {
+        ConsistentHashRing<String> ring = ring("redis-a:6379", "redis-b:6379", "redis-c:6379");
+        ConsistentHashRing<String> reordered = ring("redis-c:6379", "redis-a:6379", "redis-b:6379");
+
+        assertThat(keys().allMatch(key -> ring.nodeFor(key).equals(reordered.nodeFor(key)))).isTrue();
+    }
+
+    @Test
+    @DisplayName("Ring - empty ring rejected")
+    void emptyRejected() {
+        assertThatThrownBy(() -> new ConsistentHashRing<>(Map.of(), 160))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
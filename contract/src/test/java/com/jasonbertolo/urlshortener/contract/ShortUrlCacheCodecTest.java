@@ -0,0 +1,100 @@
+package com.jasonbertolo.urlshortener.contract;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ShortUrlCacheCodecTest {
+
+    static final CachedShortUrl SHORT_URL = new CachedShortUrl("65c7f311b964ce0ace2cbd21", "Zwn5MX",
+            "https://www.example.com/some/path?param1=test&param2=äbc123", "Example",
+            Instant.parse("2024-02-10T22:05:05.220Z"), Instant.parse("2024-02-10T22:05:05.220Z"),
+            Instant.parse("2029-02-09T22:05:05.220Z"));
+
+    @Test
+    @DisplayName("Codec - binary round trip")
+    void binaryRoundTrip() {
+        byte[] bytes = ShortUrlCacheCodec.encode(SHORT_URL);
+
+        assertThat(bytes[0]).isEqualTo(ShortUrlCacheCodec.VERSION_1);
+        assertThat(ShortUrlCacheCodec.decode(bytes)).isEqualTo(SHORT_URL);
+    }
+
+    @Test
+    @DisplayName("Codec - binary round trip, optional fields missing")
+    void binaryRoundTripOptionalFields() {
+        CachedShortUrl shortUrl = new CachedShortUrl(null, "Zwn5MX", "https://www.example.com", null, null,
+                null, null);
+
+        assertThat(ShortUrlCacheCodec.decode(ShortUrlCacheCodec.encode(shortUrl))).isEqualTo(shortUrl);
+    }
+
+    @Test
+    @DisplayName("Codec - binary round trip, url longer than one varint byte")
+    void binaryRoundTripLongUrl() {
+        CachedShortUrl shortUrl = new CachedShortUrl(null, "Zwn5MX", "https://www.example.com/" + "a".repeat(2000),
+                null, null, null, Instant.parse("2029-02-09T22:05:05.220Z"));
+
+        assertThat(ShortUrlCacheCodec.decode(ShortUrlCacheCodec.encode(shortUrl))).isEqualTo(shortUrl);
+    }
+
+    @Test
+    @DisplayName("Codec - binary round trip with cache deadline, older readers skip it")
+    void binaryRoundTripCachedUntil() {
+        CachedShortUrl shortUrl = new CachedShortUrl(null, "Zwn5MX", "https://www.example.com", null, null, null,
+                Instant.parse("2029-02-09T22:05:05.220Z"), Instant.parse("2024-03-11T22:05:05.220Z"));
+        byte[] bytes = ShortUrlCacheCodec.encode(shortUrl);
+
+        assertThat(ShortUrlCacheCodec.decode(bytes)).isEqualTo(shortUrl);
+        // Without the cachedUntil flag the trailing bytes are ignored
+        bytes[1] &= ~(1 << 5);
+        assertThat(ShortUrlCacheCodec.decode(bytes).cachedUntil()).isNull();
+        assertThat(ShortUrlCacheCodec.decode(bytes).expiresAt()).isEqualTo(shortUrl.expiresAt());
+    }
+
+    @Test
+    @DisplayName("Codec - entry past its cache deadline is expired")
+    void cachedUntilExpired() {
+        CachedShortUrl shortUrl = new CachedShortUrl(null, "Zwn5MX", "https://www.example.com", null, null, null,
+                Instant.parse("2029-02-09T22:05:05.220Z"), Instant.parse("2024-03-11T22:05:05.220Z"));
+
+        assertThat(shortUrl.isExpired(Instant.parse("2024-03-11T22:05:05.219Z"))).isFalse();
+        assertThat(shortUrl.isExpired(Instant.parse("2024-03-11T22:05:05.220Z"))).isTrue();
+    }
+
+    @Test
+    @DisplayName("Codec - reads JSON values, ignoring unknown fields")
+    void decodeJson() {
+        String json = """
+                {"id":"65c7f311b964ce0ace2cbd21","key":"Zwn5MX",
+                "url":"https://www.example.com/some/path?param1=test&param2=äbc123","description":"Example",
+                "createdAt":1707602705.220000000,"createdBy":"user","lastUpdatedAt":1707602705.220000000,
+                "lastUpdatedBy":"user","expiresAt":1865369105.220000000}
+                """;
+
+        assertThat(ShortUrlCacheCodec.decode(json.getBytes(UTF_8))).isEqualTo(SHORT_URL);
+        assertThat(ShortUrlCacheCodec.decode(ShortUrlCacheCodec.encode(SHORT_URL, ShortUrlCacheCodec.Format.JSON)))
+                .isEqualTo(SHORT_URL);
+    }
+
+    @Test
+    @DisplayName("Codec - binary smaller than JSON")
+    void binarySmallerThanJson() {
+        int binary = ShortUrlCacheCodec.encode(SHORT_URL).length;
+        int json = ShortUrlCacheCodec.encode(SHORT_URL, ShortUrlCacheCodec.Format.JSON).length;
+
+        assertThat(binary).isLessThan(json * 2 / 3);
+    }
+
+    @Test
+    @DisplayName("Codec - unknown version rejected")
+    void decodeUnknownVersion() {
+        assertThatThrownBy(() -> ShortUrlCacheCodec.decode(new byte[]{9, 0}))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,162 @@
+package com.jasonbertolo.urlshortener.web.component;
+
+import com.jasonbertolo.urlshortener.contract.ConsistentHashRing;
+import com.jasonbertolo.urlshortener.web.config.settings.MicroservicesSettings;
+import com.jasonbertolo.urlshortener.web.config.settings.UrlShortenerSettings;
+import com.jasonbertolo.urlshortener.web.service.ApiService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.owasp.esapi.ESAPI;
+import org.owasp.esapi.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.owasp.esapi.Logger.*;
+
+/**
+ * Routes each key to one API instance, placed on a consistent hash ring by URL, so every web node sends a key to the
+ * same instance and each instance's local cache only holds its share of the keys. Instances are checked passively: a
+ * call that fails to connect or gets a 5xx counts against the instance, which is skipped after failureThreshold
+ * failures in a row and gets a call again after the retry interval. The key's next instance on the ring answers in
+ * the meantime, so keys only move while their own instance is down.
+ * <p>
+ * Requests per instance are counted here. The hit ratio each instance gets from its share is the
+ * cache.gets{cache=shorturl.local} meter of that instance.
+ */
+@Component
+public class ApiInstanceRouter {
+
+    private static final Logger LOGGER = ESAPI.getLogger(ApiInstanceRouter.class.getSimpleName());
+
+    public static final String METRIC_PREFIX = "shorturl.api.affinity";
+
+    private final boolean enabled;
+    private final UrlShortenerSettings.ApiAffinity settings;
+    private final ConsistentHashRing<Instance> ring;
+    private final Counter failoverCounter;
+
+    @Autowired
+    public ApiInstanceRouter(MicroservicesSettings microservicesSettings,
+                             UrlShortenerSettings urlShortenerSettings,
+                             MeterRegistry meterRegistry) {
+        this.settings = urlShortenerSettings.getApiAffinity();
+        List<String> urls = microservicesSettings.getApiInstanceUrls();
+        this.enabled = settings.isEnabled() && !urls.isEmpty();
+        this.ring = enabled ? new ConsistentHashRing<>(urls.stream().distinct()
+                .collect(Collectors.toMap(Function.identity(), url -> new Instance(url, meterRegistry))),
+                settings.getVirtualNodes()) : null;
+        this.failoverCounter = Counter.builder(METRIC_PREFIX + ".failovers")
+                .description("Calls moved to the next API instance on the ring after one failed or was skipped")
+                .register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // Makes the call against the key's instance, then the next ones on the ring while they fail
+    public <T> Mono<T> route(String key, Function<String, Mono<T>> call) {
+        List<Instance> candidates = candidates(key);
+        return call(candidates, 0, call);
+    }
+
+    // Keys grouped by the instance that would be called first for them
+    public Map<String, List<String>> partition(List<String> keys) {
+        Map<String, List<String>> partitions = new LinkedHashMap<>();
+        keys.forEach(key -> partitions.computeIfAbsent(candidates(key).get(0).url, u -> new ArrayList<>()).add(key));
+        return partitions;
+    }
+
+    // Instances that are up first, in ring order, then the ones being skipped as a last resort
+    List<Instance> candidates(String key) {
+        List<Instance> nodes = ring.nodesFor(key);
+        List<Instance> candidates = new ArrayList<>(nodes.size());
+        nodes.stream().filter(Instance::isAvailable).forEach(candidates::add);
+        nodes.stream().filter(instance -> !instance.isAvailable()).forEach(candidates::add);
+        return candidates;
+    }
+
+    private <T> Mono<T> call(List<Instance> candidates, int index, Function<String, Mono<T>> call) {
+        Instance instance = candidates.get(index);
+        return call.apply(instance.url)
+                .doOnSuccess(v -> instance.recordSuccess())
+                .onErrorResume(e -> {
+                    if (!isInstanceFailure(e)) {
+                        instance.recordSuccess();
+                        return Mono.error(e);
+                    }
+                    instance.recordFailure(e);
+                    if (index + 1 >= candidates.size()) {
+                        return Mono.error(e);
+                    }
+                    failoverCounter.increment();
+                    return call(candidates, index + 1, call);
+                });
+    }
+
+    // An answer from the API, short of a server error, means the instance is fine
+    private static boolean isInstanceFailure(Throwable e) {
+        if (e instanceof ApiService.ApiException apiException) {
+            return apiException.problemDetail.getStatus() >= 500;
+        }
+        return true;
+    }
+
+    final class Instance {
+        private final String url;
+        private final AtomicInteger consecutiveFailures = new AtomicInteger();
+        private final Counter successCounter;
+        private final Counter failureCounter;
+        private volatile long skippedUntilMillis;
+
+        Instance(String url, MeterRegistry meterRegistry) {
+            this.url = url;
+            this.successCounter = Counter.builder(METRIC_PREFIX + ".requests")
+                    .description("Calls routed to the API instance")
+                    .tag("instance", url)
+                    .tag("outcome", "success")
+                    .register(meterRegistry);
+            this.failureCounter = Counter.builder(METRIC_PREFIX + ".requests")
+                    .description("Calls routed to the API instance")
+                    .tag("instance", url)
+                    .tag("outcome", "failure")
+                    .register(meterRegistry);
+            Gauge.builder(METRIC_PREFIX + ".available", this, i -> i.isAvailable() ? 1 : 0)
+                    .description("Whether the API instance is being routed to")
+                    .tag("instance", url)
+                    .register(meterRegistry);
+        }
+
+        boolean isAvailable() {
+            return consecutiveFailures.get() < settings.getFailureThreshold()
+                    || System.currentTimeMillis() >= skippedUntilMillis;
+        }
+
+        private void recordSuccess() {
+            successCounter.increment();
+            if (consecutiveFailures.getAndSet(0) >= settings.getFailureThreshold()) {
+                LOGGER.info(EVENT_SUCCESS, String.format("API instance[%s] is back", url));
+            }
+        }
+
+        private void recordFailure(Throwable e) {
+            failureCounter.increment();
+            if (consecutiveFailures.incrementAndGet() >= settings.getFailureThreshold()) {
+                skippedUntilMillis = System.currentTimeMillis() + settings.getRetryInterval().toMillis();
+                LOGGER.warning(EVENT_FAILURE, String.format(
+                        "API instance[%s] skipped for [%s] after [%d] failures: [%s]", url,
+                        settings.getRetryInterval(), consecutiveFailures.get(), e.getMessage()));
+            }
+        }
+    }
+}
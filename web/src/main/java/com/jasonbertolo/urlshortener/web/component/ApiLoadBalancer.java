@@ -0,0 +1,273 @@
+package com.jasonbertolo.urlshortener.web.component;
+
+import com.jasonbertolo.urlshortener.web.config.settings.MicroservicesSettings;
+import com.jasonbertolo.urlshortener.web.config.settings.UrlShortenerSettings;
+import com.jasonbertolo.urlshortener.web.service.ApiService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * Spreads calls over the API instances by latency. Each instance keeps a peak EWMA of its response times, which jumps
+ * to a slow response at once and decays back over the decay time, and its cost is that average times the calls it has
+ * outstanding. An instance that hasn't answered yet costs the unmeasured penalty instead, so its outstanding calls
+ * count against it. Of two instances picked at random, the cheaper one is called, so a stalled instance stops getting
+ * calls within a few requests without every web node piling onto the same fastest one.
+ * <p>
+ * Hedged calls go to a second instance when the first hasn't answered after the hedge percentile of recent response
+ * times, recomputed every hedge delay update interval, and the first answer wins. Hedges are paid for from a budget
+ * filled by a ratio of the calls made, so when every instance is slow hedging adds a bounded share of load rather
+ * than doubling it.
+ */
+@Component
+public class ApiLoadBalancer {
+
+    public static final String METRIC_PREFIX = "shorturl.api.balancing";
+
+    private final boolean enabled;
+    private final UrlShortenerSettings.ApiBalancing settings;
+    private final List<Instance> instances;
+    private final HedgeBudget hedgeBudget;
+    private final Timer latencyTimer;
+    private final Counter hedgeCounter;
+    private final Counter hedgeWinCounter;
+    private final Counter hedgeRejectedCounter;
+    private volatile Duration hedgeDelay;
+    private Disposable hedgeDelayUpdates;
+
+    @Autowired
+    public ApiLoadBalancer(MicroservicesSettings microservicesSettings,
+                           UrlShortenerSettings urlShortenerSettings,
+                           MeterRegistry meterRegistry) {
+        this.settings = urlShortenerSettings.getApiBalancing();
+        List<String> urls = microservicesSettings.getApiInstanceUrls().stream().distinct().toList();
+        this.enabled = settings.isEnabled() && !urls.isEmpty();
+        this.instances = urls.stream().map(url -> new Instance(url, meterRegistry)).toList();
+        this.hedgeBudget = new HedgeBudget(settings.getHedgeBudgetRatio(), settings.getHedgeBudgetMinimumPerSecond());
+        this.latencyTimer = Timer.builder(METRIC_PREFIX + ".latency")
+                .description("Time API instances took to answer, hedges are sent after its hedge percentile")
+                .publishPercentiles(0.5, settings.getHedgePercentile(), 0.99)
+                .register(meterRegistry);
+        this.hedgeCounter = Counter.builder(METRIC_PREFIX + ".hedges")
+                .description("Second calls sent after the first was slower than the hedge percentile")
+                .register(meterRegistry);
+        this.hedgeWinCounter = Counter.builder(METRIC_PREFIX + ".hedges.won")
+                .description("Hedges that answered before the call they were sent after")
+                .register(meterRegistry);
+        this.hedgeRejectedCounter = Counter.builder(METRIC_PREFIX + ".hedges.rejected")
+                .description("Hedges not sent because the hedge budget was spent")
+                .register(meterRegistry);
+        this.hedgeDelay = settings.getMaximumHedgeDelay();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (enabled && settings.isHedging()) {
+            hedgeDelayUpdates = Flux.interval(settings.getHedgeDelayUpdateInterval())
+                    .onBackpressureDrop()
+                    .subscribe(tick -> updateHedgeDelay());
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (hedgeDelayUpdates != null) {
+            hedgeDelayUpdates.dispose();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // Only for idempotent calls, the first instance may still complete the call after a hedge has answered
+    public <T> Mono<T> hedged(Function<String, Mono<T>> call) {
+        return Mono.defer(() -> {
+            Instance primary = pick(null);
+            Instance secondary = settings.isHedging() && instances.size() > 1 ? pick(primary) : null;
+            hedgeBudget.deposit();
+            Mono<T> first = call(primary, call, true);
+            if (secondary == null) {
+                return first;
+            }
+            // Only an answer from the hedge counts, if it fails the first call still decides
+            Mono<T> hedge = Mono.delay(hedgeDelay())
+                    .flatMap(t -> {
+                        if (!hedgeBudget.tryWithdraw()) {
+                            hedgeRejectedCounter.increment();
+                            return Mono.never();
+                        }
+                        hedgeCounter.increment();
+                        return call(secondary, call, false)
+                                .doOnNext(v -> hedgeWinCounter.increment())
+                                .onErrorResume(e -> Mono.never());
+                    });
+            return Mono.firstWithSignal(first, hedge);
+        });
+    }
+
+    public <T> Mono<T> balanced(Function<String, Mono<T>> call) {
+        return Mono.defer(() -> call(pick(null), call, false));
+    }
+
+    Duration hedgeDelay() {
+        return hedgeDelay;
+    }
+
+    // Taking a snapshot walks the timer's histogram, too costly for every call
+    void updateHedgeDelay() {
+        long delayNanos = settings.getMaximumHedgeDelay().toNanos();
+        for (ValueAtPercentile percentile : latencyTimer.takeSnapshot().percentileValues()) {
+            if (percentile.percentile() == settings.getHedgePercentile() && percentile.value() > 0) {
+                delayNanos = (long) percentile.value(NANOSECONDS);
+            }
+        }
+        delayNanos = Math.max(delayNanos, settings.getMinimumHedgeDelay().toNanos());
+        hedgeDelay = Duration.ofNanos(Math.min(delayNanos, settings.getMaximumHedgeDelay().toNanos()));
+    }
+
+    // Power of two choices, the cheaper of two random instances other than the excluded one
+    Instance pick(Instance excluded) {
+        List<Instance> candidates = excluded == null ? instances
+                : instances.stream().filter(instance -> instance != excluded).toList();
+        if (candidates.size() == 1) {
+            return candidates.get(0);
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int i = random.nextInt(candidates.size());
+        int j = random.nextInt(candidates.size() - 1);
+        if (j >= i) {
+            j++;
+        }
+        Instance a = candidates.get(i);
+        Instance b = candidates.get(j);
+        return a.cost() <= b.cost() ? a : b;
+    }
+
+    // A call cancelled because its hedge answered first counts as taking at least as long as it ran
+    private <T> Mono<T> call(Instance instance, Function<String, Mono<T>> call, boolean observeCancel) {
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            instance.outstanding.incrementAndGet();
+            return call.apply(instance.url)
+                    .timeout(settings.getRequestTimeout())
+                    .doOnSuccess(v -> instance.observe(System.nanoTime() - start))
+                    .doOnError(e -> instance.observe(isInstanceFailure(e)
+                            // A failed instance looks as slow as the timeout until it answers again
+                            ? settings.getRequestTimeout().toNanos() : System.nanoTime() - start))
+                    .doOnCancel(() -> {
+                        if (observeCancel) {
+                            instance.observe(System.nanoTime() - start);
+                        }
+                    })
+                    .doFinally(signal -> instance.outstanding.decrementAndGet());
+        });
+    }
+
+    // An answer from the API, short of a server error, means the instance is fine
+    private static boolean isInstanceFailure(Throwable e) {
+        if (e instanceof ApiService.ApiException apiException) {
+            return apiException.problemDetail.getStatus() >= 500;
+        }
+        return true;
+    }
+
+    final class Instance {
+        private final String url;
+        private final AtomicInteger outstanding = new AtomicInteger();
+        private double ewmaNanos;
+        private long stampNanos = System.nanoTime();
+
+        Instance(String url, MeterRegistry meterRegistry) {
+            this.url = url;
+            Gauge.builder(METRIC_PREFIX + ".outstanding", outstanding, AtomicInteger::get)
+                    .description("Calls in flight to the API instance")
+                    .tag("instance", url)
+                    .register(meterRegistry);
+            Gauge.builder(METRIC_PREFIX + ".ewma", this, i -> i.ewma() / 1_000_000)
+                    .description("Peak EWMA of the API instance's response times, in milliseconds")
+                    .tag("instance", url)
+                    .register(meterRegistry);
+        }
+
+        double cost() {
+            double ewma = ewma();
+            return (ewma == 0 ? settings.getUnmeasuredPenalty().toNanos() : ewma) * (outstanding.get() + 1);
+        }
+
+        // Read as an observation of zero, so an instance that was slow and since went quiet gets tried again
+        private synchronized double ewma() {
+            ewmaNanos *= decay(System.nanoTime());
+            return ewmaNanos;
+        }
+
+        private synchronized void observe(long rttNanos) {
+            if (rttNanos < settings.getRequestTimeout().toNanos()) {
+                latencyTimer.record(rttNanos, NANOSECONDS);
+            }
+            double weight = decay(System.nanoTime());
+            ewmaNanos = rttNanos > ewmaNanos ? rttNanos : ewmaNanos * weight + rttNanos * (1 - weight);
+        }
+
+        // Weight of the average so far, the longer since the last response the less it counts
+        private double decay(long nowNanos) {
+            double elapsed = Math.max(nowNanos - stampNanos, 0);
+            stampNanos = nowNanos;
+            return Math.exp(-elapsed / settings.getDecayTime().toNanos());
+        }
+    }
+
+    // Each call adds ratio tokens, each hedge takes one, with a minimum per second so a quiet node can still hedge
+    static final class HedgeBudget {
+        private final double ratio;
+        private final double minimumPerSecond;
+        private final double capacity;
+        private double balance;
+        private long stampNanos = System.nanoTime();
+
+        HedgeBudget(double ratio, double minimumPerSecond) {
+            this.ratio = ratio;
+            this.minimumPerSecond = minimumPerSecond;
+            this.capacity = Math.max(minimumPerSecond, 1);
+            this.balance = capacity;
+        }
+
+        synchronized void deposit() {
+            refill();
+            balance = Math.min(balance + ratio, capacity);
+        }
+
+        synchronized boolean tryWithdraw() {
+            refill();
+            if (balance < 1) {
+                return false;
+            }
+            balance--;
+            return true;
+        }
+
+        private void refill() {
+            long now = System.nanoTime();
+            balance = Math.min(balance + (now - stampNanos) / 1e9 * minimumPerSecond, capacity);
+            stampNanos = now;
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package com.jasonbertolo.urlshortener.web.component;
+
+import com.jasonbertolo.urlshortener.web.config.settings.UrlShortenerSettings;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.owasp.esapi.ESAPI;
+import org.owasp.esapi.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.security.oauth2.client.OAuth2AuthorizeRequest;
+import org.springframework.security.oauth2.client.OAuth2AuthorizedClient;
+import org.springframework.security.oauth2.client.ReactiveOAuth2AuthorizedClientManager;
+import org.springframework.security.oauth2.core.OAuth2AccessToken;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static org.owasp.esapi.Logger.*;
+
+/**
+ * Keeps the client credentials token the API is called with, renewed in the background ahead of its expiry so the
+ * lookup that happens to come after it expires doesn't wait on the auth server. A lookup only fetches a token itself
+ * when there's none yet or the renewals have been failing, and concurrent lookups then share one token request.
+ * <p>
+ * The authorized client manager is set up to fetch a new token whenever the stored one expires within refreshAhead,
+ * which is how the scheduled renewal gets a new one rather than the stored one back.
+ */
+@Component
+public class ApiTokenRefresher implements ApplicationRunner {
+
+    private static final Logger LOGGER = ESAPI.getLogger(ApiTokenRefresher.class.getSimpleName());
+
+    public static final String METRIC_PREFIX = "shorturl.api.token";
+    public static final String CLIENT_REGISTRATION_ID = "url_shortener_cache";
+    private static final String PRINCIPAL_NAME = "anonymousUser";
+    private static final Duration MINIMUM_DELAY = Duration.ofSeconds(1);
+
+    private final ReactiveOAuth2AuthorizedClientManager authorizedClientManager;
+    private final UrlShortenerSettings.ApiToken settings;
+    private final MeterRegistry meterRegistry;
+    private final AtomicReference<Mono<OAuth2AuthorizedClient>> inFlight = new AtomicReference<>();
+    private final AtomicReference<Disposable> scheduled = new AtomicReference<>();
+    private volatile OAuth2AuthorizedClient current;
+
+    @Autowired
+    public ApiTokenRefresher(ReactiveOAuth2AuthorizedClientManager authorizedClientManager,
+                             UrlShortenerSettings urlShortenerSettings,
+                             MeterRegistry meterRegistry) {
+        this.authorizedClientManager = authorizedClientManager;
+        this.settings = urlShortenerSettings.getApiToken();
+        this.meterRegistry = meterRegistry;
+        TimeGauge.builder(METRIC_PREFIX + ".age", this, TimeUnit.SECONDS, r -> r.age(Instant.now()))
+                .description("Time since the current API token was issued")
+                .register(meterRegistry);
+        TimeGauge.builder(METRIC_PREFIX + ".remaining", this, TimeUnit.SECONDS, r -> r.remaining(Instant.now()))
+                .description("Time left before the current API token expires")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (settings.isEnabled()) {
+            schedule(Duration.ZERO);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        Disposable next = scheduled.getAndSet(null);
+        if (next != null) {
+            next.dispose();
+        }
+    }
+
+    public boolean handles(OAuth2AuthorizeRequest request) {
+        return settings.isEnabled() && CLIENT_REGISTRATION_ID.equals(request.getClientRegistrationId());
+    }
+
+    // The current token unless it's about to expire, then the one being fetched
+    public Mono<OAuth2AuthorizedClient> authorizedClient() {
+        if (!settings.isEnabled()) {
+            return fetch("demand");
+        }
+        OAuth2AuthorizedClient authorizedClient = current;
+        if (authorizedClient != null && isValid(authorizedClient.getAccessToken(), Instant.now())) {
+            return Mono.just(authorizedClient);
+        }
+        return refresh("demand");
+    }
+
+    private Mono<OAuth2AuthorizedClient> refresh(String trigger) {
+        while (true) {
+            Mono<OAuth2AuthorizedClient> shared = inFlight.get();
+            if (shared != null) {
+                return shared;
+            }
+            Mono<OAuth2AuthorizedClient> request = fetch(trigger)
+                    .doOnTerminate(() -> inFlight.set(null))
+                    .cache();
+            if (inFlight.compareAndSet(null, request)) {
+                return request;
+            }
+        }
+    }
+
+    private Mono<OAuth2AuthorizedClient> fetch(String trigger) {
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            return authorizedClientManager.authorize(authorizeRequest())
+                    .switchIfEmpty(Mono.error(() -> new IllegalStateException(
+                            "No access token for client registration " + CLIENT_REGISTRATION_ID)))
+                    .doOnNext(authorizedClient -> {
+                        current = authorizedClient;
+                        record(trigger, "success", start);
+                    })
+                    .doOnError(e -> {
+                        record(trigger, "failure", start);
+                        LOGGER.warning(EVENT_FAILURE, String.format(
+                                "Failed to fetch the API token on [%s]: [%s]", trigger, e.getMessage()));
+                    });
+        });
+    }
+
+    private void schedule(Duration delay) {
+        Disposable next = Mono.delay(delay)
+                .then(Mono.defer(() -> refresh("scheduled")))
+                .subscribe(authorizedClient -> {
+                    Duration untilRefresh = untilRefresh(authorizedClient.getAccessToken(), Instant.now());
+                    LOGGER.info(EVENT_SUCCESS, String.format("API token renewed, next renewal in [%s]", untilRefresh));
+                    schedule(untilRefresh);
+                }, e -> schedule(settings.getRetryInterval()));
+        Disposable previous = scheduled.getAndSet(next);
+        if (previous != null) {
+            previous.dispose();
+        }
+    }
+
+    // refreshAhead before expiry, though not before half of the token's lifetime has passed
+    private Duration untilRefresh(OAuth2AccessToken token, Instant now) {
+        if (token.getExpiresAt() == null) {
+            return Duration.ofDays(1);
+        }
+        Instant refreshAt = token.getExpiresAt().minus(settings.getRefreshAhead());
+        if (token.getIssuedAt() != null) {
+            Instant halfway = token.getIssuedAt().plus(Duration.between(token.getIssuedAt(), token.getExpiresAt())
+                    .dividedBy(2));
+            refreshAt = refreshAt.isBefore(halfway) ? halfway : refreshAt;
+        }
+        Duration delay = Duration.between(now, refreshAt);
+        return delay.compareTo(MINIMUM_DELAY) < 0 ? MINIMUM_DELAY : delay;
+    }
+
+    private boolean isValid(OAuth2AccessToken token, Instant now) {
+        return token.getExpiresAt() == null || now.plus(settings.getMinimumValidity()).isBefore(token.getExpiresAt());
+    }
+
+    private void record(String trigger, String outcome, long startNanos) {
+        Timer.builder(METRIC_PREFIX + ".refresh")
+                .description("Time taken to fetch an API token from the auth server")
+                .tag("trigger", trigger)
+                .tag("outcome", outcome)
+                .register(meterRegistry)
+                .record(System.nanoTime() - startNanos, NANOSECONDS);
+    }
+
+    private double age(Instant now) {
+        OAuth2AuthorizedClient authorizedClient = current;
+        if (authorizedClient == null || authorizedClient.getAccessToken().getIssuedAt() == null) {
+            return 0;
+        }
+        return Duration.between(authorizedClient.getAccessToken().getIssuedAt(), now).toSeconds();
+    }
+
+    private double remaining(Instant now) {
+        OAuth2AuthorizedClient authorizedClient = current;
+        if (authorizedClient == null || authorizedClient.getAccessToken().getExpiresAt() == null) {
+            return 0;
+        }
+        return Math.max(Duration.between(now, authorizedClient.getAccessToken().getExpiresAt()).toSeconds(), 0);
+    }
+
+    private static OAuth2AuthorizeRequest authorizeRequest() {
+        return OAuth2AuthorizeRequest.withClientRegistrationId(CLIENT_REGISTRATION_ID)
+                .principal(PRINCIPAL_NAME)
+                .build();
+    }
+}
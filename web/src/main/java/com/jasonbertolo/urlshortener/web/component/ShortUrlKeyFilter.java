@@ -0,0 +1,250 @@
+package com.jasonbertolo.urlshortener.web.component;
+
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.CountingOutputStream;
+import com.jasonbertolo.urlshortener.contract.ShortUrlCacheKeys;
+import com.jasonbertolo.urlshortener.web.config.settings.UrlShortenerSettings;
+import com.jasonbertolo.urlshortener.web.service.ApiService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.owasp.esapi.ESAPI;
+import org.owasp.esapi.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.connection.ReactiveRedisConnectionFactory;
+import org.springframework.data.redis.connection.ReactiveSubscription;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.ReactiveRedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.owasp.esapi.Logger.*;
+
+/**
+ * Bloom filter of live ShortUrl keys, used to answer keys that definitely don't exist without calling the API. The
+ * API publishes created keys on spring.data.redis and they're added as they come, keys created since the last build
+ * are also pulled incrementally to cover missed messages, and the filter is rebuilt periodically, which is how deleted
+ * and expired keys drop out. A miss is answered from the filter alone, so a scan of random keys never reaches the
+ * API. Until the created keys subscription is up and a sync started after it completes, every key is let through.
+ */
+@Component
+public class ShortUrlKeyFilter {
+
+    private static final Logger LOGGER = ESAPI.getLogger(ShortUrlKeyFilter.class.getSimpleName());
+
+    public static final String METRIC_PREFIX = "shorturl.keyfilter";
+
+    private final ApiService apiService;
+    private final ReactiveRedisConnectionFactory reactiveRedisConnectionFactory;
+    private final UrlShortenerSettings.KeyFilter settings;
+    private final AtomicReference<BloomFilter<CharSequence>> filter = new AtomicReference<>();
+    private final Counter rejectedCounter;
+    private final Counter createdCounter;
+
+    private volatile long expectedInsertions;
+    private volatile long sizeBytes;
+    private volatile Instant builtAt;
+    private volatile Instant syncedSince;
+    // Filter being rebuilt, which created keys are also added to
+    private volatile BloomFilter<CharSequence> building;
+    // Null while the created keys subscription is down, misses are only rejected after a sync that started since
+    private volatile Instant subscribedAt;
+    private volatile Instant lastSyncStartedAt;
+    private Mono<Void> inFlightSync;
+    private Disposable scheduledSync;
+    private ReactiveRedisMessageListenerContainer container;
+    private Disposable createdSubscription;
+
+    @Autowired
+    public ShortUrlKeyFilter(ApiService apiService, ReactiveRedisConnectionFactory reactiveRedisConnectionFactory,
+                             UrlShortenerSettings urlShortenerSettings, MeterRegistry meterRegistry) {
+        this.apiService = apiService;
+        this.reactiveRedisConnectionFactory = reactiveRedisConnectionFactory;
+        this.settings = urlShortenerSettings.getKeyFilter();
+        this.expectedInsertions = settings.getExpectedInsertions();
+        this.rejectedCounter = Counter.builder(METRIC_PREFIX + ".rejected")
+                .description("Keys answered as not found without calling the API")
+                .register(meterRegistry);
+        this.createdCounter = Counter.builder(METRIC_PREFIX + ".created")
+                .description("Created keys published by the API and added to the filter")
+                .register(meterRegistry);
+        Gauge.builder(METRIC_PREFIX + ".size", this, f -> f.sizeBytes)
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder(METRIC_PREFIX + ".keys", this, f -> f.currentFilter() == null ? 0
+                        : f.currentFilter().approximateElementCount())
+                .register(meterRegistry);
+        Gauge.builder(METRIC_PREFIX + ".fpp", this, f -> f.currentFilter() == null ? 0
+                        : f.currentFilter().expectedFpp())
+                .description("Estimated false positive probability at the current key count")
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!settings.isEnabled()) {
+            LOGGER.info(EVENT_UNSPECIFIED, "ShortUrl key filter is disabled");
+            return;
+        }
+        container = new ReactiveRedisMessageListenerContainer(reactiveRedisConnectionFactory);
+        createdSubscription = Flux.defer(() -> container.receiveLater(ChannelTopic.of(
+                                ShortUrlCacheKeys.CREATED_CHANNEL))
+                        .doOnNext(messages -> onSubscribed())
+                        .flatMapMany(messages -> messages))
+                .map(ReactiveSubscription.Message::getMessage)
+                .retryWhen(Retry.backoff(Long.MAX_VALUE, Duration.ofSeconds(1))
+                        .maxBackoff(Duration.ofMinutes(1))
+                        .doBeforeRetry(signal -> {
+                            LOGGER.warning(EVENT_FAILURE, String.format(
+                                    "ShortUrl key filter subscription failed, resubscribing: [%s]",
+                                    signal.failure().getMessage()));
+                            onUnsubscribed();
+                        }))
+                .subscribe(this::onCreated);
+        scheduledSync = Flux.interval(Duration.ZERO, settings.getSyncInterval())
+                .onBackpressureDrop()
+                .concatMap(tick -> sync()
+                        .onErrorResume(e -> {
+                            LOGGER.warning(EVENT_FAILURE, String.format(
+                                    "Failed to sync ShortUrl key filter: [%s]", e.getMessage()));
+                            return Mono.empty();
+                        }))
+                .subscribe();
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (scheduledSync != null) {
+            scheduledSync.dispose();
+        }
+        if (createdSubscription != null) {
+            createdSubscription.dispose();
+        }
+        if (container != null) {
+            container.destroy();
+        }
+    }
+
+    public Mono<Boolean> mightContain(String key) {
+        BloomFilter<CharSequence> current = filter.get();
+        if (!settings.isEnabled() || current == null || current.mightContain(key) || !isCurrent()) {
+            return Mono.just(true);
+        }
+        rejectedCounter.increment();
+        return Mono.just(false);
+    }
+
+    // Shared by concurrent callers
+    public synchronized Mono<Void> sync() {
+        if (inFlightSync != null) {
+            return inFlightSync;
+        }
+        Instant now = Instant.now();
+        boolean rebuild = filter.get() == null || builtAt.plus(settings.getRebuildInterval()).isBefore(now);
+        inFlightSync = (rebuild ? rebuild(now) : update(now))
+                .doOnSuccess(v -> lastSyncStartedAt = now)
+                .doFinally(signal -> clearInFlightSync())
+                .cache();
+        return inFlightSync;
+    }
+
+    void onSubscribed() {
+        LOGGER.info(EVENT_SUCCESS, String.format("Subscribed the ShortUrl key filter to [%s]",
+                ShortUrlCacheKeys.CREATED_CHANNEL));
+        subscribedAt = Instant.now();
+    }
+
+    void onUnsubscribed() {
+        subscribedAt = null;
+    }
+
+    void onCreated(String key) {
+        createdCounter.increment();
+        BloomFilter<CharSequence> current = filter.get();
+        if (current != null) {
+            current.put(key);
+        }
+        BloomFilter<CharSequence> next = building;
+        if (next != null) {
+            next.put(key);
+        }
+    }
+
+    // Keys created while unsubscribed are only in the filter once a sync started after subscribing has read them
+    private boolean isCurrent() {
+        Instant subscribed = subscribedAt;
+        Instant synced = lastSyncStartedAt;
+        return subscribed != null && synced != null && !synced.isBefore(subscribed);
+    }
+
+    private synchronized void clearInFlightSync() {
+        inFlightSync = null;
+    }
+
+    private Mono<Void> rebuild(Instant now) {
+        return Mono.defer(() -> {
+            BloomFilter<CharSequence> next = BloomFilter.create(Funnels.stringFunnel(UTF_8), expectedInsertions,
+                    settings.getFpp());
+            building = next;
+            return apiService.getLiveKeys(null)
+                    .doOnNext(next::put)
+                    .then(Mono.fromRunnable(() -> {
+                        filter.set(next);
+                        builtAt = now;
+                        syncedSince = now.minus(settings.getSyncOverlap());
+                        sizeBytes = sizeOf(next);
+                        // Grow the next build before the false positive rate degrades
+                        long count = next.approximateElementCount();
+                        if (count > expectedInsertions / 2) {
+                            expectedInsertions = count * 2;
+                        }
+                        LOGGER.info(EVENT_SUCCESS, String.format(
+                                "Rebuilt ShortUrl key filter with [%d] keys in [%d] bytes", count, sizeBytes));
+                    }))
+                    .doFinally(signal -> building = null);
+        });
+    }
+
+    private Mono<Void> update(Instant now) {
+        return Mono.defer(() -> {
+            BloomFilter<CharSequence> current = filter.get();
+            return apiService.getLiveKeys(syncedSince)
+                    .doOnNext(current::put)
+                    .count()
+                    .doOnNext(count -> {
+                        syncedSince = now.minus(settings.getSyncOverlap());
+                        LOGGER.debug(EVENT_SUCCESS, String.format(
+                                "Added [%d] new keys to ShortUrl key filter", count));
+                    })
+                    .then();
+        });
+    }
+
+    private BloomFilter<CharSequence> currentFilter() {
+        return filter.get();
+    }
+
+    private static long sizeOf(BloomFilter<CharSequence> bloomFilter) {
+        try (CountingOutputStream out = new CountingOutputStream(ByteStreams.nullOutputStream())) {
+            bloomFilter.writeTo(out);
+            return out.getCount();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
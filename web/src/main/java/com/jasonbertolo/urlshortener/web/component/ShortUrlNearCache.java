@@ -0,0 +1,138 @@
+package com.jasonbertolo.urlshortener.web.component;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.jasonbertolo.urlshortener.web.config.settings.UrlShortenerSettings;
+import com.jasonbertolo.urlshortener.web.service.ApiService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.GuavaCacheMetrics;
+import org.owasp.esapi.ESAPI;
+import org.owasp.esapi.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import static org.owasp.esapi.Logger.EVENT_SUCCESS;
+import static org.owasp.esapi.Logger.EVENT_UNSPECIFIED;
+
+/**
+ * Bounded in-process cache of resolved ShortUrls used by the redirect path. Entries live for at most the configured
+ * TTL and never past the ShortUrl's own expiresAt. The web never deletes or edits ShortUrls itself, changes made
+ * through the API are dropped by ShortUrlNearCacheInvalidation when redis-invalidation is on, otherwise the TTL
+ * bounds how long they go unseen. An invalidation leaves a tombstone for its key, so a ShortUrl loaded before it
+ * isn't cached after it.
+ */
+@Component
+public class ShortUrlNearCache {
+
+    private static final Logger LOGGER = ESAPI.getLogger(ShortUrlNearCache.class.getSimpleName());
+
+    public static final String CACHE_NAME = "shorturl.near";
+
+    // Only needed while loads started before them are in flight, beyond this puts from before the oldest are refused
+    private static final int MAXIMUM_TOMBSTONES = 1024;
+
+    private final Cache<String, ApiService.ShortUrlResponse> cache;
+    private final boolean enabled;
+    private final AtomicLong versions = new AtomicLong();
+    // Version of the last invalidation of each recently invalidated key, guarded by itself
+    private final Map<String, Long> tombstones = new HashMap<>();
+    // Stamps below it were taken before tombstones that have been dropped
+    private long floor;
+
+    @Autowired
+    public ShortUrlNearCache(UrlShortenerSettings urlShortenerSettings, MeterRegistry meterRegistry) {
+        UrlShortenerSettings.NearCache settings = urlShortenerSettings.getNearCache();
+        this.enabled = settings.isEnabled();
+        this.cache = CacheBuilder.newBuilder()
+                .maximumSize(settings.getMaximumSize())
+                .expireAfterWrite(settings.isRedisInvalidation() ? settings.getInvalidatedTtl() : settings.getTtl())
+                .recordStats()
+                .build();
+        GuavaCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+    }
+
+    public Mono<ApiService.ShortUrlResponse> get(String key,
+                                                 Function<String, Mono<ApiService.ShortUrlResponse>> loader) {
+        if (!enabled) {
+            return loader.apply(key);
+        }
+        ApiService.ShortUrlResponse cached = cache.getIfPresent(key);
+        if (cached != null) {
+            if (!isExpired(cached)) {
+                return Mono.just(cached);
+            }
+            // The link expired while cached, never redirect to it again
+            cache.invalidate(key);
+        }
+        long stamp = versions.get();
+        return loader.apply(key)
+                .doOnNext(shortUrl -> put(key, shortUrl, stamp));
+    }
+
+    // Loads the keys in one call and caches the ShortUrls found, for the warm-up
+    public Mono<Map<String, ApiService.ShortUrlResponse>> load(List<String> keys,
+            Function<List<String>, Mono<Map<String, ApiService.ShortUrlResponse>>> loader) {
+        long stamp = versions.get();
+        return loader.apply(keys)
+                .doOnNext(found -> {
+                    if (enabled) {
+                        found.forEach((key, shortUrl) -> put(key, shortUrl, stamp));
+                    }
+                });
+    }
+
+    public void invalidate(String key) {
+        synchronized (tombstones) {
+            if (tombstones.size() >= MAXIMUM_TOMBSTONES) {
+                floor = versions.get();
+                tombstones.clear();
+            }
+            tombstones.put(key, versions.incrementAndGet());
+            cache.invalidate(key);
+        }
+        LOGGER.debug(EVENT_SUCCESS, String.format("Invalidated near cache ShortUrl key[%s]", key));
+    }
+
+    public void invalidateAll() {
+        synchronized (tombstones) {
+            floor = versions.incrementAndGet();
+            tombstones.clear();
+            cache.invalidateAll();
+        }
+        LOGGER.info(EVENT_UNSPECIFIED, "Invalidated all near cache ShortUrls");
+    }
+
+    public long size() {
+        return cache.size();
+    }
+
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    // Skipped if the key was invalidated since the stamp was taken, the ShortUrl may be from before the change
+    private void put(String key, ApiService.ShortUrlResponse shortUrl, long stamp) {
+        if (isExpired(shortUrl)) {
+            return;
+        }
+        synchronized (tombstones) {
+            if (stamp < floor || tombstones.getOrDefault(key, -1L) > stamp) {
+                return;
+            }
+            cache.put(key, shortUrl);
+        }
+    }
+
+    private static boolean isExpired(ApiService.ShortUrlResponse shortUrl) {
+        return shortUrl.expiresAt() != null && !shortUrl.expiresAt().isAfter(Instant.now());
+    }
+}
@@ -0,0 +1,45 @@
+package com.jasonbertolo.urlshortener.web.component;
+
+import com.google.common.cache.CacheStats;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+@Component
+@Endpoint(id = "nearcache")
+public class ShortUrlNearCacheEndpoint {
+
+    private final ShortUrlNearCache shortUrlNearCache;
+
+    @Autowired
+    public ShortUrlNearCacheEndpoint(ShortUrlNearCache shortUrlNearCache) {
+        this.shortUrlNearCache = shortUrlNearCache;
+    }
+
+    @ReadOperation
+    public Map<String, Object> stats() {
+        CacheStats stats = shortUrlNearCache.stats();
+        return Map.of(
+                "size", shortUrlNearCache.size(),
+                "hitCount", stats.hitCount(),
+                "missCount", stats.missCount(),
+                "hitRate", stats.hitRate(),
+                "evictionCount", stats.evictionCount());
+    }
+
+    // Called when a link is deleted, e.g. DELETE /actuator/nearcache/{key} on the management port
+    @DeleteOperation
+    public void invalidate(@Selector String key) {
+        shortUrlNearCache.invalidate(key);
+    }
+
+    @DeleteOperation
+    public void invalidateAll() {
+        shortUrlNearCache.invalidateAll();
+    }
+}
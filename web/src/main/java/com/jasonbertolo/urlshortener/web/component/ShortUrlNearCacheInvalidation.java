@@ -0,0 +1,93 @@
+package com.jasonbertolo.urlshortener.web.component;
+
+import com.jasonbertolo.urlshortener.contract.ShortUrlCacheKeys;
+import com.jasonbertolo.urlshortener.web.config.settings.UrlShortenerSettings;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.owasp.esapi.ESAPI;
+import org.owasp.esapi.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.redis.connection.ReactiveRedisConnectionFactory;
+import org.springframework.data.redis.connection.ReactiveSubscription;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.ReactiveRedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+
+import static org.owasp.esapi.Logger.*;
+
+/**
+ * Drops near cache entries for the keys the API publishes when a ShortUrl is deleted or changed. Subscribed before
+ * the warm-up runs. When the subscription fails the whole near cache is dropped, since messages published until it's
+ * back are lost.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class ShortUrlNearCacheInvalidation implements ApplicationRunner {
+
+    private static final Logger LOGGER = ESAPI.getLogger(ShortUrlNearCacheInvalidation.class.getSimpleName());
+
+    private final ShortUrlNearCache shortUrlNearCache;
+    private final ReactiveRedisConnectionFactory reactiveRedisConnectionFactory;
+    private final UrlShortenerSettings.NearCache settings;
+    private final Counter invalidationCounter;
+    private ReactiveRedisMessageListenerContainer container;
+    private Disposable subscription;
+
+    @Autowired
+    public ShortUrlNearCacheInvalidation(ShortUrlNearCache shortUrlNearCache,
+                                         ReactiveRedisConnectionFactory reactiveRedisConnectionFactory,
+                                         UrlShortenerSettings urlShortenerSettings,
+                                         MeterRegistry meterRegistry) {
+        this.shortUrlNearCache = shortUrlNearCache;
+        this.reactiveRedisConnectionFactory = reactiveRedisConnectionFactory;
+        this.settings = urlShortenerSettings.getNearCache();
+        this.invalidationCounter = Counter.builder(ShortUrlNearCache.CACHE_NAME + ".invalidations")
+                .description("Near cache invalidations published by the API")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!settings.isEnabled() || !settings.isRedisInvalidation()) {
+            LOGGER.info(EVENT_UNSPECIFIED, "ShortUrl near cache invalidation over Redis is disabled");
+            return;
+        }
+        container = new ReactiveRedisMessageListenerContainer(reactiveRedisConnectionFactory);
+        subscription = Flux.defer(() -> container.receive(ChannelTopic.of(ShortUrlCacheKeys.INVALIDATION_CHANNEL)))
+                .map(ReactiveSubscription.Message::getMessage)
+                .retryWhen(Retry.backoff(Long.MAX_VALUE, Duration.ofSeconds(1))
+                        .maxBackoff(Duration.ofMinutes(1))
+                        .doBeforeRetry(signal -> {
+                            LOGGER.warning(EVENT_FAILURE, String.format(
+                                    "ShortUrl near cache invalidation subscription failed, resubscribing: [%s]",
+                                    signal.failure().getMessage()));
+                            shortUrlNearCache.invalidateAll();
+                        }))
+                .subscribe(key -> {
+                    invalidationCounter.increment();
+                    shortUrlNearCache.invalidate(key);
+                });
+        LOGGER.info(EVENT_SUCCESS, String.format("Subscribed the ShortUrl near cache to [%s]",
+                ShortUrlCacheKeys.INVALIDATION_CHANNEL));
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (subscription != null) {
+            subscription.dispose();
+        }
+        if (container != null) {
+            container.destroy();
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.jasonbertolo.urlshortener.web.component;
+
+import com.jasonbertolo.urlshortener.web.config.settings.UrlShortenerSettings;
+import com.jasonbertolo.urlshortener.web.service.ApiService;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import org.owasp.esapi.ESAPI;
+import org.owasp.esapi.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.owasp.esapi.Logger.*;
+
+/**
+ * Loads the API's most accessed keys into the near cache before the instance reports ready, so the first
+ * redirects after a deploy don't all go to the API. The keys are fetched in batches the API doesn't record as
+ * accesses, otherwise every deploy would count the current top keys again and keep them on top. Limited by a time
+ * budget, whatever isn't warmed by then is left to redirects.
+ */
+@Component
+public class ShortUrlNearCacheWarmUp implements ApplicationRunner {
+
+    private static final Logger LOGGER = ESAPI.getLogger(ShortUrlNearCacheWarmUp.class.getSimpleName());
+
+    public static final String METRIC_PREFIX = "shorturl.warmup";
+
+    private final ApiService apiService;
+    private final ShortUrlNearCache shortUrlNearCache;
+    private final UrlShortenerSettings.WarmUp settings;
+    private final AtomicLong warmedCount = new AtomicLong();
+    private final AtomicLong durationMillis = new AtomicLong();
+
+    @Autowired
+    public ShortUrlNearCacheWarmUp(ApiService apiService,
+                                   ShortUrlNearCache shortUrlNearCache,
+                                   UrlShortenerSettings urlShortenerSettings,
+                                   MeterRegistry meterRegistry) {
+        this.apiService = apiService;
+        this.shortUrlNearCache = shortUrlNearCache;
+        this.settings = urlShortenerSettings.getWarmUp();
+        Gauge.builder(METRIC_PREFIX + ".keys", warmedCount, AtomicLong::get)
+                .description("ShortUrls loaded into the near cache at startup")
+                .register(meterRegistry);
+        TimeGauge.builder(METRIC_PREFIX + ".duration", durationMillis, TimeUnit.MILLISECONDS, AtomicLong::get)
+                .description("Time the startup near cache warm-up took")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!settings.isEnabled()) {
+            LOGGER.info(EVENT_UNSPECIFIED, "ShortUrl near cache warm-up is disabled");
+            return;
+        }
+        long start = System.nanoTime();
+        apiService.getHotKeys(settings.getTopKeys())
+                .buffer(settings.getBatchSize())
+                .flatMap(keys -> shortUrlNearCache.load(keys, apiService::warmUpShortUrls)
+                        .doOnNext(found -> warmedCount.addAndGet(found.size()))
+                        // Keys deleted since they were popular are left out, a failed batch is skipped
+                        .onErrorResume(e -> {
+                            LOGGER.warning(EVENT_FAILURE, String.format(
+                                    "ShortUrl near cache warm-up batch of [%d] keys failed: [%s]", keys.size(),
+                                    e.getMessage()));
+                            return Mono.empty();
+                        }), settings.getConcurrency())
+                .take(settings.getTimeBudget())
+                .then()
+                .onErrorResume(e -> {
+                    LOGGER.warning(EVENT_FAILURE, String.format(
+                            "ShortUrl near cache warm-up failed: [%s]", e.getMessage()));
+                    return Mono.empty();
+                })
+                .block();
+        Duration took = Duration.ofNanos(System.nanoTime() - start);
+        durationMillis.set(took.toMillis());
+        LOGGER.info(EVENT_SUCCESS, String.format("Warmed [%d] ShortUrls into the near cache in [%d]ms%s",
+                warmedCount.get(), took.toMillis(),
+                took.compareTo(settings.getTimeBudget()) >= 0 ? ", stopped at the time budget" : ""));
+    }
+}
@@ -0,0 +1,78 @@
+package com.jasonbertolo.urlshortener.web.config;
+
+import com.google.common.net.HostAndPort;
+import com.jasonbertolo.urlshortener.contract.CachedShortUrl;
+import com.jasonbertolo.urlshortener.contract.ConsistentHashRing;
+import com.jasonbertolo.urlshortener.web.config.settings.UrlShortenerSettings;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.actuate.data.redis.RedisReactiveHealthIndicator;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.ReactiveRedisConnectionFactory;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.ReactiveRedisOperations;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializationContext;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+@Configuration
+public class CacheConfig implements DisposableBean {
+
+    private final List<LettuceConnectionFactory> shardConnectionFactories = new CopyOnWriteArrayList<>();
+
+    /*
+     * Reads the cache the API fills, the web module never writes to it. When the API shards its cache the same
+     * endpoints and virtual nodes place the same keys on the same shards, otherwise spring.data.redis is the only node.
+     */
+    @Bean
+    public ConsistentHashRing<ReactiveRedisOperations<String, CachedShortUrl>> shortUrlRedisRing(
+            ReactiveRedisConnectionFactory factory, UrlShortenerSettings urlShortenerSettings) {
+        UrlShortenerSettings.DirectRead directRead = urlShortenerSettings.getDirectRead();
+        if (directRead.getShardEndpoints().isEmpty()) {
+            return new ConsistentHashRing<>(Map.of("default", shortUrlRedisOperations(factory)), 1);
+        }
+        return new ConsistentHashRing<>(directRead.getShardEndpoints().stream()
+                .distinct()
+                .collect(Collectors.toMap(Function.identity(), endpoint -> {
+                    HostAndPort hostAndPort = HostAndPort.fromString(endpoint).withDefaultPort(6379);
+                    LettuceConnectionFactory shardFactory = new LettuceConnectionFactory(hostAndPort.getHost(),
+                            hostAndPort.getPort());
+                    shardFactory.afterPropertiesSet();
+                    shardConnectionFactories.add(shardFactory);
+                    return shortUrlRedisOperations(shardFactory);
+                })), directRead.getShardVirtualNodes());
+    }
+
+    /*
+     * Replaces the auto-configured check, which management.health.redis.enabled can only tie to one property.
+     * spring.data.redis is needed by direct reads and by Redis sessions alike.
+     */
+    @Bean
+    @ConditionalOnExpression("${url-shortener.direct-read.enabled:false}"
+            + " or ${url-shortener.redis-sessions.enabled:false}")
+    public RedisReactiveHealthIndicator redisHealthContributor(ReactiveRedisConnectionFactory factory) {
+        return new RedisReactiveHealthIndicator(factory);
+    }
+
+    @Override
+    public void destroy() {
+        shardConnectionFactories.forEach(LettuceConnectionFactory::destroy);
+    }
+
+    private static ReactiveRedisOperations<String, CachedShortUrl> shortUrlRedisOperations(
+            ReactiveRedisConnectionFactory factory) {
+        RedisSerializationContext<String, CachedShortUrl> context = RedisSerializationContext
+                .<String, CachedShortUrl>newSerializationContext(new StringRedisSerializer())
+                .value(new CachedShortUrlRedisSerializer())
+                .hashValue(new CachedShortUrlRedisSerializer())
+                .build();
+        return new ReactiveRedisTemplate<>(factory, context);
+    }
+}
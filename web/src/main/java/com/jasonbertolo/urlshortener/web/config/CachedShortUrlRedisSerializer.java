@@ -0,0 +1,33 @@
+package com.jasonbertolo.urlshortener.web.config;
+
+import com.jasonbertolo.urlshortener.contract.CachedShortUrl;
+import com.jasonbertolo.urlshortener.contract.ShortUrlCacheCodec;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+public class CachedShortUrlRedisSerializer implements RedisSerializer<CachedShortUrl> {
+
+    @Override
+    public byte[] serialize(CachedShortUrl cachedShortUrl) throws SerializationException {
+        if (cachedShortUrl == null) {
+            return new byte[0];
+        }
+        try {
+            return ShortUrlCacheCodec.encode(cachedShortUrl);
+        } catch (RuntimeException e) {
+            throw new SerializationException("Could not write CachedShortUrl", e);
+        }
+    }
+
+    @Override
+    public CachedShortUrl deserialize(byte[] bytes) throws SerializationException {
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+        try {
+            return ShortUrlCacheCodec.decode(bytes);
+        } catch (RuntimeException e) {
+            throw new SerializationException("Could not read CachedShortUrl", e);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.jasonbertolo.urlshortener.web.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.springframework.data.redis.connection.ReactiveRedisConnectionFactory;
+import org.springframework.data.redis.core.ReactiveRedisOperations;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.serializer.Jackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializationContext;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.oauth2.client.OAuth2AuthorizedClient;
+import org.springframework.security.oauth2.client.ReactiveOAuth2AuthorizedClientService;
+import org.springframework.security.oauth2.client.registration.ClientRegistration;
+import org.springframework.security.oauth2.client.registration.ReactiveClientRegistrationRepository;
+import org.springframework.security.oauth2.core.OAuth2AccessToken;
+import org.springframework.security.oauth2.core.OAuth2RefreshToken;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Set;
+
+/**
+ * Authorized clients kept in Redis, so a user's access token is available on every web node rather than only the one
+ * they logged in on. Only the tokens are stored, the client registration is looked up again when loading. An entry
+ * lives for the session timeout, or until its access token expires if that's later.
+ */
+public class RedisOAuth2AuthorizedClientService implements ReactiveOAuth2AuthorizedClientService {
+
+    private record StoredClient(String principalName, String accessToken, Instant issuedAt, Instant expiresAt,
+                                Set<String> scopes, String refreshToken, Instant refreshTokenIssuedAt) {}
+
+    private final ReactiveClientRegistrationRepository clientRegistrationRepository;
+    private final ReactiveRedisOperations<String, StoredClient> redisOperations;
+    private final String keyPrefix;
+    private final Duration minimumTtl;
+
+    public RedisOAuth2AuthorizedClientService(ReactiveClientRegistrationRepository clientRegistrationRepository,
+                                              ReactiveRedisConnectionFactory factory,
+                                              String namespace,
+                                              Duration minimumTtl) {
+        this.clientRegistrationRepository = clientRegistrationRepository;
+        ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+        this.redisOperations = new ReactiveRedisTemplate<>(factory, RedisSerializationContext
+                .<String, StoredClient>newSerializationContext(new StringRedisSerializer())
+                .value(new Jackson2JsonRedisSerializer<>(objectMapper, StoredClient.class))
+                .build());
+        this.keyPrefix = namespace + ":oauth2:client:";
+        this.minimumTtl = minimumTtl;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T extends OAuth2AuthorizedClient> Mono<T> loadAuthorizedClient(String clientRegistrationId,
+                                                                          String principalName) {
+        return clientRegistrationRepository.findByRegistrationId(clientRegistrationId)
+                .flatMap(clientRegistration -> redisOperations.opsForValue()
+                        .get(key(clientRegistrationId, principalName))
+                        .map(stored -> (T) toAuthorizedClient(clientRegistration, stored)));
+    }
+
+    @Override
+    public Mono<Void> saveAuthorizedClient(OAuth2AuthorizedClient authorizedClient, Authentication principal) {
+        OAuth2AccessToken accessToken = authorizedClient.getAccessToken();
+        OAuth2RefreshToken refreshToken = authorizedClient.getRefreshToken();
+        StoredClient stored = new StoredClient(principal.getName(), accessToken.getTokenValue(),
+                accessToken.getIssuedAt(), accessToken.getExpiresAt(), accessToken.getScopes(),
+                refreshToken != null ? refreshToken.getTokenValue() : null,
+                refreshToken != null ? refreshToken.getIssuedAt() : null);
+        return redisOperations.opsForValue()
+                .set(key(authorizedClient.getClientRegistration().getRegistrationId(), principal.getName()), stored,
+                        ttl(accessToken))
+                .then();
+    }
+
+    @Override
+    public Mono<Void> removeAuthorizedClient(String clientRegistrationId, String principalName) {
+        return redisOperations.delete(key(clientRegistrationId, principalName)).then();
+    }
+
+    private Duration ttl(OAuth2AccessToken accessToken) {
+        if (accessToken.getExpiresAt() == null) {
+            return minimumTtl;
+        }
+        Duration untilExpiry = Duration.between(Instant.now(), accessToken.getExpiresAt());
+        return untilExpiry.compareTo(minimumTtl) > 0 ? untilExpiry : minimumTtl;
+    }
+
+    private String key(String clientRegistrationId, String principalName) {
+        return keyPrefix + clientRegistrationId + ":" + principalName;
+    }
+
+    private static OAuth2AuthorizedClient toAuthorizedClient(ClientRegistration clientRegistration,
+                                                             StoredClient stored) {
+        OAuth2AccessToken accessToken = new OAuth2AccessToken(OAuth2AccessToken.TokenType.BEARER,
+                stored.accessToken(), stored.issuedAt(), stored.expiresAt(), stored.scopes());
+        OAuth2RefreshToken refreshToken = stored.refreshToken() != null
+                ? new OAuth2RefreshToken(stored.refreshToken(), stored.refreshTokenIssuedAt()) : null;
+        return new OAuth2AuthorizedClient(clientRegistration, stored.principalName(), accessToken, refreshToken);
+    }
+}
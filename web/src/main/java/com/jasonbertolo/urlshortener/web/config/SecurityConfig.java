@@ -1,29 +1,54 @@
 package com.jasonbertolo.urlshortener.web.config;
 
+import com.jasonbertolo.urlshortener.web.config.settings.UrlShortenerSettings;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
 import org.springframework.security.config.annotation.web.reactive.EnableWebFluxSecurity;
 import org.springframework.security.config.web.server.ServerHttpSecurity;
 import org.springframework.security.oauth2.client.AuthorizedClientServiceReactiveOAuth2AuthorizedClientManager;
 import org.springframework.security.oauth2.client.ReactiveOAuth2AuthorizedClientManager;
+import org.springframework.security.oauth2.client.ReactiveOAuth2AuthorizedClientProviderBuilder;
 import org.springframework.security.oauth2.client.ReactiveOAuth2AuthorizedClientService;
 import org.springframework.security.oauth2.client.oidc.web.server.logout.OidcClientInitiatedServerLogoutSuccessHandler;
 import org.springframework.security.oauth2.client.registration.ReactiveClientRegistrationRepository;
 import org.springframework.security.web.reactive.result.view.CsrfRequestDataValueProcessor;
 import org.springframework.security.web.server.SecurityWebFilterChain;
 import org.springframework.security.web.server.authentication.logout.ServerLogoutSuccessHandler;
+import org.springframework.security.web.server.context.NoOpServerSecurityContextRepository;
 import org.springframework.security.web.server.csrf.CsrfToken;
 import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebSession;
 import reactor.core.publisher.Mono;
 
 import static org.springframework.http.HttpMethod.GET;
 import static org.springframework.security.config.Customizer.withDefaults;
 import static org.springframework.security.oauth2.core.authorization.OAuth2ReactiveAuthorizationManagers.hasScope;
+import static org.springframework.security.web.server.util.matcher.ServerWebExchangeMatchers.pathMatchers;
 
 @Configuration
 @EnableWebFluxSecurity
 public class SecurityConfig {
 
+    // Short URLs are public and followed mostly by anonymous clients and bots. Nothing on them reads the session, so
+    // they get a chain that never starts one, and with no CSRF token, includeCsrfTokenWebFilter doesn't load it
+    // either.
+    @Bean
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public SecurityWebFilterChain shortUrlSecurityWebFilterChain(ServerHttpSecurity http) {
+        http
+                .securityMatcher(pathMatchers(GET, "/u/**"))
+                .authorizeExchange(spec -> spec.anyExchange().permitAll())
+                .securityContextRepository(NoOpServerSecurityContextRepository.getInstance())
+                .csrf(ServerHttpSecurity.CsrfSpec::disable)
+                .httpBasic(ServerHttpSecurity.HttpBasicSpec::disable)
+                .formLogin(ServerHttpSecurity.FormLoginSpec::disable)
+                .logout(ServerHttpSecurity.LogoutSpec::disable)
+                .requestCache(ServerHttpSecurity.RequestCacheSpec::disable);
+        return http.build();
+    }
+
     @Bean
     public SecurityWebFilterChain securityWebFilterChain(ServerHttpSecurity http,
                                                          ReactiveClientRegistrationRepository clientRegistrationRepository) {
@@ -45,21 +70,37 @@ public class SecurityConfig {
         return oidcLogoutSuccessHandler;
     }
 
+    // The CSRF token is kept in the session, so it's only generated for visitors that already have one, like after
+    // the OAuth2 login. Anonymous pages have no forms posting back here and don't start a session just for a token.
+    // Chains without CSRF protection set no token, and their requests don't read the session at all.
     @Bean
     public WebFilter includeCsrfTokenWebFilter() {
         return (exchange, chain) -> {
-            Mono<CsrfToken> csrfToken = exchange.getAttributeOrDefault(CsrfToken.class.getName(), Mono.empty());
-            return csrfToken.doOnSuccess(token -> exchange.getAttributes()
+            Mono<CsrfToken> csrfToken = exchange.getAttribute(CsrfToken.class.getName());
+            if (csrfToken == null) {
+                return chain.filter(exchange);
+            }
+            return exchange.getSession()
+                    .filter(WebSession::isStarted)
+                    .flatMap(session -> csrfToken)
+                    .doOnNext(token -> exchange.getAttributes()
                             .put(CsrfRequestDataValueProcessor.DEFAULT_CSRF_ATTR_NAME, token))
                     .then(chain.filter(exchange));
         };
     }
 
+    // A client credentials token expiring within refreshAhead is replaced, so ApiTokenRefresher gets a new one
     @Bean
     public ReactiveOAuth2AuthorizedClientManager reactiveOAuth2AuthorizedClientManager(
             ReactiveClientRegistrationRepository clientRegistrationRepository,
-            ReactiveOAuth2AuthorizedClientService authorizedClientService) {
-        return new AuthorizedClientServiceReactiveOAuth2AuthorizedClientManager(clientRegistrationRepository,
-                authorizedClientService);
+            ReactiveOAuth2AuthorizedClientService authorizedClientService,
+            UrlShortenerSettings urlShortenerSettings) {
+        AuthorizedClientServiceReactiveOAuth2AuthorizedClientManager authorizedClientManager =
+                new AuthorizedClientServiceReactiveOAuth2AuthorizedClientManager(clientRegistrationRepository,
+                        authorizedClientService);
+        authorizedClientManager.setAuthorizedClientProvider(ReactiveOAuth2AuthorizedClientProviderBuilder.builder()
+                .clientCredentials(builder -> builder.clockSkew(urlShortenerSettings.getApiToken().getRefreshAhead()))
+                .build());
+        return authorizedClientManager;
     }
 }
@@ -0,0 +1,52 @@
+package com.jasonbertolo.urlshortener.web.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jasonbertolo.urlshortener.web.config.settings.UrlShortenerSettings;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.ReactiveRedisConnectionFactory;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.security.jackson2.SecurityJackson2Modules;
+import org.springframework.security.oauth2.client.ReactiveOAuth2AuthorizedClientService;
+import org.springframework.security.oauth2.client.registration.ReactiveClientRegistrationRepository;
+import org.springframework.session.config.ReactiveSessionRepositoryCustomizer;
+import org.springframework.session.data.redis.ReactiveRedisSessionRepository;
+import org.springframework.session.data.redis.config.annotation.web.server.EnableRedisWebSession;
+
+@Configuration
+@EnableRedisWebSession
+@ConditionalOnProperty(prefix = "url-shortener.redis-sessions", name = "enabled", havingValue = "true")
+public class SessionConfig {
+
+    // Session attributes as JSON, with Spring Security's mixins for the security context and OAuth2 login state,
+    // instead of JDK serialization that writes out every class descriptor
+    @Bean
+    public RedisSerializer<Object> springSessionDefaultRedisSerializer() {
+        ObjectMapper objectMapper = new ObjectMapper();
+        objectMapper.registerModules(SecurityJackson2Modules.getModules(SessionConfig.class.getClassLoader()));
+        return new GenericJackson2JsonRedisSerializer(objectMapper);
+    }
+
+    @Bean
+    public ReactiveSessionRepositoryCustomizer<ReactiveRedisSessionRepository> sessionRepositoryCustomizer(
+            UrlShortenerSettings urlShortenerSettings) {
+        UrlShortenerSettings.RedisSessions settings = urlShortenerSettings.getRedisSessions();
+        return sessionRepository -> {
+            sessionRepository.setRedisKeyNamespace(settings.getNamespace());
+            sessionRepository.setDefaultMaxInactiveInterval(settings.getTimeout());
+        };
+    }
+
+    // The users' tokens have to follow their session to other nodes, /jwt reads them from here
+    @Bean
+    public ReactiveOAuth2AuthorizedClientService authorizedClientService(
+            ReactiveClientRegistrationRepository clientRegistrationRepository,
+            ReactiveRedisConnectionFactory reactiveRedisConnectionFactory,
+            UrlShortenerSettings urlShortenerSettings) {
+        UrlShortenerSettings.RedisSessions settings = urlShortenerSettings.getRedisSessions();
+        return new RedisOAuth2AuthorizedClientService(clientRegistrationRepository, reactiveRedisConnectionFactory,
+                settings.getNamespace(), settings.getTimeout());
+    }
+}
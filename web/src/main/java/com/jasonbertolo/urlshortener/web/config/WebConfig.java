@@ -2,13 +2,17 @@ package com.jasonbertolo.urlshortener.web.config;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.PropertyNamingStrategies;
+import com.jasonbertolo.urlshortener.web.component.ApiTokenRefresher;
+import com.jasonbertolo.urlshortener.web.config.settings.MicroservicesSettings;
 import com.jasonbertolo.urlshortener.web.config.settings.UiSettings;
 import com.jasonbertolo.urlshortener.web.handler.SupportHandler;
 import com.jasonbertolo.urlshortener.web.handler.WebAppHandler;
+import io.netty.channel.ChannelOption;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.core.io.Resource;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
 import org.springframework.http.codec.ServerCodecConfigurer;
 import org.springframework.http.codec.json.Jackson2JsonDecoder;
 import org.springframework.http.codec.json.Jackson2JsonEncoder;
@@ -21,6 +25,9 @@ import org.springframework.web.reactive.function.client.WebClient;
 import org.springframework.web.reactive.function.server.RouterFunction;
 import org.springframework.web.reactive.function.server.RouterFunctions;
 import org.springframework.web.reactive.function.server.ServerResponse;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
 
 import static org.springframework.http.MediaType.APPLICATION_JSON;
 import static org.springframework.web.reactive.function.server.RouterFunctions.route;
@@ -68,15 +75,44 @@ public class WebConfig implements WebFluxConfigurer {
         return builder.build();
     }
 
+    // Pool meters are published as reactor.netty.connection.provider.*{name=api}, pending.connections.time is the
+    // time requests waited for a connection
+    @Bean(destroyMethod = "dispose")
+    public ConnectionProvider apiConnectionProvider(MicroservicesSettings microservicesSettings) {
+        MicroservicesSettings.ApiClient settings = microservicesSettings.getApiClient();
+        return ConnectionProvider.builder("api")
+                .maxConnections(settings.getMaxConnections())
+                .pendingAcquireMaxCount(settings.getPendingAcquireMaxCount())
+                .pendingAcquireTimeout(settings.getPendingAcquireTimeout())
+                .maxIdleTime(settings.getMaxIdleTime())
+                .maxLifeTime(settings.getMaxLifeTime())
+                .evictInBackground(settings.getEvictionInterval())
+                .metrics(true)
+                .build();
+    }
+
     @Bean("apiWebClient")
-    public WebClient apiWebClient(ReactiveOAuth2AuthorizedClientManager authorizedClientManager) {
+    public WebClient apiWebClient(ReactiveOAuth2AuthorizedClientManager authorizedClientManager,
+                                  ApiTokenRefresher apiTokenRefresher,
+                                  ConnectionProvider apiConnectionProvider,
+                                  MicroservicesSettings microservicesSettings) {
+        MicroservicesSettings.ApiClient settings = microservicesSettings.getApiClient();
+        HttpClient httpClient = HttpClient.create(apiConnectionProvider)
+                .protocol(settings.isH2c() ? HttpProtocol.H2C : HttpProtocol.HTTP11)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) settings.getConnectTimeout().toMillis())
+                .option(ChannelOption.SO_KEEPALIVE, settings.isKeepAlive())
+                .keepAlive(settings.isKeepAlive())
+                .responseTimeout(settings.getResponseTimeout());
+        // The API token comes from memory, renewed in the background, instead of being checked on every call
         ServerOAuth2AuthorizedClientExchangeFilterFunction filterFunction =
-                new ServerOAuth2AuthorizedClientExchangeFilterFunction(authorizedClientManager);
-        filterFunction.setDefaultClientRegistrationId("url_shortener_cache");
+                new ServerOAuth2AuthorizedClientExchangeFilterFunction(request -> apiTokenRefresher.handles(request)
+                        ? apiTokenRefresher.authorizedClient() : authorizedClientManager.authorize(request));
+        filterFunction.setDefaultClientRegistrationId(ApiTokenRefresher.CLIENT_REGISTRATION_ID);
         ObjectMapper snakeCaseMapper = Jackson2ObjectMapperBuilder.json()
                 .propertyNamingStrategy(PropertyNamingStrategies.SNAKE_CASE)
                 .build();
         return WebClient.builder()
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
                 .filter(filterFunction)
                 .codecs(clientDefaultCodecsConfigurer -> {
                     clientDefaultCodecsConfigurer.defaultCodecs()
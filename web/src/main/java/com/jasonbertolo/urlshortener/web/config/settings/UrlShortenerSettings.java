@@ -0,0 +1,601 @@
+package com.jasonbertolo.urlshortener.web.config.settings;
+
+import com.jasonbertolo.urlshortener.contract.ShortUrlCacheKeys;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+@ConfigurationProperties(prefix = "url-shortener")
+public class UrlShortenerSettings {
+
+    private Integer keyLength;
+    private NearCache nearCache = new NearCache();
+    private KeyFilter keyFilter = new KeyFilter();
+    private DirectRead directRead = new DirectRead();
+    private WarmUp warmUp = new WarmUp();
+    private ApiRSocket apiRsocket = new ApiRSocket();
+    private ApiBatch apiBatch = new ApiBatch();
+    private ApiAffinity apiAffinity = new ApiAffinity();
+    private ApiBalancing apiBalancing = new ApiBalancing();
+    private ApiToken apiToken = new ApiToken();
+    private RedisSessions redisSessions = new RedisSessions();
+
+    public Integer getKeyLength() {
+        return keyLength;
+    }
+
+    public void setKeyLength(Integer keyLength) {
+        this.keyLength = keyLength;
+    }
+
+    public NearCache getNearCache() {
+        return nearCache;
+    }
+
+    public void setNearCache(NearCache nearCache) {
+        this.nearCache = nearCache;
+    }
+
+    public KeyFilter getKeyFilter() {
+        return keyFilter;
+    }
+
+    public void setKeyFilter(KeyFilter keyFilter) {
+        this.keyFilter = keyFilter;
+    }
+
+    public DirectRead getDirectRead() {
+        return directRead;
+    }
+
+    public void setDirectRead(DirectRead directRead) {
+        this.directRead = directRead;
+    }
+
+    public WarmUp getWarmUp() {
+        return warmUp;
+    }
+
+    public void setWarmUp(WarmUp warmUp) {
+        this.warmUp = warmUp;
+    }
+
+    public ApiRSocket getApiRsocket() {
+        return apiRsocket;
+    }
+
+    public void setApiRsocket(ApiRSocket apiRsocket) {
+        this.apiRsocket = apiRsocket;
+    }
+
+    public ApiBatch getApiBatch() {
+        return apiBatch;
+    }
+
+    public void setApiBatch(ApiBatch apiBatch) {
+        this.apiBatch = apiBatch;
+    }
+
+    public ApiAffinity getApiAffinity() {
+        return apiAffinity;
+    }
+
+    public void setApiAffinity(ApiAffinity apiAffinity) {
+        this.apiAffinity = apiAffinity;
+    }
+
+    public ApiBalancing getApiBalancing() {
+        return apiBalancing;
+    }
+
+    public void setApiBalancing(ApiBalancing apiBalancing) {
+        this.apiBalancing = apiBalancing;
+    }
+
+    public ApiToken getApiToken() {
+        return apiToken;
+    }
+
+    public void setApiToken(ApiToken apiToken) {
+        this.apiToken = apiToken;
+    }
+
+    public RedisSessions getRedisSessions() {
+        return redisSessions;
+    }
+
+    public void setRedisSessions(RedisSessions redisSessions) {
+        this.redisSessions = redisSessions;
+    }
+
+    public static class NearCache {
+        private boolean enabled = true;
+        private long maximumSize = 10000;
+        private Duration ttl = Duration.ofSeconds(10);
+        private boolean redisInvalidation = false;
+        private Duration invalidatedTtl = Duration.ofMinutes(5);
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public long getMaximumSize() {
+            return maximumSize;
+        }
+
+        public void setMaximumSize(long maximumSize) {
+            this.maximumSize = maximumSize;
+        }
+
+        public Duration getTtl() {
+            return ttl;
+        }
+
+        public void setTtl(Duration ttl) {
+            this.ttl = ttl;
+        }
+
+        public boolean isRedisInvalidation() {
+            return redisInvalidation;
+        }
+
+        public void setRedisInvalidation(boolean redisInvalidation) {
+            this.redisInvalidation = redisInvalidation;
+        }
+
+        public Duration getInvalidatedTtl() {
+            return invalidatedTtl;
+        }
+
+        public void setInvalidatedTtl(Duration invalidatedTtl) {
+            this.invalidatedTtl = invalidatedTtl;
+        }
+    }
+
+    public static class KeyFilter {
+        private boolean enabled = false;
+        private long expectedInsertions = 1000000;
+        private double fpp = 0.01;
+        private Duration syncInterval = Duration.ofSeconds(5);
+        private Duration rebuildInterval = Duration.ofHours(1);
+        private Duration syncOverlap = Duration.ofSeconds(30);
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public long getExpectedInsertions() {
+            return expectedInsertions;
+        }
+
+        public void setExpectedInsertions(long expectedInsertions) {
+            this.expectedInsertions = expectedInsertions;
+        }
+
+        public double getFpp() {
+            return fpp;
+        }
+
+        public void setFpp(double fpp) {
+            this.fpp = fpp;
+        }
+
+        public Duration getSyncInterval() {
+            return syncInterval;
+        }
+
+        public void setSyncInterval(Duration syncInterval) {
+            this.syncInterval = syncInterval;
+        }
+
+        public Duration getRebuildInterval() {
+            return rebuildInterval;
+        }
+
+        public void setRebuildInterval(Duration rebuildInterval) {
+            this.rebuildInterval = rebuildInterval;
+        }
+
+        public Duration getSyncOverlap() {
+            return syncOverlap;
+        }
+
+        public void setSyncOverlap(Duration syncOverlap) {
+            this.syncOverlap = syncOverlap;
+        }
+    }
+
+    public static class DirectRead {
+        private boolean enabled = false;
+        private ShortUrlCacheKeys.Layout layout = ShortUrlCacheKeys.Layout.KEY;
+        private int bucketCount = 65536;
+        private List<String> shardEndpoints = new ArrayList<>();
+        private int shardVirtualNodes = 160;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public ShortUrlCacheKeys.Layout getLayout() {
+            return layout;
+        }
+
+        public void setLayout(ShortUrlCacheKeys.Layout layout) {
+            this.layout = layout;
+        }
+
+        public int getBucketCount() {
+            return bucketCount;
+        }
+
+        public void setBucketCount(int bucketCount) {
+            this.bucketCount = bucketCount;
+        }
+
+        public List<String> getShardEndpoints() {
+            return shardEndpoints;
+        }
+
+        public void setShardEndpoints(List<String> shardEndpoints) {
+            this.shardEndpoints = shardEndpoints;
+        }
+
+        public int getShardVirtualNodes() {
+            return shardVirtualNodes;
+        }
+
+        public void setShardVirtualNodes(int shardVirtualNodes) {
+            this.shardVirtualNodes = shardVirtualNodes;
+        }
+    }
+
+    public static class WarmUp {
+        private boolean enabled = false;
+        private int topKeys = 5000;
+        private int batchSize = 100;
+        private int concurrency = 8;
+        private Duration timeBudget = Duration.ofSeconds(20);
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getTopKeys() {
+            return topKeys;
+        }
+
+        public void setTopKeys(int topKeys) {
+            this.topKeys = topKeys;
+        }
+
+        public int getBatchSize() {
+            return batchSize;
+        }
+
+        public void setBatchSize(int batchSize) {
+            this.batchSize = batchSize;
+        }
+
+        public int getConcurrency() {
+            return concurrency;
+        }
+
+        public void setConcurrency(int concurrency) {
+            this.concurrency = concurrency;
+        }
+
+        public Duration getTimeBudget() {
+            return timeBudget;
+        }
+
+        public void setTimeBudget(Duration timeBudget) {
+            this.timeBudget = timeBudget;
+        }
+    }
+
+    public static class ApiRSocket {
+        private boolean enabled = false;
+        private String host = "localhost";
+        private int port = 7090;
+        private Duration tokenRefreshSkew = Duration.ofSeconds(60);
+        private Duration closeGracePeriod = Duration.ofSeconds(10);
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public String getHost() {
+            return host;
+        }
+
+        public void setHost(String host) {
+            this.host = host;
+        }
+
+        public int getPort() {
+            return port;
+        }
+
+        public void setPort(int port) {
+            this.port = port;
+        }
+
+        public Duration getTokenRefreshSkew() {
+            return tokenRefreshSkew;
+        }
+
+        public void setTokenRefreshSkew(Duration tokenRefreshSkew) {
+            this.tokenRefreshSkew = tokenRefreshSkew;
+        }
+
+        public Duration getCloseGracePeriod() {
+            return closeGracePeriod;
+        }
+
+        public void setCloseGracePeriod(Duration closeGracePeriod) {
+            this.closeGracePeriod = closeGracePeriod;
+        }
+    }
+
+    public static class ApiBatch {
+        private boolean enabled = false;
+        private int maximumSize = 100;
+        private Duration maximumDelay = Duration.ofMillis(2);
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getMaximumSize() {
+            return maximumSize;
+        }
+
+        public void setMaximumSize(int maximumSize) {
+            this.maximumSize = maximumSize;
+        }
+
+        public Duration getMaximumDelay() {
+            return maximumDelay;
+        }
+
+        public void setMaximumDelay(Duration maximumDelay) {
+            this.maximumDelay = maximumDelay;
+        }
+    }
+
+    public static class ApiAffinity {
+        private boolean enabled = false;
+        private int virtualNodes = 160;
+        private int failureThreshold = 3;
+        private Duration retryInterval = Duration.ofSeconds(10);
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getVirtualNodes() {
+            return virtualNodes;
+        }
+
+        public void setVirtualNodes(int virtualNodes) {
+            this.virtualNodes = virtualNodes;
+        }
+
+        public int getFailureThreshold() {
+            return failureThreshold;
+        }
+
+        public void setFailureThreshold(int failureThreshold) {
+            this.failureThreshold = failureThreshold;
+        }
+
+        public Duration getRetryInterval() {
+            return retryInterval;
+        }
+
+        public void setRetryInterval(Duration retryInterval) {
+            this.retryInterval = retryInterval;
+        }
+    }
+
+    public static class ApiBalancing {
+        private boolean enabled = false;
+        private Duration requestTimeout = Duration.ofSeconds(2);
+        private Duration decayTime = Duration.ofSeconds(10);
+        private Duration unmeasuredPenalty = Duration.ofMillis(100);
+        private boolean hedging = true;
+        private double hedgePercentile = 0.95;
+        private Duration minimumHedgeDelay = Duration.ofMillis(5);
+        private Duration maximumHedgeDelay = Duration.ofMillis(500);
+        private Duration hedgeDelayUpdateInterval = Duration.ofSeconds(1);
+        private double hedgeBudgetRatio = 0.1;
+        private int hedgeBudgetMinimumPerSecond = 10;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public Duration getRequestTimeout() {
+            return requestTimeout;
+        }
+
+        public void setRequestTimeout(Duration requestTimeout) {
+            this.requestTimeout = requestTimeout;
+        }
+
+        public Duration getDecayTime() {
+            return decayTime;
+        }
+
+        public void setDecayTime(Duration decayTime) {
+            this.decayTime = decayTime;
+        }
+
+        public Duration getUnmeasuredPenalty() {
+            return unmeasuredPenalty;
+        }
+
+        public void setUnmeasuredPenalty(Duration unmeasuredPenalty) {
+            this.unmeasuredPenalty = unmeasuredPenalty;
+        }
+
+        public boolean isHedging() {
+            return hedging;
+        }
+
+        public void setHedging(boolean hedging) {
+            this.hedging = hedging;
+        }
+
+        public double getHedgePercentile() {
+            return hedgePercentile;
+        }
+
+        public void setHedgePercentile(double hedgePercentile) {
+            this.hedgePercentile = hedgePercentile;
+        }
+
+        public Duration getMinimumHedgeDelay() {
+            return minimumHedgeDelay;
+        }
+
+        public void setMinimumHedgeDelay(Duration minimumHedgeDelay) {
+            this.minimumHedgeDelay = minimumHedgeDelay;
+        }
+
+        public Duration getMaximumHedgeDelay() {
+            return maximumHedgeDelay;
+        }
+
+        public void setMaximumHedgeDelay(Duration maximumHedgeDelay) {
+            this.maximumHedgeDelay = maximumHedgeDelay;
+        }
+
+        public Duration getHedgeDelayUpdateInterval() {
+            return hedgeDelayUpdateInterval;
+        }
+
+        public void setHedgeDelayUpdateInterval(Duration hedgeDelayUpdateInterval) {
+            this.hedgeDelayUpdateInterval = hedgeDelayUpdateInterval;
+        }
+
+        public double getHedgeBudgetRatio() {
+            return hedgeBudgetRatio;
+        }
+
+        public void setHedgeBudgetRatio(double hedgeBudgetRatio) {
+            this.hedgeBudgetRatio = hedgeBudgetRatio;
+        }
+
+        public int getHedgeBudgetMinimumPerSecond() {
+            return hedgeBudgetMinimumPerSecond;
+        }
+
+        public void setHedgeBudgetMinimumPerSecond(int hedgeBudgetMinimumPerSecond) {
+            this.hedgeBudgetMinimumPerSecond = hedgeBudgetMinimumPerSecond;
+        }
+    }
+
+    public static class ApiToken {
+        private boolean enabled = true;
+        private Duration refreshAhead = Duration.ofMinutes(5);
+        private Duration minimumValidity = Duration.ofSeconds(30);
+        private Duration retryInterval = Duration.ofSeconds(10);
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public Duration getRefreshAhead() {
+            return refreshAhead;
+        }
+
+        public void setRefreshAhead(Duration refreshAhead) {
+            this.refreshAhead = refreshAhead;
+        }
+
+        public Duration getMinimumValidity() {
+            return minimumValidity;
+        }
+
+        public void setMinimumValidity(Duration minimumValidity) {
+            this.minimumValidity = minimumValidity;
+        }
+
+        public Duration getRetryInterval() {
+            return retryInterval;
+        }
+
+        public void setRetryInterval(Duration retryInterval) {
+            this.retryInterval = retryInterval;
+        }
+    }
+
+    public static class RedisSessions {
+        private boolean enabled = false;
+        private String namespace = "url-shortener:web";
+        private Duration timeout = Duration.ofMinutes(30);
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public String getNamespace() {
+            return namespace;
+        }
+
+        public void setNamespace(String namespace) {
+            this.namespace = namespace;
+        }
+
+        public Duration getTimeout() {
+            return timeout;
+        }
+
+        public void setTimeout(Duration timeout) {
+            this.timeout = timeout;
+        }
+    }
+}
@@ -1,6 +1,9 @@
 package com.jasonbertolo.urlshortener.web.handler;
 
+import com.jasonbertolo.urlshortener.web.component.ShortUrlKeyFilter;
+import com.jasonbertolo.urlshortener.web.component.ShortUrlNearCache;
 import com.jasonbertolo.urlshortener.web.service.ApiService;
+import com.jasonbertolo.urlshortener.web.service.ShortUrlResolver;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
@@ -28,12 +31,18 @@ public class WebAppHandler {
 
     private static final int DEFAULT_MAX_KEY_LENGTH = 50;
 
-    private final ApiService apiService;
+    private final ShortUrlResolver shortUrlResolver;
+    private final ShortUrlNearCache shortUrlNearCache;
+    private final ShortUrlKeyFilter shortUrlKeyFilter;
     private final Pattern validKeyPattern;
 
     @Autowired
-    public WebAppHandler(ApiService apiService, @Value("${url-shortener.key-length}") String keyLength) {
-        this.apiService = apiService;
+    public WebAppHandler(ShortUrlResolver shortUrlResolver, ShortUrlNearCache shortUrlNearCache,
+                         ShortUrlKeyFilter shortUrlKeyFilter,
+                         @Value("${url-shortener.key-length}") String keyLength) {
+        this.shortUrlResolver = shortUrlResolver;
+        this.shortUrlNearCache = shortUrlNearCache;
+        this.shortUrlKeyFilter = shortUrlKeyFilter;
         this.validKeyPattern = Pattern.compile("[a-zA-Z0-9]{" + keyLength + "}");
     }
 
@@ -63,8 +72,10 @@ public class WebAppHandler {
     public Mono<Tuple2<String, String>> cacheShortUrl(ServerRequest serverRequest) {
         String key = serverRequest.pathVariable("key");
         return validateKey(key)
-                .flatMap(apiService::getAndCacheShortUrl)
-                .map(ApiService.ApiResponse::data)
+                // Keys that were never issued are answered here instead of by the API
+                .filterWhen(shortUrlKeyFilter::mightContain)
+                .switchIfEmpty(Mono.error(() -> new NoResourceFoundException(serverRequest.path())))
+                .flatMap(k -> shortUrlNearCache.get(k, shortUrlResolver::resolve))
                 .map(ApiService.ShortUrlResponse::url)
                 .onErrorMap(e -> {
                     if (e instanceof ApiService.ApiException apiException) {
@@ -0,0 +1,181 @@
+package com.jasonbertolo.urlshortener.web.service;
+
+import com.jasonbertolo.urlshortener.contract.CachedShortUrl;
+import com.jasonbertolo.urlshortener.contract.ShortUrlCacheCodec;
+import com.jasonbertolo.urlshortener.contract.ShortUrlRSocket;
+import com.jasonbertolo.urlshortener.web.component.ApiInstanceRouter;
+import com.jasonbertolo.urlshortener.web.component.ApiLoadBalancer;
+import com.jasonbertolo.urlshortener.web.component.ApiTokenRefresher;
+import com.jasonbertolo.urlshortener.web.config.settings.UrlShortenerSettings;
+import jakarta.annotation.PreDestroy;
+import org.owasp.esapi.ESAPI;
+import org.owasp.esapi.Logger;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ProblemDetail;
+import org.springframework.messaging.rsocket.RSocketRequester;
+import org.springframework.security.oauth2.core.OAuth2AccessToken;
+import org.springframework.security.rsocket.metadata.BearerTokenAuthenticationEncoder;
+import org.springframework.security.rsocket.metadata.BearerTokenMetadata;
+import org.springframework.stereotype.Service;
+import org.springframework.util.MimeTypeUtils;
+import reactor.core.publisher.Mono;
+
+import java.net.URI;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.owasp.esapi.Logger.*;
+
+/**
+ * Resolves keys on the API over RSocket, one connection per API instance, which multiplexes every lookup instead of
+ * taking an HTTP connection each. Lookups are routed like the HTTP ones, to the key's own instance with api-affinity
+ * or to the least loaded one with api-balancing, connecting to the instance's host on the RSocket port. The client
+ * credentials token is sent once, in the setup frame, and a connection is replaced shortly before the token expires or
+ * as soon as it's closed. The replaced connection is kept open for a grace period so requests in flight on it can
+ * complete.
+ */
+@Service
+public class ApiRSocketClient {
+
+    private static final Logger LOGGER = ESAPI.getLogger(ApiRSocketClient.class.getSimpleName());
+
+    private static final Duration MINIMUM_TTL = Duration.ofSeconds(1);
+
+    private record Connection(RSocketRequester requester, Duration ttl) {}
+
+    private final ApiTokenRefresher apiTokenRefresher;
+    private final ObjectProvider<RSocketRequester.Builder> requesterBuilders;
+    private final ApiInstanceRouter apiInstanceRouter;
+    private final ApiLoadBalancer apiLoadBalancer;
+    private final UrlShortenerSettings.ApiRSocket settings;
+    private final Endpoint defaultEndpoint;
+    private final Map<String, Endpoint> instanceEndpoints = new ConcurrentHashMap<>();
+
+    @Autowired
+    public ApiRSocketClient(ApiTokenRefresher apiTokenRefresher,
+                            ObjectProvider<RSocketRequester.Builder> requesterBuilders,
+                            ApiInstanceRouter apiInstanceRouter,
+                            ApiLoadBalancer apiLoadBalancer,
+                            UrlShortenerSettings urlShortenerSettings) {
+        this.apiTokenRefresher = apiTokenRefresher;
+        this.requesterBuilders = requesterBuilders;
+        this.apiInstanceRouter = apiInstanceRouter;
+        this.apiLoadBalancer = apiLoadBalancer;
+        this.settings = urlShortenerSettings.getApiRsocket();
+        this.defaultEndpoint = new Endpoint(settings.getHost(), settings.getPort());
+    }
+
+    public boolean isEnabled() {
+        return settings.isEnabled();
+    }
+
+    // Empty when the API has no ShortUrl to redirect to for the key
+    public Mono<ApiService.ShortUrlResponse> resolve(String key) {
+        if (apiInstanceRouter.isEnabled()) {
+            return apiInstanceRouter.route(key, baseUrl -> instanceEndpoint(baseUrl).resolve(key));
+        }
+        if (apiLoadBalancer.isEnabled()) {
+            return apiLoadBalancer.hedged(baseUrl -> instanceEndpoint(baseUrl).resolve(key));
+        }
+        return defaultEndpoint.resolve(key);
+    }
+
+    @PreDestroy
+    public void stop() {
+        defaultEndpoint.stop();
+        instanceEndpoints.values().forEach(Endpoint::stop);
+    }
+
+    // The instance's host, the RSocket server listens on the same port on every instance
+    private Endpoint instanceEndpoint(String baseUrl) {
+        return instanceEndpoints.computeIfAbsent(baseUrl,
+                url -> new Endpoint(URI.create(url).getHost(), settings.getPort()));
+    }
+
+    private Duration ttl(Instant expiresAt) {
+        if (expiresAt == null) {
+            return Duration.ofDays(1);
+        }
+        Duration ttl = Duration.between(Instant.now(), expiresAt).minus(settings.getTokenRefreshSkew());
+        return ttl.compareTo(MINIMUM_TTL) < 0 ? MINIMUM_TTL : ttl;
+    }
+
+    private static ApiService.ShortUrlResponse toResponse(CachedShortUrl cachedShortUrl) {
+        return new ApiService.ShortUrlResponse(cachedShortUrl.id(), cachedShortUrl.key(), cachedShortUrl.url(),
+                cachedShortUrl.description(), cachedShortUrl.createdAt(), cachedShortUrl.lastUpdatedAt(),
+                cachedShortUrl.expiresAt());
+    }
+
+    private final class Endpoint {
+        private final String host;
+        private final int port;
+        private final AtomicReference<RSocketRequester> current = new AtomicReference<>();
+        private final Mono<Connection> connection;
+
+        private Endpoint(String host, int port) {
+            this.host = host;
+            this.port = port;
+            this.connection = Mono.defer(this::connect)
+                    .cacheInvalidateWhen(c -> Mono.firstWithSignal(
+                                    Mono.delay(c.ttl()).then(),
+                                    c.requester().rsocketClient().source().flatMap(rsocket -> rsocket.onClose())),
+                            this::retire);
+        }
+
+        private Mono<ApiService.ShortUrlResponse> resolve(String key) {
+            return connection
+                    .flatMap(c -> c.requester().route(ShortUrlRSocket.RESOLVE_ROUTE).data(key)
+                            .retrieveMono(byte[].class))
+                    .map(bytes -> toResponse(ShortUrlCacheCodec.decode(bytes)))
+                    .switchIfEmpty(Mono.error(() -> new ApiService.ApiException(ProblemDetail.forStatusAndDetail(
+                            HttpStatus.NOT_FOUND, String.format("ShortUrl key[%s] not found", key)))));
+        }
+
+        private void stop() {
+            RSocketRequester requester = current.getAndSet(null);
+            if (requester != null) {
+                requester.dispose();
+            }
+        }
+
+        private Mono<Connection> connect() {
+            // The same token the API WebClient uses
+            return apiTokenRefresher.authorizedClient()
+                    .flatMap(authorizedClient -> {
+                        OAuth2AccessToken token = authorizedClient.getAccessToken();
+                        // Builders are prototypes, a fresh one doesn't carry the previous token
+                        RSocketRequester requester = requesterBuilders.getObject()
+                                .setupMetadata(new BearerTokenMetadata(token.getTokenValue()),
+                                        BearerTokenMetadata.BEARER_AUTHENTICATION_MIME_TYPE)
+                                .rsocketStrategies(strategies -> strategies
+                                        .encoder(new BearerTokenAuthenticationEncoder()))
+                                .dataMimeType(MimeTypeUtils.APPLICATION_OCTET_STREAM)
+                                .tcp(host, port);
+                        Duration ttl = ttl(token.getExpiresAt());
+                        // Connects now, a token the API rejects fails here rather than on the first lookup
+                        return requester.rsocketClient().source()
+                                .doOnNext(rsocket -> {
+                                    current.set(requester);
+                                    LOGGER.info(EVENT_SUCCESS, String.format(
+                                            "Connected to API RSocket [%s:%d], reconnecting in [%s]", host, port,
+                                            ttl));
+                                })
+                                .doOnError(e -> requester.dispose())
+                                .thenReturn(new Connection(requester, ttl));
+                    })
+                    .doOnError(e -> LOGGER.warning(EVENT_FAILURE, String.format(
+                            "Failed to connect to API RSocket [%s:%d]: [%s]", host, port, e.getMessage())));
+        }
+
+        private void retire(Connection retired) {
+            current.compareAndSet(retired.requester(), null);
+            Mono.delay(settings.getCloseGracePeriod())
+                    .subscribe(t -> retired.requester().dispose());
+        }
+    }
+}
@@ -1,6 +1,8 @@
 package com.jasonbertolo.urlshortener.web.service;
 
 import com.fasterxml.jackson.annotation.JsonFormat;
+import com.jasonbertolo.urlshortener.web.component.ApiInstanceRouter;
+import com.jasonbertolo.urlshortener.web.component.ApiLoadBalancer;
 import com.jasonbertolo.urlshortener.web.config.settings.MicroservicesSettings;
 import org.owasp.esapi.ESAPI;
 import org.owasp.esapi.Logger;
@@ -9,9 +11,17 @@ import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.ProblemDetail;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.util.UriComponentsBuilder;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 import static org.owasp.esapi.Logger.*;
 
@@ -23,6 +33,8 @@ public class ApiService {
      */
     public record ApiResponse<T>(String status, String message, T data){}
 
+    public record ShortUrlBatchRequest(List<String> keys, boolean warmUp){}
+
     public record ShortUrlResponse(String id, String key, String url, String description,
                                    @JsonFormat(shape = JsonFormat.Shape.STRING) Instant createdAt,
                                    @JsonFormat(shape = JsonFormat.Shape.STRING) Instant lastUpdatedAt,
@@ -45,18 +57,61 @@ public class ApiService {
 
     public static final ParameterizedTypeReference<ApiResponse<ShortUrlResponse>> SHORT_URL_RESPONSE_TYPE =
             new ParameterizedTypeReference<>() {};
+    public static final ParameterizedTypeReference<ApiResponse<List<ShortUrlResponse>>> SHORT_URLS_RESPONSE_TYPE =
+            new ParameterizedTypeReference<>() {};
 
     private final WebClient apiWebClient;
     private final MicroservicesSettings microservicesSettings;
+    private final ApiInstanceRouter apiInstanceRouter;
+    private final ApiLoadBalancer apiLoadBalancer;
 
-    public ApiService(@Qualifier("apiWebClient") WebClient apiWebClient, MicroservicesSettings microservicesSettings) {
+    public ApiService(@Qualifier("apiWebClient") WebClient apiWebClient, MicroservicesSettings microservicesSettings,
+                      ApiInstanceRouter apiInstanceRouter, ApiLoadBalancer apiLoadBalancer) {
         this.apiWebClient = apiWebClient;
         this.microservicesSettings = microservicesSettings;
+        this.apiInstanceRouter = apiInstanceRouter;
+        this.apiLoadBalancer = apiLoadBalancer;
     }
 
+    // With affinity routing, the key's own API instance is called so it's cached in one place. Otherwise the lookup
+    // goes to the least loaded instance, hedged to another one when it's slow since it's safe to repeat.
     public Mono<ApiResponse<ShortUrlResponse>> getAndCacheShortUrl(String key) {
-        LOGGER.debug(EVENT_UNSPECIFIED, String.format("Requesting API for ShortUrl key[%s]", key));
-        return apiWebClient.get().uri(microservicesSettings.getApiBaseUrl() + "/api/v1/cache/{key}", key)
+        if (apiInstanceRouter.isEnabled()) {
+            return apiInstanceRouter.route(key, baseUrl -> getAndCacheShortUrl(baseUrl, key));
+        }
+        if (apiLoadBalancer.isEnabled()) {
+            return apiLoadBalancer.hedged(baseUrl -> getAndCacheShortUrl(baseUrl, key));
+        }
+        return getAndCacheShortUrl(microservicesSettings.getApiBaseUrl(), key);
+    }
+
+    // The ShortUrls found by key, keys the API doesn't have are left out
+    public Mono<Map<String, ShortUrlResponse>> getAndCacheShortUrls(List<String> keys) {
+        return getAndCacheShortUrls(keys, false);
+    }
+
+    // Same lookup for the near cache warm-up, which the API leaves out of the access history it ranks hot keys by
+    public Mono<Map<String, ShortUrlResponse>> warmUpShortUrls(List<String> keys) {
+        return getAndCacheShortUrls(keys, true);
+    }
+
+    private Mono<Map<String, ShortUrlResponse>> getAndCacheShortUrls(List<String> keys, boolean warmUp) {
+        if (apiInstanceRouter.isEnabled()) {
+            // One call per instance, with the keys it's first in line for
+            return Flux.fromIterable(apiInstanceRouter.partition(keys).values())
+                    .flatMap(partition -> apiInstanceRouter.route(partition.get(0),
+                            baseUrl -> getAndCacheShortUrls(baseUrl, partition, warmUp)))
+                    .collect(HashMap::new, Map::putAll);
+        }
+        if (apiLoadBalancer.isEnabled()) {
+            return apiLoadBalancer.balanced(baseUrl -> getAndCacheShortUrls(baseUrl, keys, warmUp));
+        }
+        return getAndCacheShortUrls(microservicesSettings.getApiBaseUrl(), keys, warmUp);
+    }
+
+    private Mono<ApiResponse<ShortUrlResponse>> getAndCacheShortUrl(String baseUrl, String key) {
+        LOGGER.debug(EVENT_UNSPECIFIED, String.format("Requesting API[%s] for ShortUrl key[%s]", baseUrl, key));
+        return apiWebClient.get().uri(baseUrl + "/api/v1/cache/{key}", key)
                 .exchangeToMono(response -> {
                     if (response.statusCode().is2xxSuccessful()) {
                         return response.bodyToMono(SHORT_URL_RESPONSE_TYPE)
@@ -70,4 +125,45 @@ public class ApiService {
                     }
                 });
     }
+
+    private Mono<Map<String, ShortUrlResponse>> getAndCacheShortUrls(String baseUrl, List<String> keys,
+                                                                     boolean warmUp) {
+        LOGGER.debug(EVENT_UNSPECIFIED, String.format("Requesting API[%s] for [%d] ShortUrls", baseUrl, keys.size()));
+        return apiWebClient.post().uri(baseUrl + "/api/v1/cache/batch")
+                .bodyValue(new ShortUrlBatchRequest(keys, warmUp))
+                .exchangeToMono(response -> {
+                    if (response.statusCode().is2xxSuccessful()) {
+                        return response.bodyToMono(SHORT_URLS_RESPONSE_TYPE)
+                                .map(r -> r.data().stream().collect(Collectors.toMap(ShortUrlResponse::key,
+                                        Function.identity(), (a, b) -> a)));
+                    } else {
+                        return response.bodyToMono(ProblemDetail.class)
+                                .doOnNext(r -> LOGGER.warning(EVENT_FAILURE, String.format(
+                                        "API request failed: [%s]: %s", response.statusCode().value(), r)))
+                                .flatMap(problemDetail -> Mono.error(new ApiException(problemDetail)));
+                    }
+                });
+    }
+
+    public Flux<String> getLiveKeys(Instant since) {
+        LOGGER.debug(EVENT_UNSPECIFIED, String.format("Requesting API for live ShortUrl keys since[%s]", since));
+        return apiWebClient.get().uri(UriComponentsBuilder
+                        .fromHttpUrl(microservicesSettings.getApiBaseUrl() + "/api/v1/cache/keys")
+                        .queryParamIfPresent("since", Optional.ofNullable(since))
+                        .build().toUri())
+                .retrieve()
+                .bodyToFlux(String.class)
+                .filter(key -> !key.isBlank());
+    }
+
+    public Flux<String> getHotKeys(int limit) {
+        LOGGER.debug(EVENT_UNSPECIFIED, String.format("Requesting API for the [%d] most accessed ShortUrl keys", limit));
+        return apiWebClient.get().uri(UriComponentsBuilder
+                        .fromHttpUrl(microservicesSettings.getApiBaseUrl() + "/api/v1/cache/hot")
+                        .queryParam("limit", limit)
+                        .build().toUri())
+                .retrieve()
+                .bodyToFlux(String.class)
+                .filter(key -> !key.isBlank());
+    }
 }
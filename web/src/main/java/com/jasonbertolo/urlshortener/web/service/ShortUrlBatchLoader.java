@@ -0,0 +1,126 @@
+package com.jasonbertolo.urlshortener.web.service;
+
+import com.jasonbertolo.urlshortener.web.config.settings.UrlShortenerSettings;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ProblemDetail;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * Collects the lookups made within a short window into one batch call to the API. A batch is sent once it holds the
+ * maximum number of keys or the first lookup in it has waited the maximum delay, whichever comes first. Lookups of the
+ * same key in a window share one result.
+ */
+@Service
+public class ShortUrlBatchLoader {
+
+    public static final String METRIC_PREFIX = "shorturl.api.batch";
+
+    private final ApiService apiService;
+    private final UrlShortenerSettings.ApiBatch settings;
+    private final DistributionSummary batchSize;
+    private final Timer waitTimer;
+    private final Timer callTimer;
+    private Batch current = new Batch();
+
+    private static final class Batch {
+        private final Map<String, Sinks.One<ApiService.ShortUrlResponse>> lookups = new LinkedHashMap<>();
+        private long startNanos;
+    }
+
+    @Autowired
+    public ShortUrlBatchLoader(ApiService apiService,
+                               UrlShortenerSettings urlShortenerSettings,
+                               MeterRegistry meterRegistry) {
+        this.apiService = apiService;
+        this.settings = urlShortenerSettings.getApiBatch();
+        this.batchSize = DistributionSummary.builder(METRIC_PREFIX + ".size")
+                .description("Keys sent to the API per batch call")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        // What batching costs, compared with shorturl.resolve{source=api} for what it saves
+        this.waitTimer = Timer.builder(METRIC_PREFIX + ".wait")
+                .description("Time the first lookup of a batch waited for the batch to be sent")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        this.callTimer = Timer.builder(METRIC_PREFIX + ".call")
+                .description("Time a batch call to the API took")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return settings.isEnabled();
+    }
+
+    // Errors with a not found ApiException when the API has no ShortUrl for the key, as single lookups do
+    public Mono<ApiService.ShortUrlResponse> load(String key) {
+        return Mono.defer(() -> {
+            Sinks.One<ApiService.ShortUrlResponse> sink;
+            Batch full = null;
+            Batch scheduled = null;
+            synchronized (this) {
+                Batch batch = current;
+                sink = batch.lookups.computeIfAbsent(key, k -> Sinks.one());
+                if (batch.lookups.size() >= settings.getMaximumSize()) {
+                    full = batch;
+                    current = new Batch();
+                } else if (batch.lookups.size() == 1) {
+                    batch.startNanos = System.nanoTime();
+                    scheduled = batch;
+                }
+            }
+            if (full != null) {
+                send(full);
+            } else if (scheduled != null) {
+                Batch batch = scheduled;
+                Schedulers.parallel().schedule(() -> sendIfCurrent(batch),
+                        settings.getMaximumDelay().toNanos(), NANOSECONDS);
+            }
+            return sink.asMono();
+        });
+    }
+
+    private void sendIfCurrent(Batch batch) {
+        synchronized (this) {
+            // Already sent when it filled up
+            if (current != batch) {
+                return;
+            }
+            current = new Batch();
+        }
+        send(batch);
+    }
+
+    private void send(Batch batch) {
+        long start = System.nanoTime();
+        if (batch.startNanos != 0) {
+            waitTimer.record(start - batch.startNanos, NANOSECONDS);
+        }
+        batchSize.record(batch.lookups.size());
+        apiService.getAndCacheShortUrls(List.copyOf(batch.lookups.keySet()))
+                .defaultIfEmpty(Map.of())
+                .doOnNext(found -> callTimer.record(System.nanoTime() - start, NANOSECONDS))
+                .subscribe(found -> batch.lookups.forEach((key, sink) -> {
+                    ApiService.ShortUrlResponse shortUrl = found.get(key);
+                    if (shortUrl != null) {
+                        sink.tryEmitValue(shortUrl);
+                    } else {
+                        sink.tryEmitError(new ApiService.ApiException(ProblemDetail.forStatusAndDetail(
+                                HttpStatus.NOT_FOUND, String.format("ShortUrl key[%s] was not found", key))));
+                    }
+                }), e -> batch.lookups.values().forEach(sink -> sink.tryEmitError(e)));
+    }
+}
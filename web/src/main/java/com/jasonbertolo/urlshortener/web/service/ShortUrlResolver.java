@@ -0,0 +1,141 @@
+package com.jasonbertolo.urlshortener.web.service;
+
+import com.jasonbertolo.urlshortener.contract.CachedShortUrl;
+import com.jasonbertolo.urlshortener.contract.ConsistentHashRing;
+import com.jasonbertolo.urlshortener.contract.ShortUrlCacheKeys;
+import com.jasonbertolo.urlshortener.web.config.settings.UrlShortenerSettings;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.owasp.esapi.ESAPI;
+import org.owasp.esapi.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.ReactiveRedisOperations;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+
+import static com.jasonbertolo.urlshortener.contract.ShortUrlCacheKeys.bucketKey;
+import static com.jasonbertolo.urlshortener.contract.ShortUrlCacheKeys.valueKey;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static org.owasp.esapi.Logger.EVENT_FAILURE;
+
+/**
+ * Resolves a key to its ShortUrl for redirects. With direct read enabled, hits are read from the cache the API fills
+ * and the API is only called on a miss, which then caches the ShortUrl for the next lookup. The API is called over
+ * RSocket when it's enabled, HTTP otherwise, where concurrent lookups can be sent in batches.
+ */
+@Service
+public class ShortUrlResolver {
+
+    private static final Logger LOGGER = ESAPI.getLogger(ShortUrlResolver.class.getSimpleName());
+
+    public static final String TIMER_NAME = "shorturl.resolve";
+
+    private final ApiService apiService;
+    private final ApiRSocketClient apiRSocketClient;
+    private final ShortUrlBatchLoader shortUrlBatchLoader;
+    private final ConsistentHashRing<ReactiveRedisOperations<String, CachedShortUrl>> shortUrlRedisRing;
+    private final UrlShortenerSettings.DirectRead settings;
+    private final Timer redisTimer;
+    private final Timer apiTimer;
+    private final Timer rsocketTimer;
+    private final Timer batchTimer;
+
+    @Autowired
+    public ShortUrlResolver(ApiService apiService,
+                            ApiRSocketClient apiRSocketClient,
+                            ShortUrlBatchLoader shortUrlBatchLoader,
+                            ConsistentHashRing<ReactiveRedisOperations<String, CachedShortUrl>> shortUrlRedisRing,
+                            UrlShortenerSettings urlShortenerSettings,
+                            MeterRegistry meterRegistry) {
+        this.apiService = apiService;
+        this.apiRSocketClient = apiRSocketClient;
+        this.shortUrlBatchLoader = shortUrlBatchLoader;
+        this.shortUrlRedisRing = shortUrlRedisRing;
+        this.settings = urlShortenerSettings.getDirectRead();
+        this.redisTimer = resolveTimer("redis", meterRegistry);
+        this.apiTimer = resolveTimer("api", meterRegistry);
+        this.rsocketTimer = resolveTimer("rsocket", meterRegistry);
+        this.batchTimer = resolveTimer("batch", meterRegistry);
+    }
+
+    public Mono<ApiService.ShortUrlResponse> resolve(String key) {
+        if (!settings.isEnabled()) {
+            return fromApi(key);
+        }
+        return fromCache(key).switchIfEmpty(Mono.defer(() -> fromApi(key)));
+    }
+
+    private Mono<ApiService.ShortUrlResponse> fromCache(String key) {
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            return readCached(key)
+                    .filter(cachedShortUrl -> !cachedShortUrl.isExpired(Instant.now()))
+                    .map(ShortUrlResolver::toResponse)
+                    .doOnNext(r -> redisTimer.record(System.nanoTime() - start, NANOSECONDS));
+        })
+        // The API can still answer when the cache can't be read
+        .onErrorResume(e -> {
+            LOGGER.warning(EVENT_FAILURE, String.format(
+                    "Failed to read cached ShortUrl key[%s]: [%s]", key, e.getMessage()));
+            return Mono.empty();
+        });
+    }
+
+    private Mono<CachedShortUrl> readCached(String key) {
+        ReactiveRedisOperations<String, CachedShortUrl> shortUrlRedisOperations = shortUrlRedisRing.nodeFor(key);
+        if (settings.getLayout() == ShortUrlCacheKeys.Layout.HASH) {
+            return shortUrlRedisOperations.<String, CachedShortUrl>opsForHash()
+                    .get(bucketKey(key, settings.getBucketCount()), key);
+        }
+        return shortUrlRedisOperations.opsForValue().get(valueKey(key));
+    }
+
+    private Mono<ApiService.ShortUrlResponse> fromApi(String key) {
+        if (!apiRSocketClient.isEnabled()) {
+            return fromHttp(key);
+        }
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            return apiRSocketClient.resolve(key)
+                    .doOnNext(r -> rsocketTimer.record(System.nanoTime() - start, NANOSECONDS));
+        })
+        // Not found is an answer, a connection that can't be made or is lost falls back to HTTP
+        .onErrorResume(e -> !(e instanceof ApiService.ApiException), e -> {
+            LOGGER.warning(EVENT_FAILURE, String.format(
+                    "Failed to resolve ShortUrl key[%s] over RSocket: [%s]", key, e.getMessage()));
+            return fromHttp(key);
+        });
+    }
+
+    private Mono<ApiService.ShortUrlResponse> fromHttp(String key) {
+        if (shortUrlBatchLoader.isEnabled()) {
+            return Mono.defer(() -> {
+                long start = System.nanoTime();
+                return shortUrlBatchLoader.load(key)
+                        .doOnNext(r -> batchTimer.record(System.nanoTime() - start, NANOSECONDS));
+            });
+        }
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            return apiService.getAndCacheShortUrl(key)
+                    .map(ApiService.ApiResponse::data)
+                    .doOnNext(r -> apiTimer.record(System.nanoTime() - start, NANOSECONDS));
+        });
+    }
+
+    private static ApiService.ShortUrlResponse toResponse(CachedShortUrl cachedShortUrl) {
+        return new ApiService.ShortUrlResponse(cachedShortUrl.id(), cachedShortUrl.key(), cachedShortUrl.url(),
+                cachedShortUrl.description(), cachedShortUrl.createdAt(), cachedShortUrl.lastUpdatedAt(),
+                cachedShortUrl.expiresAt());
+    }
+
+    private static Timer resolveTimer(String source, MeterRegistry meterRegistry) {
+        return Timer.builder(TIMER_NAME)
+                .description("Time to resolve a ShortUrl that was found, by where it was found")
+                .tag("source", source)
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,101 @@
+package com.jasonbertolo.urlshortener.web.component;
+
+import com.jasonbertolo.urlshortener.web.config.settings.MicroservicesSettings;
+import com.jasonbertolo.urlshortener.web.config.settings.UrlShortenerSettings;
+import com.jasonbertolo.urlshortener.web.service.ApiService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ProblemDetail;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ApiInstanceRouterTest {
+
+    static final List<String> INSTANCES = List.of("http://api-1:8090", "http://api-2:8090", "http://api-3:8090");
+
+    SimpleMeterRegistry meterRegistry;
+    ApiInstanceRouter router;
+
+    @BeforeEach
+    void beforeEach() {
+        MicroservicesSettings microservicesSettings = new MicroservicesSettings();
+        microservicesSettings.setApiInstanceUrls(INSTANCES);
+        UrlShortenerSettings urlShortenerSettings = new UrlShortenerSettings();
+        urlShortenerSettings.getApiAffinity().setEnabled(true);
+        urlShortenerSettings.getApiAffinity().setFailureThreshold(2);
+        meterRegistry = new SimpleMeterRegistry();
+        router = new ApiInstanceRouter(microservicesSettings, urlShortenerSettings, meterRegistry);
+    }
+
+    @Test
+    @DisplayName("API affinity - each key always routed to the same instance, keys spread across instances")
+    void routesByKey() {
+        List<String> keys = IntStream.range(0, 3000).mapToObj(i -> "key" + i).toList();
+        Map<String, List<String>> partitions = router.partition(keys);
+
+        assertThat(partitions).containsOnlyKeys(INSTANCES);
+        partitions.values().forEach(partition -> assertThat(partition).hasSizeBetween(600, 1400));
+        String key = keys.get(42);
+        List<String> calledUrls = new ArrayList<>();
+        IntStream.range(0, 5).forEach(i -> router.route(key, url -> {
+            calledUrls.add(url);
+            return Mono.just(url);
+        }).block());
+        assertThat(calledUrls).containsOnly(partitions.entrySet().stream()
+                .filter(partition -> partition.getValue().contains(key))
+                .map(Map.Entry::getKey)
+                .findFirst()
+                .orElseThrow());
+    }
+
+    @Test
+    @DisplayName("API affinity - failing instance skipped for its keys, other instances' keys don't move")
+    void failsOver() {
+        List<String> keys = IntStream.range(0, 300).mapToObj(i -> "key" + i).toList();
+        Map<String, String> before = owners(keys);
+        String down = INSTANCES.get(0);
+
+        // Not found is an answer, it doesn't count against the instance
+        String key = keys.stream().filter(k -> before.get(k).equals(down)).findFirst().orElseThrow();
+        StepVerifier.create(router.route(key, url -> Mono.error(new ApiService.ApiException(
+                        ProblemDetail.forStatus(HttpStatus.NOT_FOUND)))))
+                .expectError(ApiService.ApiException.class)
+                .verify();
+        assertThat(owners(keys)).isEqualTo(before);
+
+        IntStream.range(0, 2).forEach(i -> StepVerifier.create(router.route(key, url -> url.equals(down)
+                        ? Mono.error(new IllegalStateException("Connection refused")) : Mono.just(url)))
+                .assertNext(url -> assertThat(url).isNotEqualTo(down))
+                .verifyComplete());
+
+        Map<String, String> after = owners(keys);
+        keys.forEach(k -> {
+            if (before.get(k).equals(down)) {
+                assertThat(after.get(k)).isNotEqualTo(down);
+            } else {
+                assertThat(after.get(k)).isEqualTo(before.get(k));
+            }
+        });
+        assertThat(meterRegistry.get(ApiInstanceRouter.METRIC_PREFIX + ".failovers").counter().count())
+                .isEqualTo(2);
+        assertThat(meterRegistry.get(ApiInstanceRouter.METRIC_PREFIX + ".available").tag("instance", down)
+                .gauge().value()).isZero();
+    }
+
+    private Map<String, String> owners(List<String> keys) {
+        return router.partition(keys).entrySet().stream()
+                .flatMap(partition -> partition.getValue().stream().map(key -> Map.entry(key, partition.getKey())))
+                .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
+    }
+}
@@ -0,0 +1,108 @@
+package com.jasonbertolo.urlshortener.web.component;
+
+import com.jasonbertolo.urlshortener.web.config.settings.MicroservicesSettings;
+import com.jasonbertolo.urlshortener.web.config.settings.UrlShortenerSettings;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ApiLoadBalancerTest {
+
+    static final List<String> INSTANCES = List.of("http://api-1:8090", "http://api-2:8090", "http://api-3:8090");
+    static final String SLOW = INSTANCES.get(0);
+
+    SimpleMeterRegistry meterRegistry;
+    ApiLoadBalancer balancer;
+    Map<String, AtomicInteger> calls;
+
+    @BeforeEach
+    void beforeEach() {
+        MicroservicesSettings microservicesSettings = new MicroservicesSettings();
+        microservicesSettings.setApiInstanceUrls(INSTANCES);
+        UrlShortenerSettings urlShortenerSettings = new UrlShortenerSettings();
+        urlShortenerSettings.getApiBalancing().setEnabled(true);
+        urlShortenerSettings.getApiBalancing().setRequestTimeout(Duration.ofSeconds(1));
+        urlShortenerSettings.getApiBalancing().setMinimumHedgeDelay(Duration.ofMillis(10));
+        urlShortenerSettings.getApiBalancing().setMaximumHedgeDelay(Duration.ofMillis(20));
+        meterRegistry = new SimpleMeterRegistry();
+        balancer = new ApiLoadBalancer(microservicesSettings, urlShortenerSettings, meterRegistry);
+        calls = new ConcurrentHashMap<>();
+    }
+
+    @Test
+    @DisplayName("API balancing - slow instance stops getting calls, stalled one answered for by a hedge")
+    void avoidsSlowInstance() {
+        IntStream.range(0, 60).forEach(i -> balancer.balanced(url -> call(url, Mono.delay(Duration.ofMillis(50))))
+                .block());
+        assertThat(calls.getOrDefault(SLOW, new AtomicInteger()).get()).isLessThan(5);
+
+        calls.clear();
+        IntStream.range(0, 10).forEach(i -> StepVerifier.create(balancer.hedged(url -> call(url, Mono.never())))
+                .assertNext(url -> assertThat(url).isNotEqualTo(SLOW))
+                .expectComplete()
+                .verify(Duration.ofMillis(500)));
+        assertThat(meterRegistry.get(ApiLoadBalancer.METRIC_PREFIX + ".outstanding").tag("instance", SLOW)
+                .gauge().value()).isZero();
+    }
+
+    @Test
+    @DisplayName("API balancing - unmeasured instance with calls outstanding isn't free")
+    void unmeasuredInstancePenalized() {
+        MicroservicesSettings microservicesSettings = new MicroservicesSettings();
+        microservicesSettings.setApiInstanceUrls(List.of(SLOW));
+        UrlShortenerSettings urlShortenerSettings = new UrlShortenerSettings();
+        urlShortenerSettings.getApiBalancing().setEnabled(true);
+        ApiLoadBalancer single = new ApiLoadBalancer(microservicesSettings, urlShortenerSettings,
+                new SimpleMeterRegistry());
+        ApiLoadBalancer.Instance instance = single.pick(null);
+        double penalty = urlShortenerSettings.getApiBalancing().getUnmeasuredPenalty().toNanos();
+
+        assertThat(instance.cost()).isEqualTo(penalty);
+        Disposable outstanding = single.balanced(url -> Mono.never()).subscribe();
+        assertThat(instance.cost()).isEqualTo(penalty * 2);
+        outstanding.dispose();
+        assertThat(instance.cost()).isEqualTo(penalty);
+    }
+
+    @Test
+    @DisplayName("API balancing - hedge delay follows the latency percentile once updated")
+    void hedgeDelayUpdated() {
+        assertThat(balancer.hedgeDelay()).isEqualTo(Duration.ofMillis(20));
+        IntStream.range(0, 20).forEach(i -> balancer.balanced(url -> Mono.just(url)).block());
+
+        balancer.updateHedgeDelay();
+        assertThat(balancer.hedgeDelay()).isEqualTo(Duration.ofMillis(10));
+    }
+
+    @Test
+    @DisplayName("API balancing - hedges limited to the budget filled by calls")
+    void hedgeBudget() {
+        ApiLoadBalancer.HedgeBudget budget = new ApiLoadBalancer.HedgeBudget(0.1, 0);
+
+        assertThat(budget.tryWithdraw()).isTrue();
+        assertThat(budget.tryWithdraw()).isFalse();
+        IntStream.range(0, 9).forEach(i -> budget.deposit());
+        assertThat(budget.tryWithdraw()).isFalse();
+        IntStream.range(0, 2).forEach(i -> budget.deposit());
+        assertThat(budget.tryWithdraw()).isTrue();
+        assertThat(budget.tryWithdraw()).isFalse();
+    }
+
+    private Mono<String> call(String url, Mono<?> slowResponse) {
+        calls.computeIfAbsent(url, u -> new AtomicInteger()).incrementAndGet();
+        return url.equals(SLOW) ? slowResponse.thenReturn(url) : Mono.just(url);
+    }
+}
@@ -0,0 +1,79 @@
+package com.jasonbertolo.urlshortener.web.component;
+
+import com.jasonbertolo.urlshortener.web.config.settings.UrlShortenerSettings;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.oauth2.client.OAuth2AuthorizedClient;
+import org.springframework.security.oauth2.client.ReactiveOAuth2AuthorizedClientManager;
+import org.springframework.security.oauth2.client.registration.ClientRegistration;
+import org.springframework.security.oauth2.core.OAuth2AccessToken;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ApiTokenRefresherTest {
+
+    ReactiveOAuth2AuthorizedClientManager authorizedClientManager;
+    SimpleMeterRegistry meterRegistry;
+    ApiTokenRefresher refresher;
+
+    @BeforeEach
+    void beforeEach() {
+        authorizedClientManager = mock(ReactiveOAuth2AuthorizedClientManager.class);
+        meterRegistry = new SimpleMeterRegistry();
+        refresher = new ApiTokenRefresher(authorizedClientManager, new UrlShortenerSettings(), meterRegistry);
+    }
+
+    @Test
+    @DisplayName("API token - concurrent lookups share one token request, then use the token from memory")
+    void sharesTokenRequest() {
+        when(authorizedClientManager.authorize(any())).thenReturn(Mono.delay(Duration.ofMillis(50))
+                .map(t -> authorizedClient("token-1", Duration.ofHours(1))));
+
+        assertThat(Flux.range(0, 20).flatMap(i -> refresher.authorizedClient())
+                .map(authorizedClient -> authorizedClient.getAccessToken().getTokenValue())
+                .collectList().block()).hasSize(20).containsOnly("token-1");
+        refresher.authorizedClient().block();
+
+        verify(authorizedClientManager, times(1)).authorize(any());
+        assertThat(meterRegistry.get(ApiTokenRefresher.METRIC_PREFIX + ".refresh")
+                .tag("trigger", "demand").tag("outcome", "success").timer().count()).isEqualTo(1);
+        assertThat(meterRegistry.get(ApiTokenRefresher.METRIC_PREFIX + ".remaining").timeGauge()
+                .value()).isGreaterThan(3500);
+    }
+
+    @Test
+    @DisplayName("API token - token about to expire replaced before it's used again, failed request not cached")
+    void replacesExpiringToken() {
+        when(authorizedClientManager.authorize(any()))
+                .thenReturn(Mono.just(authorizedClient("token-1", Duration.ofSeconds(10))))
+                .thenReturn(Mono.error(new IllegalStateException("Auth server unavailable")))
+                .thenReturn(Mono.just(authorizedClient("token-2", Duration.ofHours(1))));
+
+        assertThat(refresher.authorizedClient().block().getAccessToken().getTokenValue()).isEqualTo("token-1");
+        assertThat(refresher.authorizedClient().onErrorResume(e -> Mono.empty()).block()).isNull();
+        assertThat(refresher.authorizedClient().block().getAccessToken().getTokenValue()).isEqualTo("token-2");
+        assertThat(refresher.authorizedClient().block().getAccessToken().getTokenValue()).isEqualTo("token-2");
+
+        verify(authorizedClientManager, times(3)).authorize(any());
+    }
+
+    private static OAuth2AuthorizedClient authorizedClient(String token, Duration lifetime) {
+        Instant now = Instant.now();
+        return new OAuth2AuthorizedClient(mock(ClientRegistration.class), "anonymousUser",
+                new OAuth2AccessToken(OAuth2AccessToken.TokenType.BEARER, token, now, now.plus(lifetime),
+                        Set.of("cache:read", "cache:write")));
+    }
+}
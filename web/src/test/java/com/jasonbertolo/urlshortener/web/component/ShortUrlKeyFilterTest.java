@@ -0,0 +1,148 @@
+package com.jasonbertolo.urlshortener.web.component;
+
+import com.jasonbertolo.urlshortener.web.config.settings.UrlShortenerSettings;
+import com.jasonbertolo.urlshortener.web.service.ApiService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.ReactiveRedisConnectionFactory;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Schedulers;
+import reactor.test.StepVerifier;
+
+import java.time.Instant;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ShortUrlKeyFilterTest {
+
+    ApiService apiService;
+    UrlShortenerSettings urlShortenerSettings;
+    SimpleMeterRegistry meterRegistry;
+    ShortUrlKeyFilter keyFilter;
+
+    @BeforeEach
+    void beforeEach() {
+        apiService = mock(ApiService.class);
+        urlShortenerSettings = new UrlShortenerSettings();
+        urlShortenerSettings.getKeyFilter().setEnabled(true);
+        urlShortenerSettings.getKeyFilter().setExpectedInsertions(1000);
+        urlShortenerSettings.getKeyFilter().setFpp(0.0001);
+        when(apiService.getLiveKeys(null)).thenReturn(Flux.just("abc123", "def456"));
+        when(apiService.getLiveKeys(any(Instant.class))).thenReturn(Flux.empty());
+        meterRegistry = new SimpleMeterRegistry();
+        keyFilter = new ShortUrlKeyFilter(apiService, mock(ReactiveRedisConnectionFactory.class),
+                urlShortenerSettings, meterRegistry);
+    }
+
+    @Test
+    @DisplayName("Key filter - every key allowed before first build")
+    void allowsAllBeforeBuild() {
+        keyFilter.onSubscribed();
+
+        StepVerifier.create(keyFilter.mightContain("zzz999"))
+                .expectNext(true)
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("Key filter - live keys allowed, unknown keys rejected")
+    void rejectsUnknownKeys() {
+        keyFilter.onSubscribed();
+        keyFilter.sync().block();
+
+        StepVerifier.create(keyFilter.mightContain("abc123"))
+                .expectNext(true)
+                .verifyComplete();
+        StepVerifier.create(keyFilter.mightContain("zzz999"))
+                .expectNext(false)
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("Key filter - concurrent misses rejected from the filter without calling the API")
+    void concurrentMissesRejected() {
+        keyFilter.onSubscribed();
+        keyFilter.sync().block();
+
+        StepVerifier.create(Flux.range(0, 1000)
+                        .parallel(8)
+                        .runOn(Schedulers.parallel())
+                        .flatMap(i -> keyFilter.mightContain("zz" + String.format("%04d", i)))
+                        .sequential()
+                        .filter(found -> found))
+                .verifyComplete();
+
+        verify(apiService, times(1)).getLiveKeys(null);
+        verify(apiService, never()).getLiveKeys(any(Instant.class));
+        StepVerifier.create(keyFilter.mightContain("abc123"))
+                .expectNext(true)
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("Key filter - key published as created allowed before the next sync")
+    void createdKeyAllowed() {
+        keyFilter.onSubscribed();
+        keyFilter.sync().block();
+
+        keyFilter.onCreated("new789");
+
+        StepVerifier.create(keyFilter.mightContain("new789"))
+                .expectNext(true)
+                .verifyComplete();
+        verify(apiService, never()).getLiveKeys(any(Instant.class));
+    }
+
+    @Test
+    @DisplayName("Key filter - key published while the filter is rebuilt kept in the new filter")
+    void createdDuringRebuildKept() {
+        keyFilter.onSubscribed();
+        // The rebuild read the live keys before the key was created
+        Sinks.Many<String> liveKeys = Sinks.many().unicast().onBackpressureBuffer();
+        when(apiService.getLiveKeys(null)).thenReturn(liveKeys.asFlux());
+        Disposable sync = keyFilter.sync().subscribe();
+
+        keyFilter.onCreated("new789");
+        liveKeys.tryEmitNext("abc123");
+        liveKeys.tryEmitComplete();
+
+        StepVerifier.create(keyFilter.mightContain("new789"))
+                .expectNext(true)
+                .verifyComplete();
+        StepVerifier.create(keyFilter.mightContain("zzz999"))
+                .expectNext(false)
+                .verifyComplete();
+        sync.dispose();
+    }
+
+    @Test
+    @DisplayName("Key filter - misses allowed until a sync started after subscribing, and while unsubscribed")
+    void missesAllowedWithoutSubscription() {
+        keyFilter.sync().block();
+
+        // Keys created before the subscription was up may not be in the filter yet
+        keyFilter.onSubscribed();
+        StepVerifier.create(keyFilter.mightContain("zzz999"))
+                .expectNext(true)
+                .verifyComplete();
+
+        keyFilter.sync().block();
+        StepVerifier.create(keyFilter.mightContain("zzz999"))
+                .expectNext(false)
+                .verifyComplete();
+
+        keyFilter.onUnsubscribed();
+        StepVerifier.create(keyFilter.mightContain("zzz999"))
+                .expectNext(true)
+                .verifyComplete();
+    }
+}
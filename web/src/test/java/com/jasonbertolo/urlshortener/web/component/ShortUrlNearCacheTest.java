@@ -0,0 +1,110 @@
+package com.jasonbertolo.urlshortener.web.component;
+
+import com.jasonbertolo.urlshortener.web.config.settings.UrlShortenerSettings;
+import com.jasonbertolo.urlshortener.web.service.ApiService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ShortUrlNearCacheTest {
+
+    final ApiService.ShortUrlResponse shortUrl = new ApiService.ShortUrlResponse("id001", "abc123",
+            "https://example.com/", null, Instant.now(), Instant.now(), null);
+
+    ShortUrlNearCache nearCache;
+    AtomicInteger loads;
+
+    @BeforeEach
+    void beforeEach() {
+        nearCache = new ShortUrlNearCache(new UrlShortenerSettings(), new SimpleMeterRegistry());
+        loads = new AtomicInteger();
+    }
+
+    @Test
+    @DisplayName("Near cache - loaded ShortUrl cached for the next lookup")
+    void loadedCached() {
+        StepVerifier.create(nearCache.get("abc123", this::load))
+                .expectNext(shortUrl)
+                .verifyComplete();
+        StepVerifier.create(nearCache.get("abc123", this::load))
+                .expectNext(shortUrl)
+                .verifyComplete();
+
+        assertThat(loads.get()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Near cache - ShortUrl loaded before an invalidation of its key not cached")
+    void invalidatedDuringLoad() {
+        StepVerifier.create(nearCache.get("abc123", key -> load(key)
+                        .doOnNext(s -> nearCache.invalidate(key))))
+                .expectNext(shortUrl)
+                .verifyComplete();
+
+        assertThat(nearCache.size()).isZero();
+        StepVerifier.create(nearCache.get("abc123", this::load))
+                .expectNext(shortUrl)
+                .verifyComplete();
+        assertThat(loads.get()).isEqualTo(2);
+        assertThat(nearCache.size()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Near cache - ShortUrl loaded before everything was invalidated not cached")
+    void invalidatedAllDuringLoad() {
+        StepVerifier.create(nearCache.get("abc123", key -> load(key)
+                        .doOnNext(s -> nearCache.invalidateAll())))
+                .expectNext(shortUrl)
+                .verifyComplete();
+
+        assertThat(nearCache.size()).isZero();
+    }
+
+    @Test
+    @DisplayName("Near cache - invalidation of another key doesn't stop a load from being cached")
+    void otherKeyInvalidatedDuringLoad() {
+        StepVerifier.create(nearCache.get("abc123", key -> load(key)
+                        .doOnNext(s -> nearCache.invalidate("def456"))))
+                .expectNext(shortUrl)
+                .verifyComplete();
+
+        assertThat(nearCache.size()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Near cache - warm-up batch skips keys invalidated during the load")
+    void batchInvalidatedDuringLoad() {
+        ApiService.ShortUrlResponse other = new ApiService.ShortUrlResponse("id002", "def456",
+                "https://example.com/other", null, Instant.now(), Instant.now(), null);
+
+        StepVerifier.create(nearCache.load(List.of("abc123", "def456"), keys -> Mono.fromSupplier(() -> {
+                    nearCache.invalidate("abc123");
+                    return Map.of("abc123", shortUrl, "def456", other);
+                })))
+                .expectNextCount(1)
+                .verifyComplete();
+
+        assertThat(nearCache.size()).isEqualTo(1);
+        StepVerifier.create(nearCache.get("def456", this::load))
+                .expectNext(other)
+                .verifyComplete();
+        assertThat(loads.get()).isZero();
+    }
+
+    private Mono<ApiService.ShortUrlResponse> load(String key) {
+        return Mono.fromSupplier(() -> {
+            loads.incrementAndGet();
+            return shortUrl;
+        });
+    }
+}
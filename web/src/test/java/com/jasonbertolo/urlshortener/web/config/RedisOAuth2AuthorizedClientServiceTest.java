@@ -0,0 +1,150 @@
+package com.jasonbertolo.urlshortener.web.config;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.oauth2.client.OAuth2AuthorizedClient;
+import org.springframework.security.oauth2.client.registration.ClientRegistration;
+import org.springframework.security.oauth2.client.registration.InMemoryReactiveClientRegistrationRepository;
+import org.springframework.security.oauth2.core.AuthorizationGrantType;
+import org.springframework.security.oauth2.core.OAuth2AccessToken;
+import org.springframework.security.oauth2.core.OAuth2RefreshToken;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Testcontainers
+class RedisOAuth2AuthorizedClientServiceTest {
+
+    static final String NAMESPACE = "url-shortener:web";
+    static final String KEY = NAMESPACE + ":oauth2:client:url_shortener:user1";
+    static final Duration MINIMUM_TTL = Duration.ofMinutes(30);
+
+    @SuppressWarnings("resource")
+    @Container
+    static final GenericContainer<?> redisContainer = new GenericContainer<>(
+            DockerImageName.parse("redis:6.2.7-alpine")).withExposedPorts(6379);
+
+    static LettuceConnectionFactory connectionFactory;
+    static ReactiveStringRedisTemplate redisTemplate;
+
+    final ClientRegistration clientRegistration = ClientRegistration.withRegistrationId("url_shortener")
+            .clientId("url_shortener")
+            .clientSecret("url_shortener_secret")
+            .authorizationGrantType(AuthorizationGrantType.AUTHORIZATION_CODE)
+            .redirectUri("{baseUrl}/login/oauth2/code/{registrationId}")
+            .authorizationUri("http://localhost:8085/oauth2/authorize")
+            .tokenUri("http://localhost:8085/oauth2/token")
+            .scope("openid", "profile", "shorturl:read", "shorturl:write")
+            .build();
+    final Authentication principal = new TestingAuthenticationToken("user1", null);
+    RedisOAuth2AuthorizedClientService authorizedClientService;
+
+    @BeforeAll
+    static void beforeAll() {
+        connectionFactory = new LettuceConnectionFactory(redisContainer.getHost(),
+                redisContainer.getFirstMappedPort());
+        connectionFactory.afterPropertiesSet();
+        redisTemplate = new ReactiveStringRedisTemplate(connectionFactory);
+    }
+
+    @AfterAll
+    static void afterAll() {
+        connectionFactory.destroy();
+    }
+
+    @BeforeEach
+    void beforeEach() {
+        redisTemplate.delete(KEY).block();
+        authorizedClientService = new RedisOAuth2AuthorizedClientService(
+                new InMemoryReactiveClientRegistrationRepository(clientRegistration), connectionFactory, NAMESPACE,
+                MINIMUM_TTL);
+    }
+
+    @Test
+    @DisplayName("Redis authorized clients - saved client loaded with its tokens, then removed")
+    void saveLoadRemove() {
+        OAuth2AuthorizedClient authorizedClient = authorizedClient(Duration.ofMinutes(5));
+
+        StepVerifier.create(authorizedClientService.saveAuthorizedClient(authorizedClient, principal))
+                .verifyComplete();
+
+        StepVerifier.create(authorizedClientService.<OAuth2AuthorizedClient>loadAuthorizedClient(
+                        "url_shortener", "user1"))
+                .assertNext(loaded -> {
+                    assertThat(loaded.getClientRegistration()).isEqualTo(clientRegistration);
+                    assertThat(loaded.getPrincipalName()).isEqualTo("user1");
+                    assertThat(loaded.getAccessToken())
+                            .usingRecursiveComparison()
+                            .ignoringCollectionOrder()
+                            .isEqualTo(authorizedClient.getAccessToken());
+                    assertThat(loaded.getRefreshToken())
+                            .usingRecursiveComparison()
+                            .isEqualTo(authorizedClient.getRefreshToken());
+                })
+                .verifyComplete();
+
+        StepVerifier.create(authorizedClientService.removeAuthorizedClient("url_shortener", "user1"))
+                .verifyComplete();
+        StepVerifier.create(redisTemplate.hasKey(KEY))
+                .expectNext(false)
+                .verifyComplete();
+        StepVerifier.create(authorizedClientService.loadAuthorizedClient("url_shortener", "user1"))
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("Redis authorized clients - unknown principal or registration loads nothing")
+    void loadMissing() {
+        StepVerifier.create(authorizedClientService.saveAuthorizedClient(authorizedClient(Duration.ofMinutes(5)),
+                        principal))
+                .verifyComplete();
+
+        StepVerifier.create(authorizedClientService.loadAuthorizedClient("url_shortener", "user2"))
+                .verifyComplete();
+        StepVerifier.create(authorizedClientService.loadAuthorizedClient("unknown", "user1"))
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("Redis authorized clients - entry lives for the session timeout or until the token expires")
+    void entryTtl() {
+        StepVerifier.create(authorizedClientService.saveAuthorizedClient(authorizedClient(Duration.ofMinutes(5)),
+                        principal))
+                .verifyComplete();
+        StepVerifier.create(redisTemplate.getExpire(KEY))
+                .assertNext(ttl -> assertThat(ttl).isBetween(MINIMUM_TTL.minusSeconds(5), MINIMUM_TTL))
+                .verifyComplete();
+
+        StepVerifier.create(authorizedClientService.saveAuthorizedClient(authorizedClient(Duration.ofHours(2)),
+                        principal))
+                .verifyComplete();
+        StepVerifier.create(redisTemplate.getExpire(KEY))
+                .assertNext(ttl -> assertThat(ttl).isBetween(Duration.ofHours(2).minusSeconds(5),
+                        Duration.ofHours(2)))
+                .verifyComplete();
+    }
+
+    private OAuth2AuthorizedClient authorizedClient(Duration lifetime) {
+        Instant now = Instant.now().truncatedTo(ChronoUnit.SECONDS);
+        return new OAuth2AuthorizedClient(clientRegistration, "user1",
+                new OAuth2AccessToken(OAuth2AccessToken.TokenType.BEARER, "access-token", now, now.plus(lifetime),
+                        Set.of("openid", "shorturl:read")),
+                new OAuth2RefreshToken("refresh-token", now));
+    }
+}
@@ -0,0 +1,64 @@
+package com.jasonbertolo.urlshortener.web.config;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.mock.web.server.MockWebSession;
+import org.springframework.security.web.reactive.result.view.CsrfRequestDataValueProcessor;
+import org.springframework.security.web.server.csrf.CsrfToken;
+import org.springframework.security.web.server.csrf.DefaultCsrfToken;
+import org.springframework.web.server.WebFilter;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SecurityConfigTest {
+
+    final WebFilter includeCsrfTokenWebFilter = new SecurityConfig().includeCsrfTokenWebFilter();
+
+    @Test
+    @DisplayName("CSRF token filter - session not loaded on a chain without CSRF protection")
+    void sessionNotLoadedWithoutCsrfToken() {
+        AtomicInteger sessionLoads = new AtomicInteger();
+        MockServerWebExchange exchange = MockServerWebExchange.builder(MockServerHttpRequest.get("/u/key001"))
+                .sessionManager(e -> {
+                    sessionLoads.incrementAndGet();
+                    return Mono.just(new MockWebSession());
+                })
+                .build();
+
+        StepVerifier.create(includeCsrfTokenWebFilter.filter(exchange, e -> Mono.empty()))
+                .verifyComplete();
+        assertThat(sessionLoads).hasValue(0);
+    }
+
+    @Test
+    @DisplayName("CSRF token filter - token exposed to views only for a started session")
+    void tokenIncludedForStartedSession() {
+        CsrfToken csrfToken = new DefaultCsrfToken("X-CSRF-TOKEN", "_csrf", "token");
+        MockWebSession session = new MockWebSession();
+        MockServerWebExchange anonymous = MockServerWebExchange.builder(MockServerHttpRequest.get("/"))
+                .session(session)
+                .build();
+        anonymous.getAttributes().put(CsrfToken.class.getName(), Mono.just(csrfToken));
+
+        StepVerifier.create(includeCsrfTokenWebFilter.filter(anonymous, e -> Mono.empty()))
+                .verifyComplete();
+        assertThat(anonymous.<CsrfToken>getAttribute(CsrfRequestDataValueProcessor.DEFAULT_CSRF_ATTR_NAME)).isNull();
+
+        session.start();
+        MockServerWebExchange loggedIn = MockServerWebExchange.builder(MockServerHttpRequest.get("/"))
+                .session(session)
+                .build();
+        loggedIn.getAttributes().put(CsrfToken.class.getName(), Mono.just(csrfToken));
+
+        StepVerifier.create(includeCsrfTokenWebFilter.filter(loggedIn, e -> Mono.empty()))
+                .verifyComplete();
+        assertThat(loggedIn.<CsrfToken>getAttribute(CsrfRequestDataValueProcessor.DEFAULT_CSRF_ATTR_NAME))
+                .isEqualTo(csrfToken);
+    }
+}
@@ -0,0 +1,194 @@
+package com.jasonbertolo.urlshortener.web.config;
+
+import com.jasonbertolo.urlshortener.web.config.settings.UrlShortenerSettings;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializationContext;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextImpl;
+import org.springframework.security.oauth2.client.authentication.OAuth2AuthenticationToken;
+import org.springframework.security.oauth2.core.endpoint.OAuth2AuthorizationRequest;
+import org.springframework.security.oauth2.core.oidc.OidcIdToken;
+import org.springframework.security.oauth2.core.oidc.user.DefaultOidcUser;
+import org.springframework.security.oauth2.core.oidc.user.OidcUserAuthority;
+import org.springframework.security.web.server.context.WebSessionServerSecurityContextRepository;
+import org.springframework.security.web.server.csrf.CsrfToken;
+import org.springframework.security.web.server.csrf.DefaultCsrfToken;
+import org.springframework.session.data.redis.ReactiveRedisSessionRepository;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+import reactor.test.StepVerifier;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Testcontainers
+class SessionConfigTest {
+
+    @SuppressWarnings("resource")
+    @Container
+    static final GenericContainer<?> redisContainer = new GenericContainer<>(
+            DockerImageName.parse("redis:6.2.7-alpine")).withExposedPorts(6379);
+
+    // One connection factory per node, like two web instances sharing spring.data.redis
+    static LettuceConnectionFactory node1ConnectionFactory;
+    static LettuceConnectionFactory node2ConnectionFactory;
+
+    final SessionConfig sessionConfig = new SessionConfig();
+    final RedisSerializer<Object> serializer = sessionConfig.springSessionDefaultRedisSerializer();
+
+    @BeforeAll
+    static void beforeAll() {
+        node1ConnectionFactory = connectionFactory();
+        node2ConnectionFactory = connectionFactory();
+    }
+
+    @AfterAll
+    static void afterAll() {
+        node1ConnectionFactory.destroy();
+        node2ConnectionFactory.destroy();
+    }
+
+    @Test
+    @DisplayName("Redis sessions - security context of an OAuth2 login round trips as JSON")
+    void securityContextRoundTrip() {
+        SecurityContext securityContext = securityContext("user1");
+
+        byte[] serialized = serializer.serialize(securityContext);
+
+        assertThat(new String(serialized, StandardCharsets.UTF_8)).startsWith("{");
+        assertThat(serializer.deserialize(serialized))
+                .isInstanceOf(SecurityContextImpl.class)
+                .usingRecursiveComparison()
+                .ignoringCollectionOrder()
+                .isEqualTo(securityContext);
+    }
+
+    @Test
+    @DisplayName("Redis sessions - saved request and OAuth2 authorization request round trip as JSON")
+    void savedRequestRoundTrip() {
+        String savedRequest = "/app/my-links?page=2";
+        OAuth2AuthorizationRequest authorizationRequest = OAuth2AuthorizationRequest.authorizationCode()
+                .authorizationUri("http://localhost:8085/oauth2/authorize")
+                .clientId("url_shortener")
+                .redirectUri("http://localhost:8080/login/oauth2/code/url_shortener")
+                .scopes(Set.of("openid", "profile", "shorturl:read", "shorturl:write"))
+                .state(UUID.randomUUID().toString())
+                .attributes(attributes -> attributes.put("registration_id", "url_shortener"))
+                .additionalParameters(parameters -> parameters.put("nonce", "abc123"))
+                .build();
+
+        assertThat(serializer.deserialize(serializer.serialize(savedRequest))).isEqualTo(savedRequest);
+        assertThat(serializer.deserialize(serializer.serialize(authorizationRequest)))
+                .isInstanceOf(OAuth2AuthorizationRequest.class)
+                .usingRecursiveComparison()
+                .ignoringCollectionOrder()
+                .isEqualTo(authorizationRequest);
+    }
+
+    @Test
+    @DisplayName("Redis sessions - CSRF token round trips as JSON")
+    void csrfTokenRoundTrip() {
+        CsrfToken csrfToken = new DefaultCsrfToken("X-XSRF-TOKEN", "_csrf", UUID.randomUUID().toString());
+
+        assertThat(serializer.deserialize(serializer.serialize(csrfToken)))
+                .isInstanceOf(DefaultCsrfToken.class)
+                .usingRecursiveComparison()
+                .isEqualTo(csrfToken);
+    }
+
+    @Test
+    @DisplayName("Redis sessions - session saved by one node is read by another")
+    void sessionSharedBetweenNodes() {
+        ReactiveRedisSessionRepository node1 = sessionRepository(node1ConnectionFactory);
+        ReactiveRedisSessionRepository node2 = sessionRepository(node2ConnectionFactory);
+        SecurityContext securityContext = securityContext("user1");
+        CsrfToken csrfToken = new DefaultCsrfToken("X-XSRF-TOKEN", "_csrf", UUID.randomUUID().toString());
+
+        ReactiveRedisSessionRepository.RedisSession session = node1.createSession().block();
+        assertThat(session).isNotNull();
+        session.setAttribute(WebSessionServerSecurityContextRepository.DEFAULT_SPRING_SECURITY_CONTEXT_ATTR_NAME,
+                securityContext);
+        session.setAttribute("csrfToken", csrfToken);
+        StepVerifier.create(node1.save(session))
+                .verifyComplete();
+
+        StepVerifier.create(node2.findById(session.getId()))
+                .assertNext(found -> {
+                    assertThat(found.<SecurityContext>getAttribute(
+                            WebSessionServerSecurityContextRepository.DEFAULT_SPRING_SECURITY_CONTEXT_ATTR_NAME))
+                            .usingRecursiveComparison()
+                            .ignoringCollectionOrder()
+                            .isEqualTo(securityContext);
+                    assertThat(found.<CsrfToken>getAttribute("csrfToken"))
+                            .usingRecursiveComparison()
+                            .isEqualTo(csrfToken);
+                    assertThat(found.getMaxInactiveInterval()).isEqualTo(new UrlShortenerSettings()
+                            .getRedisSessions().getTimeout());
+                })
+                .verifyComplete();
+
+        StepVerifier.create(node2.deleteById(session.getId()))
+                .verifyComplete();
+        StepVerifier.create(node1.findById(session.getId()))
+                .verifyComplete();
+    }
+
+    // Same template as @EnableRedisWebSession builds around springSessionDefaultRedisSerializer
+    private ReactiveRedisSessionRepository sessionRepository(LettuceConnectionFactory connectionFactory) {
+        RedisSerializer<String> keySerializer = RedisSerializer.string();
+        ReactiveRedisTemplate<String, Object> template = new ReactiveRedisTemplate<>(connectionFactory,
+                RedisSerializationContext.<String, Object>newSerializationContext(serializer)
+                        .key(keySerializer)
+                        .hashKey(keySerializer)
+                        .build());
+        ReactiveRedisSessionRepository sessionRepository = new ReactiveRedisSessionRepository(template);
+        sessionConfig.sessionRepositoryCustomizer(new UrlShortenerSettings()).customize(sessionRepository);
+        return sessionRepository;
+    }
+
+    private static LettuceConnectionFactory connectionFactory() {
+        LettuceConnectionFactory connectionFactory = new LettuceConnectionFactory(redisContainer.getHost(),
+                redisContainer.getFirstMappedPort());
+        connectionFactory.afterPropertiesSet();
+        return connectionFactory;
+    }
+
+    private static SecurityContext securityContext(String username) {
+        Instant now = Instant.now().truncatedTo(ChronoUnit.SECONDS);
+        OidcIdToken idToken = OidcIdToken.withTokenValue("ey...")
+                .subject(username)
+                .audience(new ArrayList<>(List.of("url_shortener")))
+                .authorizedParty("url_shortener")
+                .issuer("http://localhost:8085")
+                .issuedAt(now)
+                .expiresAt(now.plusSeconds(3600))
+                .nonce("abc123")
+                .claim("sid", "def456")
+                .build();
+        Set<GrantedAuthority> authorities = new HashSet<>();
+        authorities.add(new OidcUserAuthority(idToken));
+        authorities.add(new SimpleGrantedAuthority("SCOPE_openid"));
+        authorities.add(new SimpleGrantedAuthority("SCOPE_shorturl:read"));
+        OAuth2AuthenticationToken authentication = new OAuth2AuthenticationToken(
+                new DefaultOidcUser(authorities, idToken), authorities, "url_shortener");
+        return new SecurityContextImpl(authentication);
+    }
+}
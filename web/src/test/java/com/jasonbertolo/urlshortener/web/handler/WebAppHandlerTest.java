@@ -125,7 +125,7 @@ class WebAppHandlerTest extends AbstractWebIntegrationTest {
     }
 
     @Test
-    @DisplayName("Redirect - unauthenticated, success")
+    @DisplayName("Redirect - unauthenticated, success without a session")
     void redirectUnauthenticated() throws InterruptedException {
         apiMockWebServer.enqueue(new MockResponse()
                 .setResponseCode(200)
@@ -138,6 +138,7 @@ class WebAppHandlerTest extends AbstractWebIntegrationTest {
                 .get().uri("/u/key001")
                 .exchange()
                 .expectHeader().value(HttpHeaders.LOCATION, equalTo("https://example.com?param=true"))
+                .expectHeader().doesNotExist(HttpHeaders.SET_COOKIE)
                 .expectStatus().isPermanentRedirect();
 
         RecordedRequest recordedRequest = apiMockWebServer.takeRequest();
@@ -145,6 +146,34 @@ class WebAppHandlerTest extends AbstractWebIntegrationTest {
         assertThat(recordedRequest.getPath()).isEqualTo("/api/v1/cache/key001");
     }
 
+    @Test
+    @DisplayName("Redirect - near cache hit, single API request")
+    void redirectNearCacheHit() throws InterruptedException {
+        apiMockWebServer.enqueue(new MockResponse()
+                .setResponseCode(200)
+                .setHeader(CONTENT_TYPE, APPLICATION_JSON)
+                .setBody(CACHE_API_RESPONSE_SUCCESS));
+
+        authorizeClientCredentials();
+
+        int requestCount = apiMockWebServer.getRequestCount();
+        for (int i = 0; i < 3; i++) {
+            webTestClient
+                    .get().uri("/u/key001")
+                    .exchange()
+                    .expectHeader().value(HttpHeaders.LOCATION, equalTo("https://example.com?param=true"))
+                    .expectStatus().isPermanentRedirect();
+        }
+
+        RecordedRequest recordedRequest = apiMockWebServer.takeRequest();
+        assertThat(recordedRequest.getPath()).isEqualTo("/api/v1/cache/key001");
+        assertThat(apiMockWebServer.getRequestCount()).isEqualTo(requestCount + 1);
+        assertThat(shortUrlNearCache.size()).isEqualTo(1);
+
+        shortUrlNearCache.invalidate("key001");
+        assertThat(shortUrlNearCache.size()).isZero();
+    }
+
     @Test
     @DisplayName("Redirect - failed, invalid key")
     void redirectInvalidKey() { //NOSONAR
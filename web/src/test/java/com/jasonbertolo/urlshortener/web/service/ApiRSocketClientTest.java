@@ -0,0 +1,192 @@
+package com.jasonbertolo.urlshortener.web.service;
+
+import com.jasonbertolo.urlshortener.contract.CachedShortUrl;
+import com.jasonbertolo.urlshortener.contract.ConsistentHashRing;
+import com.jasonbertolo.urlshortener.contract.ShortUrlCacheCodec;
+import com.jasonbertolo.urlshortener.web.component.ApiInstanceRouter;
+import com.jasonbertolo.urlshortener.web.component.ApiLoadBalancer;
+import com.jasonbertolo.urlshortener.web.component.ApiTokenRefresher;
+import com.jasonbertolo.urlshortener.web.config.settings.MicroservicesSettings;
+import com.jasonbertolo.urlshortener.web.config.settings.UrlShortenerSettings;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.rsocket.Payload;
+import io.rsocket.RSocket;
+import io.rsocket.core.RSocketServer;
+import io.rsocket.exceptions.RejectedSetupException;
+import io.rsocket.transport.netty.server.CloseableChannel;
+import io.rsocket.transport.netty.server.TcpServerTransport;
+import io.rsocket.util.DefaultPayload;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.data.redis.core.ReactiveRedisOperations;
+import org.springframework.messaging.rsocket.RSocketRequester;
+import org.springframework.security.oauth2.client.OAuth2AuthorizedClient;
+import org.springframework.security.oauth2.client.registration.ClientRegistration;
+import org.springframework.security.oauth2.core.OAuth2AccessToken;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ApiRSocketClientTest {
+
+    static final CachedShortUrl SHORT_URL = new CachedShortUrl("object001", "key001",
+            "https://example.com?param=true", null, null, null, null);
+
+    final List<String> setupMetadata = new CopyOnWriteArrayList<>();
+    final List<RSocket> connections = new CopyOnWriteArrayList<>();
+    final AtomicInteger rejectedSetups = new AtomicInteger();
+    CloseableChannel server;
+    ApiTokenRefresher apiTokenRefresher;
+    UrlShortenerSettings urlShortenerSettings;
+    ApiRSocketClient client;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void beforeEach() {
+        // Stands in for the API, accepting any token but an expired one and answering key001
+        server = RSocketServer.create((setup, sendingSocket) -> {
+                    String metadata = setup.getMetadataUtf8();
+                    if (metadata.contains("expired-token")) {
+                        rejectedSetups.incrementAndGet();
+                        return Mono.error(new RejectedSetupException("Jwt expired"));
+                    }
+                    setupMetadata.add(metadata);
+                    connections.add(sendingSocket);
+                    return Mono.just(new RSocket() {
+                        @Override
+                        public Mono<Payload> requestResponse(Payload payload) {
+                            String key = payload.getDataUtf8();
+                            payload.release();
+                            return SHORT_URL.key().equals(key)
+                                    ? Mono.just(DefaultPayload.create(ShortUrlCacheCodec.encode(SHORT_URL)))
+                                    : Mono.empty();
+                        }
+                    });
+                })
+                .bind(TcpServerTransport.create("localhost", 0))
+                .block();
+
+        apiTokenRefresher = mock(ApiTokenRefresher.class);
+        when(apiTokenRefresher.authorizedClient()).thenReturn(Mono.just(authorizedClient("token-1",
+                Duration.ofHours(1))));
+        ObjectProvider<RSocketRequester.Builder> requesterBuilders = mock(ObjectProvider.class);
+        when(requesterBuilders.getObject()).thenAnswer(invocation -> RSocketRequester.builder());
+
+        urlShortenerSettings = new UrlShortenerSettings();
+        urlShortenerSettings.getApiRsocket().setEnabled(true);
+        urlShortenerSettings.getApiRsocket().setPort(server.address().getPort());
+        urlShortenerSettings.getApiRsocket().setTokenRefreshSkew(Duration.ofSeconds(1));
+        urlShortenerSettings.getApiRsocket().setCloseGracePeriod(Duration.ZERO);
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        MicroservicesSettings microservicesSettings = new MicroservicesSettings();
+        client = new ApiRSocketClient(apiTokenRefresher, requesterBuilders,
+                new ApiInstanceRouter(microservicesSettings, urlShortenerSettings, meterRegistry),
+                new ApiLoadBalancer(microservicesSettings, urlShortenerSettings, meterRegistry),
+                urlShortenerSettings);
+    }
+
+    @AfterEach
+    void afterEach() {
+        client.stop();
+        server.dispose();
+    }
+
+    @Test
+    @DisplayName("API RSocket - lost connection replaced on the next lookup, unknown key is an answer")
+    void reconnectsAfterConnectionLoss() throws InterruptedException {
+        StepVerifier.create(client.resolve("key001"))
+                .assertNext(r -> assertThat(r.url()).isEqualTo(SHORT_URL.url()))
+                .verifyComplete();
+        StepVerifier.create(client.resolve("key999"))
+                .expectError(ApiService.ApiException.class)
+                .verify();
+        assertThat(connections).hasSize(1);
+
+        connections.get(0).dispose();
+        Thread.sleep(200);
+
+        StepVerifier.create(client.resolve("key001"))
+                .assertNext(r -> assertThat(r.url()).isEqualTo(SHORT_URL.url()))
+                .verifyComplete();
+        assertThat(connections).hasSize(2);
+    }
+
+    @Test
+    @DisplayName("API RSocket - rejected expired token retried with a new one, new token sent before expiry")
+    void refreshesTokenOnSetup() throws InterruptedException {
+        when(apiTokenRefresher.authorizedClient())
+                .thenReturn(Mono.just(authorizedClient("expired-token", Duration.ofSeconds(-1))))
+                .thenReturn(Mono.just(authorizedClient("token-1", Duration.ofSeconds(2))))
+                .thenReturn(Mono.just(authorizedClient("token-2", Duration.ofHours(1))));
+
+        StepVerifier.create(client.resolve("key001"))
+                .expectErrorMatches(e -> !(e instanceof ApiService.ApiException))
+                .verify(Duration.ofSeconds(5));
+        Thread.sleep(200);
+        StepVerifier.create(client.resolve("key001"))
+                .expectNextCount(1)
+                .verifyComplete();
+
+        // token-1 is replaced tokenRefreshSkew before it expires
+        Thread.sleep(1200);
+        StepVerifier.create(client.resolve("key001"))
+                .expectNextCount(1)
+                .verifyComplete();
+
+        assertThat(rejectedSetups).hasValue(1);
+        assertThat(setupMetadata).hasSize(2);
+        assertThat(setupMetadata.get(0)).contains("token-1");
+        assertThat(setupMetadata.get(1)).contains("token-2");
+    }
+
+    @Test
+    @DisplayName("API RSocket - resolver falls back to HTTP when the connection fails, not when the key is unknown")
+    @SuppressWarnings("unchecked")
+    void resolverFallsBackToHttp() {
+        ApiService apiService = mock(ApiService.class);
+        ApiService.ShortUrlResponse response = new ApiService.ShortUrlResponse("object001", "key001",
+                "https://example.com?param=true", null, null, null, null);
+        when(apiService.getAndCacheShortUrl(anyString()))
+                .thenReturn(Mono.just(new ApiService.ApiResponse<>("ok", "ShortUrlResponseDto", response)));
+        ShortUrlResolver resolver = new ShortUrlResolver(apiService, client, mock(ShortUrlBatchLoader.class),
+                new ConsistentHashRing<>(Map.of("default", mock(ReactiveRedisOperations.class)), 1),
+                urlShortenerSettings, new SimpleMeterRegistry());
+
+        StepVerifier.create(resolver.resolve("key999"))
+                .expectError(ApiService.ApiException.class)
+                .verify();
+        verify(apiService, never()).getAndCacheShortUrl(anyString());
+
+        server.dispose();
+        connections.forEach(RSocket::dispose);
+
+        StepVerifier.create(resolver.resolve("key001"))
+                .expectNext(response)
+                .verifyComplete();
+        verify(apiService).getAndCacheShortUrl("key001");
+    }
+
+    private static OAuth2AuthorizedClient authorizedClient(String token, Duration lifetime) {
+        Instant now = Instant.now();
+        return new OAuth2AuthorizedClient(mock(ClientRegistration.class), "anonymousUser",
+                new OAuth2AccessToken(OAuth2AccessToken.TokenType.BEARER, token, now.minusSeconds(5),
+                        now.plus(lifetime), Set.of("cache:read", "cache:write")));
+    }
+}
@@ -1,10 +1,12 @@
 package com.jasonbertolo.urlshortener.web.util;
 
+import com.jasonbertolo.urlshortener.web.component.ShortUrlNearCache;
 import com.jasonbertolo.urlshortener.web.config.settings.MicroservicesSettings;
 import com.jasonbertolo.urlshortener.web.config.settings.UiSettings;
 import okhttp3.mockwebserver.MockWebServer;
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -28,6 +30,9 @@ public abstract class AbstractWebIntegrationTest {
     @Autowired
     protected MicroservicesSettings microservicesSettings;
 
+    @Autowired
+    protected ShortUrlNearCache shortUrlNearCache;
+
     protected static MockWebServer apiMockWebServer;
 
     @DynamicPropertySource
@@ -43,6 +48,12 @@ public abstract class AbstractWebIntegrationTest {
         LOGGER.info("MockWebServer running at {}", apiMockWebServer.url("/"));
     }
 
+    @BeforeEach
+    void beforeEachTest() {
+        // Each test enqueues its own API responses, don't let a previous test's ShortUrl answer from memory
+        shortUrlNearCache.invalidateAll();
+    }
+
     @AfterAll
     static void afterAllTests() throws IOException {
         LOGGER.info("Stopping MockWebServer");